@@ -0,0 +1,116 @@
+
+package jene.app;
+
+import java.util.function.Supplier;
+
+/**
+ * Holds a global resource (a database, table, or model defined by
+ * system properties) that is loaded once, on first access, and then
+ * shared by all threads.
+ *
+ * <p>Initialization uses double-checked locking on a volatile field:
+ * concurrent callers block until the first caller has loaded the
+ * resource, and later calls require a single volatile read.  If the
+ * loader throws an exception, the resource remains unloaded and the
+ * next call tries again.  Resources are registered with the
+ * {@link ResourceRegistry} when they are created, and their load
+ * times are recorded there.
+ *
+ * @param <T> the runtime type of the resource.
+ */
+public final class GlobalResource<T> {
+    private final String name;
+    private final Supplier<T> loader;
+
+    private volatile T instance = null;
+    private volatile long loadNanos = -1L;
+
+    private GlobalResource(String name, Supplier<T> loader) {
+        this.name = name;
+        this.loader = loader;
+    }
+
+    /**
+     * Creates and registers a new global resource.
+     *
+     * @param <T> the runtime type of the resource.
+     *
+     * @param name the name of the resource (used in load time
+     * reports).
+     *
+     * @param loader the function that loads the resource (called at
+     * most once, unless it fails).
+     *
+     * @return the new global resource.
+     */
+    public static <T> GlobalResource<T> create(String name, Supplier<T> loader) {
+        GlobalResource<T> resource = new GlobalResource<T>(name, loader);
+        ResourceRegistry.register(resource);
+        return resource;
+    }
+
+    /**
+     * Returns the resource, loading it if necessary.
+     *
+     * @return the resource.
+     *
+     * @throws RuntimeException if the resource must be loaded and
+     * the loader fails.
+     */
+    public T get() {
+        T result = instance;
+
+        if (result == null) {
+            synchronized (this) {
+                result = instance;
+
+                if (result == null) {
+                    long start = System.nanoTime();
+                    result = loader.get();
+
+                    if (result == null)
+                        throw new IllegalStateException(String.format("Global resource [%s] loaded as null.", name));
+
+                    loadNanos = System.nanoTime() - start;
+                    instance = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the name of this resource.
+     *
+     * @return the name of this resource.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the time spent loading this resource (including the
+     * time spent loading any resources on which it depends).
+     *
+     * @return the load time in milliseconds, or {@code -1} if the
+     * resource has not been loaded.
+     */
+    public long getLoadMillis() {
+        long nanos = loadNanos;
+        return (nanos < 0L) ? -1L : nanos / 1000000L;
+    }
+
+    /**
+     * Identifies loaded resources.
+     *
+     * @return {@code true} iff this resource has been loaded.
+     */
+    public boolean isLoaded() {
+        return instance != null;
+    }
+
+    @Override public String toString() {
+        return "GlobalResource(" + name + ")";
+    }
+}
@@ -0,0 +1,117 @@
+
+package jene.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import jam.app.JamLogger;
+
+/**
+ * Tracks the global resources used by jene applications and loads
+ * independent resources concurrently.
+ *
+ * <p>Applications that know which resources they need should call
+ * {@link #warmUp(Supplier...)} with the corresponding global accessor
+ * methods (e.g., {@code HugoMaster::global}) during startup: the
+ * resources are then loaded in parallel rather than serially on first
+ * touch by the worker threads.  Resources that depend on each other
+ * (e.g., an expression model that requires the tumor-patient table)
+ * are safe to warm up together; each is still loaded exactly once.
+ */
+public final class ResourceRegistry {
+    // Registered resources in order of creation...
+    private static final List<GlobalResource<?>> resources = new ArrayList<GlobalResource<?>>();
+
+    private ResourceRegistry() {}
+
+    static synchronized void register(GlobalResource<?> resource) {
+        resources.add(resource);
+    }
+
+    /**
+     * Loads global resources concurrently and waits for them all to
+     * finish loading, then logs the load time of each resource.
+     *
+     * @param accessors the accessor methods of the global resources
+     * (e.g., {@code HugoMaster::global}).
+     *
+     * @throws RuntimeException if any resource fails to load (after
+     * all other resources have finished loading).
+     */
+    public static void warmUp(Supplier<?>... accessors) {
+        if (accessors.length == 0)
+            return;
+
+        JamLogger.info("Warming up [%d] global resources...", accessors.length);
+
+        ExecutorService executor = Executors.newFixedThreadPool(accessors.length, runnable -> {
+                Thread thread = new Thread(runnable, "jene-warm-up");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        try {
+            List<CompletableFuture<?>> futures = new ArrayList<CompletableFuture<?>>(accessors.length);
+
+            for (Supplier<?> accessor : accessors)
+                futures.add(CompletableFuture.supplyAsync(accessor, executor));
+
+            try {
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+            }
+            catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) ex.getCause();
+                else
+                    throw ex;
+            }
+        }
+        finally {
+            executor.shutdown();
+            reportLoadTimes();
+        }
+    }
+
+    /**
+     * Returns the load times of all loaded resources.
+     *
+     * @return a map from resource name to load time in milliseconds,
+     * in order of resource creation.
+     */
+    public static synchronized Map<String, Long> loadTimes() {
+        Map<String, Long> times = new LinkedHashMap<String, Long>();
+
+        for (GlobalResource<?> resource : resources)
+            if (resource.isLoaded())
+                times.put(resource.getName(), resource.getLoadMillis());
+
+        return Collections.unmodifiableMap(times);
+    }
+
+    /**
+     * Logs the load times of all loaded resources.
+     */
+    public static void reportLoadTimes() {
+        for (Map.Entry<String, Long> entry : loadTimes().entrySet())
+            JamLogger.info("Loaded global resource [%s] in [%d] ms.", entry.getKey(), entry.getValue());
+    }
+
+    /**
+     * Returns the global resources that have been created (whether or
+     * not they have been loaded).
+     *
+     * @return a new list containing the global resources in order of
+     * creation.
+     */
+    public static synchronized List<GlobalResource<?>> listResources() {
+        return new ArrayList<GlobalResource<?>>(resources);
+    }
+}
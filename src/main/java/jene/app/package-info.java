@@ -0,0 +1,4 @@
+/**
+ * Manages the global resources (databases, tables, and models) shared by jene applications.
+ */
+package jene.app;
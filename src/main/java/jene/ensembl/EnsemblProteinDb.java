@@ -15,6 +15,7 @@ import com.google.common.collect.Multimap;
 import jam.lang.JamException;
 import jam.util.MapUtil;
 
+import jene.app.GlobalResource;
 import jene.hugo.HugoSymbol;
 import jene.fasta.FastaPeptideReader;
 import jene.fasta.FastaPeptideRecord;
@@ -34,7 +35,8 @@ public final class EnsemblProteinDb {
     // The GRCh38 reference Ensembl database defines a mapping from gene to HUGO symbol...
     private final Map<EnsemblGeneID, HugoSymbol> geneHugoMap;
 
-    private static EnsemblProteinDb reference = null;
+    private static final GlobalResource<EnsemblProteinDb> reference =
+        GlobalResource.create("EnsemblProteinDb", EnsemblProteinDb::loadReference);
 
     private EnsemblProteinDb() {
         this.proteinRecordMap = new HashMap<EnsemblProteinID, EnsemblProteinRecord>();
@@ -157,11 +159,8 @@ public final class EnsemblProteinDb {
      *
      * @return the reference human proteome.
      */
-    public static synchronized EnsemblProteinDb reference() {
-        if (reference == null)
-            reference = loadReference();
-
-        return reference;
+    public static EnsemblProteinDb reference() {
+        return reference.get();
     }
 
     private static EnsemblProteinDb loadReference() {
@@ -416,6 +415,16 @@ public final class EnsemblProteinDb {
         return Collections.unmodifiableSet(transcriptRecordMap.keySet());
     }
 
+    /**
+     * Returns a read-only view of all records in this database.
+     *
+     * @return a read-only collection containing every record in this
+     * database (one per protein).
+     */
+    public Collection<EnsemblProteinRecord> viewRecords() {
+        return Collections.unmodifiableCollection(proteinRecordMap.values());
+    }
+
     /**
      * Returns the number of records in this database.
      *
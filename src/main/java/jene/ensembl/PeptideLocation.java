@@ -0,0 +1,104 @@
+
+package jene.ensembl;
+
+import jene.hugo.HugoSymbol;
+import jene.peptide.Peptide;
+
+/**
+ * Records the occurrence of a peptide within an Ensembl protein.
+ */
+public final class PeptideLocation {
+    private final Peptide peptide;
+    private final EnsemblProteinRecord proteinRecord;
+    private final int offset;
+
+    private PeptideLocation(Peptide peptide, EnsemblProteinRecord proteinRecord, int offset) {
+        this.peptide = peptide;
+        this.proteinRecord = proteinRecord;
+        this.offset = offset;
+    }
+
+    /**
+     * Creates a new peptide location.
+     *
+     * @param peptide the located peptide.
+     *
+     * @param proteinRecord the protein that contains the peptide.
+     *
+     * @param offset the zero-based index of the first residue of the
+     * peptide within the protein.
+     *
+     * @return the location with the specified attributes.
+     */
+    public static PeptideLocation instance(Peptide peptide, EnsemblProteinRecord proteinRecord, int offset) {
+        return new PeptideLocation(peptide, proteinRecord, offset);
+    }
+
+    /**
+     * Returns the protein identifier for the containing protein.
+     *
+     * @return the protein identifier for the containing protein.
+     */
+    public EnsemblProteinID getEnsemblProteinID() {
+        return proteinRecord.getEnsemblProteinID();
+    }
+
+    /**
+     * Returns the HUGO symbol for the gene that encodes the
+     * containing protein.
+     *
+     * @return the HUGO symbol for the gene that encodes the
+     * containing protein.
+     */
+    public HugoSymbol getHugoSymbol() {
+        return proteinRecord.getHugoSymbol();
+    }
+
+    /**
+     * Returns the zero-based index of the first residue of the
+     * peptide within the containing protein.
+     *
+     * @return the zero-based index of the first residue of the
+     * peptide within the containing protein.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the located peptide.
+     *
+     * @return the located peptide.
+     */
+    public Peptide getPeptide() {
+        return peptide;
+    }
+
+    /**
+     * Returns the record for the containing protein.
+     *
+     * @return the record for the containing protein.
+     */
+    public EnsemblProteinRecord getProteinRecord() {
+        return proteinRecord;
+    }
+
+    @Override public boolean equals(Object obj) {
+        return (obj instanceof PeptideLocation) && equalsLocation((PeptideLocation) obj);
+    }
+
+    private boolean equalsLocation(PeptideLocation that) {
+        return this.offset == that.offset
+            && this.peptide.equals(that.peptide)
+            && this.proteinRecord.equals(that.proteinRecord);
+    }
+
+    @Override public int hashCode() {
+        return 31 * (31 * peptide.hashCode() + proteinRecord.hashCode()) + offset;
+    }
+
+    @Override public String toString() {
+        return String.format("PeptideLocation(%s, %s, %d)",
+                             peptide.formatString(), getEnsemblProteinID().getKey(), offset);
+    }
+}
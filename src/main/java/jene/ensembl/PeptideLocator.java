@@ -0,0 +1,274 @@
+
+package jene.ensembl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+
+import jam.app.JamLogger;
+
+import jene.hugo.HugoPeptideTable;
+import jene.hugo.HugoSymbol;
+import jene.peptide.Peptide;
+import jene.peptide.Residue;
+
+/**
+ * Locates every occurrence of a batch of peptides within the proteins
+ * of an Ensembl database in a single pass over the proteome.
+ *
+ * <p>The peptides are compiled into an Aho-Corasick automaton over
+ * residue ordinals: a trie of the peptides whose failure links are
+ * folded into a complete transition table, so that each protein
+ * residue is consumed with one table lookup regardless of the number
+ * of peptides.  Proteins are scanned in parallel; the automaton is
+ * immutable after construction and may be shared among threads.
+ */
+public final class PeptideLocator {
+    private final Peptide[] peptides;
+
+    // Transition table indexed by (state * ALPHABET + residue ordinal)...
+    private final int[] transitions;
+
+    // The index of the peptide that ends at each state (or -1), and
+    // the nearest proper-suffix state that ends a peptide (or 0)...
+    private final int[] outputs;
+    private final int[] outputLinks;
+
+    private static final int ALPHABET = Residue.values().length;
+    private static final int ROOT = 0;
+
+    // The transition table is a single int array, so the number of
+    // states is limited by the maximum array length (less the few
+    // header words reserved by some virtual machines)...
+    private static final int MAX_STATES = (Integer.MAX_VALUE - 8) / ALPHABET;
+
+    // The trie starts small and grows by doubling, rather than
+    // reserving one state for every residue of every peptide...
+    private static final int INITIAL_STATES = 1024;
+
+    private PeptideLocator(Peptide[] peptides) {
+        this.peptides = peptides;
+
+        TrieBuilder builder = new TrieBuilder();
+
+        for (int index = 0; index < peptides.length; ++index)
+            builder.add(peptides[index], index);
+
+        this.transitions = Arrays.copyOf(builder.trie, builder.stateCount * ALPHABET);
+        this.outputs = Arrays.copyOf(builder.ends, builder.stateCount);
+        this.outputLinks = new int[builder.stateCount];
+
+        linkStates();
+    }
+
+    private static final class TrieBuilder {
+        private int[] trie = new int[INITIAL_STATES * ALPHABET];
+        private int[] ends = newEnds(INITIAL_STATES);
+        private int stateCount = 1;
+
+        private static int[] newEnds(int capacity) {
+            int[] ends = new int[capacity];
+            Arrays.fill(ends, -1);
+            return ends;
+        }
+
+        private void add(Peptide peptide, int index) {
+            //
+            // Zero doubles as "no transition", since no edge leads
+            // back to the root...
+            //
+            int state = ROOT;
+
+            for (Residue residue : peptide.viewResidues()) {
+                int edge = state * ALPHABET + residue.ordinal();
+
+                if (trie[edge] == 0) {
+                    //
+                    // Allocate the state before indexing the trie,
+                    // which may be replaced when the trie grows...
+                    //
+                    int child = addState();
+                    trie[edge] = child;
+                }
+
+                state = trie[edge];
+            }
+
+            ends[state] = index;
+        }
+
+        private int addState() {
+            if (stateCount == ends.length)
+                grow();
+
+            return stateCount++;
+        }
+
+        private void grow() {
+            if (ends.length >= MAX_STATES)
+                throw new IllegalStateException(String.format("The peptide trie exceeds [%d] states; "
+                                                              + "locate the peptides in smaller batches.", MAX_STATES));
+
+            int capacity = (int) Math.min(2L * ends.length, MAX_STATES);
+            int[] grown = newEnds(capacity);
+
+            System.arraycopy(ends, 0, grown, 0, ends.length);
+
+            trie = Arrays.copyOf(trie, capacity * ALPHABET);
+            ends = grown;
+        }
+    }
+
+    private void linkStates() {
+        //
+        // Breadth-first traversal: the failure link of each state is
+        // computed from that of its parent, and missing transitions
+        // are replaced by the transitions of the failure state...
+        //
+        int[] failures = new int[outputs.length];
+        int[] queue = new int[outputs.length];
+
+        int head = 0;
+        int tail = 0;
+
+        for (int symbol = 0; symbol < ALPHABET; ++symbol) {
+            int child = transitions[symbol];
+
+            if (child != 0)
+                queue[tail++] = child;
+        }
+
+        while (head < tail) {
+            int state = queue[head++];
+            int failure = failures[state];
+
+            outputLinks[state] = (outputs[failure] >= 0) ? failure : outputLinks[failure];
+
+            for (int symbol = 0; symbol < ALPHABET; ++symbol) {
+                int edge = state * ALPHABET + symbol;
+                int child = transitions[edge];
+                int fallback = transitions[failure * ALPHABET + symbol];
+
+                if (child != 0) {
+                    failures[child] = fallback;
+                    queue[tail++] = child;
+                }
+                else {
+                    transitions[edge] = fallback;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compiles a batch of peptides into a new locator.
+     *
+     * @param peptides the peptides to locate (duplicates are ignored).
+     *
+     * @return a locator for the specified peptides.
+     *
+     * @throws IllegalArgumentException if any peptide is empty.
+     *
+     * @throws IllegalStateException if the peptides require more
+     * automaton states than a single transition table can address.
+     */
+    public static PeptideLocator compile(Collection<Peptide> peptides) {
+        Peptide[] unique = new LinkedHashSet<Peptide>(peptides).toArray(new Peptide[0]);
+
+        for (Peptide peptide : unique)
+            if (peptide.length() == 0)
+                throw new IllegalArgumentException("Cannot locate empty peptides.");
+
+        return new PeptideLocator(unique);
+    }
+
+    /**
+     * Locates every occurrence of the compiled peptides within a
+     * single protein.
+     *
+     * @param proteinRecord the protein to scan.
+     *
+     * @return the locations of all compiled peptides within the
+     * protein, in order of their final residue.
+     */
+    public List<PeptideLocation> locate(EnsemblProteinRecord proteinRecord) {
+        List<PeptideLocation> locations = new ArrayList<PeptideLocation>();
+        List<Residue> residues = proteinRecord.getPeptide().viewResidues();
+
+        int state = ROOT;
+
+        for (int index = 0; index < residues.size(); ++index) {
+            state = transitions[state * ALPHABET + residues.get(index).ordinal()];
+
+            int match = (outputs[state] >= 0) ? state : outputLinks[state];
+
+            while (match != ROOT) {
+                Peptide peptide = peptides[outputs[match]];
+                locations.add(PeptideLocation.instance(peptide, proteinRecord, index - peptide.length() + 1));
+
+                match = outputLinks[match];
+            }
+        }
+
+        return locations;
+    }
+
+    /**
+     * Locates every occurrence of the compiled peptides within the
+     * proteins of an Ensembl database, scanning proteins in parallel.
+     *
+     * @param ensemblDb the Ensembl protein database to scan.
+     *
+     * @return the locations of all compiled peptides within the
+     * database proteins.
+     */
+    public List<PeptideLocation> locate(EnsemblProteinDb ensemblDb) {
+        JamLogger.info("Locating [%d] peptides in [%d] proteins...", peptides.length, ensemblDb.size());
+
+        List<PeptideLocation> locations =
+            ensemblDb.viewRecords()
+            .parallelStream()
+            .flatMap(record -> locate(record).stream())
+            .collect(Collectors.toList());
+
+        JamLogger.info("Found [%d] peptide locations.", locations.size());
+        return locations;
+    }
+
+    /**
+     * Maps the compiled peptides to the HUGO symbols of the genes
+     * whose proteins contain them.
+     *
+     * @param ensemblDb the Ensembl protein database to scan.
+     *
+     * @return a table mapping HUGO symbols to the compiled peptides
+     * contained in their proteins (proteins without a HUGO symbol are
+     * ignored).
+     */
+    public HugoPeptideTable mapHugo(EnsemblProteinDb ensemblDb) {
+        Multimap<HugoSymbol, Peptide> hugoMap = HashMultimap.create();
+
+        for (PeptideLocation location : locate(ensemblDb))
+            if (location.getHugoSymbol() != null)
+                hugoMap.put(location.getHugoSymbol(), location.getPeptide());
+
+        return HugoPeptideTable.create(hugoMap);
+    }
+
+    /**
+     * Returns the number of distinct peptides compiled into this
+     * locator.
+     *
+     * @return the number of distinct peptides compiled into this
+     * locator.
+     */
+    public int size() {
+        return peptides.length;
+    }
+}
@@ -0,0 +1,506 @@
+
+package jene.ensembl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import jam.app.JamLogger;
+
+import jene.peptide.Peptide;
+import jene.peptide.Residue;
+
+/**
+ * Indexes every substring of the proteins in an Ensembl database with
+ * a suffix array and an FM-index over the concatenated proteome.
+ *
+ * <p>The proteins are sorted by protein identifier and concatenated
+ * into a single byte array, one residue per byte, with a separator
+ * byte following each protein.  Occurrences of a peptide are counted
+ * by backward search over the Burrows-Wheeler transform of the text,
+ * in time proportional to the peptide length and independent of the
+ * size of the proteome; each occurrence is then located with a single
+ * suffix array lookup and mapped back to its protein record.
+ *
+ * <p>The suffix array is constructed in parallel by prefix doubling:
+ * suffixes are first sorted by their leading residues and then, in
+ * each round, groups of suffixes with equal prefixes are refined
+ * independently by the ranks of the suffixes that follow them.  An
+ * index may be stored in a binary file and reloaded against the same
+ * database without sorting the suffixes again.
+ */
+public final class ProteomeIndex {
+    // Proteins in text order, with the text offset of each protein...
+    private final EnsemblProteinRecord[] records;
+    private final int[] proteinStarts;
+
+    private final byte[] text;
+    private final int[] suffixArray;
+
+    // Burrows-Wheeler transform, symbol offsets, and occurrence
+    // counts recorded at every OCC_INTERVAL rows...
+    private final byte[] bwt;
+    private final int[] symbolOffsets;
+    private final int[] occCheckpoints;
+
+    private ProteomeIndex(EnsemblProteinRecord[] records, byte[] text, int[] suffixArray) {
+        this.records = records;
+        this.text = text;
+        this.suffixArray = suffixArray;
+        this.proteinStarts = computeStarts(records);
+
+        this.bwt = computeBWT(text, suffixArray);
+        this.symbolOffsets = computeOffsets(text);
+        this.occCheckpoints = computeCheckpoints(bwt);
+    }
+
+    // Residues are stored as (ordinal + 1), leaving zero to separate
+    // the proteins...
+    private static final byte SEPARATOR = 0;
+    private static final int SYMBOL_COUNT = Residue.values().length + 1;
+
+    // Marks the row whose suffix starts the text (no preceding symbol)...
+    private static final byte NO_SYMBOL = -1;
+
+    // The initial sort uses this many leading symbols, packed into the
+    // upper 32 bits of a long with the suffix position below them...
+    private static final int PREFIX_LENGTH = 6;
+    private static final int PREFIX_BITS = 5;
+
+    private static final int OCC_SHIFT = 6;
+    private static final int OCC_INTERVAL = 1 << OCC_SHIFT;
+
+    private static final int MAGIC = 0x4a505849;
+    private static final int VERSION = 1;
+
+    /**
+     * Builds an index over the proteins in an Ensembl database.
+     *
+     * @param ensemblDb the database to index.
+     *
+     * @return an index over the proteins in the specified database.
+     *
+     * @throws IllegalArgumentException if the concatenated proteome
+     * exceeds the capacity of an array.
+     */
+    public static ProteomeIndex build(EnsemblProteinDb ensemblDb) {
+        EnsemblProteinRecord[] records = sortRecords(ensemblDb);
+        byte[] text = buildText(records);
+
+        JamLogger.info("Sorting [%d] proteome suffixes...", text.length);
+        return new ProteomeIndex(records, text, sortSuffixes(text));
+    }
+
+    private static EnsemblProteinRecord[] sortRecords(EnsemblProteinDb ensemblDb) {
+        return ensemblDb.viewRecords()
+            .stream()
+            .filter(record -> record.getPeptide().length() > 0)
+            .sorted(Comparator.comparing(EnsemblProteinRecord::getEnsemblProteinID))
+            .toArray(EnsemblProteinRecord[]::new);
+    }
+
+    private static byte[] buildText(EnsemblProteinRecord[] records) {
+        long length = 0;
+
+        for (EnsemblProteinRecord record : records)
+            length += record.getPeptide().length() + 1;
+
+        if (length > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Proteome too large to index.");
+
+        byte[] text = new byte[(int) length];
+        int index = 0;
+
+        for (EnsemblProteinRecord record : records) {
+            for (Residue residue : record.getPeptide().viewResidues())
+                text[index++] = symbol(residue);
+
+            text[index++] = SEPARATOR;
+        }
+
+        return text;
+    }
+
+    private static byte symbol(Residue residue) {
+        return (byte) (residue.ordinal() + 1);
+    }
+
+    private static int[] computeStarts(EnsemblProteinRecord[] records) {
+        int[] starts = new int[records.length];
+        int start = 0;
+
+        for (int index = 0; index < records.length; ++index) {
+            starts[index] = start;
+            start += records[index].getPeptide().length() + 1;
+        }
+
+        return starts;
+    }
+
+    private static int[] sortSuffixes(byte[] text) {
+        int length = text.length;
+
+        //
+        // Suffixes that run off the end of the text compare less than
+        // all others: positions past the end have rank zero, and all
+        // other ranks are one plus the index of the first suffix in
+        // the group of suffixes that share the same prefix...
+        //
+        long[] keys =
+            IntStream.range(0, length)
+            .parallel()
+            .mapToLong(position -> (prefixCode(text, position) << 32) | position)
+            .toArray();
+
+        Arrays.parallelSort(keys);
+
+        int[] suffixArray = new int[length];
+        int[] ranks = new int[length];
+
+        for (int index = 0; index < length; ++index)
+            suffixArray[index] = (int) keys[index];
+
+        List<int[]> groups = assignRanks(keys, 0, length, suffixArray, ranks);
+        keys = null;
+
+        for (int offset = PREFIX_LENGTH; !groups.isEmpty(); offset *= 2) {
+            int shift = offset;
+            List<int[]> unresolved = groups;
+
+            //
+            // All groups must be sorted (reading the ranks from the
+            // previous round) before any ranks are reassigned...
+            //
+            List<long[]> sortedKeys =
+                unresolved.parallelStream()
+                .map(group -> sortGroup(group, shift, suffixArray, ranks))
+                .collect(Collectors.toList());
+
+            groups =
+                IntStream.range(0, unresolved.size())
+                .parallel()
+                .mapToObj(index -> assignRanks(sortedKeys.get(index), unresolved.get(index)[0], unresolved.get(index)[1], suffixArray, ranks))
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+        }
+
+        return suffixArray;
+    }
+
+    private static long prefixCode(byte[] text, int position) {
+        long code = 0;
+
+        for (int index = position; index < position + PREFIX_LENGTH; ++index)
+            code = (code << PREFIX_BITS) | ((index < text.length) ? text[index] : 0);
+
+        return code;
+    }
+
+    private static long[] sortGroup(int[] group, int offset, int[] suffixArray, int[] ranks) {
+        int start = group[0];
+        int end = group[1];
+
+        long[] keys = new long[end - start];
+
+        for (int index = start; index < end; ++index) {
+            int position = suffixArray[index];
+            long nextRank = (position + offset < ranks.length) ? ranks[position + offset] : 0;
+
+            keys[index - start] = (nextRank << 32) | position;
+        }
+
+        Arrays.sort(keys);
+
+        for (int index = start; index < end; ++index)
+            suffixArray[index] = (int) keys[index - start];
+
+        return keys;
+    }
+
+    // Assigns ranks to the suffixes in the range [start, end) of the
+    // suffix array, whose sort keys (in the upper 32 bits) are given,
+    // and returns the subgroups that remain unresolved...
+    private static List<int[]> assignRanks(long[] keys, int start, int end, int[] suffixArray, int[] ranks) {
+        List<int[]> groups = new ArrayList<int[]>();
+        int groupStart = start;
+
+        for (int index = start; index <= end; ++index) {
+            if (index == end || (index > groupStart && (keys[index - start] >>> 32) != (keys[groupStart - start] >>> 32))) {
+                if (index - groupStart > 1)
+                    groups.add(new int[] { groupStart, index });
+
+                groupStart = index;
+            }
+
+            if (index < end)
+                ranks[suffixArray[index]] = groupStart + 1;
+        }
+
+        return groups;
+    }
+
+    private static byte[] computeBWT(byte[] text, int[] suffixArray) {
+        byte[] bwt = new byte[text.length];
+
+        IntStream.range(0, text.length).parallel().forEach(index -> {
+                int position = suffixArray[index];
+                bwt[index] = (position > 0) ? text[position - 1] : NO_SYMBOL;
+            });
+
+        return bwt;
+    }
+
+    private static int[] computeOffsets(byte[] text) {
+        //
+        // The suffixes beginning with symbol c occupy the rows
+        // [offsets[c], offsets[c + 1]) of the suffix array...
+        //
+        int[] offsets = new int[SYMBOL_COUNT + 1];
+
+        for (byte symbol : text)
+            ++offsets[symbol + 1];
+
+        for (int symbol = 1; symbol <= SYMBOL_COUNT; ++symbol)
+            offsets[symbol] += offsets[symbol - 1];
+
+        return offsets;
+    }
+
+    private static int[] computeCheckpoints(byte[] bwt) {
+        int checkpointCount = (bwt.length >>> OCC_SHIFT) + 1;
+        int[] checkpoints = new int[checkpointCount * SYMBOL_COUNT];
+        int[] counts = new int[SYMBOL_COUNT];
+
+        for (int index = 0; index < bwt.length; ++index) {
+            if ((index & (OCC_INTERVAL - 1)) == 0)
+                System.arraycopy(counts, 0, checkpoints, (index >>> OCC_SHIFT) * SYMBOL_COUNT, SYMBOL_COUNT);
+
+            if (bwt[index] != NO_SYMBOL)
+                ++counts[bwt[index]];
+        }
+
+        if ((bwt.length & (OCC_INTERVAL - 1)) == 0)
+            System.arraycopy(counts, 0, checkpoints, (bwt.length >>> OCC_SHIFT) * SYMBOL_COUNT, SYMBOL_COUNT);
+
+        return checkpoints;
+    }
+
+    // The number of occurrences of a symbol in the rows [0, row) of
+    // the Burrows-Wheeler transform...
+    private int occ(byte symbol, int row) {
+        int count = occCheckpoints[(row >>> OCC_SHIFT) * SYMBOL_COUNT + symbol];
+
+        for (int index = row & ~(OCC_INTERVAL - 1); index < row; ++index)
+            if (bwt[index] == symbol)
+                ++count;
+
+        return count;
+    }
+
+    /**
+     * Loads an index from a binary file written by {@link #store(File)}.
+     *
+     * @param file the file containing the index.
+     *
+     * @param ensemblDb the database that was indexed.
+     *
+     * @return the index stored in the specified file.
+     *
+     * @throws RuntimeException unless the file contains a valid index
+     * for the specified database.
+     */
+    public static ProteomeIndex load(File file, EnsemblProteinDb ensemblDb) {
+        JamLogger.info("Loading proteome index [%s]...", file);
+
+        try (DataInputStream input =
+             new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION)
+                throw new IllegalArgumentException(String.format("File [%s] does not contain a proteome index.", file));
+
+            EnsemblProteinRecord[] records = new EnsemblProteinRecord[input.readInt()];
+
+            for (int index = 0; index < records.length; ++index)
+                records[index] = ensemblDb.require(EnsemblProteinID.instance(input.readUTF()));
+
+            byte[] text = new byte[input.readInt()];
+            input.readFully(text);
+
+            if (!Arrays.equals(text, buildText(records)))
+                throw new IllegalArgumentException(String.format("Index [%s] does not match the protein database.", file));
+
+            int[] suffixArray = new int[text.length];
+
+            for (int index = 0; index < suffixArray.length; ++index)
+                suffixArray[index] = input.readInt();
+
+            return new ProteomeIndex(records, text, suffixArray);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Counts the occurrences of a peptide in the indexed proteome.
+     *
+     * @param peptide the peptide of interest.
+     *
+     * @return the number of occurrences of the peptide in all indexed
+     * proteins.
+     *
+     * @throws IllegalArgumentException if the peptide is empty.
+     */
+    public int count(Peptide peptide) {
+        int[] rows = search(peptide);
+        return rows[1] - rows[0];
+    }
+
+    /**
+     * Identifies peptides that occur in the indexed proteome.
+     *
+     * @param peptide the peptide of interest.
+     *
+     * @return {@code true} iff the peptide occurs in at least one
+     * indexed protein.
+     *
+     * @throws IllegalArgumentException if the peptide is empty.
+     */
+    public boolean contains(Peptide peptide) {
+        return count(peptide) > 0;
+    }
+
+    /**
+     * Locates every occurrence of a peptide in the indexed proteome.
+     *
+     * @param peptide the peptide of interest.
+     *
+     * @return the locations of the peptide in all indexed proteins,
+     * in the suffix order of the proteome.
+     *
+     * @throws IllegalArgumentException if the peptide is empty.
+     */
+    public List<PeptideLocation> locate(Peptide peptide) {
+        int[] rows = search(peptide);
+        List<PeptideLocation> locations = new ArrayList<PeptideLocation>(rows[1] - rows[0]);
+
+        for (int row = rows[0]; row < rows[1]; ++row)
+            locations.add(resolve(peptide, suffixArray[row]));
+
+        return locations;
+    }
+
+    /**
+     * Finds the proteins that contain a peptide.
+     *
+     * @param peptide the peptide of interest.
+     *
+     * @return the records for all indexed proteins that contain the
+     * peptide.
+     *
+     * @throws IllegalArgumentException if the peptide is empty.
+     */
+    public Set<EnsemblProteinRecord> findProteins(Peptide peptide) {
+        Set<EnsemblProteinRecord> proteins = new LinkedHashSet<EnsemblProteinRecord>();
+
+        for (PeptideLocation location : locate(peptide))
+            proteins.add(location.getProteinRecord());
+
+        return proteins;
+    }
+
+    private int[] search(Peptide peptide) {
+        if (peptide.length() == 0)
+            throw new IllegalArgumentException("Cannot search for an empty peptide.");
+
+        //
+        // Backward search: after processing residue k, the rows in
+        // [lower, upper) are the suffixes that begin with the peptide
+        // fragment from residue k to the end...
+        //
+        int lower = 0;
+        int upper = text.length;
+
+        for (int index = peptide.length() - 1; index >= 0 && lower < upper; --index) {
+            byte symbol = symbol(peptide.get(index));
+
+            lower = symbolOffsets[symbol] + occ(symbol, lower);
+            upper = symbolOffsets[symbol] + occ(symbol, upper);
+        }
+
+        return new int[] { lower, Math.max(lower, upper) };
+    }
+
+    private PeptideLocation resolve(Peptide peptide, int position) {
+        int index = Arrays.binarySearch(proteinStarts, position);
+
+        if (index < 0)
+            index = -(index + 1) - 1;
+
+        return PeptideLocation.instance(peptide, records[index], position - proteinStarts[index]);
+    }
+
+    /**
+     * Returns the number of indexed proteins.
+     *
+     * @return the number of indexed proteins.
+     */
+    public int countProteins() {
+        return records.length;
+    }
+
+    /**
+     * Stores this index in a binary file.  The file contains the
+     * protein identifiers, the concatenated text, and the suffix
+     * array; the remaining structures are rebuilt when it is loaded.
+     *
+     * @param file the file to write.
+     *
+     * @throws RuntimeException if any I/O errors occur.
+     */
+    public void store(File file) {
+        JamLogger.info("Writing proteome index [%s]...", file);
+
+        try (DataOutputStream output =
+             new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(records.length);
+
+            for (EnsemblProteinRecord record : records)
+                output.writeUTF(record.getEnsemblProteinID().getKey());
+
+            output.writeInt(text.length);
+            output.write(text);
+
+            for (int position : suffixArray)
+                output.writeInt(position);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Returns the total length of the indexed text (all residues plus
+     * one separator per protein).
+     *
+     * @return the total length of the indexed text.
+     */
+    public int textLength() {
+        return text.length;
+    }
+}
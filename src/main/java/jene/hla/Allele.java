@@ -3,48 +3,116 @@ package jene.hla;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Pattern;
 
 import jam.app.JamLogger;
 import jam.io.LineReader;
+import jam.util.RegexUtil;
 
 /**
  * Represents a single HLA allele.
+ *
+ * <p>Alleles are flyweights: there is exactly one instance for each
+ * combination of locus, supertype, and subtype, stored in a canonical
+ * table indexed directly by those three values, so genotype loaders
+ * do not allocate an object for every allele they parse.  Each
+ * allele is also assigned a dense ordinal (in order of creation)
+ * that may index primitive arrays and bit sets.  The long and short
+ * keys are formatted only on request.
  */
 public final class Allele implements Comparable<Allele> {
     private final Locus locus;
     private final int   superType;
     private final int   subType;
+    private final int   ordinal;
+    private final int   hashCode;
 
-    private final String longKey;
-    private final String shortKey;
-    private final int    hashCode;
+    // Formatted on first request (a benign race: every thread formats
+    // the same immutable string)...
+    private String longKey = null;
+    private String shortKey = null;
 
-    private Allele(Locus locus, int superType, int subType) {
-        validateType(superType);
-        validateType(subType);
+    // Supertypes and subtypes lie in the range [1, MAX_TYPE]...
+    private static final int MAX_TYPE = 199;
+    private static final int TYPE_RANGE = MAX_TYPE + 1;
+
+    // The canonical instances indexed by locus, supertype, and subtype...
+    private static final AtomicReferenceArray<Allele> canonical =
+        new AtomicReferenceArray<Allele>(Locus.values().length * TYPE_RANGE * TYPE_RANGE);
+
+    // The canonical instances indexed by ordinal (replaced, never
+    // modified, when more capacity is required)...
+    private static volatile Allele[] ordinalTable = new Allele[256];
+    private static int ordinalCount = 0;
 
+    private Allele(Locus locus, int superType, int subType, int ordinal) {
         this.locus     = locus;
         this.superType = superType;
         this.subType   = subType;
-
-        this.longKey  = formatLongKey(locus, superType, subType);
-        this.shortKey = formatShortKey(locus, superType, subType);
-        this.hashCode = computeHashCode(locus, superType, subType);
+        this.ordinal   = ordinal;
+        this.hashCode  = computeHashCode(locus, superType, subType);
     }
 
     private static void validateType(int type) {
-        if (type < 1 || type > 199)
+        if (type < 1 || type > MAX_TYPE)
             throw new IllegalArgumentException("Invalid allele type.");
     }
 
+    private static int canonicalIndex(Locus locus, int superType, int subType) {
+        return (locus.ordinal() * TYPE_RANGE + superType) * TYPE_RANGE + subType;
+    }
+
+    private static synchronized Allele create(int index, Locus locus, int superType, int subType) {
+        Allele allele = canonical.get(index);
+
+        if (allele != null)
+            return allele;
+
+        allele = new Allele(locus, superType, subType, ordinalCount);
+
+        Allele[] table = ordinalTable;
+
+        if (ordinalCount == table.length)
+            table = Arrays.copyOf(table, 2 * table.length);
+
+        table[ordinalCount++] = allele;
+        ordinalTable = table;
+
+        canonical.set(index, allele);
+        return allele;
+    }
+
+    private static void appendType(StringBuilder builder, int type) {
+        if (type < 10)
+            builder.append('0');
+
+        builder.append(type);
+    }
+
     private static String formatLongKey(Locus locus, int superType, int subType) {
-        return String.format("%s%s*%02d:%02d", PREFIX, locus, superType, subType);
+        StringBuilder builder = new StringBuilder(12);
+
+        builder.append(PREFIX);
+        builder.append(locus.name());
+        builder.append('*');
+        appendType(builder, superType);
+        builder.append(':');
+        appendType(builder, subType);
+
+        return builder.toString();
     }
 
     private static String formatShortKey(Locus locus, int superType, int subType) {
-        return String.format("%s%02d%02d", locus, superType, subType);
+        StringBuilder builder = new StringBuilder(6);
+
+        builder.append(locus.name());
+        appendType(builder, superType);
+        appendType(builder, subType);
+
+        return builder.toString();
     }
 
     private static int computeHashCode(Locus locus, int superType, int subType) {
@@ -73,10 +141,46 @@ public final class Allele implements Comparable<Allele> {
      * valid.
      */
     public static Allele instance(Locus locus, int superType, int subType) {
-        //
-        // Think about a private flyweight cache...
-        //
-        return new Allele(locus, superType, subType);
+        validateType(superType);
+        validateType(subType);
+
+        int index = canonicalIndex(locus, superType, subType);
+        Allele allele = canonical.get(index);
+
+        if (allele != null)
+            return allele;
+        else
+            return create(index, locus, superType, subType);
+    }
+
+    /**
+     * Returns the allele with a given ordinal.
+     *
+     * @param ordinal the ordinal of the desired allele.
+     *
+     * @return the allele with the specified ordinal.
+     *
+     * @throws IndexOutOfBoundsException unless an allele with the
+     * specified ordinal has been created.
+     */
+    public static Allele ofOrdinal(int ordinal) {
+        Allele[] table = ordinalTable;
+        Allele allele = (ordinal >= 0 && ordinal < table.length) ? table[ordinal] : null;
+
+        if (allele == null)
+            throw new IndexOutOfBoundsException(String.format("No allele with ordinal [%d].", ordinal));
+
+        return allele;
+    }
+
+    /**
+     * Returns the number of distinct alleles created so far (one more
+     * than the largest ordinal).
+     *
+     * @return the number of distinct alleles created so far.
+     */
+    public static synchronized int count() {
+        return ordinalCount;
     }
 
     /**
@@ -137,6 +241,13 @@ public final class Allele implements Comparable<Allele> {
      * more valid alleles.
      */
     public static List<Allele> parse(String s, Pattern delim) {
+        //
+        // White space is by far the most common delimiter, and the
+        // parser can split on it without any intermediate strings...
+        //
+        if (isWhiteSpace(delim))
+            return Parser.parseWhiteSpace(s);
+
         String[] fields = delim.split(s.trim());
         List<Allele> alleles = new ArrayList<Allele>(fields.length);
 
@@ -146,6 +257,10 @@ public final class Allele implements Comparable<Allele> {
         return alleles;
     }
 
+    private static boolean isWhiteSpace(Pattern delim) {
+        return delim == RegexUtil.MULTI_WHITE_SPACE || delim.pattern().equals(RegexUtil.MULTI_WHITE_SPACE.pattern());
+    }
+
     /**
      * Returns the locus of this allele.
      *
@@ -173,13 +288,31 @@ public final class Allele implements Comparable<Allele> {
         return subType;
     }
 
+    /**
+     * Returns the dense ordinal of this allele: alleles are numbered
+     * consecutively from zero in order of creation, so ordinals are
+     * stable within a single process (but not across processes).
+     *
+     * @return the ordinal of this allele.
+     */
+    public int ordinal() {
+        return ordinal;
+    }
+
     /**
      * Returns a long key for this allele (of the form {@code HLA-A*02:01}).
      *
      * @return a long key for this allele.
      */
     public String longKey() {
-        return longKey;
+        String key = longKey;
+
+        if (key == null) {
+            key = formatLongKey(locus, superType, subType);
+            longKey = key;
+        }
+
+        return key;
     }
 
     /**
@@ -188,7 +321,14 @@ public final class Allele implements Comparable<Allele> {
      * @return a short key for this allele.
      */
     public String shortKey() {
-        return shortKey;
+        String key = shortKey;
+
+        if (key == null) {
+            key = formatShortKey(locus, superType, subType);
+            shortKey = key;
+        }
+
+        return key;
     }
 
     @Override public int compareTo(Allele that) {
@@ -196,7 +336,10 @@ public final class Allele implements Comparable<Allele> {
     }
 
     @Override public boolean equals(Object obj) {
-        return (obj instanceof Allele) && equalsAllele((Allele) obj);
+        //
+        // Alleles are canonical, but the comparison is cheap...
+        //
+        return (obj == this) || ((obj instanceof Allele) && equalsAllele((Allele) obj));
     }
 
     private boolean equalsAllele(Allele that) {
@@ -210,6 +353,6 @@ public final class Allele implements Comparable<Allele> {
     }
 
     @Override public String toString() {
-        return longKey;
+        return longKey();
     }
 }
@@ -0,0 +1,111 @@
+
+package jene.hla;
+
+import java.util.Arrays;
+
+/**
+ * Stores the set of patients (identified by dense ordinals) carrying
+ * one allele.
+ *
+ * <p>Common alleles are stored as an uncompressed bit set, while rare
+ * alleles are stored as a sorted array of patient ordinals, whichever
+ * is smaller (as in the array and bitmap containers of a Roaring
+ * bitmap).  Either form can be expanded into any range of bit-set
+ * words, so that queries may be evaluated in independent word ranges.
+ */
+final class AlleleBitmap {
+    private final long[] words;
+    private final int[] members;
+    private final int cardinality;
+
+    private AlleleBitmap(long[] words, int[] members, int cardinality) {
+        this.words = words;
+        this.members = members;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * The empty bitmap.
+     */
+    static final AlleleBitmap EMPTY = new AlleleBitmap(null, new int[0], 0);
+
+    /**
+     * Returns the number of words required to store a given number of
+     * patients.
+     *
+     * @param patientCount the number of patients.
+     *
+     * @return the number of words required to store the specified
+     * number of patients.
+     */
+    static int wordCount(int patientCount) {
+        return (patientCount + 63) >>> 6;
+    }
+
+    /**
+     * Creates a bitmap in the smaller of the two storage forms.
+     *
+     * @param members the patient ordinals in increasing order.
+     *
+     * @param count the number of patient ordinals in the array.
+     *
+     * @param patientCount the total number of patients.
+     *
+     * @return a bitmap containing the specified patient ordinals.
+     */
+    static AlleleBitmap create(int[] members, int count, int patientCount) {
+        int wordCount = wordCount(patientCount);
+
+        if (Integer.BYTES * (long) count < Long.BYTES * (long) wordCount)
+            return new AlleleBitmap(null, Arrays.copyOf(members, count), count);
+
+        long[] words = new long[wordCount];
+
+        for (int k = 0; k < count; ++k)
+            words[members[k] >>> 6] |= 1L << members[k];
+
+        return new AlleleBitmap(words, null, count);
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean contains(int ordinal) {
+        if (words != null)
+            return (ordinal >>> 6) < words.length && (words[ordinal >>> 6] & (1L << ordinal)) != 0L;
+        else
+            return Arrays.binarySearch(members, ordinal) >= 0;
+    }
+
+    /**
+     * Expands a range of words from this bitmap.
+     *
+     * @param out the destination: word {@code fromWord + k} is stored
+     * in element {@code k}.
+     *
+     * @param fromWord the first word to expand (inclusive).
+     *
+     * @param toWord the last word to expand (exclusive).
+     */
+    void fill(long[] out, int fromWord, int toWord) {
+        if (words != null) {
+            System.arraycopy(words, fromWord, out, 0, toWord - fromWord);
+            return;
+        }
+
+        Arrays.fill(out, 0, toWord - fromWord, 0L);
+
+        int index = Arrays.binarySearch(members, fromWord << 6);
+
+        if (index < 0)
+            index = -(index + 1);
+
+        long limit = (long) toWord << 6;
+
+        for (; index < members.length && members[index] < limit; ++index) {
+            int ordinal = members[index];
+            out[(ordinal >>> 6) - fromWord] |= 1L << ordinal;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+
+package jene.hla;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Selects patients from a {@link PatientGenotypeTable} by the alleles
+ * in their genotypes.
+ *
+ * <p>Queries are boolean expressions over the patients carrying each
+ * allele: {@code carrying(A0201).andNot(carrying(B0702))} selects the
+ * patients who carry {@code A*02:01} but not {@code B*07:02}, and
+ * {@code sharing(genotype, 2)} selects the patients who share at
+ * least two unique alleles with a given genotype.  Queries are
+ * evaluated word by word over the allele bitmaps of a table (see
+ * {@link PatientGenotypeTable#select(AlleleQuery)}), with threshold
+ * queries counted in bit-sliced form, so no per-patient objects are
+ * created until the result is returned.
+ */
+public abstract class AlleleQuery {
+    AlleleQuery() {}
+
+    /**
+     * Selects patients carrying a given allele.
+     *
+     * @param allele the allele to match.
+     *
+     * @return a query selecting the patients whose genotype contains
+     * the specified allele.
+     */
+    public static AlleleQuery carrying(Allele allele) {
+        return new Carrying(allele);
+    }
+
+    /**
+     * Selects patients matching a minimum number of queries.
+     *
+     * @param count the minimum number of matching queries.
+     *
+     * @param operands the queries to match.
+     *
+     * @return a query selecting the patients matched by at least
+     * {@code count} of the operand queries.
+     *
+     * @throws IllegalArgumentException unless the count is positive.
+     */
+    public static AlleleQuery atLeast(int count, Collection<AlleleQuery> operands) {
+        if (count < 1)
+            throw new IllegalArgumentException("Threshold count must be positive.");
+
+        return new AtLeast(count, new ArrayList<AlleleQuery>(operands));
+    }
+
+    /**
+     * Selects patients sharing a minimum number of unique alleles
+     * with a given genotype.
+     *
+     * @param genotype the genotype to compare.
+     *
+     * @param count the minimum number of shared alleles.
+     *
+     * @return a query selecting the patients whose genotype shares at
+     * least {@code count} unique alleles with the specified genotype.
+     *
+     * @throws IllegalArgumentException unless the count is positive.
+     */
+    public static AlleleQuery sharing(Genotype genotype, int count) {
+        List<AlleleQuery> operands = new ArrayList<AlleleQuery>();
+
+        for (Allele allele : genotype.viewUniqueAlleles())
+            operands.add(carrying(allele));
+
+        return atLeast(count, operands);
+    }
+
+    /**
+     * Selects patients matching both this query and another.
+     *
+     * @param that the other query.
+     *
+     * @return the intersection of this query and the other.
+     */
+    public AlleleQuery and(AlleleQuery that) {
+        return new Binary(this, that, Op.AND);
+    }
+
+    /**
+     * Selects patients matching this query or another.
+     *
+     * @param that the other query.
+     *
+     * @return the union of this query and the other.
+     */
+    public AlleleQuery or(AlleleQuery that) {
+        return new Binary(this, that, Op.OR);
+    }
+
+    /**
+     * Selects patients matching this query but not another.
+     *
+     * @param that the other query.
+     *
+     * @return the difference of this query and the other.
+     */
+    public AlleleQuery andNot(AlleleQuery that) {
+        return new Binary(this, that, Op.AND_NOT);
+    }
+
+    /**
+     * Evaluates this query over a range of bit-set words.
+     *
+     * @param bitmaps the patient bitmap for each allele.
+     *
+     * @param fromWord the first word to evaluate (inclusive).
+     *
+     * @param toWord the last word to evaluate (exclusive).
+     *
+     * @param out the destination: word {@code fromWord + k} is stored
+     * in element {@code k}.
+     */
+    abstract void evaluate(Map<Allele, AlleleBitmap> bitmaps, int fromWord, int toWord, long[] out);
+
+    private enum Op { AND, OR, AND_NOT }
+
+    private static final class Carrying extends AlleleQuery {
+        private final Allele allele;
+
+        private Carrying(Allele allele) {
+            this.allele = allele;
+        }
+
+        @Override void evaluate(Map<Allele, AlleleBitmap> bitmaps, int fromWord, int toWord, long[] out) {
+            bitmaps.getOrDefault(allele, AlleleBitmap.EMPTY).fill(out, fromWord, toWord);
+        }
+    }
+
+    private static final class Binary extends AlleleQuery {
+        private final AlleleQuery left;
+        private final AlleleQuery right;
+        private final Op op;
+
+        private Binary(AlleleQuery left, AlleleQuery right, Op op) {
+            this.left = left;
+            this.right = right;
+            this.op = op;
+        }
+
+        @Override void evaluate(Map<Allele, AlleleBitmap> bitmaps, int fromWord, int toWord, long[] out) {
+            int length = toWord - fromWord;
+            long[] other = new long[length];
+
+            left.evaluate(bitmaps, fromWord, toWord, out);
+            right.evaluate(bitmaps, fromWord, toWord, other);
+
+            switch (op) {
+            case AND:
+                for (int k = 0; k < length; ++k)
+                    out[k] &= other[k];
+                break;
+
+            case OR:
+                for (int k = 0; k < length; ++k)
+                    out[k] |= other[k];
+                break;
+
+            case AND_NOT:
+                for (int k = 0; k < length; ++k)
+                    out[k] &= ~other[k];
+                break;
+
+            default:
+                throw new IllegalStateException("Unknown operation.");
+            }
+        }
+    }
+
+    private static final class AtLeast extends AlleleQuery {
+        private final int count;
+        private final List<AlleleQuery> operands;
+
+        private AtLeast(int count, List<AlleleQuery> operands) {
+            this.count = count;
+            this.operands = operands;
+        }
+
+        @Override void evaluate(Map<Allele, AlleleBitmap> bitmaps, int fromWord, int toWord, long[] out) {
+            int length = toWord - fromWord;
+
+            if (count > operands.size()) {
+                Arrays.fill(out, 0, length, 0L);
+                return;
+            }
+
+            //
+            // Count the matching operands for each patient in
+            // bit-sliced form: bit b of word k of planes[j] is bit j
+            // of the count for the patient at bit b of word k...
+            //
+            int planeCount = 32 - Integer.numberOfLeadingZeros(operands.size());
+            long[][] planes = new long[planeCount][length];
+            long[] operand = new long[length];
+
+            for (AlleleQuery query : operands) {
+                query.evaluate(bitmaps, fromWord, toWord, operand);
+
+                for (int k = 0; k < length; ++k) {
+                    long carry = operand[k];
+
+                    for (int j = 0; j < planeCount && carry != 0L; ++j) {
+                        long next = planes[j][k] & carry;
+                        planes[j][k] ^= carry;
+                        carry = next;
+                    }
+                }
+            }
+
+            //
+            // Compare the counts to the threshold from the most
+            // significant bit down...
+            //
+            for (int k = 0; k < length; ++k) {
+                long greater = 0L;
+                long equal = ~0L;
+
+                for (int j = planeCount - 1; j >= 0; --j) {
+                    if (((count >>> j) & 1) != 0) {
+                        equal &= planes[j][k];
+                    }
+                    else {
+                        greater |= equal & planes[j][k];
+                        equal &= ~planes[j][k];
+                    }
+                }
+
+                out[k] = greater | equal;
+            }
+        }
+    }
+}
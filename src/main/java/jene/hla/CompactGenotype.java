@@ -0,0 +1,551 @@
+
+package jene.hla;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import jam.lang.JamException;
+
+/**
+ * Encodes an HLA genotype in a few primitive words for fast set
+ * operations.
+ *
+ * <p>The unique alleles are stored as a bit set indexed by allele
+ * ordinal (see {@link Allele#ordinal()}), and the number of unique
+ * alleles and the number of allele copies at each locus are packed
+ * into a single {@code long} (one byte each per locus).  Membership
+ * tests, shared-allele counts, equality, and hashing therefore take a
+ * handful of word operations and allocate nothing.
+ *
+ * <p>Genotypes with more than one copy of any allele also store the
+ * copy number of each unique allele (in ordinal order), so every
+ * multiset of alleles may be encoded.  Allele ordinals are assigned
+ * per process, so compact genotypes must not be persisted.
+ */
+public final class CompactGenotype {
+    private final long[] bits;
+    private final long locusCounts;
+    private final int hashCode;
+
+    // The copy number of each unique allele, indexed by its rank in
+    // the bit set, or null if every allele has a single copy...
+    private final byte[] copies;
+
+    private static final long[] NO_BITS = new long[0];
+
+    private CompactGenotype(long[] bits, byte[] copies, long locusCounts) {
+        this.bits = trim(bits);
+        this.copies = isHeterozygous(copies) ? null : copies;
+        this.locusCounts = locusCounts;
+        this.hashCode = 31 * (31 * Arrays.hashCode(this.bits) + Arrays.hashCode(this.copies)) + Long.hashCode(locusCounts);
+    }
+
+    private static boolean isHeterozygous(byte[] copies) {
+        if (copies == null)
+            return true;
+
+        for (byte copy : copies)
+            if (copy != 1)
+                return false;
+
+        return true;
+    }
+
+    private static long[] trim(long[] bits) {
+        int length = bits.length;
+
+        while (length > 0 && bits[length - 1] == 0L)
+            --length;
+
+        if (length == 0)
+            return NO_BITS;
+        else if (length < bits.length)
+            return Arrays.copyOf(bits, length);
+        else
+            return bits;
+    }
+
+    // Locus counts: the unique count for the locus with ordinal k
+    // occupies bits [16k, 16k + 8), the copy count bits [16k + 8,
+    // 16k + 16)...
+    private static int uniqueShift(Locus locus) {
+        return 16 * locus.ordinal();
+    }
+
+    private static int copyShift(Locus locus) {
+        return 16 * locus.ordinal() + 8;
+    }
+
+    private static int field(long counts, int shift) {
+        return (int) ((counts >>> shift) & 0xFFL);
+    }
+
+    private static long addField(long counts, int shift, int delta) {
+        int value = field(counts, shift) + delta;
+
+        if (value < 0 || value > 0xFF)
+            throw new IllegalArgumentException("Too many alleles at one locus.");
+
+        return (counts & ~(0xFFL << shift)) | ((long) value << shift);
+    }
+
+    /**
+     * Encodes a genotype.
+     *
+     * @param genotype the genotype to encode.
+     *
+     * @return the compact encoding of the specified genotype.
+     */
+    public static CompactGenotype copyOf(Genotype genotype) {
+        return copyOf((Collection<Allele>) genotype);
+    }
+
+    /**
+     * Encodes a collection of alleles as a genotype.
+     *
+     * @param alleles the alleles that compose the genotype (repeated
+     * alleles are homozygous).
+     *
+     * @return the compact encoding of the specified genotype.
+     *
+     * @throws IllegalArgumentException if any locus contains more than
+     * 255 allele copies.
+     */
+    public static CompactGenotype copyOf(Collection<Allele> alleles) {
+        long[] bits = allocate(alleles);
+        long counts = 0L;
+        boolean repeated = false;
+
+        for (Allele allele : alleles) {
+            int ordinal = allele.ordinal();
+            Locus locus = allele.getLocus();
+
+            if (!testBit(bits, ordinal)) {
+                bits[ordinal >>> 6] |= 1L << ordinal;
+                counts = addField(counts, uniqueShift(locus), 1);
+            }
+            else {
+                repeated = true;
+            }
+
+            counts = addField(counts, copyShift(locus), 1);
+        }
+
+        if (!repeated)
+            return new CompactGenotype(bits, null, counts);
+
+        byte[] copies = new byte[bitCount(bits)];
+
+        for (Allele allele : alleles)
+            ++copies[rank(bits, allele.ordinal())];
+
+        return new CompactGenotype(bits, copies, counts);
+    }
+
+    private static long[] allocate(Collection<Allele> alleles) {
+        int maxOrdinal = -1;
+
+        for (Allele allele : alleles)
+            maxOrdinal = Math.max(maxOrdinal, allele.ordinal());
+
+        if (maxOrdinal < 0)
+            return NO_BITS;
+        else
+            return new long[(maxOrdinal >>> 6) + 1];
+    }
+
+    private static int bitCount(long[] bits) {
+        int count = 0;
+
+        for (long word : bits)
+            count += Long.bitCount(word);
+
+        return count;
+    }
+
+    // The number of set bits below a given ordinal...
+    private static int rank(long[] bits, int ordinal) {
+        int word = ordinal >>> 6;
+        int rank = Long.bitCount(bits[word] & ((1L << ordinal) - 1L));
+
+        for (int k = 0; k < word; ++k)
+            rank += Long.bitCount(bits[k]);
+
+        return rank;
+    }
+
+    private static boolean testBit(long[] bits, int ordinal) {
+        int word = ordinal >>> 6;
+        return word < bits.length && (bits[word] & (1L << ordinal)) != 0L;
+    }
+
+    /**
+     * Identifies alleles in this genotype.
+     *
+     * @param allele the allele of interest.
+     *
+     * @return {@code true} iff this genotype contains the specified
+     * allele.
+     */
+    public boolean contains(Allele allele) {
+        return testBit(bits, allele.ordinal());
+    }
+
+    /**
+     * Returns the number of copies of an allele in this genotype.
+     *
+     * @param allele the allele of interest.
+     *
+     * @return the number of copies of the specified allele in this
+     * genotype.
+     */
+    public int count(Allele allele) {
+        if (contains(allele))
+            return copyCount(allele.ordinal());
+        else
+            return 0;
+    }
+
+    private int copyCount(int ordinal) {
+        if (copies == null)
+            return 1;
+        else
+            return copies[rank(bits, ordinal)] & 0xFF;
+    }
+
+    /**
+     * Returns the number of unique alleles shared by this genotype
+     * and another.
+     *
+     * @param that the genotype to compare.
+     *
+     * @return the number of unique alleles present in both genotypes.
+     */
+    public int countSharedAlleles(CompactGenotype that) {
+        int length = Math.min(this.bits.length, that.bits.length);
+        int shared = 0;
+
+        for (int word = 0; word < length; ++word)
+            shared += Long.bitCount(this.bits[word] & that.bits[word]);
+
+        return shared;
+    }
+
+    /**
+     * Returns the number of allele copies in this genotype.
+     *
+     * @return the number of allele copies in this genotype.
+     */
+    public int size() {
+        int size = 0;
+
+        for (Locus locus : Locus.values())
+            size += field(locusCounts, copyShift(locus));
+
+        return size;
+    }
+
+    /**
+     * Returns the number of unique alleles in this genotype.
+     *
+     * @return the number of unique alleles in this genotype.
+     */
+    public int countUniqueAlleles() {
+        return bitCount(bits);
+    }
+
+    /**
+     * Returns the number of unique alleles at a given HLA locus.
+     *
+     * @param locus the HLA locus of interest.
+     *
+     * @return the number of unique alleles at the specified locus.
+     */
+    public int countUniqueAlleles(Locus locus) {
+        return field(locusCounts, uniqueShift(locus));
+    }
+
+    /**
+     * Identifies homozygous genotypes.
+     *
+     * @return {@code true} iff this genotype contains two or more
+     * copies of any allele.
+     */
+    public boolean isHomozygous() {
+        return copies != null;
+    }
+
+    /**
+     * Identifies homozygosity at a given HLA locus.
+     *
+     * @param locus the locus of interest.
+     *
+     * @return {@code true} iff this genotype contains fewer than two
+     * unique alleles at the specified locus.
+     */
+    public boolean isHomozygous(Locus locus) {
+        return countUniqueAlleles(locus) < 2;
+    }
+
+    /**
+     * Removes alleles (all copies) from this genotype to simulate a
+     * loss-of-heterozygosity event.
+     *
+     * @param alleles the alleles to remove.
+     *
+     * @return a new genotype with the specified alleles removed.
+     *
+     * @throws RuntimeException unless this genotype contains every
+     * allele in the argument collection.
+     */
+    public CompactGenotype delete(Collection<Allele> alleles) {
+        int[] ordinals = new int[alleles.size()];
+        int index = 0;
+
+        for (Allele allele : alleles) {
+            if (!contains(allele))
+                throw JamException.runtime("Genotype does not contain allele [%s].", allele);
+
+            ordinals[index++] = allele.ordinal();
+        }
+
+        return delete(ordinals, ordinals.length);
+    }
+
+    private CompactGenotype delete(int[] ordinals, int length) {
+        long[] result = bits.clone();
+        long counts = locusCounts;
+
+        for (int k = 0; k < length; ++k) {
+            int ordinal = ordinals[k];
+
+            if (!testBit(result, ordinal))
+                continue;
+
+            Locus locus = Allele.ofOrdinal(ordinal).getLocus();
+
+            counts = addField(counts, copyShift(locus), -copyCount(ordinal));
+            counts = addField(counts, uniqueShift(locus), -1);
+
+            result[ordinal >>> 6] &= ~(1L << ordinal);
+        }
+
+        if (copies == null)
+            return new CompactGenotype(result, null, counts);
+
+        int[] remaining = uniqueOrdinals(result);
+        byte[] resultCopies = new byte[remaining.length];
+
+        for (int k = 0; k < remaining.length; ++k)
+            resultCopies[k] = (byte) copyCount(remaining[k]);
+
+        return new CompactGenotype(result, resultCopies, counts);
+    }
+
+    // Forms the genotype that remains after loss of heterozygosity:
+    // as in Genotype.enumerateLOH, the remaining unique alleles are
+    // kept with a single copy each (homozygous copies collapse)...
+    private CompactGenotype lose(int[] lost) {
+        long[] result = bits.clone();
+
+        for (int ordinal : lost)
+            result[ordinal >>> 6] &= ~(1L << ordinal);
+
+        long counts = 0L;
+
+        for (int ordinal : uniqueOrdinals(result)) {
+            Locus locus = Allele.ofOrdinal(ordinal).getLocus();
+
+            counts = addField(counts, uniqueShift(locus), 1);
+            counts = addField(counts, copyShift(locus), 1);
+        }
+
+        return new CompactGenotype(result, null, counts);
+    }
+
+    /**
+     * Enumerates all genotypes that may be formed from loss of
+     * heterozygosity.
+     *
+     * <p>As in {@link Genotype#enumerateLOH(int)}, each genotype
+     * contains one copy of each remaining unique allele.
+     *
+     * @param count the number of unique alleles lost.
+     *
+     * @return a list containing all unique genotypes that may be
+     * formed by losing the specified number of alleles.
+     *
+     * @throws IllegalArgumentException unless the count is positive
+     * and does not exceed the number of unique alleles.
+     */
+    public List<CompactGenotype> enumerateLOH(int count) {
+        List<CompactGenotype> lohGenotypes = new ArrayList<CompactGenotype>();
+        Iterator<CompactGenotype> iterator = iterateLOH(count);
+
+        while (iterator.hasNext())
+            lohGenotypes.add(iterator.next());
+
+        return lohGenotypes;
+    }
+
+    /**
+     * Lazily enumerates all genotypes that may be formed from loss of
+     * heterozygosity: each genotype is created only when requested.
+     *
+     * @param count the number of unique alleles lost.
+     *
+     * @return an iterator over all unique genotypes that may be
+     * formed by losing the specified number of alleles.
+     *
+     * @throws IllegalArgumentException unless the count is positive
+     * and does not exceed the number of unique alleles.
+     */
+    public Iterator<CompactGenotype> iterateLOH(int count) {
+        if (count < 1)
+            throw new IllegalArgumentException("LOH count must be positive.");
+
+        int[] unique = uniqueOrdinals();
+
+        if (count > unique.length)
+            throw new IllegalArgumentException("LOH count must not exceed the number of unique alleles.");
+
+        return new LOHIterator(unique, count);
+    }
+
+    /**
+     * Lazily enumerates all genotypes that may be formed from loss of
+     * heterozygosity.
+     *
+     * @param count the number of unique alleles lost.
+     *
+     * @return a sequential stream of all unique genotypes that may be
+     * formed by losing the specified number of alleles.
+     *
+     * @throws IllegalArgumentException unless the count is positive
+     * and does not exceed the number of unique alleles.
+     */
+    public Stream<CompactGenotype> streamLOH(int count) {
+        Iterator<CompactGenotype> iterator = iterateLOH(count);
+        Spliterator<CompactGenotype> spliterator =
+            Spliterators.spliteratorUnknownSize(iterator, Spliterator.DISTINCT | Spliterator.NONNULL);
+
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    // Visits the combinations of lost alleles in lexicographic order
+    // of their indexes into the unique ordinal array...
+    private final class LOHIterator implements Iterator<CompactGenotype> {
+        private final int[] unique;
+        private final int[] indexes;
+        private final int[] lost;
+        private boolean hasNext = true;
+
+        private LOHIterator(int[] unique, int count) {
+            this.unique = unique;
+            this.indexes = new int[count];
+            this.lost = new int[count];
+
+            for (int k = 0; k < count; ++k)
+                indexes[k] = k;
+        }
+
+        @Override public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override public CompactGenotype next() {
+            if (!hasNext)
+                throw new NoSuchElementException();
+
+            for (int k = 0; k < indexes.length; ++k)
+                lost[k] = unique[indexes[k]];
+
+            CompactGenotype result = lose(lost);
+            advance();
+
+            return result;
+        }
+
+        private void advance() {
+            int k = indexes.length - 1;
+
+            while (k >= 0 && indexes[k] == unique.length - indexes.length + k)
+                --k;
+
+            if (k < 0) {
+                hasNext = false;
+                return;
+            }
+
+            ++indexes[k];
+
+            for (int j = k + 1; j < indexes.length; ++j)
+                indexes[j] = indexes[j - 1] + 1;
+        }
+    }
+
+    private int[] uniqueOrdinals() {
+        return uniqueOrdinals(bits);
+    }
+
+    private static int[] uniqueOrdinals(long[] bits) {
+        int[] ordinals = new int[bitCount(bits)];
+        int index = 0;
+
+        for (int word = 0; word < bits.length; ++word) {
+            long remaining = bits[word];
+
+            while (remaining != 0L) {
+                ordinals[index++] = (word << 6) + Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1L;
+            }
+        }
+
+        return ordinals;
+    }
+
+    /**
+     * Decodes this compact genotype.
+     *
+     * @return the genotype encoded by this object.
+     */
+    public Genotype toGenotype() {
+        List<Allele> alleles = new ArrayList<Allele>(size());
+
+        for (int ordinal : uniqueOrdinals()) {
+            Allele allele = Allele.ofOrdinal(ordinal);
+
+            for (int copy = count(allele); copy > 0; --copy)
+                alleles.add(allele);
+        }
+
+        return Genotype.instance(alleles);
+    }
+
+    @Override public boolean equals(Object obj) {
+        return (obj instanceof CompactGenotype) && equalsCompact((CompactGenotype) obj);
+    }
+
+    private boolean equalsCompact(CompactGenotype that) {
+        return this.hashCode == that.hashCode
+            && this.locusCounts == that.locusCounts
+            && Arrays.equals(this.bits, that.bits)
+            && Arrays.equals(this.copies, that.copies);
+    }
+
+    @Override public int hashCode() {
+        return hashCode;
+    }
+
+    @Override public String toString() {
+        return toGenotype().toString();
+    }
+}
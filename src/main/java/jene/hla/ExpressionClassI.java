@@ -72,11 +72,25 @@ public final class ExpressionClassI {
 
      * @return a new expression record with the RNA levels for the
      * specified tumor sample.
+     *
+     * @throws IllegalArgumentException unless the matrix contains the
+     * tumor sample and all three class I genes.
      */
     public static ExpressionClassI create(TumorBarcode barcode, TumorExpressionMatrix matrix) {
-        return create(matrix.get(barcode, Locus.A.getHugoSymbol()),
-                      matrix.get(barcode, Locus.B.getHugoSymbol()),
-                      matrix.get(barcode, Locus.C.getHugoSymbol()));
+        //
+        // A row view reports missing genes as zero expression, so the
+        // tumor and genes must be checked before reading the row...
+        //
+        for (Locus locus : Locus.values())
+            if (!matrix.contains(barcode, locus.getHugoSymbol()))
+                throw new IllegalArgumentException(String.format("Missing expression for [%s] in tumor [%s].",
+                                                                 locus.getHugoSymbol().getKey(), barcode.getKey()));
+
+        //
+        // Look up the tumor once and read the three genes from a view
+        // of its row...
+        //
+        return create(matrix.get(barcode));
     }
 
     /**
@@ -106,9 +120,11 @@ public final class ExpressionClassI {
      * specified genotype.
      */
     public double diversity(Genotype genotype) {
-        int N = genotype.countUniqueAlleles();
+        return diversity(herfindahl(genotype), genotype.countUniqueAlleles());
+    }
 
-        return (1.0 - herfindahl(genotype)) / (1.0 - 1.0 / N);
+    static double diversity(double herfindahl, int uniqueCount) {
+        return (1.0 - herfindahl) / (1.0 - 1.0 / uniqueCount);
     }
 
     /**
@@ -128,12 +144,30 @@ public final class ExpressionClassI {
      * specified genotype.
      */
     public double herfindahl(Genotype genotype) {
-        double result = 0.0;
+        return herfindahl(get(Locus.A).doubleValue(), genotype.countUniqueAlleles(Locus.A),
+                          get(Locus.B).doubleValue(), genotype.countUniqueAlleles(Locus.B),
+                          get(Locus.C).doubleValue(), genotype.countUniqueAlleles(Locus.C));
+    }
 
-        for (Allele allele : genotype.viewUniqueAlleles())
-            result += DoubleUtil.square(normalize(allele, genotype));
+    static double herfindahl(double exprA, int countA, double exprB, int countB, double exprC, int countC) {
+        //
+        // Every unique allele at a locus receives the same fraction
+        // of the total expression, so the sum over the alleles at
+        // locus L reduces to (e_L / total)^2 / u_L, where u_L is the
+        // number of unique alleles at that locus...
+        //
+        double total = exprA + exprB + exprC;
+
+        return herfindahlTerm(exprA / total, countA)
+            +  herfindahlTerm(exprB / total, countB)
+            +  herfindahlTerm(exprC / total, countC);
+    }
 
-        return result;
+    private static double herfindahlTerm(double fraction, int uniqueCount) {
+        if (uniqueCount > 0)
+            return DoubleUtil.square(fraction) / uniqueCount;
+        else
+            return 0.0;
     }
 
     /**
@@ -0,0 +1,286 @@
+
+package jene.hla;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import jam.app.JamLogger;
+import jam.io.TableWriter;
+
+import jene.hugo.HugoIndex;
+import jene.rna.ArrayExpressionProfile;
+import jene.rna.TumorExpressionMatrix;
+import jene.tcga.TumorBarcode;
+import jene.tcga.TumorGenotypeTable;
+
+/**
+ * Stores the HLA class I expression metrics for every genotyped tumor
+ * in an expression matrix: the expression of the HLA-A, HLA-B, and
+ * HLA-C genes, their total, and the Herfindahl and diversity indexes
+ * defined by {@link ExpressionClassI}.
+ *
+ * <p>The metrics are computed in a single parallel pass over the
+ * tumors: the three gene columns are resolved once, the expression
+ * is read directly from a view of each tumor row, and the results are
+ * stored in primitive arrays indexed by the position of the tumor in
+ * the table (no per-tumor expression records are created).
+ */
+public final class ExpressionClassITable {
+    private final List<TumorBarcode> barcodes;
+    private final Map<TumorBarcode, Integer> barcodeIndex;
+
+    // Element [locus.ordinal()][index] holds the expression of the
+    // gene for the locus in the tumor at position "index"...
+    private final double[][] expression;
+
+    private final double[] total;
+    private final double[] herfindahl;
+    private final double[] diversity;
+
+    private static final Locus[] LOCI = Locus.values();
+
+    private ExpressionClassITable(List<TumorBarcode> barcodes) {
+        int size = barcodes.size();
+
+        this.barcodes = Collections.unmodifiableList(barcodes);
+        this.barcodeIndex = new HashMap<TumorBarcode, Integer>(2 * size);
+
+        this.expression = new double[LOCI.length][size];
+        this.total = new double[size];
+        this.herfindahl = new double[size];
+        this.diversity = new double[size];
+
+        for (int index = 0; index < size; ++index)
+            barcodeIndex.put(barcodes.get(index), index);
+    }
+
+    /**
+     * Column header for the tumor barcodes in stored tables.
+     */
+    public static final String BARCODE_COLUMN = "Tumor_Barcode";
+
+    /**
+     * Column header for the total HLA expression in stored tables.
+     */
+    public static final String TOTAL_COLUMN = "HLA_Total";
+
+    /**
+     * Column header for the Herfindahl index in stored tables.
+     */
+    public static final String HERFINDAHL_COLUMN = "Herfindahl";
+
+    /**
+     * Column header for the diversity index in stored tables.
+     */
+    public static final String DIVERSITY_COLUMN = "Diversity";
+
+    /**
+     * Computes the HLA class I expression metrics for every tumor
+     * that has both expression data and a genotype.
+     *
+     * @param matrix the RNA expression matrix.
+     *
+     * @param genotypes the patient genotypes for the tumors.
+     *
+     * @return a table containing the expression metrics for every
+     * tumor present in both the expression matrix and the genotype
+     * table (in the order of the expression matrix).
+     *
+     * @throws IllegalArgumentException unless the expression matrix
+     * contains all three HLA class I genes.
+     */
+    public static ExpressionClassITable compute(TumorExpressionMatrix matrix, TumorGenotypeTable genotypes) {
+        List<TumorBarcode> barcodes = new ArrayList<TumorBarcode>();
+
+        for (TumorBarcode barcode : matrix.viewBarcodes())
+            if (genotypes.contains(barcode))
+                barcodes.add(barcode);
+
+        ExpressionClassITable table = new ExpressionClassITable(barcodes);
+        table.compute(matrix, genotypes, resolveOrdinals(matrix.getSymbolIndex()));
+
+        return table;
+    }
+
+    private static int[] resolveOrdinals(HugoIndex symbolIndex) {
+        int[] ordinals = new int[LOCI.length];
+
+        for (Locus locus : LOCI) {
+            ordinals[locus.ordinal()] = symbolIndex.indexOf(locus.getHugoSymbol());
+
+            if (ordinals[locus.ordinal()] < 0)
+                throw new IllegalArgumentException(String.format("Missing expression for [%s].", locus.getHugoSymbol().getKey()));
+        }
+
+        return ordinals;
+    }
+
+    private void compute(TumorExpressionMatrix matrix, TumorGenotypeTable genotypes, int[] ordinals) {
+        ThreadLocal<double[]> buffers = ThreadLocal.withInitial(() -> new double[LOCI.length]);
+
+        IntStream.range(0, barcodes.size()).parallel().forEach(index -> {
+                TumorBarcode barcode = barcodes.get(index);
+                ArrayExpressionProfile row = matrix.get(barcode);
+
+                double[] levels = buffers.get();
+                row.getAll(ordinals, levels);
+
+                compute(index, levels, genotypes.require(barcode));
+            });
+    }
+
+    private void compute(int index, double[] levels, Genotype genotype) {
+        double exprA = levels[Locus.A.ordinal()];
+        double exprB = levels[Locus.B.ordinal()];
+        double exprC = levels[Locus.C.ordinal()];
+
+        expression[Locus.A.ordinal()][index] = exprA;
+        expression[Locus.B.ordinal()][index] = exprB;
+        expression[Locus.C.ordinal()][index] = exprC;
+
+        total[index] = exprA + exprB + exprC;
+        herfindahl[index] =
+            ExpressionClassI.herfindahl(exprA, genotype.countUniqueAlleles(Locus.A),
+                                        exprB, genotype.countUniqueAlleles(Locus.B),
+                                        exprC, genotype.countUniqueAlleles(Locus.C));
+
+        diversity[index] = ExpressionClassI.diversity(herfindahl[index], genotype.countUniqueAlleles());
+    }
+
+    /**
+     * Identifies tumors contained in this table.
+     *
+     * @param barcode the tumor barcode of interest.
+     *
+     * @return {@code true} iff this table contains the specified
+     * tumor.
+     */
+    public boolean contains(TumorBarcode barcode) {
+        return barcodeIndex.containsKey(barcode);
+    }
+
+    /**
+     * Returns the raw RNA expression of one HLA gene in a tumor.
+     *
+     * @param barcode the tumor barcode of interest.
+     *
+     * @param locus the locus of interest.
+     *
+     * @return the raw RNA expression of the gene for the specified
+     * locus in the specified tumor.
+     *
+     * @throws RuntimeException unless the barcode is present.
+     */
+    public double get(TumorBarcode barcode, Locus locus) {
+        return expression[locus.ordinal()][require(barcode)];
+    }
+
+    /**
+     * Returns the total HLA class I expression in a tumor.
+     *
+     * @param barcode the tumor barcode of interest.
+     *
+     * @return the total HLA class I expression in the specified
+     * tumor.
+     *
+     * @throws RuntimeException unless the barcode is present.
+     */
+    public double getTotal(TumorBarcode barcode) {
+        return total[require(barcode)];
+    }
+
+    /**
+     * Returns the Herfindahl index of the HLA expression in a tumor.
+     *
+     * @param barcode the tumor barcode of interest.
+     *
+     * @return the Herfindahl index of the HLA expression in the
+     * specified tumor.
+     *
+     * @throws RuntimeException unless the barcode is present.
+     */
+    public double getHerfindahl(TumorBarcode barcode) {
+        return herfindahl[require(barcode)];
+    }
+
+    /**
+     * Returns the diversity index of the HLA expression in a tumor.
+     *
+     * @param barcode the tumor barcode of interest.
+     *
+     * @return the diversity index of the HLA expression in the
+     * specified tumor.
+     *
+     * @throws RuntimeException unless the barcode is present.
+     */
+    public double getDiversity(TumorBarcode barcode) {
+        return diversity[require(barcode)];
+    }
+
+    private int require(TumorBarcode barcode) {
+        Integer index = barcodeIndex.get(barcode);
+
+        if (index != null)
+            return index.intValue();
+        else
+            throw new IllegalArgumentException(String.format("Unknown barcode [%s].", barcode.getKey()));
+    }
+
+    /**
+     * Returns the number of tumors in this table.
+     *
+     * @return the number of tumors in this table.
+     */
+    public int size() {
+        return barcodes.size();
+    }
+
+    /**
+     * Returns a read-only view of the barcodes in this table.
+     *
+     * @return a read-only view of the barcodes in this table (in
+     * the order of the expression matrix).
+     */
+    public List<TumorBarcode> viewBarcodes() {
+        return barcodes;
+    }
+
+    /**
+     * Writes this table to a file, with one row per tumor.
+     *
+     * @param file the destination file.
+     *
+     * @throws RuntimeException if any I/O errors occur.
+     */
+    public void store(File file) {
+        JamLogger.info("ExpressionClassITable: Writing file [%s]...", file.getName());
+
+        try (TableWriter writer = TableWriter.open(file)) {
+            writer.println(BARCODE_COLUMN,
+                           columnName(Locus.A),
+                           columnName(Locus.B),
+                           columnName(Locus.C),
+                           TOTAL_COLUMN,
+                           HERFINDAHL_COLUMN,
+                           DIVERSITY_COLUMN);
+
+            for (int index = 0; index < barcodes.size(); ++index)
+                writer.println(barcodes.get(index).getKey(),
+                               Double.toString(expression[Locus.A.ordinal()][index]),
+                               Double.toString(expression[Locus.B.ordinal()][index]),
+                               Double.toString(expression[Locus.C.ordinal()][index]),
+                               Double.toString(total[index]),
+                               Double.toString(herfindahl[index]),
+                               Double.toString(diversity[index]));
+        }
+    }
+
+    private static String columnName(Locus locus) {
+        return locus.getHugoSymbol().getKey().replace('-', '_');
+    }
+}
@@ -10,6 +10,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import com.google.common.collect.HashMultiset;
 import com.google.common.collect.ImmutableSortedMultiset;
@@ -30,6 +31,9 @@ public final class Genotype extends AbstractImmutableMultiset<Allele> implements
     private final Map<Locus, List<Allele>> locusMap =
         new EnumMap<Locus, List<Allele>>(Locus.class);
 
+    // Encoded on first request (a benign race)...
+    private CompactGenotype compact = null;
+
     private Genotype(ImmutableSortedMultiset<Allele> alleles) {
         super(alleles);
         fillLocusMap();
@@ -180,6 +184,36 @@ public final class Genotype extends AbstractImmutableMultiset<Allele> implements
             return null;
     }
 
+    /**
+     * Returns the compact encoding of this genotype, which supports
+     * fast set operations (e.g., for pairwise comparisons across a
+     * cohort).
+     *
+     * @return the compact encoding of this genotype.
+     */
+    public CompactGenotype compact() {
+        CompactGenotype result = compact;
+
+        if (result == null) {
+            result = CompactGenotype.copyOf(this);
+            compact = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of unique alleles shared by this genotype
+     * and another.
+     *
+     * @param that the genotype to compare.
+     *
+     * @return the number of unique alleles present in both genotypes.
+     */
+    public int countSharedAlleles(Genotype that) {
+        return this.compact().countSharedAlleles(that.compact());
+    }
+
     /**
      * Returns the number of unique alleles in this genotype.
      *
@@ -277,6 +311,24 @@ public final class Genotype extends AbstractImmutableMultiset<Allele> implements
         return lohGenotypes;
     }
 
+    /**
+     * Lazily enumerates all genotypes that may be formed from loss of
+     * heterozygosity, in compact form (without building a set of
+     * genotypes or any immutable multisets).  The stream contains the
+     * same genotypes as {@link #enumerateLOH(int)}.
+     *
+     * @param count the number of unique alleles lost.
+     *
+     * @return a sequential stream of all unique genotypes that may be
+     * formed by losing the specified number of alleles.
+     *
+     * @throws IllegalArgumentException unless the count is positive
+     * and does not exceed the number of unique alleles.
+     */
+    public Stream<CompactGenotype> streamLOH(int count) {
+        return compact().streamLOH(count);
+    }
+
     /**
      * Identifies heterozygous genotypes.
      *
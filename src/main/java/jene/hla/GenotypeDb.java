@@ -12,6 +12,7 @@ import jam.app.JamProperties;
 import jam.lang.JamException;
 import jam.util.RegexUtil;
 
+import jene.app.GlobalResource;
 import jene.tcga.TumorBarcode;
 
 /**
@@ -29,7 +30,8 @@ import jene.tcga.TumorBarcode;
 public final class GenotypeDb {
     private final Map<TumorBarcode, Genotype> genotypes;
 
-    private static GenotypeDb global = null;
+    private static final GlobalResource<GenotypeDb> global =
+        GlobalResource.create("GenotypeDb", GenotypeDb::createGlobal);
 
     /**
      * Name of the system property that specifies the file containing
@@ -70,10 +72,7 @@ public final class GenotypeDb {
      * properties.
      */
     public static GenotypeDb global() {
-        if (global == null)
-            global = createGlobal();
-
-        return global;
+        return global.get();
     }
 
     private static GenotypeDb createGlobal() {
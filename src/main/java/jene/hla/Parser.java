@@ -1,79 +1,155 @@
 
 package jene.hla;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import jam.lang.JamException;
-import jam.util.StringUtil;
 
+// Parses alleles in a single pass over the characters, without any
+// intermediate substrings: the only object returned (or created, for
+// the first occurrence of an allele) is the canonical allele itself.
 final class Parser {
-    private final String original;
+    private final CharSequence chars;
+    private final int start;
+    private final int end;
 
-    private String substr;
-    private Locus  locus;
-    private int    superType;
-    private int    subType;
+    private int pos;
 
-    private Parser(String string) {
-        this.original = string;
-        this.substr   = string;
+    private Parser(CharSequence chars, int start, int end) {
+        this.chars = chars;
+        this.start = start;
+        this.end   = end;
+        this.pos   = start;
     }
 
     static Allele parse(String string) {
-        return new Parser(string).parse();
+        return parse(string, 0, string.length());
+    }
+
+    static Allele parse(CharSequence chars, int start, int end) {
+        return new Parser(chars, start, end).parse();
+    }
+
+    static List<Allele> parseWhiteSpace(String string) {
+        List<Allele> alleles = new ArrayList<Allele>(6);
+
+        int index = 0;
+        int length = string.length();
+
+        while (index < length) {
+            while (index < length && Character.isWhitespace(string.charAt(index)))
+                ++index;
+
+            int tokenStart = index;
+
+            while (index < length && !Character.isWhitespace(string.charAt(index)))
+                ++index;
+
+            if (index > tokenStart)
+                alleles.add(parse(string, tokenStart, index));
+        }
+
+        if (alleles.isEmpty())
+            throw JamException.runtime("Missing alleles in [%s].", string);
+
+        return alleles;
     }
 
     private Allele parse() {
-        trimWhiteSpace();
-        removePrefix();
-        parseLocus();
-        removeDelim1();
-        parseSuperType();
-        removeDelim2();
-        parseSubType();
+        int last = trimWhiteSpace();
+
+        removePrefix(last);
+        Locus locus = parseLocus(last);
+
+        skip('*', last);
+        skip('-', last);
+        skip('_', last);
+
+        int superType = parseDigits(last, 2, 2);
+
+        skip(':', last);
+        skip('-', last);
+        skip('_', last);
+
+        int subType = parseDigits(last, 2, 3);
+
+        if (pos != last)
+            throw invalidFormat();
 
         return Allele.instance(locus, superType, subType);
     }
 
-    private void trimWhiteSpace() {
-        substr = original.trim();
+    private int trimWhiteSpace() {
+        int last = end;
+
+        while (pos < last && chars.charAt(pos) <= ' ')
+            ++pos;
+
+        while (last > pos && chars.charAt(last - 1) <= ' ')
+            --last;
+
+        return last;
     }
 
-    private void removePrefix() {
-        substr = StringUtil.removePrefix(substr, Allele.PREFIX);
+    private void removePrefix(int last) {
+        if (matches(Allele.PREFIX, last))
+            pos += Allele.PREFIX.length();
     }
 
-    private void parseLocus() {
+    private Locus parseLocus(int last) {
         for (Locus candidate : Locus.values()) {
-            if (substr.startsWith(candidate.name())) {
-                locus  = candidate;
-                substr = StringUtil.removePrefix(substr, candidate.name());
-                return;
+            if (matches(candidate.name(), last)) {
+                pos += candidate.name().length();
+                return candidate;
             }
         }
 
-        throw JamException.runtime("Missing locus in allele [%s].", original);
+        throw JamException.runtime("Missing locus in allele [%s].", original());
     }
 
-    private void removeDelim1() {
-        substr = StringUtil.removePrefix(substr, "*");
-        substr = StringUtil.removePrefix(substr, "-");
-        substr = StringUtil.removePrefix(substr, "_");
+    private boolean matches(String prefix, int last) {
+        if (last - pos < prefix.length())
+            return false;
+
+        for (int k = 0; k < prefix.length(); ++k)
+            if (chars.charAt(pos + k) != prefix.charAt(k))
+                return false;
+
+        return true;
     }
 
-    private void parseSuperType() {
-        superType = Integer.parseInt(substr.substring(0, 2));
-        substr    = substr.substring(2);
+    private void skip(char delim, int last) {
+        if (pos < last && chars.charAt(pos) == delim)
+            ++pos;
     }
 
-    private void removeDelim2() {
-        substr = StringUtil.removePrefix(substr, ":");
-        substr = StringUtil.removePrefix(substr, "-");
-        substr = StringUtil.removePrefix(substr, "_");
+    private int parseDigits(int last, int minDigits, int maxDigits) {
+        int value = 0;
+        int count = 0;
+
+        while (pos < last && count < maxDigits) {
+            char c = chars.charAt(pos);
+
+            if (c < '0' || c > '9')
+                break;
+
+            value = 10 * value + (c - '0');
+            ++count;
+            ++pos;
+        }
+
+        if (count < minDigits)
+            throw invalidFormat();
+
+        return value;
     }
 
-    private void parseSubType() {
-        if (substr.length() < 2 || substr.length() > 3)
-            throw JamException.runtime("Invalid allele format [%s].", original);
+    private RuntimeException invalidFormat() {
+        return JamException.runtime("Invalid allele format [%s].", original());
+    }
 
-        subType = Integer.parseInt(substr);
+    private String original() {
+        return chars.subSequence(start, end).toString();
     }
 }
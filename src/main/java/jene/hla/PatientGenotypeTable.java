@@ -2,17 +2,20 @@
 package jene.hla;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.ImmutableList;
 
 import jam.app.JamLogger;
 import jam.io.TableReader;
@@ -20,6 +23,7 @@ import jam.lang.JamException;
 import jam.util.RegexUtil;
 
 import jene.tcga.PatientID;
+import jene.util.KeyColumn;
 
 /**
  * Reads genotypes from a file and stores them in memory indexed by
@@ -32,10 +36,28 @@ import jene.tcga.PatientID;
  *
  * <p>Commas are the stanard column delimiter, but tabs and pipe
  * characters ({@code |}) are also permitted.
+ *
+ * <p><b>Allele index.</b> Patients are assigned dense ordinals (in
+ * patient ID order), and the patients carrying each allele are stored
+ * in a compressed bitmap over those ordinals.  Boolean queries over
+ * the alleles (see {@link AlleleQuery}) are evaluated on the bitmaps
+ * in independent word ranges, in parallel for large cohorts.
  */
 public final class PatientGenotypeTable {
     private final Map<PatientID, Genotype> genotypes;
-    private final Multimap<Allele, PatientID> alleleMap = HashMultimap.create();
+
+    // Patients indexed by ordinal, the patient bitmap for each
+    // allele, and the unique alleles in sorted order...
+    private final ImmutableList<PatientID> patientList;
+    private final Map<Allele, AlleleBitmap> alleleBitmaps;
+    private final Set<Allele> alleleSet;
+
+    // Built on first request (a benign race)...
+    private KeyColumn<PatientID, Genotype> genotypeColumn = null;
+
+    // Queries are evaluated in ranges of this many words (patients /
+    // 64) and in parallel when there are several ranges...
+    private static final int CHUNK_WORDS = 256;
 
     private PatientGenotypeTable(Map<PatientID, Genotype> genotypes, boolean copy) {
         if (copy)
@@ -43,17 +65,44 @@ public final class PatientGenotypeTable {
         else
             this.genotypes = genotypes;
 
-        fillAlleleMap();
+        this.patientList = ImmutableList.copyOf(this.genotypes.keySet());
+        this.alleleBitmaps = buildBitmaps();
+        this.alleleSet = Collections.unmodifiableSet(new TreeSet<Allele>(alleleBitmaps.keySet()));
     }
 
-    private void fillAlleleMap() {
-        for (Map.Entry<PatientID, Genotype> entry : genotypes.entrySet()) {
-            PatientID patient  = entry.getKey();
-            Genotype  genotype = entry.getValue();
+    private Map<Allele, AlleleBitmap> buildBitmaps() {
+        //
+        // Collect the patient ordinals for each allele (in increasing
+        // order) in growable primitive arrays...
+        //
+        Map<Allele, int[]> members = new HashMap<Allele, int[]>();
+        Map<Allele, Integer> counts = new HashMap<Allele, Integer>();
+
+        int ordinal = 0;
+
+        for (Genotype genotype : genotypes.values()) {
+            for (Allele allele : genotype.viewUniqueAlleles()) {
+                int[] array = members.get(allele);
+                int count = counts.getOrDefault(allele, 0);
+
+                if (array == null || count == array.length) {
+                    array = (array == null) ? new int[8] : Arrays.copyOf(array, 2 * array.length);
+                    members.put(allele, array);
+                }
+
+                array[count] = ordinal;
+                counts.put(allele, count + 1);
+            }
 
-            for (Allele allele : genotype.viewUniqueAlleles())
-                alleleMap.put(allele, patient);
+            ++ordinal;
         }
+
+        Map<Allele, AlleleBitmap> bitmaps = new HashMap<Allele, AlleleBitmap>(2 * members.size());
+
+        for (Map.Entry<Allele, int[]> entry : members.entrySet())
+            bitmaps.put(entry.getKey(), AlleleBitmap.create(entry.getValue(), counts.get(entry.getKey()), ordinal));
+
+        return bitmaps;
     }
 
     /**
@@ -140,11 +189,105 @@ public final class PatientGenotypeTable {
      *
      * @param allele the allele to match.
      *
-     * @return a read-only view of the patients whose genotype
-     * contains the target allele.
+     * @return an unmodifiable list of the patients whose genotype
+     * contains the target allele (in patient ID order).
      */
     public Collection<PatientID> match(Allele allele) {
-        return Collections.unmodifiableCollection(alleleMap.get(allele));
+        return select(AlleleQuery.carrying(allele));
+    }
+
+    /**
+     * Finds all patients whose genotype shares a minimum number of
+     * unique alleles with a given genotype.
+     *
+     * @param genotype the genotype to compare.
+     *
+     * @param count the minimum number of shared alleles.
+     *
+     * @return an unmodifiable list of the matching patients (in
+     * patient ID order).
+     *
+     * @throws IllegalArgumentException unless the count is positive.
+     */
+    public List<PatientID> matchShared(Genotype genotype, int count) {
+        return select(AlleleQuery.sharing(genotype, count));
+    }
+
+    /**
+     * Returns the number of patients whose genotype contains a given
+     * allele.
+     *
+     * @param allele the allele to match.
+     *
+     * @return the number of patients whose genotype contains the
+     * specified allele.
+     */
+    public int count(Allele allele) {
+        return alleleBitmaps.getOrDefault(allele, AlleleBitmap.EMPTY).cardinality();
+    }
+
+    /**
+     * Returns the number of patients selected by an allele query.
+     *
+     * @param query the query to evaluate.
+     *
+     * @return the number of patients selected by the query.
+     */
+    public int count(AlleleQuery query) {
+        int count = 0;
+
+        for (long word : evaluate(query))
+            count += Long.bitCount(word);
+
+        return count;
+    }
+
+    /**
+     * Finds all patients selected by an allele query.
+     *
+     * @param query the query to evaluate.
+     *
+     * @return an unmodifiable list of the selected patients (in
+     * patient ID order).
+     */
+    public List<PatientID> select(AlleleQuery query) {
+        long[] words = evaluate(query);
+        List<PatientID> selected = new ArrayList<PatientID>();
+
+        for (int word = 0; word < words.length; ++word) {
+            long remaining = words[word];
+
+            while (remaining != 0L) {
+                selected.add(patientList.get((word << 6) + Long.numberOfTrailingZeros(remaining)));
+                remaining &= remaining - 1L;
+            }
+        }
+
+        return Collections.unmodifiableList(selected);
+    }
+
+    private long[] evaluate(AlleleQuery query) {
+        int wordCount = AlleleBitmap.wordCount(patientList.size());
+        int chunkCount = (wordCount + CHUNK_WORDS - 1) / CHUNK_WORDS;
+
+        long[] words = new long[wordCount];
+
+        IntStream chunks = IntStream.range(0, chunkCount);
+
+        if (chunkCount > 1)
+            chunks = chunks.parallel();
+
+        chunks.forEach(chunk -> {
+                int fromWord = chunk * CHUNK_WORDS;
+                int toWord = Math.min(wordCount, fromWord + CHUNK_WORDS);
+
+                long[] out = new long[toWord - fromWord];
+                query.evaluate(alleleBitmaps, fromWord, toWord, out);
+
+                System.arraycopy(out, 0, words, fromWord, out.length);
+            });
+
+        return words;
     }
 
     /**
@@ -166,6 +309,24 @@ public final class PatientGenotypeTable {
             throw JamException.runtime("No genotype for patient [%s].", patient.getKey());
     }
 
+    /**
+     * Returns the genotypes as a key column, which may be joined to
+     * tumor-patient columns.
+     *
+     * @return a column mapping each patient in this database to their
+     * genotype (with patients indexed in patient ID order).
+     */
+    public KeyColumn<PatientID, Genotype> genotypeColumn() {
+        KeyColumn<PatientID, Genotype> result = genotypeColumn;
+
+        if (result == null) {
+            result = KeyColumn.create(genotypes);
+            genotypeColumn = result;
+        }
+
+        return result;
+    }
+
     /**
      * Returns the number of genotypes in this database.
      *
@@ -183,12 +344,7 @@ public final class PatientGenotypeTable {
      * from the genotypes in this database.
      */
     public Set<Allele> viewAlleles() {
-        Set<Allele> alleles = new TreeSet<Allele>();
-
-        for (Genotype genotype : genotypes.values())
-            alleles.addAll(genotype);
-
-        return alleles;
+        return alleleSet;
     }
 
     /**
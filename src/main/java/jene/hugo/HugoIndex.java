@@ -0,0 +1,124 @@
+
+package jene.hugo;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import jene.util.KeyIndex;
+
+/**
+ * Assigns dense zero-based ordinal indexes to a fixed set of HUGO
+ * symbols, so that gene-level data may be stored in primitive arrays
+ * and shared by many profiles.
+ *
+ * <p>This is a {@link KeyIndex} with an interface specialized for
+ * HUGO symbols.
+ */
+public final class HugoIndex {
+    private final KeyIndex<HugoSymbol> keyIndex;
+
+    private HugoIndex(KeyIndex<HugoSymbol> keyIndex) {
+        this.keyIndex = keyIndex;
+    }
+
+    /**
+     * Creates a new index for a collection of symbols; the symbols
+     * are assigned indexes in iteration order.
+     *
+     * @param symbols the symbols to index.
+     *
+     * @return a new index for the specified symbols.
+     *
+     * @throws IllegalArgumentException if the collection contains
+     * duplicate symbols.
+     */
+    public static HugoIndex create(Collection<HugoSymbol> symbols) {
+        return new HugoIndex(KeyIndex.create(symbols));
+    }
+
+    /**
+     * Identifies symbols contained in this index.
+     *
+     * @param symbol the symbol of interest.
+     *
+     * @return {@code true} iff this index contains the specified
+     * symbol.
+     */
+    public boolean contains(HugoSymbol symbol) {
+        return keyIndex.contains(symbol);
+    }
+
+    /**
+     * Returns the symbol assigned to a given index.
+     *
+     * @param index the ordinal index of interest.
+     *
+     * @return the symbol assigned to the specified index.
+     *
+     * @throws IndexOutOfBoundsException unless the index is valid.
+     */
+    public HugoSymbol get(int index) {
+        return keyIndex.get(index);
+    }
+
+    /**
+     * Returns the ordinal index assigned to a given symbol.
+     *
+     * @param symbol the symbol of interest.
+     *
+     * @return the ordinal index assigned to the specified symbol, or
+     * {@code -1} if this index does not contain the symbol.
+     */
+    public int indexOf(HugoSymbol symbol) {
+        return keyIndex.indexOf(symbol);
+    }
+
+    /**
+     * Returns the ordinal index assigned to a given symbol.
+     *
+     * @param symbol the symbol of interest.
+     *
+     * @return the ordinal index assigned to the specified symbol.
+     *
+     * @throws IllegalArgumentException unless this index contains the
+     * specified symbol.
+     */
+    public int require(HugoSymbol symbol) {
+        int index = indexOf(symbol);
+
+        if (index < 0)
+            throw new IllegalArgumentException(String.format("Missing symbol: [%s].", symbol.getKey()));
+
+        return index;
+    }
+
+    /**
+     * Returns the number of symbols in this index.
+     *
+     * @return the number of symbols in this index.
+     */
+    public int size() {
+        return keyIndex.size();
+    }
+
+    /**
+     * Returns a read-only view of the symbols in this index, in
+     * index order.
+     *
+     * @return a read-only view of the symbols in this index.
+     */
+    public List<HugoSymbol> viewSymbols() {
+        return keyIndex.viewKeys();
+    }
+
+    /**
+     * Returns a read-only set view of the symbols in this index,
+     * which iterates in index order.
+     *
+     * @return a read-only set view of the symbols in this index.
+     */
+    public Set<HugoSymbol> viewSymbolSet() {
+        return keyIndex.viewKeySet();
+    }
+}
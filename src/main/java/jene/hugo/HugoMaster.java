@@ -13,6 +13,7 @@ import jam.app.JamEnv;
 import jam.app.JamProperties;
 import jam.io.TableReader;
 
+import jene.app.GlobalResource;
 import jene.ensembl.EnsemblGeneID;
 
 /**
@@ -21,7 +22,8 @@ import jene.ensembl.EnsemblGeneID;
 public final class HugoMaster {
     private final Multimap<HugoSymbol, EnsemblGeneID> map;
 
-    private static HugoMaster global = null;
+    private static final GlobalResource<HugoMaster> global =
+        GlobalResource.create("HugoMaster", () -> load(resolveMasterFile()));
 
     private HugoMaster() {
         this.map = HashMultimap.create();
@@ -51,10 +53,7 @@ public final class HugoMaster {
      * environment variables.
      */
     public static HugoMaster global() {
-        if (global == null)
-            global = load(resolveMasterFile());
-
-        return global;
+        return global.get();
     }
 
     private static String resolveMasterFile() {
@@ -2,15 +2,16 @@
 package jene.hugo;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
 
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 
 import jam.app.JamLogger;
@@ -18,6 +19,7 @@ import jam.io.IOUtil;
 import jam.io.TableReader;
 import jam.io.TableWriter;
 
+import jene.ensembl.EnsemblProteinDb;
 import jene.peptide.Peptide;
 
 /**
@@ -25,13 +27,21 @@ import jene.peptide.Peptide;
  * proteins (e.g., by proteasomal cleavage).
  */
 public final class HugoPeptideTable {
-    private final Set<Peptide> peptides = new HashSet<Peptide>();
-    private final Multimap<HugoSymbol, Peptide> hugoMap = HashMultimap.create();
+    private final Set<Peptide> peptides;
+    private final Map<HugoSymbol, Set<Peptide>> hugoMap;
+    private int size;
 
     private static final int SYMBOL_INDEX = 0;
     private static final int PEPTIDE_INDEX = 1;
 
     private HugoPeptideTable() {
+        this(new HashSet<Peptide>(), new HashMap<HugoSymbol, Set<Peptide>>(), 0);
+    }
+
+    private HugoPeptideTable(Set<Peptide> peptides, Map<HugoSymbol, Set<Peptide>> hugoMap, int size) {
+        this.peptides = peptides;
+        this.hugoMap = hugoMap;
+        this.size = size;
     }
 
     /**
@@ -56,9 +66,43 @@ public final class HugoPeptideTable {
         return table;
     }
 
+    // Tables built by HugoPeptideTableBuilder are immutable; only
+    // tables created or loaded here are ever modified...
     private void addPeptide(HugoSymbol symbol, Peptide peptide) {
         peptides.add(peptide);
-        hugoMap.put(symbol, peptide);
+
+        if (hugoMap.computeIfAbsent(symbol, key -> new HashSet<Peptide>()).add(peptide))
+            ++size;
+    }
+
+    /**
+     * Builds a table directly from an Ensembl protein database by
+     * fragmenting the protein-coding records for each gene (see
+     * {@link HugoPeptideTableBuilder}).
+     *
+     * @param ensemblDb the Ensembl protein database.
+     *
+     * @param peptideLengths the lengths of the native fragments to
+     * include.
+     *
+     * @return a new immutable table mapping each HUGO symbol to the
+     * unique native fragments of its protein-coding records.
+     *
+     * @throws IllegalArgumentException unless each length is positive
+     * and does not exceed {@code PeptideCode.MAX_LENGTH}.
+     */
+    public static HugoPeptideTable build(EnsemblProteinDb ensemblDb, int... peptideLengths) {
+        return HugoPeptideTableBuilder.create(peptideLengths).add(ensemblDb).build();
+    }
+
+    // Called by the builder with immutable compact sets...
+    static HugoPeptideTable wrap(Set<Peptide> peptides, Map<HugoSymbol, Set<Peptide>> hugoMap) {
+        int size = 0;
+
+        for (Set<Peptide> symbolPeptides : hugoMap.values())
+            size += symbolPeptides.size();
+
+        return new HugoPeptideTable(peptides, hugoMap, size);
     }
 
     /**
@@ -157,7 +201,7 @@ public final class HugoPeptideTable {
      * empty collection if the symbol is not present).
      */
     public Collection<Peptide> get(HugoSymbol symbol) {
-        return Collections.unmodifiableCollection(hugoMap.get(symbol));
+        return Collections.unmodifiableCollection(hugoMap.getOrDefault(symbol, Set.of()));
     }
 
     /**
@@ -166,7 +210,7 @@ public final class HugoPeptideTable {
      * @return the number of gene-peptide mappings in this table.
      */
     public int size() {
-        return hugoMap.size();
+        return size;
     }
 
     /**
@@ -193,24 +237,24 @@ public final class HugoPeptideTable {
 
     private void writePeptides(TableWriter writer) {
         //
-        // Nice to have everything in alphabetical order...
+        // Nice to have everything in alphabetical order: format every
+        // row and sort all of them at once, in parallel...
         //
-        TreeSet<HugoSymbol> symbols = new TreeSet<HugoSymbol>(hugoMap.keySet());
+        String[][] rows =
+            hugoMap.entrySet()
+            .parallelStream()
+            .flatMap(entry -> entry.getValue().stream().map(peptide -> new String[] { entry.getKey().getKey(), peptide.formatString() }))
+            .toArray(String[][]::new);
 
-        for (HugoSymbol symbol : symbols)
-            writePeptides(writer, symbol);
-    }
-
-    private void writePeptides(TableWriter writer, HugoSymbol symbol) {
-        TreeSet<String> peptideStrings = new TreeSet<String>();
+        Arrays.parallelSort(rows, ROW_COMPARATOR);
 
-        for (Peptide peptide : get(symbol))
-            peptideStrings.add(peptide.formatString());
-
-        for (String peptideString : peptideStrings)
-            writer.println(symbol.getKey(), peptideString);
+        for (String[] row : rows)
+            writer.println(row[SYMBOL_INDEX], row[PEPTIDE_INDEX]);
     }
 
+    private static final Comparator<String[]> ROW_COMPARATOR =
+        Comparator.comparing((String[] row) -> row[SYMBOL_INDEX]).thenComparing(row -> row[PEPTIDE_INDEX]);
+
     /**
      * Writes this gene-peptide map to a data file.
      *
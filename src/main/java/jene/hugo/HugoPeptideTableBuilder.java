@@ -0,0 +1,161 @@
+
+package jene.hugo;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.collect.ImmutableMap;
+
+import jam.app.JamLogger;
+
+import jene.ensembl.EnsemblProteinDb;
+import jene.ensembl.EnsemblProteinRecord;
+import jene.peptide.Peptide;
+import jene.peptide.PeptideCode;
+import jene.peptide.PeptideCodeSet;
+
+/**
+ * Builds {@code HugoPeptideTable}s directly from protein sequences by
+ * chopping them into native fragments of fixed lengths.
+ *
+ * <p>Proteins may be added incrementally (and concurrently); the
+ * fragments for each gene are stored as packed peptide codes (see
+ * {@link PeptideCodeSet}) and merged with any fragments previously
+ * added for the same gene, so duplicates never accumulate.  The
+ * completed table holds one compact immutable set per gene plus
+ * their union.
+ */
+public final class HugoPeptideTableBuilder {
+    private final int[] peptideLengths;
+    private final Map<HugoSymbol, PeptideCodeSet> hugoMap =
+        new ConcurrentHashMap<HugoSymbol, PeptideCodeSet>();
+
+    private HugoPeptideTableBuilder(int[] peptideLengths) {
+        for (int peptideLength : peptideLengths)
+            if (peptideLength < 1 || peptideLength > PeptideCode.MAX_LENGTH)
+                throw new IllegalArgumentException(String.format("Invalid peptide length [%d].", peptideLength));
+
+        this.peptideLengths = peptideLengths.clone();
+    }
+
+    /**
+     * Creates a new empty builder.
+     *
+     * @param peptideLengths the lengths of the native fragments to
+     * include in the table.
+     *
+     * @return a new empty builder.
+     *
+     * @throws IllegalArgumentException unless each length is positive
+     * and does not exceed {@code PeptideCode.MAX_LENGTH}.
+     */
+    public static HugoPeptideTableBuilder create(int... peptideLengths) {
+        return new HugoPeptideTableBuilder(peptideLengths);
+    }
+
+    /**
+     * Adds the native fragments of every protein-coding record in an
+     * Ensembl database, processing the genes in parallel.
+     *
+     * @param ensemblDb the Ensembl protein database.
+     *
+     * @return this builder, for method chaining.
+     */
+    public HugoPeptideTableBuilder add(EnsemblProteinDb ensemblDb) {
+        JamLogger.info("Fragmenting the proteins for [%d] genes...", ensemblDb.hugoSet().size());
+
+        ensemblDb.hugoSet()
+            .parallelStream()
+            .forEach(symbol -> add(symbol, ensemblDb.get(symbol)));
+
+        return this;
+    }
+
+    /**
+     * Adds the native fragments of the protein-coding records for a
+     * single gene.
+     *
+     * @param symbol the HUGO symbol for the gene.
+     *
+     * @param records the protein records for the gene (records that
+     * are not protein-coding are ignored).
+     *
+     * @return this builder, for method chaining.
+     */
+    public HugoPeptideTableBuilder add(HugoSymbol symbol, Collection<EnsemblProteinRecord> records) {
+        long[] codes = new long[0];
+
+        for (EnsemblProteinRecord record : records)
+            if (record.isProteinCoding())
+                codes = concat(codes, fragment(record.getPeptide()));
+
+        if (codes.length > 0)
+            merge(symbol, PeptideCodeSet.create(codes));
+
+        return this;
+    }
+
+    /**
+     * Adds the native fragments of a single protein.
+     *
+     * @param symbol the HUGO symbol for the gene that encodes the
+     * protein.
+     *
+     * @param protein the protein sequence.
+     *
+     * @return this builder, for method chaining.
+     */
+    public HugoPeptideTableBuilder add(HugoSymbol symbol, Peptide protein) {
+        long[] codes = fragment(protein);
+
+        if (codes.length > 0)
+            merge(symbol, PeptideCodeSet.create(codes));
+
+        return this;
+    }
+
+    private long[] fragment(Peptide protein) {
+        long[] codes = new long[0];
+
+        for (int peptideLength : peptideLengths)
+            codes = concat(codes, PeptideCode.fragments(protein, peptideLength));
+
+        return codes;
+    }
+
+    private static long[] concat(long[] codes1, long[] codes2) {
+        if (codes1.length == 0)
+            return codes2;
+
+        long[] result = Arrays.copyOf(codes1, codes1.length + codes2.length);
+        System.arraycopy(codes2, 0, result, codes1.length, codes2.length);
+
+        return result;
+    }
+
+    private void merge(HugoSymbol symbol, PeptideCodeSet peptides) {
+        hugoMap.merge(symbol, peptides, PeptideCodeSet::union);
+    }
+
+    /**
+     * Builds an immutable table containing all fragments added so far.
+     *
+     * @return an immutable table containing all fragments added so
+     * far.
+     */
+    public HugoPeptideTable build() {
+        PeptideCodeSet peptides =
+            hugoMap.values()
+            .parallelStream()
+            .reduce(PeptideCodeSet.EMPTY, PeptideCodeSet::union);
+
+        HugoPeptideTable table =
+            HugoPeptideTable.wrap(peptides, ImmutableMap.<HugoSymbol, Set<Peptide>>copyOf(hugoMap));
+
+        JamLogger.info("HugoPeptideTable: Built [%d] records for [%d] genes.", table.size(), hugoMap.size());
+        return table;
+    }
+}
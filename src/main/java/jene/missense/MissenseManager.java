@@ -5,8 +5,13 @@ import java.io.File;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import com.google.common.cache.CacheStats;
 
 import jam.app.JamLogger;
+import jam.app.JamProperties;
 import jam.io.IOUtil;
 
 import jene.fasta.FastaPeptideReader;
@@ -14,22 +19,49 @@ import jene.fasta.FastaPeptideRecord;
 import jene.maf.MAFFastaList;
 import jene.maf.MAFFastaRecord;
 import jene.tcga.TumorBarcode;
+import jene.tcga.TumorDataCache;
 
 /**
  * Manages FASTA files that contain protein structures resulting from
  * missense mutations.
+ *
+ * <p>Loaded records are kept in a cache shared by all threads that
+ * use the manager, so each file is parsed at most once while its
+ * records remain within the memory budget of the cache.
  */
 public final class MissenseManager {
     private final String dirName;
+    private final TumorDataCache<MAFFastaList> cache;
 
-    private MissenseManager(String dirName) {
+    private MissenseManager(String dirName, long cacheBytes) {
         this.dirName = dirName;
+        this.cache = TumorDataCache.create(this::parse, MissenseManager::weigh, cacheBytes);
     }
 
     private static final String BASE_SUFFIX = "_missense.fa.gz";
 
+    // Approximate footprint of one record (header fields and cell
+    // fraction) and of each residue reference in its peptide...
+    private static final int BYTES_PER_RECORD = 128;
+    private static final int BYTES_PER_RESIDUE = 8;
+
     /**
-     * Creates a new missense data manager.
+     * Name of the system property that specifies the memory budget
+     * (in bytes) for the record cache of each manager.
+     */
+    public static final String CACHE_BYTES_PROPERTY = "jene.missense.missenseCacheBytes";
+
+    /**
+     * Default memory budget (in bytes) for the record cache of each
+     * manager.
+     */
+    public static final long CACHE_BYTES_DEFAULT = 256L << 20;
+
+    /**
+     * Creates a new missense data manager with the memory budget
+     * specified by the {@code jene.missense.missenseCacheBytes}
+     * system property (or the default budget if the property is not
+     * set).
      *
      * @param dirName the directory containing individual tumor
      * FASTA files.
@@ -38,7 +70,46 @@ public final class MissenseManager {
      * directory.
      */
     public static MissenseManager create(String dirName) {
-        return new MissenseManager(dirName);
+        return create(dirName, resolveCacheBytes());
+    }
+
+    /**
+     * Creates a new missense data manager.
+     *
+     * @param dirName the directory containing individual tumor
+     * FASTA files.
+     *
+     * @param cacheBytes the memory budget for the record cache (in
+     * bytes; zero disables caching).
+     *
+     * @return a new missense data manager for the specified
+     * directory.
+     *
+     * @throws IllegalArgumentException if the memory budget is
+     * negative.
+     */
+    public static MissenseManager create(String dirName, long cacheBytes) {
+        return new MissenseManager(dirName, cacheBytes);
+    }
+
+    private static long resolveCacheBytes() {
+        if (JamProperties.isSet(CACHE_BYTES_PROPERTY))
+            return Long.parseLong(JamProperties.getRequired(CACHE_BYTES_PROPERTY));
+        else
+            return CACHE_BYTES_DEFAULT;
+    }
+
+    private MAFFastaList parse(TumorBarcode barcode) {
+        return load(fastaFile(barcode));
+    }
+
+    private static int weigh(MAFFastaList records) {
+        long bytes = 0;
+
+        for (MAFFastaRecord record : records)
+            bytes += BYTES_PER_RECORD + BYTES_PER_RESIDUE * record.getPeptide().length();
+
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
     }
 
     /**
@@ -72,7 +143,8 @@ public final class MissenseManager {
     }
 
     /**
-     * Loads the FASTA records for a given tumor sample.
+     * Loads the FASTA records for a given tumor sample (or retrieves
+     * them from the record cache).
      *
      * @param barcode the barcode of the desired tumor sample.
      *
@@ -80,14 +152,38 @@ public final class MissenseManager {
      * (an empty list if the sample is not found).
      */
     public MAFFastaList load(TumorBarcode barcode) {
-        File file = fastaFile(barcode);
-
-        if (file.canRead())
-            return load(file);
+        if (fastaFile(barcode).canRead())
+            return cache.get(barcode);
         else
             return MAFFastaList.EMPTY;
     }
 
+    /**
+     * Loads the FASTA records for the next tumor samples to be
+     * processed in the background.
+     *
+     * @param barcodes the barcodes of the tumor samples to be
+     * processed, in order of processing.
+     *
+     * @param count the maximum number of files to prefetch.
+     *
+     * @return a future that completes when the prefetched records
+     * have been loaded.
+     */
+    public CompletableFuture<Void> prefetch(Collection<TumorBarcode> barcodes, int count) {
+        return cache.prefetch(barcodes.stream().filter(this::exists).limit(count).collect(Collectors.toList()), count);
+    }
+
+    /**
+     * Returns the hit, miss, and eviction statistics for the record
+     * cache.
+     *
+     * @return a snapshot of the statistics for the record cache.
+     */
+    public CacheStats cacheStats() {
+        return cache.stats();
+    }
+
     private static MAFFastaList load(File file) {
         Collection<MAFFastaRecord> mafRecords = new ArrayList<MAFFastaRecord>();
         JamLogger.info("Loading missense FASTA file [%s]...", file.getName());
@@ -113,6 +209,7 @@ public final class MissenseManager {
      */
     public void store(TumorBarcode barcode, Collection<MAFFastaRecord> records) {
         store(fastaFile(barcode), records);
+        cache.invalidate(barcode);
     }
 
     private static void store(File file, Collection<MAFFastaRecord> records) {
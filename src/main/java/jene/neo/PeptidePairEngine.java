@@ -31,6 +31,7 @@ public final class PeptidePairEngine {
 
     private static HugoMaster hugoMaster = null;
     private static EnsemblProteinDb ensemblDb = null;
+    private static SelfPeptideFilter selfFilter = null;
 
     private PeptidePairEngine(MissenseGroup missenseGroup, int... peptideLengths) {
         this.missenseGroup = missenseGroup;
@@ -50,8 +51,27 @@ public final class PeptidePairEngine {
      * @param ensemblDb the Ensembl protein database.
      */
     public static void initialize(HugoMaster hugoMaster, EnsemblProteinDb ensemblDb) {
+        initialize(hugoMaster, ensemblDb, null);
+    }
+
+    /**
+     * Assigns the shared data structures that are used to process all
+     * mutation groups, including a self-peptide filter that screens
+     * out neo-peptides that also occur in the native proteome.  This
+     * method (or its two-argument form) must be called before any
+     * groups are processed.
+     *
+     * @param hugoMaster the mapping from HUGO symbols to Ensembl genes.
+     *
+     * @param ensemblDb the Ensembl protein database.
+     *
+     * @param selfFilter the self-peptide filter ({@code null} to keep
+     * all pairs).
+     */
+    public static void initialize(HugoMaster hugoMaster, EnsemblProteinDb ensemblDb, SelfPeptideFilter selfFilter) {
         PeptidePairEngine.ensemblDb = ensemblDb;
         PeptidePairEngine.hugoMaster = hugoMaster;
+        PeptidePairEngine.selfFilter = selfFilter;
     }
 
     /**
@@ -134,6 +154,14 @@ public final class PeptidePairEngine {
         
         for (UnitIndexRange fragmentRange : fragmentRanges) {
             NeoPeptide neoPeptide = NeoPeptide.instance(mutatedPeptide.fragment(fragmentRange));
+
+            //
+            // A mutated fragment that occurs elsewhere in the native
+            // proteome is not foreign to the immune system...
+            //
+            if (selfFilter != null && selfFilter.isSelf(neoPeptide.getPeptide()))
+                continue;
+
             SelfPeptide selfPeptide = SelfPeptide.instance(nativePeptide.fragment(fragmentRange));
 
             PeptidePairRecord pairRecord =
@@ -0,0 +1,396 @@
+
+package jene.neo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import jam.app.JamLogger;
+
+import jene.ensembl.EnsemblProteinDb;
+import jene.peptide.Peptide;
+import jene.peptide.PeptideCode;
+import jene.peptide.PeptideCodeSet;
+
+/**
+ * Screens peptides against the self-peptidome (all native fragments
+ * of the proteins in an Ensembl database) with a Bloom filter.
+ *
+ * <p>The filter never reports a self-peptide as foreign, but it may
+ * report a foreign peptide as self with a small, configurable false
+ * positive rate.  An optional exact confirmation step eliminates the
+ * false positives: attach the exact self-peptidome with
+ * {@link #confirmWith(PeptideCodeSet)}.
+ *
+ * <p>Peptides are screened by their packed {@link PeptideCode}, so
+ * only encodable peptides (native residues only, at most
+ * {@code PeptideCode.MAX_LENGTH} = 12 residues) are screened: other
+ * peptides are never reported as self.
+ *
+ * <p>Filters are built in parallel and may be stored in a compact
+ * binary file, which may later be loaded onto the heap or mapped
+ * into memory directly (so that several processes may share one
+ * filter without reading it).
+ */
+public final class SelfPeptideFilter {
+    private final int hashCount;
+    private final long bitMask;
+    private final LongBuffer bits;
+    private final PeptideCodeSet confirmation;
+
+    private SelfPeptideFilter(int hashCount, long bitMask, LongBuffer bits, PeptideCodeSet confirmation) {
+        this.hashCount = hashCount;
+        this.bitMask = bitMask;
+        this.bits = bits;
+        this.confirmation = confirmation;
+    }
+
+    // Identifies filter files; the bit array follows the header...
+    private static final int MAGIC = 0x4a535046;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+
+    // A single mapped buffer addresses at most Integer.MAX_VALUE
+    // bytes, so the bit array (a power of two) is limited to 1 GiB,
+    // enough for several hundred million self-peptides at the default
+    // false positive rate...
+    private static final long MAX_BIT_COUNT = 1L << 33;
+
+    // The optimal hash count is -log2(p) for false positive rate p,
+    // which does not exceed about 1075 for any positive double; larger
+    // stored values indicate a corrupt file...
+    private static final int MAX_HASH_COUNT = 1 << 11;
+
+    private static final VarHandle BIT_WORD =
+        MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * The default false positive rate.
+     */
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.001;
+
+    /**
+     * Builds a filter containing all native fragments of the proteins
+     * in an Ensembl database, processing the proteins in parallel.
+     *
+     * @param ensemblDb the Ensembl protein database.
+     *
+     * @param falsePositiveRate the desired false positive rate.
+     *
+     * @param lengths the self-peptide lengths to include.
+     *
+     * @return a filter containing the self-peptidome of the specified
+     * database.
+     *
+     * @throws IllegalArgumentException unless the false positive rate
+     * lies in the open interval {@code (0, 1)}, each length is
+     * positive and does not exceed {@code PeptideCode.MAX_LENGTH},
+     * and the filter fits in a single mapped buffer (1 GiB).
+     */
+    public static SelfPeptideFilter build(EnsemblProteinDb ensemblDb, double falsePositiveRate, int... lengths) {
+        if (falsePositiveRate <= 0.0 || falsePositiveRate >= 1.0)
+            throw new IllegalArgumentException("The false positive rate must lie in the interval (0, 1).");
+
+        //
+        // The number of fragments (with duplicates) is an upper bound
+        // on the number of distinct self-peptides...
+        //
+        long expectedSize = 0;
+
+        for (int length : lengths)
+            expectedSize += ensemblDb.viewRecords().stream().mapToLong(record -> fragmentCount(record.getPeptide(), length)).sum();
+
+        //
+        // Optimal Bloom filter parameters: m = -n ln(p) / (ln 2)^2
+        // bits and k = (m / n) ln 2 hash functions, with the bit count
+        // rounded up to a power of two so that positions may be masked...
+        //
+        double ln2 = Math.log(2.0);
+        double optimalBits = -Math.max(1, expectedSize) * Math.log(falsePositiveRate) / (ln2 * ln2);
+
+        long bitCount = Long.highestOneBit(Math.max(Long.SIZE, (long) Math.ceil(optimalBits)) - 1) << 1;
+        int hashCount = Math.max(1, (int) Math.round(optimalBits / Math.max(1, expectedSize) * ln2));
+
+        if (bitCount > MAX_BIT_COUNT)
+            throw new IllegalArgumentException(String.format("Self-peptidome too large for a single filter: "
+                                                             + "[%d] bits required, [%d] allowed.", bitCount, MAX_BIT_COUNT));
+
+        JamLogger.info("Building self-peptide filter: [%d] fragments, [%d] bits, [%d] hashes...",
+                       expectedSize, bitCount, hashCount);
+
+        long[] words = new long[(int) (bitCount / Long.SIZE)];
+        long bitMask = bitCount - 1;
+
+        ensemblDb.viewRecords().parallelStream().forEach(record -> {
+                for (int length : lengths)
+                    for (long code : PeptideCode.fragments(record.getPeptide(), length))
+                        addCode(words, bitMask, hashCount, code);
+            });
+
+        return new SelfPeptideFilter(hashCount, bitMask, LongBuffer.wrap(words), null);
+    }
+
+    private static int fragmentCount(Peptide peptide, int length) {
+        return Math.max(0, peptide.length() - length + 1);
+    }
+
+    private static void addCode(long[] words, long bitMask, int hashCount, long code) {
+        long hash1 = mix(code);
+        long hash2 = mix(hash1) | 1L;
+
+        for (int k = 0; k < hashCount; ++k) {
+            long bit = (hash1 + k * hash2) & bitMask;
+            BIT_WORD.getAndBitwiseOr(words, (int) (bit >>> 6), 1L << bit);
+        }
+    }
+
+    // The finalization step of the SplitMix64 generator...
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * Builds the exact self-peptidome for an Ensembl database: all
+     * native fragments of its proteins with the specified lengths.
+     *
+     * @param ensemblDb the Ensembl protein database.
+     *
+     * @param lengths the self-peptide lengths to include.
+     *
+     * @return the exact self-peptidome of the specified database.
+     *
+     * @throws IllegalArgumentException unless each length is positive
+     * and does not exceed {@code PeptideCode.MAX_LENGTH}.
+     */
+    public static PeptideCodeSet buildExact(EnsemblProteinDb ensemblDb, int... lengths) {
+        long[] codes =
+            ensemblDb.viewRecords()
+            .parallelStream()
+            .flatMapToLong(record -> Arrays.stream(lengths).mapToObj(length -> PeptideCode.fragments(record.getPeptide(), length)).flatMapToLong(Arrays::stream))
+            .toArray();
+
+        return PeptideCodeSet.create(codes);
+    }
+
+    /**
+     * Loads a filter from a binary file onto the heap.
+     *
+     * @param file the file containing the filter.
+     *
+     * @return the filter stored in the specified file.
+     *
+     * @throws RuntimeException unless the file contains a valid filter.
+     */
+    public static SelfPeptideFilter load(File file) {
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            int hashCount = readHeader(input, file);
+            long bitCount = readBitCount(input, file);
+
+            long[] words = new long[(int) (bitCount / Long.SIZE)];
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+            for (int index = 0; index < words.length; ) {
+                int chunk = Math.min(words.length - index, buffer.capacity() / Long.BYTES);
+
+                buffer.clear();
+                input.readFully(buffer.array(), 0, chunk * Long.BYTES);
+                buffer.asLongBuffer().get(words, index, chunk);
+
+                index += chunk;
+            }
+
+            return new SelfPeptideFilter(hashCount, bitCount - 1, LongBuffer.wrap(words), null);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Maps a filter stored in a binary file directly into memory; the
+     * filter occupies no heap space.
+     *
+     * @param file the file containing the filter.
+     *
+     * @return the filter stored in the specified file.
+     *
+     * @throws RuntimeException unless the file contains a valid filter.
+     */
+    public static SelfPeptideFilter map(File file) {
+        int hashCount;
+        long bitCount;
+
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            hashCount = readHeader(input, file);
+            bitCount = readBitCount(input, file);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            //
+            // The mapping remains valid after the channel is closed...
+            //
+            LongBuffer bits =
+                channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, bitCount / Byte.SIZE).asLongBuffer();
+
+            return new SelfPeptideFilter(hashCount, bitCount - 1, bits, null);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static int readHeader(DataInputStream input, File file) throws IOException {
+        if (input.readInt() != MAGIC || input.readInt() != VERSION)
+            throw new IllegalArgumentException(String.format("File [%s] does not contain a self-peptide filter.", file));
+
+        input.readInt(); // Reserved...
+        int hashCount = input.readInt();
+
+        //
+        // With no hash functions, every code would pass the filter
+        // and every peptide would be reported as self...
+        //
+        if (hashCount < 1 || hashCount > MAX_HASH_COUNT)
+            throw new IllegalArgumentException(String.format("File [%s] has an invalid filter hash count: [%d].", file, hashCount));
+
+        return hashCount;
+    }
+
+    private static long readBitCount(DataInputStream input, File file) throws IOException {
+        long bitCount = input.readLong();
+
+        if (bitCount < Long.SIZE || bitCount > MAX_BIT_COUNT || Long.bitCount(bitCount) != 1)
+            throw new IllegalArgumentException(String.format("File [%s] has an invalid filter size: [%d] bits.", file, bitCount));
+
+        return bitCount;
+    }
+
+    /**
+     * Returns a filter that confirms every positive result against
+     * the exact self-peptidome, eliminating false positives.
+     *
+     * @param selfPeptidome the exact self-peptidome.
+     *
+     * @return a filter that shares the bit array of this filter and
+     * confirms its positive results against the exact self-peptidome.
+     */
+    public SelfPeptideFilter confirmWith(PeptideCodeSet selfPeptidome) {
+        return new SelfPeptideFilter(hashCount, bitMask, bits, selfPeptidome);
+    }
+
+    /**
+     * Identifies self-peptides.
+     *
+     * @param peptide the peptide to examine.
+     *
+     * @return {@code false} if the peptide is definitely not a member
+     * of the self-peptidome or cannot be encoded (e.g., it is longer
+     * than {@code PeptideCode.MAX_LENGTH} residues, and therefore is
+     * never screened); {@code true} if it is a member, or (if this
+     * filter has no exact confirmation step) with the false positive
+     * rate if it is not.
+     */
+    public boolean isSelf(Peptide peptide) {
+        if (!PeptideCode.isEncodable(peptide))
+            return false;
+
+        long code = PeptideCode.encode(peptide);
+
+        if (!mightContain(code))
+            return false;
+
+        return confirmation == null || confirmation.containsCode(code);
+    }
+
+    /**
+     * Tests the Bloom filter alone (without exact confirmation).
+     *
+     * @param code the packed code of the peptide to examine.
+     *
+     * @return {@code false} if the peptide is definitely not a member
+     * of the self-peptidome; {@code true} if it may be a member.
+     */
+    public boolean mightContain(long code) {
+        long hash1 = mix(code);
+        long hash2 = mix(hash1) | 1L;
+
+        for (int k = 0; k < hashCount; ++k) {
+            long bit = (hash1 + k * hash2) & bitMask;
+
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the number of bits in this filter.
+     *
+     * @return the number of bits in this filter.
+     */
+    public long bitCount() {
+        return bitMask + 1;
+    }
+
+    /**
+     * Returns the number of hash functions used by this filter.
+     *
+     * @return the number of hash functions used by this filter.
+     */
+    public int hashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Identifies filters with an exact confirmation step.
+     *
+     * @return {@code true} iff this filter confirms positive results
+     * against the exact self-peptidome.
+     */
+    public boolean isExact() {
+        return confirmation != null;
+    }
+
+    /**
+     * Stores this filter (but not its exact confirmation set) in a
+     * binary file.
+     *
+     * @param file the file to write.
+     *
+     * @throws RuntimeException if any I/O errors occur.
+     */
+    public void store(File file) {
+        try (DataOutputStream output =
+             new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(0);
+            output.writeInt(hashCount);
+            output.writeLong(bitCount());
+
+            for (int index = 0; index < bits.limit(); ++index)
+                output.writeLong(bits.get(index));
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+
+package jene.peptide;
+
+import java.util.Arrays;
+
+/**
+ * Maps packed peptide codes to concentrations in an open-addressing
+ * hash table of primitive arrays (linear probing, power-of-two
+ * capacity), so that entries cost sixteen bytes plus the free slots
+ * and accumulation happens in place.
+ *
+ * <p>Valid peptide codes are always positive, so the zero code marks
+ * an empty slot.
+ */
+final class CodeConcentrationTable {
+    private long[] codes;
+    private double[] levels;
+    private int size = 0;
+
+    // The fraction of occupied slots that triggers a resize...
+    private static final double MAX_LOAD = 0.7;
+
+    CodeConcentrationTable(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int size) {
+        int minCapacity = (int) Math.ceil(Math.max(1, size) / MAX_LOAD);
+        return Math.max(16, Integer.highestOneBit(minCapacity - 1) << 1);
+    }
+
+    private void allocate(int capacity) {
+        this.codes = new long[capacity];
+        this.levels = new double[capacity];
+    }
+
+    void add(long code, double level) {
+        int slot = slot(code);
+
+        if (codes[slot] == 0) {
+            codes[slot] = code;
+            levels[slot] = level;
+
+            if (++size > MAX_LOAD * codes.length)
+                resize();
+        }
+        else {
+            levels[slot] += level;
+        }
+    }
+
+    boolean contains(long code) {
+        return code > 0 && codes[slot(code)] != 0;
+    }
+
+    double get(long code) {
+        if (code <= 0)
+            return 0.0;
+
+        int slot = slot(code);
+
+        if (codes[slot] != 0)
+            return levels[slot];
+        else
+            return 0.0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long[] sortedCodes() {
+        long[] result = new long[size];
+        int count = 0;
+
+        for (long code : codes)
+            if (code != 0)
+                result[count++] = code;
+
+        Arrays.sort(result);
+        return result;
+    }
+
+    private int slot(long code) {
+        int mask = codes.length - 1;
+        int slot = (int) mix(code) & mask;
+
+        while (codes[slot] != 0 && codes[slot] != code)
+            slot = (slot + 1) & mask;
+
+        return slot;
+    }
+
+    // The finalization step of the SplitMix64 generator: packed codes
+    // differ mostly in their low-order bits, so they must be mixed
+    // before masking...
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    private void resize() {
+        long[] oldCodes = codes;
+        double[] oldLevels = levels;
+
+        allocate(2 * oldCodes.length);
+
+        for (int index = 0; index < oldCodes.length; ++index) {
+            if (oldCodes[index] != 0) {
+                int slot = slot(oldCodes[index]);
+
+                codes[slot] = oldCodes[index];
+                levels[slot] = oldLevels[index];
+            }
+        }
+    }
+}
@@ -0,0 +1,316 @@
+
+package jene.peptide;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import jam.app.JamLogger;
+
+import jene.chem.Concentration;
+
+/**
+ * Maps peptides to cellular concentrations with primitive storage.
+ *
+ * <p>Peptides are stored as packed codes (see {@link PeptideCode})
+ * in an open-addressing table of primitive arrays, so each entry
+ * costs roughly twenty bytes rather than a hash map entry, a peptide
+ * object, and a {@code Concentration} object.  Only encodable
+ * peptides (native residues, at most {@code PeptideCode.MAX_LENGTH}
+ * residues) may appear in a compact profile.
+ *
+ * <p>Compact profiles may be stored in a binary file: a header
+ * followed by the sorted peptide codes and their concentrations,
+ * which are read in bulk on loading.
+ */
+public final class CompactConcentrationProfile {
+    private final CodeConcentrationTable table;
+
+    CompactConcentrationProfile(CodeConcentrationTable table) {
+        this.table = table;
+    }
+
+    // Identifies binary profile files; the codes and levels follow...
+    private static final int MAGIC = 0x4a504350;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    private static final int ENTRY_BYTES = Long.BYTES + Double.BYTES;
+
+    /**
+     * The single empty compact profile.
+     */
+    public static final CompactConcentrationProfile EMPTY =
+        new CompactConcentrationProfile(new CodeConcentrationTable(0));
+
+    /**
+     * Copies a peptide concentration profile into compact storage.
+     *
+     * @param profile the profile to copy.
+     *
+     * @return a compact profile with the same concentrations as the
+     * input profile.
+     *
+     * @throws IllegalArgumentException unless every peptide in the
+     * input profile is encodable.
+     */
+    public static CompactConcentrationProfile copyOf(PeptideConcentrationProfile profile) {
+        CodeConcentrationTable table = new CodeConcentrationTable(profile.size());
+
+        for (Map.Entry<Peptide, Concentration> entry : profile.viewEntries())
+            table.add(PeptideCode.encode(entry.getKey()), entry.getValue().doubleValue());
+
+        return new CompactConcentrationProfile(table);
+    }
+
+    /**
+     * Loads a compact profile from a binary file.
+     *
+     * @param file the file to load.
+     *
+     * @return the compact profile stored in the specified file.
+     *
+     * @throws RuntimeException unless the file contains a valid
+     * compact profile.
+     */
+    public static CompactConcentrationProfile load(File file) {
+        int size;
+
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION)
+                throw new IllegalArgumentException(String.format("File [%s] does not contain a compact concentration profile.", file));
+
+            size = input.readInt();
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            //
+            // Validate the entry count against the file length before
+            // allocating anything (in long arithmetic, so that neither
+            // a corrupt count nor a very large profile overflows)...
+            //
+            long payloadBytes = (long) size * ENTRY_BYTES;
+
+            if (size < 0 || payloadBytes != channel.size() - HEADER_BYTES)
+                throw new IllegalArgumentException(String.format("File [%s] has invalid length for [%d] entries.", file, size));
+
+            if (payloadBytes > Integer.MAX_VALUE)
+                throw new IllegalArgumentException(String.format("File [%s] is too large to load: [%d] entries.", file, size));
+
+            //
+            // Read the codes and levels in bulk...
+            //
+            ByteBuffer buffer = ByteBuffer.allocate((int) payloadBytes);
+            channel.position(HEADER_BYTES);
+
+            while (buffer.hasRemaining())
+                if (channel.read(buffer) < 0)
+                    throw new IllegalArgumentException(String.format("File [%s] is truncated.", file));
+
+            buffer.flip();
+
+            long[] codes = new long[size];
+            double[] levels = new double[size];
+
+            LongBuffer codeBuffer = buffer.asLongBuffer();
+            codeBuffer.get(codes);
+
+            buffer.position(size * Long.BYTES);
+            DoubleBuffer levelBuffer = buffer.asDoubleBuffer();
+            levelBuffer.get(levels);
+
+            CodeConcentrationTable table = new CodeConcentrationTable(size);
+
+            //
+            // The codes are stored in sorted order; zero marks empty
+            // table slots, and duplicate codes would be summed, so any
+            // code not greater than its predecessor is corrupt...
+            //
+            long previous = 0L;
+
+            for (int index = 0; index < size; ++index) {
+                if (codes[index] <= previous)
+                    throw new IllegalArgumentException(String.format("File [%s] contains an invalid or unsorted peptide code at entry [%d].", file, index));
+
+                table.add(codes[index], levels[index]);
+                previous = codes[index];
+            }
+
+            return new CompactConcentrationProfile(table);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Loads a compact profile from a binary file.
+     *
+     * @param fileName the name of the file to load.
+     *
+     * @return the compact profile stored in the specified file.
+     *
+     * @throws RuntimeException unless the file contains a valid
+     * compact profile.
+     */
+    public static CompactConcentrationProfile load(String fileName) {
+        return load(new File(fileName));
+    }
+
+    /**
+     * Identifies peptides in this profile.
+     *
+     * @param peptide the peptide of interest.
+     *
+     * @return {@code true} iff this profile contains the specified
+     * peptide.
+     */
+    public boolean contains(Peptide peptide) {
+        return PeptideCode.isEncodable(peptide) && table.contains(PeptideCode.encode(peptide));
+    }
+
+    /**
+     * Identifies peptides in this profile by their packed codes.
+     *
+     * @param code the packed code of the peptide of interest.
+     *
+     * @return {@code true} iff this profile contains the peptide with
+     * the specified code.
+     */
+    public boolean containsCode(long code) {
+        return table.contains(code);
+    }
+
+    /**
+     * Returns the concentration of a given peptide.
+     *
+     * @param peptide the peptide of interest.
+     *
+     * @return the concentration of the specified peptide
+     * ({@code Concentration.ZERO}, not {@code null}, if this profile
+     * does not contain the given peptide).
+     */
+    public Concentration get(Peptide peptide) {
+        return Concentration.valueOf(getDouble(peptide));
+    }
+
+    /**
+     * Returns the concentration of a given peptide as a primitive
+     * value.
+     *
+     * @param peptide the peptide of interest.
+     *
+     * @return the concentration of the specified peptide (zero if
+     * this profile does not contain the given peptide).
+     */
+    public double getDouble(Peptide peptide) {
+        if (PeptideCode.isEncodable(peptide))
+            return table.get(PeptideCode.encode(peptide));
+        else
+            return 0.0;
+    }
+
+    /**
+     * Returns the concentration of a peptide identified by its packed
+     * code.
+     *
+     * @param code the packed code of the peptide of interest.
+     *
+     * @return the concentration of the peptide with the specified
+     * code (zero if this profile does not contain the peptide).
+     */
+    public double getDouble(long code) {
+        return table.get(code);
+    }
+
+    /**
+     * Returns the packed codes of the peptides in this profile.
+     *
+     * @return the packed codes of the peptides in this profile in a
+     * new array sorted in ascending order.
+     */
+    public long[] codes() {
+        return table.sortedCodes();
+    }
+
+    /**
+     * Returns the number of peptides in this profile.
+     *
+     * @return the number of peptides in this profile.
+     */
+    public int size() {
+        return table.size();
+    }
+
+    /**
+     * Stores this profile in a binary file.
+     *
+     * @param file the file to write (previous contents will be
+     * erased).
+     *
+     * @throws RuntimeException if any I/O errors occur.
+     */
+    public void store(File file) {
+        JamLogger.info("Storing compact concentration profile [%s]...", file.getName());
+
+        long[] codes = table.sortedCodes();
+
+        try (DataOutputStream output =
+             new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(codes.length);
+
+            for (long code : codes)
+                output.writeLong(code);
+
+            for (long code : codes)
+                output.writeDouble(table.get(code));
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Stores this profile in a binary file.
+     *
+     * @param fileName the name of the file to write (previous
+     * contents will be erased).
+     *
+     * @throws RuntimeException if any I/O errors occur.
+     */
+    public void store(String fileName) {
+        store(new File(fileName));
+    }
+
+    /**
+     * Expands this profile into a map-based profile.
+     *
+     * @return a peptide concentration profile with the same
+     * concentrations as this profile.
+     */
+    public PeptideConcentrationProfile toProfile() {
+        long[] codes = table.sortedCodes();
+        Map<Peptide, Concentration> map = new HashMap<Peptide, Concentration>(2 * codes.length);
+
+        for (long code : codes)
+            map.put(PeptideCode.decode(code), Concentration.valueOf(table.get(code)));
+
+        return PeptideConcentrationProfile.create(map);
+    }
+}
@@ -0,0 +1,373 @@
+
+package jene.peptide;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+
+import jam.app.JamLogger;
+import jam.io.IOUtil;
+
+import jene.fasta.FastaPeptideReader;
+import jene.fasta.FastaPeptideRecord;
+
+/**
+ * Chops the proteins in a FASTA file into unique native fragments of
+ * several lengths in a single pass, within a fixed memory budget.
+ *
+ * <p>Proteins are read in batches and chopped in parallel into packed
+ * peptide codes (see {@link PeptideCode}), which are accumulated in
+ * one buffer per fragment length.  When the buffers exceed the memory
+ * budget, each buffer is sorted, deduplicated, and spilled to disk as
+ * a sorted run.  Finally, the runs for each length are combined by a
+ * k-way merge that removes duplicates and writes the fragments in
+ * alphabetical order to one output file per length.
+ */
+final class MultiLengthChopper {
+    private final String inputFile;
+    private final String outputPrefix;
+    private final int minLength;
+    private final int maxLength;
+    private final int bufferCapacity;
+
+    // Indexed by (length - minLength)...
+    private final long[][] buffers;
+    private final int[] bufferSizes;
+    private final List<List<File>> runFiles;
+
+    private int bufferTotal = 0;
+    private int proteinsProcessed = 0;
+
+    private MultiLengthChopper(String inputFile, String outputPrefix, int minLength, int maxLength, long memoryBudget) {
+        if (minLength < 1 || maxLength < minLength || maxLength > PeptideCode.MAX_LENGTH)
+            throw new IllegalArgumentException("Invalid fragment length range.");
+
+        this.inputFile = inputFile;
+        this.outputPrefix = outputPrefix;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+
+        // The parallel sort requires a work array as large as the
+        // array being sorted, so each buffered code costs 16 bytes...
+        this.bufferCapacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1L, memoryBudget / 16));
+
+        int lengthCount = maxLength - minLength + 1;
+
+        this.buffers = new long[lengthCount][];
+        this.bufferSizes = new int[lengthCount];
+        this.runFiles = new ArrayList<List<File>>(lengthCount);
+
+        for (int index = 0; index < lengthCount; ++index) {
+            buffers[index] = new long[1024];
+            runFiles.add(new ArrayList<File>());
+        }
+    }
+
+    private static final int BATCH_SIZE = 1024;
+    private static final int LOG_INTERVAL = 1000;
+
+    /**
+     * The default memory budget for buffered fragment codes, in bytes.
+     */
+    static final long DEFAULT_MEMORY_BUDGET = 1L << 30;
+
+    /**
+     * Returns the name of the output file for fragments of a given
+     * length.
+     *
+     * @param outputPrefix the prefix for all output files.
+     *
+     * @param length the fragment length.
+     *
+     * @return the name of the output file for fragments with the
+     * specified length.
+     */
+    static String outputFile(String outputPrefix, int length) {
+        return String.format("%s_%d.txt", outputPrefix, length);
+    }
+
+    /**
+     * Chops the proteins in a FASTA file into unique native fragments
+     * and writes the fragments of each length to a separate file.
+     *
+     * @param inputFile the FASTA file containing the proteins.
+     *
+     * @param outputPrefix the prefix for the output files (see
+     * {@link #outputFile(String, int)}).
+     *
+     * @param minLength the minimum fragment length.
+     *
+     * @param maxLength the maximum fragment length.
+     *
+     * @param memoryBudget the maximum number of bytes to devote to
+     * buffered fragment codes before spilling them to disk.
+     *
+     * @throws IllegalArgumentException unless the length range is
+     * valid and does not exceed {@code PeptideCode.MAX_LENGTH}.
+     *
+     * @throws UncheckedIOException if any I/O errors occur.
+     */
+    static void run(String inputFile, String outputPrefix, int minLength, int maxLength, long memoryBudget) {
+        MultiLengthChopper chopper =
+            new MultiLengthChopper(inputFile, outputPrefix, minLength, maxLength, memoryBudget);
+
+        try {
+            chopper.generateFragments();
+            chopper.writeFragments();
+        }
+        finally {
+            chopper.deleteRuns();
+        }
+    }
+
+    private void generateFragments() {
+        FastaPeptideReader reader = FastaPeptideReader.open(inputFile);
+        List<Peptide> batch = new ArrayList<Peptide>(BATCH_SIZE);
+
+        for (FastaPeptideRecord record : reader) {
+            batch.add(record.getPeptide());
+
+            if (batch.size() == BATCH_SIZE) {
+                processBatch(batch);
+                batch.clear();
+            }
+        }
+
+        processBatch(batch);
+        reader.close();
+    }
+
+    private void processBatch(List<Peptide> batch) {
+        List<long[][]> fragments =
+            batch.parallelStream().map(peptide -> chop(peptide)).collect(Collectors.toList());
+
+        for (long[][] proteinFragments : fragments) {
+            for (int index = 0; index < proteinFragments.length; ++index)
+                append(index, proteinFragments[index]);
+
+            ++proteinsProcessed;
+
+            if (proteinsProcessed % LOG_INTERVAL == 0)
+                JamLogger.info("Processed [%d] proteins...", proteinsProcessed);
+        }
+    }
+
+    private long[][] chop(Peptide peptide) {
+        //
+        // Each code is extended one residue at a time from each
+        // starting position, so all lengths are generated in a
+        // single pass; fragments are truncated at the first
+        // non-native residue...
+        //
+        int lengthCount = maxLength - minLength + 1;
+        int startCount  = Math.max(0, peptide.length() - minLength + 1);
+
+        long[][] codes = new long[lengthCount][startCount];
+        int[] counts = new int[lengthCount];
+
+        for (int start = 0; start < startCount; ++start) {
+            long code = 0;
+            int end = Math.min(peptide.length(), start + maxLength);
+
+            for (int index = start; index < end; ++index) {
+                Residue residue = peptide.get(index);
+
+                if (!residue.isNative())
+                    break;
+
+                code = PeptideCode.append(code, residue);
+
+                int length = index - start + 1;
+
+                if (length >= minLength)
+                    codes[length - minLength][counts[length - minLength]++] = code;
+            }
+        }
+
+        for (int index = 0; index < lengthCount; ++index)
+            codes[index] = Arrays.copyOf(codes[index], counts[index]);
+
+        return codes;
+    }
+
+    private void append(int index, long[] codes) {
+        if (bufferTotal + codes.length > bufferCapacity)
+            spill();
+
+        int size = bufferSizes[index];
+
+        if (size + codes.length > buffers[index].length)
+            buffers[index] = Arrays.copyOf(buffers[index], Math.max(2 * buffers[index].length, size + codes.length));
+
+        System.arraycopy(codes, 0, buffers[index], size, codes.length);
+
+        bufferSizes[index] += codes.length;
+        bufferTotal += codes.length;
+    }
+
+    private void spill() {
+        JamLogger.info("Spilling [%d] fragments to disk...", bufferTotal);
+
+        for (int index = 0; index < buffers.length; ++index) {
+            if (bufferSizes[index] > 0)
+                runFiles.get(index).add(writeRun(sortUnique(index)));
+
+            //
+            // Release the memory, since the buffers for the different
+            // lengths may grow at different rates...
+            //
+            buffers[index] = new long[1024];
+            bufferSizes[index] = 0;
+        }
+
+        bufferTotal = 0;
+    }
+
+    private long[] sortUnique(int index) {
+        long[] codes = Arrays.copyOf(buffers[index], bufferSizes[index]);
+        buffers[index] = null;
+
+        return PeptideCodeSet.sortUniqueCodes(codes);
+    }
+
+    private static File writeRun(long[] codes) {
+        try {
+            File file = File.createTempFile("jene-chopper-", ".run");
+            file.deleteOnExit();
+
+            try (DataOutputStream output =
+                 new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                output.writeInt(codes.length);
+
+                for (long code : codes)
+                    output.writeLong(code);
+            }
+
+            return file;
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void writeFragments() {
+        for (int index = 0; index < buffers.length; ++index) {
+            int length = minLength + index;
+            String outputFile = outputFile(outputPrefix, length);
+
+            JamLogger.info("Writing %d-mer fragments to [%s]...", length, outputFile);
+            PrintWriter writer = IOUtil.openWriter(outputFile);
+
+            if (runFiles.get(index).isEmpty())
+                writeCodes(writer, sortUnique(index));
+            else
+                mergeRuns(writer, index);
+
+            writer.close();
+        }
+    }
+
+    private static void writeCodes(PrintWriter writer, long[] codes) {
+        for (long code : codes)
+            writer.println(PeptideCode.format(code));
+    }
+
+    private void mergeRuns(PrintWriter writer, int index) {
+        List<File> files = runFiles.get(index);
+
+        if (bufferSizes[index] > 0)
+            files.add(writeRun(sortUnique(index)));
+
+        PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(files.size());
+
+        try {
+            for (File file : files) {
+                RunReader reader = new RunReader(file);
+
+                if (reader.advance())
+                    queue.add(reader);
+                else
+                    reader.close();
+            }
+
+            long previous = 0;
+
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+
+                if (reader.current != previous) {
+                    writer.println(PeptideCode.format(reader.current));
+                    previous = reader.current;
+                }
+
+                if (reader.advance())
+                    queue.add(reader);
+                else
+                    reader.close();
+            }
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        finally {
+            for (RunReader reader : queue)
+                reader.closeQuietly();
+        }
+    }
+
+    private void deleteRuns() {
+        for (List<File> files : runFiles)
+            for (File file : files)
+                file.delete();
+    }
+
+    private static final class RunReader implements Comparable<RunReader> {
+        private final DataInputStream input;
+        private int remaining;
+        private long current;
+
+        RunReader(File file) throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            this.remaining = input.readInt();
+        }
+
+        boolean advance() throws IOException {
+            if (remaining == 0)
+                return false;
+
+            current = input.readLong();
+            --remaining;
+
+            return true;
+        }
+
+        void close() throws IOException {
+            input.close();
+        }
+
+        void closeQuietly() {
+            try {
+                input.close();
+            }
+            catch (IOException ex) {
+                JamLogger.warn(ex);
+            }
+        }
+
+        @Override public int compareTo(RunReader that) {
+            return Long.compare(this.current, that.current);
+        }
+    }
+}
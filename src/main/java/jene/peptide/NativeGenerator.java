@@ -1,50 +1,44 @@
-
 package jene.peptide;
 
-import java.util.Set;
-import java.util.TreeSet;
-
-import jam.app.JamLogger;
+import jam.math.JamRandom;
 
 public final class NativeGenerator {
     private final int peptideCount;
     private final int peptideLength;
-    private final Set<String> nativePeptides;
+    private final long randomSeed;
 
-    private NativeGenerator(int peptideCount, int peptideLength) {
+    private NativeGenerator(int peptideCount, int peptideLength, long randomSeed) {
         this.peptideCount = peptideCount;
         this.peptideLength = peptideLength;
-        this.nativePeptides = new TreeSet<String>();
+        this.randomSeed = randomSeed;
     }
 
     private void run() {
-        generatePeptides();
-        writePeptides();
-    }
-
-    private void generatePeptides() {
-        while (nativePeptides.size() < peptideCount)
-            nativePeptides.add(Peptide.newNative(peptideLength).formatString());
-    }
-
-    private void writePeptides() {
-        for (String peptide : nativePeptides)
-            System.out.println(peptide);
+        //
+        // The peptides are generated in parallel; the packed codes for
+        // peptides of equal length sort in the same order as their
+        // string representations...
+        //
+        PeptideCodeSet nativePeptides =
+            PeptideGenerator.create(randomSeed).generateNative(peptideLength, peptideCount);
+
+        nativePeptides.codeStream().forEachOrdered(code -> System.out.println(PeptideCode.format(code)));
     }
 
     private static void usage() {
-        System.err.println("Usage: java jene.peptide.NativeGenerator PEPTIDE_COUNT PEPTIDE_LENGTH");
+        System.err.println("Usage: java jene.peptide.NativeGenerator PEPTIDE_COUNT PEPTIDE_LENGTH [RANDOM_SEED]");
         System.exit(1);
     }
 
     public static void main(String[] args) {
-        if (args.length != 2)
+        if (args.length < 2 || args.length > 3)
             usage();
 
         int peptideCount = Integer.parseInt(args[0]);
         int peptideLength = Integer.parseInt(args[1]);
+        long randomSeed = (args.length == 3) ? Long.parseLong(args[2]) : JamRandom.global().nextLong();
 
-        NativeGenerator generator = new NativeGenerator(peptideCount, peptideLength);
+        NativeGenerator generator = new NativeGenerator(peptideCount, peptideLength, randomSeed);
         generator.run();
     }
 }
@@ -65,10 +65,20 @@ public final class PeptideChopper {
 
     private static void usage() {
         System.err.println("Usage: java jene.peptide.PeptideChopper INPUT_FILE OUTPUT_FILE PEPTIDE_LENGTH");
+        System.err.println("   or: java jene.peptide.PeptideChopper INPUT_FILE OUTPUT_PREFIX MIN_LENGTH MAX_LENGTH [MEMORY_MB]");
+        System.err.println();
+        System.err.println("The second form chops all lengths from MIN_LENGTH to MAX_LENGTH in one pass,");
+        System.err.println("spilling sorted runs to disk when the buffered fragments exceed MEMORY_MB,");
+        System.err.println("and writes the fragments of each length to OUTPUT_PREFIX_<LENGTH>.txt.");
         System.exit(1);
     }
 
     public static void main(String[] args) {
+        if (args.length == 4 || args.length == 5) {
+            runMultiLength(args);
+            return;
+        }
+
         if (args.length != 3)
             usage();
 
@@ -81,4 +91,17 @@ public final class PeptideChopper {
 
         chopper.run();
     }
+
+    private static void runMultiLength(String[] args) {
+        String inputFile = args[0];
+        String outputPrefix = args[1];
+        int    minLength = Integer.parseInt(args[2]);
+        int    maxLength = Integer.parseInt(args[3]);
+        long   memoryBudget = MultiLengthChopper.DEFAULT_MEMORY_BUDGET;
+
+        if (args.length == 5)
+            memoryBudget = Long.parseLong(args[4]) << 20;
+
+        MultiLengthChopper.run(inputFile, outputPrefix, minLength, maxLength, memoryBudget);
+    }
 }
@@ -0,0 +1,282 @@
+
+package jene.peptide;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Packs native peptides of up to twelve residues into single
+ * {@code long} values (five bits per residue).
+ *
+ * <p>Each native residue is assigned a digit from 1 to 20 in the
+ * alphabetical order of the single-character residue codes, and the
+ * first residue occupies the most significant (non-zero) digit.  The
+ * zero digit never appears within a code, so peptides with different
+ * lengths have different codes, and the natural ordering of codes
+ * sorts peptides first by length and then alphabetically by their
+ * formatted strings.
+ */
+public final class PeptideCode {
+    private PeptideCode() {}
+
+    /**
+     * The maximum number of residues in an encoded peptide.
+     */
+    public static final int MAX_LENGTH = 12;
+
+    private static final int  BITS = 5;
+    private static final long MASK = (1L << BITS) - 1;
+
+    // Digits indexed by residue ordinal (zero for non-native residues)
+    // and residues indexed by digit (null at digit zero)...
+    private static final int[] DIGITS = new int[Residue.values().length];
+    private static final Residue[] RESIDUES = new Residue[Residue.countNative() + 1];
+
+    static {
+        Residue[] sorted = Residue.listNative().toArray(new Residue[0]);
+        Arrays.sort(sorted, (res1, res2) -> Character.compare(res1.code1(), res2.code1()));
+
+        for (int index = 0; index < sorted.length; ++index) {
+            DIGITS[sorted[index].ordinal()] = index + 1;
+            RESIDUES[index + 1] = sorted[index];
+        }
+    }
+
+    /**
+     * Appends a residue to an encoded peptide.
+     *
+     * @param code the code of the leading peptide (zero for the empty
+     * peptide).
+     *
+     * @param residue the residue to append.
+     *
+     * @return the code for the leading peptide followed by the
+     * specified residue.  (The caller is responsible for ensuring
+     * that the result does not exceed the maximum length.)
+     *
+     * @throws IllegalArgumentException unless the residue is native.
+     */
+    public static long append(long code, Residue residue) {
+        return (code << BITS) | digit(residue);
+    }
+
+    /**
+     * Decodes a packed peptide.
+     *
+     * @param code the packed peptide code.
+     *
+     * @return the peptide encoded by the specified code.
+     *
+     * @throws IllegalArgumentException unless the code is valid.
+     */
+    public static Peptide decode(long code) {
+        Residue[] residues = new Residue[length(code)];
+
+        for (int index = residues.length - 1; index >= 0; --index) {
+            residues[index] = RESIDUES[(int) (code & MASK)];
+            code >>>= BITS;
+        }
+
+        return Peptide.of(residues);
+    }
+
+    /**
+     * Encodes a native peptide.
+     *
+     * @param peptide the peptide to encode.
+     *
+     * @return the packed code for the specified peptide.
+     *
+     * @throws IllegalArgumentException unless the peptide is
+     * encodable.
+     */
+    public static long encode(Peptide peptide) {
+        return encode(peptide.viewResidues(), 0, peptide.length());
+    }
+
+    /**
+     * Encodes a contiguous fragment of a residue sequence.
+     *
+     * @param residues the residue sequence.
+     *
+     * @param fromIndex the index of the first residue in the fragment
+     * (inclusive).
+     *
+     * @param toIndex the index of the last residue in the fragment
+     * (exclusive).
+     *
+     * @return the packed code for the specified fragment.
+     *
+     * @throws IllegalArgumentException unless the fragment is
+     * non-empty, contains only native residues, and does not exceed
+     * the maximum length.
+     */
+    public static long encode(List<Residue> residues, int fromIndex, int toIndex) {
+        validateLength(toIndex - fromIndex);
+        long code = 0;
+
+        for (int index = fromIndex; index < toIndex; ++index)
+            code = append(code, residues.get(index));
+
+        return code;
+    }
+
+    /**
+     * Encodes every native fragment of a fixed length in a peptide
+     * (the packed equivalent of {@code Peptide.nativeFragments}).
+     *
+     * @param peptide the peptide to fragment.
+     *
+     * @param length the length of the fragments.
+     *
+     * @return the packed codes for all native fragments with the
+     * specified length, in order of their starting position (an
+     * empty array if the peptide is shorter than the fragments).
+     *
+     * @throws IllegalArgumentException unless the fragment length is
+     * positive and does not exceed the maximum length.
+     */
+    public static long[] fragments(Peptide peptide, int length) {
+        validateLength(length);
+
+        long[] codes = new long[Math.max(0, peptide.length() - length + 1)];
+        long mask = (1L << (BITS * length)) - 1;
+
+        long code = 0;
+        int count = 0;
+        int nativeRun = 0;
+
+        for (Residue residue : peptide.viewResidues()) {
+            //
+            // Roll the window forward by one residue; the window is
+            // reset at each non-native residue...
+            //
+            if (residue.isNative()) {
+                code = ((code << BITS) | digit(residue)) & mask;
+                ++nativeRun;
+
+                if (nativeRun >= length)
+                    codes[count++] = code;
+            }
+            else {
+                code = 0;
+                nativeRun = 0;
+            }
+        }
+
+        return (count < codes.length) ? Arrays.copyOf(codes, count) : codes;
+    }
+
+    /**
+     * Formats a packed peptide as a string of single-character
+     * residue codes without creating the peptide itself.
+     *
+     * @param code the packed peptide code.
+     *
+     * @return the string representation of the encoded peptide.
+     *
+     * @throws IllegalArgumentException unless the code is valid.
+     */
+    public static String format(long code) {
+        char[] chars = new char[length(code)];
+
+        for (int index = chars.length - 1; index >= 0; --index) {
+            chars[index] = RESIDUES[(int) (code & MASK)].code1();
+            code >>>= BITS;
+        }
+
+        return String.valueOf(chars);
+    }
+
+    /**
+     * Replaces one residue in a packed peptide.
+     *
+     * @param code the packed peptide code.
+     *
+     * @param index the zero-based index of the residue to replace.
+     *
+     * @param residue the replacement residue.
+     *
+     * @return the code for the peptide with the specified residue
+     * replaced.
+     *
+     * @throws IllegalArgumentException unless the code is valid and
+     * the replacement residue is native.
+     *
+     * @throws IndexOutOfBoundsException unless the index is valid.
+     */
+    public static long replace(long code, int index, Residue residue) {
+        int shift = shift(code, index);
+        return (code & ~(MASK << shift)) | ((long) digit(residue) << shift);
+    }
+
+    /**
+     * Returns one residue from a packed peptide.
+     *
+     * @param code the packed peptide code.
+     *
+     * @param index the zero-based index of the residue.
+     *
+     * @return the residue at the specified index.
+     *
+     * @throws IllegalArgumentException unless the code is valid.
+     *
+     * @throws IndexOutOfBoundsException unless the index is valid.
+     */
+    public static Residue residueAt(long code, int index) {
+        return RESIDUES[(int) ((code >>> shift(code, index)) & MASK)];
+    }
+
+    private static int shift(long code, int index) {
+        int length = length(code);
+
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException(String.format("Invalid residue index [%d].", index));
+
+        return BITS * (length - 1 - index);
+    }
+
+    /**
+     * Identifies peptides that may be encoded.
+     *
+     * @param peptide the peptide to examine.
+     *
+     * @return {@code true} iff the peptide is non-empty, contains
+     * only native residues, and does not exceed the maximum length.
+     */
+    public static boolean isEncodable(Peptide peptide) {
+        return peptide.length() > 0 && peptide.length() <= MAX_LENGTH && peptide.isNative();
+    }
+
+    /**
+     * Returns the number of residues in a packed peptide.
+     *
+     * @param code the packed peptide code.
+     *
+     * @return the number of residues in the encoded peptide.
+     *
+     * @throws IllegalArgumentException unless the code is positive.
+     */
+    public static int length(long code) {
+        if (code <= 0)
+            throw new IllegalArgumentException(String.format("Invalid peptide code [%d].", code));
+
+        return (Long.SIZE - Long.numberOfLeadingZeros(code) + BITS - 1) / BITS;
+    }
+
+    private static int digit(Residue residue) {
+        int digit = DIGITS[residue.ordinal()];
+
+        if (digit == 0)
+            throw new IllegalArgumentException(String.format("Non-native residue [%s].", residue));
+
+        return digit;
+    }
+
+    private static void validateLength(int length) {
+        if (length < 1)
+            throw new IllegalArgumentException("Peptide length must be positive.");
+        else if (length > MAX_LENGTH)
+            throw new IllegalArgumentException("Peptide length must not exceed the maximum encoded length.");
+    }
+}
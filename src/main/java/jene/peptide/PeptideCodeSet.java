@@ -0,0 +1,326 @@
+
+package jene.peptide;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Represents an immutable set of native peptides stored compactly as
+ * a sorted array of packed peptide codes (see {@link PeptideCode}).
+ *
+ * <p>Each member occupies eight bytes, so a set of ten million 9-mers
+ * requires about 80 MB.  Membership tests are binary searches, and
+ * peptides are decoded only when iterated.  Unions, intersections,
+ * and differences are computed by merging the sorted code arrays in
+ * parallel.
+ */
+public final class PeptideCodeSet extends AbstractSet<Peptide> {
+    private final long[] codes;
+
+    private PeptideCodeSet(long[] codes) {
+        this.codes = codes;
+    }
+
+    // Merges are divided into independent chunks spanning this many
+    // elements of the larger operand...
+    private static final int MERGE_CHUNK_SIZE = 1 << 16;
+
+    private enum MergeOp { UNION, INTERSECTION, DIFFERENCE };
+
+    /**
+     * The single code set containing no peptides.
+     */
+    public static final PeptideCodeSet EMPTY = new PeptideCodeSet(new long[0]);
+
+    /**
+     * Creates a new code set from a collection of native peptides.
+     *
+     * @param peptides the members of the set (duplicates are
+     * permitted and ignored).
+     *
+     * @return a new code set containing the specified peptides.
+     *
+     * @throws IllegalArgumentException unless every peptide is
+     * encodable.
+     */
+    public static PeptideCodeSet create(Collection<? extends Peptide> peptides) {
+        if (peptides instanceof PeptideCodeSet)
+            return (PeptideCodeSet) peptides;
+
+        long[] codes = new long[peptides.size()];
+        int index = 0;
+
+        for (Peptide peptide : peptides)
+            codes[index++] = PeptideCode.encode(peptide);
+
+        return sortUnique(codes);
+    }
+
+    /**
+     * Creates a new code set from an array of packed peptide codes.
+     *
+     * @param codes the packed codes of the members of the set (in any
+     * order; duplicates are permitted and ignored).
+     *
+     * @return a new code set containing the specified peptides.
+     *
+     * @throws IllegalArgumentException unless every code is valid.
+     */
+    public static PeptideCodeSet create(long[] codes) {
+        for (long code : codes)
+            PeptideCode.length(code);
+
+        return sortUnique(codes.clone());
+    }
+
+    // Sorts (in parallel) and removes duplicates in place; takes
+    // ownership of the array...
+    static PeptideCodeSet sortUnique(long[] codes) {
+        return new PeptideCodeSet(sortUniqueCodes(codes));
+    }
+
+    static long[] sortUniqueCodes(long[] codes) {
+        Arrays.parallelSort(codes);
+        int unique = 0;
+
+        for (int index = 0; index < codes.length; ++index)
+            if (unique == 0 || codes[index] != codes[unique - 1])
+                codes[unique++] = codes[index];
+
+        if (unique < codes.length)
+            codes = Arrays.copyOf(codes, unique);
+
+        return codes;
+    }
+
+    /**
+     * Returns the packed code of a member of this set.
+     *
+     * @param index the ordinal index of the member, in the range
+     * {@code [0, size())}.
+     *
+     * @return the packed code of the member at the specified index.
+     *
+     * @throws IndexOutOfBoundsException unless the index is valid.
+     */
+    public long codeAt(int index) {
+        return codes[index];
+    }
+
+    /**
+     * Returns a stream of the packed codes in this set, in ascending
+     * order.
+     *
+     * @return a stream of the packed codes in this set.
+     */
+    public LongStream codeStream() {
+        return Arrays.stream(codes);
+    }
+
+    /**
+     * Identifies members of this set by their packed codes.
+     *
+     * @param code a packed peptide code.
+     *
+     * @return {@code true} iff this set contains the peptide with the
+     * specified code.
+     */
+    public boolean containsCode(long code) {
+        return Arrays.binarySearch(codes, code) >= 0;
+    }
+
+    /**
+     * Returns the ordinal index of a peptide in this set: its
+     * position in the ascending order of packed codes.
+     *
+     * @param peptide the peptide of interest.
+     *
+     * @return the ordinal index of the peptide, or {@code -1} if this
+     * set does not contain the peptide.
+     */
+    public int indexOf(Peptide peptide) {
+        if (!PeptideCode.isEncodable(peptide))
+            return -1;
+
+        int index = Arrays.binarySearch(codes, PeptideCode.encode(peptide));
+
+        if (index >= 0)
+            return index;
+        else
+            return -1;
+    }
+
+    /**
+     * Computes the set difference between this set and another.
+     *
+     * @param that the set to subtract.
+     *
+     * @return a new set containing the members of this set that are
+     * not members of the input set.
+     */
+    public PeptideCodeSet difference(PeptideCodeSet that) {
+        return merge(this.codes, that.codes, MergeOp.DIFFERENCE);
+    }
+
+    /**
+     * Computes the intersection of this set with another.
+     *
+     * @param that the set to intersect.
+     *
+     * @return a new set containing the peptides that are members of
+     * both this set and the input set.
+     */
+    public PeptideCodeSet intersection(PeptideCodeSet that) {
+        return merge(this.codes, that.codes, MergeOp.INTERSECTION);
+    }
+
+    /**
+     * Computes the union of this set with another.
+     *
+     * @param that the set to join.
+     *
+     * @return a new set containing the peptides that are members of
+     * either this set or the input set.
+     */
+    public PeptideCodeSet union(PeptideCodeSet that) {
+        return merge(this.codes, that.codes, MergeOp.UNION);
+    }
+
+    private static PeptideCodeSet merge(long[] codes1, long[] codes2, MergeOp op) {
+        //
+        // Split the merge into chunks bounded by codes sampled from
+        // the larger array; chunk k covers the code values in the
+        // range [splitters[k], splitters[k + 1]), which may be
+        // located in each array by binary search...
+        //
+        long[] larger = (codes1.length >= codes2.length) ? codes1 : codes2;
+        int chunkCount = Math.max(1, larger.length / MERGE_CHUNK_SIZE);
+
+        long[] splitters = new long[chunkCount + 1];
+
+        for (int chunk = 1; chunk < chunkCount; ++chunk)
+            splitters[chunk] = larger[(int) ((long) chunk * larger.length / chunkCount)];
+
+        splitters[0] = Long.MIN_VALUE;
+        splitters[chunkCount] = Long.MAX_VALUE;
+
+        long[][] merged =
+            IntStream.range(0, chunkCount)
+            .parallel()
+            .mapToObj(chunk -> mergeChunk(codes1, codes2, splitters[chunk], splitters[chunk + 1], op))
+            .toArray(long[][]::new);
+
+        int total = 0;
+
+        for (long[] chunk : merged)
+            total += chunk.length;
+
+        long[] result = new long[total];
+        int offset = 0;
+
+        for (long[] chunk : merged) {
+            System.arraycopy(chunk, 0, result, offset, chunk.length);
+            offset += chunk.length;
+        }
+
+        return new PeptideCodeSet(result);
+    }
+
+    private static long[] mergeChunk(long[] codes1, long[] codes2, long lower, long upper, MergeOp op) {
+        int i1 = lowerBound(codes1, lower);
+        int i2 = lowerBound(codes2, lower);
+
+        int end1 = (upper == Long.MAX_VALUE) ? codes1.length : lowerBound(codes1, upper);
+        int end2 = (upper == Long.MAX_VALUE) ? codes2.length : lowerBound(codes2, upper);
+
+        long[] result = new long[(end1 - i1) + (end2 - i2)];
+        int count = 0;
+
+        while (i1 < end1 && i2 < end2) {
+            long code1 = codes1[i1];
+            long code2 = codes2[i2];
+
+            if (code1 < code2) {
+                if (op != MergeOp.INTERSECTION)
+                    result[count++] = code1;
+                ++i1;
+            }
+            else if (code2 < code1) {
+                if (op == MergeOp.UNION)
+                    result[count++] = code2;
+                ++i2;
+            }
+            else {
+                if (op != MergeOp.DIFFERENCE)
+                    result[count++] = code1;
+                ++i1;
+                ++i2;
+            }
+        }
+
+        if (op != MergeOp.INTERSECTION)
+            while (i1 < end1)
+                result[count++] = codes1[i1++];
+
+        if (op == MergeOp.UNION)
+            while (i2 < end2)
+                result[count++] = codes2[i2++];
+
+        return Arrays.copyOf(result, count);
+    }
+
+    // Index of the first element not less than the key...
+    private static int lowerBound(long[] codes, long key) {
+        int index = Arrays.binarySearch(codes, key);
+
+        if (index >= 0)
+            return index;
+        else
+            return -(index + 1);
+    }
+
+    @Override public boolean contains(Object obj) {
+        if (!(obj instanceof Peptide))
+            return false;
+
+        Peptide peptide = (Peptide) obj;
+        return PeptideCode.isEncodable(peptide) && containsCode(PeptideCode.encode(peptide));
+    }
+
+    @Override public boolean equals(Object obj) {
+        if (obj instanceof PeptideCodeSet)
+            return Arrays.equals(this.codes, ((PeptideCodeSet) obj).codes);
+        else
+            return super.equals(obj);
+    }
+
+    @Override public int hashCode() {
+        return super.hashCode();
+    }
+
+    @Override public Iterator<Peptide> iterator() {
+        return new Iterator<Peptide>() {
+            private int index = 0;
+
+            @Override public boolean hasNext() {
+                return index < codes.length;
+            }
+
+            @Override public Peptide next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                return PeptideCode.decode(codes[index++]);
+            }
+        };
+    }
+
+    @Override public int size() {
+        return codes.length;
+    }
+}
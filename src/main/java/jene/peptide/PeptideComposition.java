@@ -0,0 +1,301 @@
+
+package jene.peptide;
+
+import java.util.Arrays;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Represents the residue composition of a native peptide: the number
+ * of times each native residue occurs, without regard to order.
+ *
+ * <p>Every composition of length {@code L} is identified by a unique
+ * integer key in the range {@code [0, count(L))}: its rank among all
+ * compositions of that length, ordered lexicographically by their
+ * sorted residue sequences.  The keys are dense, so they may be used
+ * directly as array indexes when accumulating statistics over all
+ * compositions of a given length.
+ */
+public final class PeptideComposition {
+    private final int length;
+    private final int[] counts;
+
+    private PeptideComposition(int length, int[] counts) {
+        this.length = length;
+        this.counts = counts;
+    }
+
+    /**
+     * The maximum peptide length for which the number of distinct
+     * compositions fits in a {@code long}.
+     */
+    public static final int COMPOSITION_LIMIT = 69;
+
+    private static final int RADIX = Residue.countNative();
+
+    private static final Residue[] NATIVE =
+        Residue.listNative().toArray(new Residue[0]);
+
+    // Binomial coefficients C(n, k) for n <= COMPOSITION_LIMIT + RADIX;
+    // entries that would overflow a long are never accessed...
+    private static final long[][] BINOMIAL = binomialTable(COMPOSITION_LIMIT + RADIX);
+
+    private static long[][] binomialTable(int nmax) {
+        long[][] table = new long[nmax + 1][];
+
+        for (int n = 0; n <= nmax; ++n) {
+            table[n] = new long[n + 1];
+            table[n][0] = 1;
+            table[n][n] = 1;
+
+            for (int k = 1; k < n; ++k) {
+                long sum = table[n - 1][k - 1] + table[n - 1][k];
+
+                if (sum < 0)
+                    sum = Long.MAX_VALUE;
+
+                table[n][k] = sum;
+            }
+        }
+
+        return table;
+    }
+
+    /**
+     * Returns the number of distinct compositions of native peptides
+     * with a fixed length: the number of multisets of size
+     * {@code length} drawn from the twenty native residues.
+     *
+     * @param length the peptide length.
+     *
+     * @return the number of distinct compositions with the specified
+     * length.
+     *
+     * @throws IllegalArgumentException unless the length is positive
+     * but not greater than the composition limit.
+     */
+    public static long count(int length) {
+        validateLength(length);
+        return multisetCount(length, RADIX);
+    }
+
+    // The number of non-decreasing sequences of length "size" drawn
+    // from "choices" distinct values...
+    private static long multisetCount(int size, int choices) {
+        if (choices == 0)
+            return (size == 0) ? 1 : 0;
+        else
+            return BINOMIAL[size + choices - 1][size];
+    }
+
+    /**
+     * Decodes a composition key.
+     *
+     * @param length the length of the encoded composition.
+     *
+     * @param key the composition key.
+     *
+     * @return the composition with the specified length and key.
+     *
+     * @throws IllegalArgumentException unless the length is positive
+     * and not greater than the composition limit and the key lies in
+     * the range {@code [0, count(length))}.
+     */
+    public static PeptideComposition decode(int length, long key) {
+        if (key < 0 || key >= count(length))
+            throw new IllegalArgumentException(String.format("Invalid key [%d] for length [%d].", key, length));
+
+        int[] counts = new int[RADIX];
+        int residue = 0;
+
+        for (int remaining = length; remaining > 0; --remaining) {
+            //
+            // Skip over all sequences whose next residue precedes the
+            // residue at this position...
+            //
+            while (true) {
+                long skip = multisetCount(remaining - 1, RADIX - residue);
+
+                if (key < skip)
+                    break;
+
+                key -= skip;
+                ++residue;
+            }
+
+            ++counts[residue];
+        }
+
+        return new PeptideComposition(length, counts);
+    }
+
+    /**
+     * Returns the composition of a native peptide.
+     *
+     * @param peptide a native peptide.
+     *
+     * @return the composition of the specified peptide.
+     *
+     * @throws IllegalArgumentException unless the peptide is native
+     * and its length does not exceed the composition limit.
+     */
+    public static PeptideComposition of(Peptide peptide) {
+        validateLength(peptide.length());
+        int[] counts = new int[RADIX];
+
+        for (Residue residue : peptide.viewResidues()) {
+            if (!residue.isNative())
+                throw new IllegalArgumentException("Only native peptides have compositions.");
+
+            ++counts[residue.ordinal()];
+        }
+
+        return new PeptideComposition(peptide.length(), counts);
+    }
+
+    /**
+     * Enumerates all compositions of native peptides with a fixed
+     * length, in key order.
+     *
+     * <p>Each composition is decoded from its key only when the
+     * stream reaches it, and the underlying key stream is sized and
+     * splittable, so the stream may be processed in parallel.
+     *
+     * @param length the desired peptide length.
+     *
+     * @return a sequential stream of all compositions with the
+     * specified length.
+     *
+     * @throws IllegalArgumentException unless the length is positive
+     * but not greater than the composition limit.
+     */
+    public static Stream<PeptideComposition> stream(int length) {
+        return LongStream.range(0, count(length)).mapToObj(key -> decode(length, key));
+    }
+
+    private static void validateLength(int length) {
+        if (length < 1)
+            throw new IllegalArgumentException("Length must be positive.");
+        else if (length > COMPOSITION_LIMIT)
+            throw new IllegalArgumentException("Length must not exceed the composition limit.");
+    }
+
+    /**
+     * Returns the number of times a residue occurs in this
+     * composition.
+     *
+     * @param residue the residue of interest.
+     *
+     * @return the number of times the specified residue occurs in
+     * this composition (zero for non-native residues).
+     */
+    public int count(Residue residue) {
+        if (residue.isNative())
+            return counts[residue.ordinal()];
+        else
+            return 0;
+    }
+
+    /**
+     * Returns the unique key for this composition.
+     *
+     * @return the unique key for this composition.
+     */
+    public long key() {
+        long key = 0;
+        int lower = 0;
+        int remaining = length;
+
+        for (int residue = 0; residue < RADIX; ++residue) {
+            for (int k = 0; k < counts[residue]; ++k) {
+                //
+                // Count the sorted sequences that agree with this one
+                // up to the current position but continue with a
+                // smaller residue...
+                //
+                for (int prior = lower; prior < residue; ++prior)
+                    key += multisetCount(remaining - 1, RADIX - prior);
+
+                lower = residue;
+                --remaining;
+            }
+        }
+
+        return key;
+    }
+
+    /**
+     * Returns the number of residues in this composition.
+     *
+     * @return the number of residues in this composition.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the number of distinct native peptides having this
+     * composition (the multinomial coefficient of the residue
+     * counts).
+     *
+     * @return the number of distinct peptides having this
+     * composition.
+     *
+     * @throws ArithmeticException if the number of peptides exceeds
+     * the range of a {@code long}.
+     */
+    public long multinomial() {
+        long result = 1;
+        int total = 0;
+
+        for (int count : counts) {
+            total += count;
+            result = Math.multiplyExact(result, binomial(total, count));
+        }
+
+        return result;
+    }
+
+    private static long binomial(int n, int k) {
+        long result = BINOMIAL[n][k];
+
+        if (result == Long.MAX_VALUE)
+            throw new ArithmeticException("Binomial coefficient overflow.");
+
+        return result;
+    }
+
+    /**
+     * Returns the representative peptide for this composition: the
+     * peptide with residues sorted in native order, which is the
+     * first peptide with this composition in enumeration order.
+     *
+     * @return the representative peptide for this composition.
+     */
+    public Peptide toPeptide() {
+        Residue[] residues = new Residue[length];
+        int index = 0;
+
+        for (int residue = 0; residue < RADIX; ++residue)
+            for (int k = 0; k < counts[residue]; ++k)
+                residues[index++] = NATIVE[residue];
+
+        return Peptide.of(residues);
+    }
+
+    @Override public boolean equals(Object obj) {
+        return (obj instanceof PeptideComposition) && equalsComposition((PeptideComposition) obj);
+    }
+
+    private boolean equalsComposition(PeptideComposition that) {
+        return this.length == that.length && Arrays.equals(this.counts, that.counts);
+    }
+
+    @Override public int hashCode() {
+        return Arrays.hashCode(counts);
+    }
+
+    @Override public String toString() {
+        return toPeptide().formatString();
+    }
+}
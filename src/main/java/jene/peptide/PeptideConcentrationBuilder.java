@@ -9,10 +9,19 @@ import jene.chem.Concentration;
 
 /**
  * Maps peptides to cellular concentrations.
+ *
+ * <p>Concentrations are accumulated in place as primitive values:
+ * encodable peptides (see {@link PeptideCode}) are stored as packed
+ * codes in a primitive hash table, and any other peptides are stored
+ * in a map to single-element arrays, so repeated additions allocate
+ * nothing.
  */
 public final class PeptideConcentrationBuilder {
-    private final Map<Peptide, Concentration> map =
-        new HashMap<Peptide, Concentration>();
+    private final CodeConcentrationTable codeTable =
+        new CodeConcentrationTable(0);
+
+    private final Map<Peptide, double[]> otherMap =
+        new HashMap<Peptide, double[]>();
 
     private PeptideConcentrationBuilder() {
     }
@@ -42,15 +51,30 @@ public final class PeptideConcentrationBuilder {
      * @param concentration the concentration of the peptide.
      */
     public void add(Peptide peptide, Concentration concentration) {
-        if (!concentration.isPositive())
-            return;
+        if (concentration.isPositive())
+            add(peptide, concentration.doubleValue());
+    }
 
-        Concentration existing = map.get(peptide);
+    /**
+     * Adds a positive peptide concentration (expressed as a primitive
+     * value) to this builder.
+     *
+     * <p>If the peptide is already present, the specified
+     * concentration is added to the existing concentration.
+     * Non-positive concentrations are ignored.
+     *
+     * @param peptide the peptide to add.
+     *
+     * @param concentration the concentration of the peptide.
+     */
+    public void add(Peptide peptide, double concentration) {
+        if (!(concentration > 0.0))
+            return;
 
-        if (existing == null)
-            map.put(peptide, concentration);
+        if (PeptideCode.isEncodable(peptide))
+            codeTable.add(PeptideCode.encode(peptide), concentration);
         else
-            map.put(peptide, existing.plus(concentration));
+            otherMap.computeIfAbsent(peptide, key -> new double[1])[0] += concentration;
     }
 
     /**
@@ -93,6 +117,37 @@ public final class PeptideConcentrationBuilder {
      * containing the concentrations currenly in this builder.
      */
     public PeptideConcentrationProfile build() {
+        Map<Peptide, Concentration> map =
+            new HashMap<Peptide, Concentration>(2 * (codeTable.size() + otherMap.size()));
+
+        for (long code : codeTable.sortedCodes())
+            map.put(PeptideCode.decode(code), Concentration.valueOf(codeTable.get(code)));
+
+        for (Map.Entry<Peptide, double[]> entry : otherMap.entrySet())
+            map.put(entry.getKey(), Concentration.valueOf(entry.getValue()[0]));
+
         return PeptideConcentrationProfile.create(map);
     }
+
+    /**
+     * Creates a new compact peptide concentration profile reflecting
+     * the current state of this builder.
+     *
+     * @return a new compact peptide concentration profile containing
+     * the concentrations currenly in this builder.
+     *
+     * @throws IllegalStateException if this builder contains peptides
+     * that cannot be encoded.
+     */
+    public CompactConcentrationProfile buildCompact() {
+        if (!otherMap.isEmpty())
+            throw new IllegalStateException("Peptides that cannot be encoded are not allowed in compact profiles.");
+
+        CodeConcentrationTable table = new CodeConcentrationTable(codeTable.size());
+
+        for (long code : codeTable.sortedCodes())
+            table.add(code, codeTable.get(code));
+
+        return new CompactConcentrationProfile(table);
+    }
 }
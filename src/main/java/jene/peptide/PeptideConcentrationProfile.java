@@ -175,7 +175,7 @@ public final class PeptideConcentrationProfile {
     }
 
     private void writeHeader(TableWriter writer) {
-        writer.println("Hugo_Symbol", "Concentration");
+        writer.println("Peptide", "Concentration");
     }
 
     private void writeConcentration(TableWriter writer) {
@@ -2,9 +2,11 @@
 package jene.peptide;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import com.google.common.collect.EnumMultiset;
 import com.google.common.collect.Multiset;
@@ -19,6 +21,23 @@ public final class PeptideEnumerator {
      */
     public static final int ENUMERATION_LIMIT = 7;
 
+    /**
+     * The maximum peptide length that can be enumerated by index: the
+     * number of native peptides with this length (20 to the power of
+     * the length) is the largest that fits in a {@code long}.
+     */
+    public static final int INDEX_LIMIT = 14;
+
+    // The enumeration index is the base-20 representation of the
+    // peptide, with the first residue as the most significant digit,
+    // so that indexes follow the same order as enumerate().  The
+    // native residues occupy the first twenty ordinals of the Residue
+    // enumeration, so each digit is simply the residue ordinal...
+    private static final long RADIX = Residue.countNative();
+
+    private static final Residue[] NATIVE =
+        Residue.listNative().toArray(new Residue[0]);
+
     /**
      * Enumerates every native peptide of a given length.
      *
@@ -68,6 +87,13 @@ public final class PeptideEnumerator {
      * Enumerates all native peptides of a given length having a
      * distinct unordered representation (residue count).
      *
+     * <p>The peptides are generated directly from their compositions
+     * (see {@link PeptideComposition}), without enumerating every
+     * ordered peptide, so this method is not restricted by the
+     * enumeration limit.  Each peptide in the list is the first
+     * peptide with its composition in enumeration order (with its
+     * residues sorted in native order).
+     *
      * @param length the desired peptide length.
      *
      * @return a list containing all native peptides (composed of
@@ -75,24 +101,16 @@ public final class PeptideEnumerator {
      * unordered representation (residue count).
      *
      * @throws IllegalArgumentException unless the length is positive
-     * but not greater than the enumeration limit.
+     * and the number of distinct compositions does not exceed the
+     * maximum size of a {@code Collection}.
      */
     public static List<Peptide> enumerateUnordered(int length) {
-        List<Peptide> allPeptides = enumerate(length);
-        ArrayList<Peptide> unorderedPeptides = new ArrayList<Peptide>();
-        Set<Multiset<Residue>> unorderedKeys = new HashSet<Multiset<Residue>>();
-
-        for (Peptide peptide : allPeptides) {
-            Multiset<Residue> unorderedKey = unordered(peptide);
-
-            if (!unorderedKeys.contains(unorderedKey)) {
-                unorderedKeys.add(unorderedKey);
-                unorderedPeptides.add(peptide);
-            }
-        }
+        if (PeptideComposition.count(length) > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many compositions to enumerate.");
 
-        unorderedPeptides.trimToSize();
-        return unorderedPeptides;
+        return PeptideComposition.stream(length)
+            .map(composition -> composition.toPeptide())
+            .collect(Collectors.toList());
     }
 
     /**
@@ -116,6 +134,174 @@ public final class PeptideEnumerator {
         return (int) Math.pow(Residue.countNative(), length);
     }
 
+    /**
+     * Returns the number of unique native peptides with a fixed
+     * length as a {@code long}, for lengths up to the index limit.
+     *
+     * @param length the desired peptide length.
+     *
+     * @return the number of unique native peptides with the specified
+     * length.
+     *
+     * @throws IllegalArgumentException unless the length is positive
+     * but not greater than the index limit.
+     */
+    public static long indexCount(int length) {
+        validateIndexLength(length);
+
+        long count = 1;
+
+        for (int k = 0; k < length; ++k)
+            count *= RADIX;
+
+        return count;
+    }
+
+    /**
+     * Returns the enumeration index of a native peptide: its position
+     * in the list returned by {@code enumerate(peptide.length())},
+     * which is the base-20 representation of the peptide with the
+     * first residue as the most significant digit.
+     *
+     * @param peptide a native peptide.
+     *
+     * @return the enumeration index of the specified peptide.
+     *
+     * @throws IllegalArgumentException unless the peptide is native
+     * and its length does not exceed the index limit.
+     */
+    public static long index(Peptide peptide) {
+        validateIndexLength(peptide.length());
+
+        long index = 0;
+
+        for (Residue residue : peptide.viewResidues()) {
+            if (!residue.isNative())
+                throw new IllegalArgumentException("Only native peptides may be indexed.");
+
+            index = RADIX * index + residue.ordinal();
+        }
+
+        return index;
+    }
+
+    /**
+     * Decodes an enumeration index into the corresponding peptide
+     * (the inverse of {@code index(Peptide)}).
+     *
+     * @param length the length of the encoded peptide.
+     *
+     * @param index the enumeration index of the peptide.
+     *
+     * @return the native peptide with the specified length and
+     * enumeration index.
+     *
+     * @throws IllegalArgumentException unless the length is positive
+     * and not greater than the index limit and the index is within
+     * the range {@code [0, indexCount(length))}.
+     */
+    public static Peptide decode(int length, long index) {
+        if (index < 0 || index >= indexCount(length))
+            throw new IllegalArgumentException(String.format("Invalid index [%d] for length [%d].", index, length));
+
+        Residue[] residues = new Residue[length];
+
+        for (int k = length - 1; k >= 0; --k) {
+            residues[k] = NATIVE[(int) (index % RADIX)];
+            index /= RADIX;
+        }
+
+        return Peptide.of(residues);
+    }
+
+    /**
+     * Returns a stream of the enumeration indexes of all native
+     * peptides with a fixed length.
+     *
+     * <p>The stream is backed by a sized, splittable spliterator over
+     * the index range and holds no peptides in memory, so it may be
+     * processed in parallel for lengths well beyond the enumeration
+     * limit.  Decode individual indexes with {@code decode(int, long)}
+     * only when the peptide itself is required.
+     *
+     * @param length the desired peptide length.
+     *
+     * @return a sequential stream of the enumeration indexes of all
+     * native peptides with the specified length (call
+     * {@code parallel()} to process it across all cores).
+     *
+     * @throws IllegalArgumentException unless the length is positive
+     * but not greater than the index limit.
+     */
+    public static LongStream indexStream(int length) {
+        return indexStream(length, 0, indexCount(length));
+    }
+
+    /**
+     * Returns a stream of a contiguous range of enumeration indexes
+     * for native peptides with a fixed length; useful for dividing an
+     * exhaustive scan among several processes.
+     *
+     * @param length the desired peptide length.
+     *
+     * @param fromIndex the first index in the range (inclusive).
+     *
+     * @param toIndex the last index in the range (exclusive).
+     *
+     * @return a sequential stream of the enumeration indexes in the
+     * specified range.
+     *
+     * @throws IllegalArgumentException unless the length is positive
+     * and not greater than the index limit and the index range is
+     * valid.
+     */
+    public static LongStream indexStream(int length, long fromIndex, long toIndex) {
+        if (fromIndex < 0 || fromIndex > toIndex || toIndex > indexCount(length))
+            throw new IllegalArgumentException(String.format("Invalid index range [%d, %d).", fromIndex, toIndex));
+
+        return LongStream.range(fromIndex, toIndex);
+    }
+
+    /**
+     * Returns a splittable spliterator over the enumeration indexes
+     * of all native peptides with a fixed length.
+     *
+     * @param length the desired peptide length.
+     *
+     * @return a sized, splittable spliterator over the enumeration
+     * indexes of all native peptides with the specified length.
+     *
+     * @throws IllegalArgumentException unless the length is positive
+     * but not greater than the index limit.
+     */
+    public static Spliterator.OfLong indexSpliterator(int length) {
+        return indexStream(length).spliterator();
+    }
+
+    /**
+     * Returns a lazy stream of all native peptides with a fixed
+     * length, in enumeration order; each peptide is decoded from its
+     * index only when the stream reaches it.
+     *
+     * @param length the desired peptide length.
+     *
+     * @return a sequential stream of all native peptides with the
+     * specified length.
+     *
+     * @throws IllegalArgumentException unless the length is positive
+     * but not greater than the index limit.
+     */
+    public static Stream<Peptide> stream(int length) {
+        return indexStream(length).mapToObj(index -> decode(length, index));
+    }
+
+    private static void validateIndexLength(int length) {
+        if (length < 1)
+            throw new IllegalArgumentException("Length must be positive.");
+        else if (length > INDEX_LIMIT)
+            throw new IllegalArgumentException("Length must not exceed the index limit.");
+    }
+
     /**
      * Returns an unordered view of a peptide: a multiset counting the
      * number of times each residue occurs.
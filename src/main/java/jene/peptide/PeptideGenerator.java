@@ -0,0 +1,174 @@
+
+package jene.peptide;
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Generates large sets of random native peptides in parallel, with
+ * results that depend only on the random seed (and not on the number
+ * of threads that participate).
+ *
+ * <p>Candidate peptides are generated in fixed-size blocks, and each
+ * block draws from its own random stream split from a root stream
+ * in a fixed order.  Candidates are deduplicated by sorting and
+ * merging their packed codes (see {@link PeptideCodeSet}); while the
+ * set is incomplete, another round generates exactly as many new
+ * candidates as there are missing peptides.  Each round is a set
+ * union, whose result does not depend on the order in which the
+ * candidates were generated, so the final set is reproducible.
+ */
+public final class PeptideGenerator {
+    private final SplittableRandom root;
+
+    private PeptideGenerator(long seed) {
+        this.root = new SplittableRandom(seed);
+    }
+
+    // The number of candidates generated from each random stream; it
+    // must not depend on the number of available processors...
+    private static final int BLOCK_SIZE = 1 << 14;
+
+    // Mutant generation fails after generating this many candidates
+    // per requested mutant (as in Peptidome.mutate)...
+    private static final int MUTANT_ITERATION_FACTOR = 10;
+
+    private static final Residue[] NATIVE =
+        Residue.listNative().toArray(new Residue[0]);
+
+    /**
+     * Creates a new generator with a fixed random seed.
+     *
+     * <p>Generators are not thread-safe: each generator should be
+     * used by one thread, which will distribute the work among the
+     * threads of the common fork-join pool.
+     *
+     * @param seed the random seed.
+     *
+     * @return a new generator with the specified seed.
+     */
+    public static PeptideGenerator create(long seed) {
+        return new PeptideGenerator(seed);
+    }
+
+    /**
+     * Generates a set of distinct native peptides with residues
+     * chosen randomly with equal probability.
+     *
+     * @param length the number of residues in each peptide.
+     *
+     * @param size the desired number of distinct peptides.
+     *
+     * @return a set containing {@code size} distinct peptides, each
+     * with exactly {@code length} randomly chosen native residues.
+     *
+     * @throws IllegalArgumentException unless the length is positive
+     * and no greater than {@code PeptideCode.MAX_LENGTH} and there
+     * are at least {@code size} distinct peptides with that length.
+     */
+    public PeptideCodeSet generateNative(int length, int size) {
+        if (length < 1 || length > PeptideCode.MAX_LENGTH)
+            throw new IllegalArgumentException("Invalid peptide length.");
+
+        if (size < 0 || size > PeptideEnumerator.indexCount(length))
+            throw new IllegalArgumentException("Invalid peptidome size.");
+
+        PeptideCodeSet result = PeptideCodeSet.EMPTY;
+
+        while (result.size() < size) {
+            long[] candidates = generateBlocks(size - result.size(), random -> newNative(random, length));
+            result = result.union(PeptideCodeSet.sortUnique(candidates));
+        }
+
+        return result;
+    }
+
+    /**
+     * Generates a set of distinct mutated peptides: in each step, a
+     * parent peptide is selected at random and then one residue is
+     * mutated at random.
+     *
+     * @param parents the parent peptides to choose from.
+     *
+     * @param size the desired number of distinct mutated peptides.
+     *
+     * @return a set containing {@code size} distinct mutants.
+     *
+     * @throws IllegalArgumentException if the parent set is empty.
+     *
+     * @throws IllegalStateException if the required number of
+     * distinct mutants cannot be generated within the maximum number
+     * of iterations.
+     */
+    public PeptideCodeSet generateMutants(PeptideCodeSet parents, int size) {
+        if (size > 0 && parents.isEmpty())
+            throw new IllegalArgumentException("No parent peptides.");
+
+        long maxCandidates = (long) MUTANT_ITERATION_FACTOR * size;
+        long candidateCount = 0;
+
+        PeptideCodeSet result = PeptideCodeSet.EMPTY;
+
+        while (result.size() < size) {
+            if (candidateCount >= maxCandidates)
+                throw new IllegalStateException("Exceeded maximum iteration count.");
+
+            int blockTotal = size - result.size();
+            candidateCount += blockTotal;
+
+            long[] candidates = generateBlocks(blockTotal, random -> newMutant(random, parents));
+            result = result.union(PeptideCodeSet.sortUnique(candidates));
+        }
+
+        return result;
+    }
+
+    private interface CodeSource {
+        long next(SplittableRandom random);
+    }
+
+    private long[] generateBlocks(int count, CodeSource source) {
+        int blockCount = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        SplittableRandom[] streams = new SplittableRandom[blockCount];
+
+        // Split the streams sequentially, in block order...
+        for (int block = 0; block < blockCount; ++block)
+            streams[block] = root.split();
+
+        long[] codes = new long[count];
+
+        IntStream.range(0, blockCount).parallel().forEach(block -> {
+                SplittableRandom random = streams[block];
+                int end = Math.min(count, (block + 1) * BLOCK_SIZE);
+
+                for (int index = block * BLOCK_SIZE; index < end; ++index)
+                    codes[index] = source.next(random);
+            });
+
+        return codes;
+    }
+
+    private static long newNative(SplittableRandom random, int length) {
+        long code = 0;
+
+        for (int index = 0; index < length; ++index)
+            code = PeptideCode.append(code, NATIVE[random.nextInt(NATIVE.length)]);
+
+        return code;
+    }
+
+    private static long newMutant(SplittableRandom random, PeptideCodeSet parents) {
+        long parent = parents.codeAt(random.nextInt(parents.size()));
+        int position = random.nextInt(PeptideCode.length(parent));
+
+        return PeptideCode.replace(parent, position, mutate(random, PeptideCode.residueAt(parent, position)));
+    }
+
+    private static Residue mutate(SplittableRandom random, Residue residue) {
+        //
+        // Select uniformly from the other nineteen native residues...
+        //
+        int ordinal = residue.ordinal() + 1 + random.nextInt(NATIVE.length - 1);
+        return NATIVE[ordinal % NATIVE.length];
+    }
+}
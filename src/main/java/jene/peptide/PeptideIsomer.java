@@ -28,20 +28,41 @@ public final class PeptideIsomer {
         return String.valueOf(codes);
     }
 
+    /**
+     * The maximum peptide length for which the isomers may be mapped
+     * explicitly: the number of peptides sharing one isomer key must
+     * not exceed the maximum count of a {@code Multiset} element.
+     */
+    public static final int MAPPING_LIMIT = 12;
+
     /**
      * Enumerates all distinct isomers for peptides with a fixed
      * length and counts the number of occurrences of each isomer.
      *
+     * <p>The isomers are generated directly from the residue
+     * compositions with their exact multinomial counts, without
+     * enumerating every ordered peptide.  For statistics over longer
+     * peptides, or without holding every key in memory, process
+     * {@code PeptideComposition.stream(length)} directly.
+     *
      * @param length the desired peptide length.
      *
      * @return a multiset counting the number of occurrences of each
      * distinct isomer for peptides with the specified length.
      *
      * @throws IllegalArgumentException unless the length is positive
-     * but not greater than the enumeration limit.
+     * but not greater than the mapping limit.
      */
     public static Multiset<String> mapIsomers(int length) {
-        return mapIsomers(PeptideEnumerator.enumerate(length));
+        if (length > MAPPING_LIMIT)
+            throw new IllegalArgumentException("Length must not exceed the mapping limit.");
+
+        Multiset<String> counts = TreeMultiset.create();
+
+        PeptideComposition.stream(length).forEach(composition ->
+            counts.setCount(isomerKey(composition.toPeptide()), (int) composition.multinomial()));
+
+        return counts;
     }
 
     /**
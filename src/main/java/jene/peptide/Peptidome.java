@@ -16,12 +16,24 @@ import jam.util.ListUtil;
 
 /**
  * Represents an immutable set of peptides.
+ *
+ * <p>Peptidomes composed of native peptides with no more than twelve
+ * residues may be stored compactly as sorted arrays of packed peptide
+ * codes (see {@link #compact(Collection)}); set operations on compact
+ * peptidomes are computed by parallel merges.
  */
 public final class Peptidome extends AbstractSet<Peptide> {
     private final Set<Peptide> peptides;
+    private final PeptideCodeSet codes;
 
     private Peptidome(Set<Peptide> peptides) {
         this.peptides = Collections.unmodifiableSet(peptides);
+        this.codes = null;
+    }
+
+    private Peptidome(PeptideCodeSet codes) {
+        this.peptides = codes;
+        this.codes = codes;
     }
 
     /**
@@ -40,6 +52,26 @@ public final class Peptidome extends AbstractSet<Peptide> {
         return new Peptidome(new LinkedHashSet<Peptide>(peptides));
     }
 
+    /**
+     * Creates a new compact peptidome with a fixed set of peptides:
+     * the peptides are stored as a sorted array of packed peptide
+     * codes, which requires eight bytes per peptide.
+     *
+     * @param peptides the members of the peptidome.
+     *
+     * @return the new compact peptidome.
+     *
+     * @throws IllegalArgumentException unless every peptide is native
+     * and contains no more than {@code PeptideCode.MAX_LENGTH}
+     * residues.
+     */
+    public static Peptidome compact(Collection<? extends Peptide> peptides) {
+        if (peptides instanceof Peptidome && ((Peptidome) peptides).isCompact())
+            return (Peptidome) peptides;
+        else
+            return new Peptidome(PeptideCodeSet.create(peptides));
+    }
+
     /**
      * Creates a new peptidome with a specified size.
      *
@@ -93,15 +125,45 @@ public final class Peptidome extends AbstractSet<Peptide> {
         return new Peptidome(peptides);
     }
 
+    /**
+     * Creates a compact peptidome composed of peptides with native
+     * residues chosen randomly with equal probability; the peptides
+     * are generated in parallel and the result depends only on the
+     * random seed (see {@link PeptideGenerator}).
+     *
+     * @param length the desired number of residues.
+     *
+     * @param size the desired number of peptides.
+     *
+     * @param seed the random seed.
+     *
+     * @return a compact peptidome containing {@code size} new
+     * peptides, each with exactly {@code length} randomly chosen
+     * native residues.
+     */
+    public static Peptidome random(int length, int size, long seed) {
+        return new Peptidome(PeptideGenerator.create(seed).generateNative(length, size));
+    }
+
     /**
      * Creates the union of several peptidomes.
      *
      * @param peptidomes the peptidomes to join.
      *
      * @return a new peptidome containing all peptides contained in
-     * any of the specified peptidomes.
+     * any of the specified peptidomes (a compact peptidome if all
+     * input peptidomes are compact).
      */
     public static Peptidome union(Peptidome... peptidomes) {
+        if (allCompact(peptidomes)) {
+            PeptideCodeSet union = PeptideCodeSet.EMPTY;
+
+            for (Peptidome peptidome : peptidomes)
+                union = union.union(peptidome.codes);
+
+            return new Peptidome(union);
+        }
+
         Set<Peptide> peptides = new LinkedHashSet<Peptide>();
 
         for (Peptidome peptidome : peptidomes)
@@ -110,6 +172,66 @@ public final class Peptidome extends AbstractSet<Peptide> {
         return new Peptidome(peptides);
     }
 
+    /**
+     * Creates the intersection of two peptidomes.
+     *
+     * @param peptidome1 the first peptidome.
+     *
+     * @param peptidome2 the second peptidome.
+     *
+     * @return a new peptidome containing the peptides contained in
+     * both input peptidomes (a compact peptidome if both input
+     * peptidomes are compact).
+     */
+    public static Peptidome intersection(Peptidome peptidome1, Peptidome peptidome2) {
+        if (allCompact(peptidome1, peptidome2))
+            return new Peptidome(peptidome1.codes.intersection(peptidome2.codes));
+
+        Set<Peptide> peptides = new LinkedHashSet<Peptide>(peptidome1);
+        peptides.retainAll(peptidome2);
+
+        return new Peptidome(peptides);
+    }
+
+    /**
+     * Creates the difference of two peptidomes.
+     *
+     * @param peptidome1 the first peptidome.
+     *
+     * @param peptidome2 the peptidome to subtract from the first.
+     *
+     * @return a new peptidome containing the peptides contained in
+     * the first peptidome but not the second (a compact peptidome if
+     * both input peptidomes are compact).
+     */
+    public static Peptidome difference(Peptidome peptidome1, Peptidome peptidome2) {
+        if (allCompact(peptidome1, peptidome2))
+            return new Peptidome(peptidome1.codes.difference(peptidome2.codes));
+
+        Set<Peptide> peptides = new LinkedHashSet<Peptide>(peptidome1);
+        peptides.removeAll(peptidome2);
+
+        return new Peptidome(peptides);
+    }
+
+    private static boolean allCompact(Peptidome... peptidomes) {
+        for (Peptidome peptidome : peptidomes)
+            if (!peptidome.isCompact())
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Identifies compact peptidomes, which store their members as
+     * sorted arrays of packed peptide codes.
+     *
+     * @return {@code true} iff this is a compact peptidome.
+     */
+    public boolean isCompact() {
+        return codes != null;
+    }
+
     /**
      * Randomly mutates the peptides in this peptidome and returns the
      * mutated peptides in a new peptidome; this peptidome is unchanged.
@@ -143,6 +265,27 @@ public final class Peptidome extends AbstractSet<Peptide> {
         throw new IllegalStateException("Exceeded maximum iteration count.");
     }
 
+    /**
+     * Randomly mutates the peptides in this peptidome in parallel and
+     * returns the mutated peptides in a new compact peptidome; this
+     * peptidome is unchanged.  The result depends only on the random
+     * seed (see {@link PeptideGenerator}).
+     *
+     * @param mutationCount the desired number of mutated peptides to
+     * generate.
+     *
+     * @param seed the random seed.
+     *
+     * @return a new compact peptidome containing the mutated peptides.
+     *
+     * @throws IllegalArgumentException unless every peptide in this
+     * peptidome is encodable.
+     */
+    public Peptidome mutate(int mutationCount, long seed) {
+        PeptideCodeSet parents = isCompact() ? codes : PeptideCodeSet.create(peptides);
+        return new Peptidome(PeptideGenerator.create(seed).generateMutants(parents, mutationCount));
+    }
+
     @Override public boolean contains(Object obj) {
         return peptides.contains(obj);
     }
@@ -12,6 +12,7 @@ import jam.io.TableReader;
 import jam.lang.JamException;
 import jam.util.MapUtil;
 
+import jene.app.GlobalResource;
 import jene.hugo.HugoSymbol;
 import jene.tcga.TumorBarcode;
 
@@ -23,7 +24,8 @@ import jene.tcga.TumorBarcode;
 public final class AggregateExpressionModel extends ExpressionModel {
     private final Map<HugoSymbol, Expression> profile;
 
-    private static AggregateExpressionModel global = null;
+    private static final GlobalResource<AggregateExpressionModel> global =
+        GlobalResource.create("AggregateExpressionModel", AggregateExpressionModel::createGlobal);
 
     private AggregateExpressionModel(Map<HugoSymbol, Expression> profile) {
         this.profile = Collections.unmodifiableMap(profile);
@@ -44,10 +46,7 @@ public final class AggregateExpressionModel extends ExpressionModel {
      * properties.
      */
     public static AggregateExpressionModel global() {
-        if (global == null)
-            global = createGlobal();
-
-        return global;
+        return global.get();
     }
 
     private static AggregateExpressionModel createGlobal() {
@@ -58,6 +57,25 @@ public final class AggregateExpressionModel extends ExpressionModel {
         return JamProperties.getRequired(PROFILE_FILE_NAME_PROPERTY);
     }
 
+    /**
+     * Creates an aggregate expression model from a computed profile
+     * (e.g., one produced by {@link ExpressionAggregator}).
+     *
+     * @param profile the aggregate expression profile.
+     *
+     * @return an aggregate expression model with the specified
+     * profile.
+     */
+    public static AggregateExpressionModel create(ExpressionProfile profile) {
+        Map<HugoSymbol, Expression> map =
+            new HashMap<HugoSymbol, Expression>();
+
+        for (Map.Entry<HugoSymbol, Expression> entry : profile.viewEntries())
+            map.put(entry.getKey(), entry.getValue());
+
+        return new AggregateExpressionModel(map);
+    }
+
     /**
      * Loads an aggregate expression profile from a data file.
      *
@@ -0,0 +1,183 @@
+
+package jene.rna;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import jene.hugo.HugoIndex;
+import jene.hugo.HugoSymbol;
+
+/**
+ * Stores an expression profile as a primitive array indexed by the
+ * ordinals of a (typically shared) HUGO symbol index.
+ *
+ * <p>Each gene occupies a single primitive element, rather than a map
+ * entry plus an {@code Expression} object, and lookups by symbol
+ * ordinal require neither hashing nor allocation.  Profiles created
+ * on the heap store {@code double} values, so they hold exactly the
+ * values of the existing {@code Expression} API.  Profiles returned
+ * by {@code TumorExpressionMatrix.get} view the rows of the matrix
+ * directly: in double precision for matrices parsed from text, and in
+ * the single precision of the binary cache format for matrices mapped
+ * from a cache file.
+ */
+public final class ArrayExpressionProfile extends ExpressionProfile {
+    private final HugoIndex symbolIndex;
+    private final ExpressionLevels levels;
+
+    private ArrayExpressionProfile(HugoIndex symbolIndex, ExpressionLevels levels) {
+        if (levels.size() != symbolIndex.size())
+            throw new IllegalArgumentException("Symbol index and expression array have different lengths.");
+
+        this.symbolIndex = symbolIndex;
+        this.levels = levels;
+    }
+
+    /**
+     * Creates a new array profile.
+     *
+     * @param symbolIndex the index that assigns genes to array
+     * elements.
+     *
+     * @param levels the expression levels indexed by symbol ordinal
+     * (the array is copied).
+     *
+     * @return a new array profile with the specified expression.
+     *
+     * @throws IllegalArgumentException unless the array length
+     * matches the index size and all levels are valid expression.
+     */
+    public static ArrayExpressionProfile create(HugoIndex symbolIndex, double[] levels) {
+        for (double level : levels)
+            Expression.validate(level);
+
+        return new ArrayExpressionProfile(symbolIndex, ExpressionLevels.wrap(levels.clone()));
+    }
+
+    /**
+     * Copies an arbitrary expression profile into an array profile.
+     *
+     * @param symbolIndex the index that assigns genes to array
+     * elements.
+     *
+     * @param profile the profile to copy.
+     *
+     * @return a new array profile containing the expression from the
+     * input profile for each gene in the symbol index (genes missing
+     * from the input profile have zero expression; genes missing from
+     * the index are omitted).
+     */
+    public static ArrayExpressionProfile copyOf(HugoIndex symbolIndex, ExpressionProfile profile) {
+        double[] levels = new double[symbolIndex.size()];
+
+        for (int ordinal = 0; ordinal < levels.length; ++ordinal)
+            levels[ordinal] = profile.getDouble(symbolIndex.get(ordinal));
+
+        return new ArrayExpressionProfile(symbolIndex, ExpressionLevels.wrap(levels));
+    }
+
+    // Shares the storage, which the caller must not modify; element
+    // zero holds the expression for symbol ordinal zero...
+    static ArrayExpressionProfile view(HugoIndex symbolIndex, ExpressionLevels levels) {
+        return new ArrayExpressionProfile(symbolIndex, levels);
+    }
+
+    /**
+     * Returns the expression for a gene identified by its ordinal in
+     * the symbol index.
+     *
+     * @param ordinal the symbol ordinal of the target gene.
+     *
+     * @return the expression of the target gene.
+     *
+     * @throws IndexOutOfBoundsException unless the ordinal is valid.
+     */
+    public double getDouble(int ordinal) {
+        return levels.get(ordinal);
+    }
+
+    /**
+     * Extracts the expression for many genes at once.
+     *
+     * @param symbolOrdinals the symbol ordinals of the target genes.
+     *
+     * @param result an array to hold the expression: on return,
+     * {@code result[k]} contains the expression for the gene with
+     * ordinal {@code symbolOrdinals[k]}.
+     *
+     * @throws IndexOutOfBoundsException unless every ordinal is valid
+     * and the result array is at least as long as the ordinal array.
+     */
+    public void getAll(int[] symbolOrdinals, double[] result) {
+        for (int k = 0; k < symbolOrdinals.length; ++k)
+            result[k] = levels.get(symbolOrdinals[k]);
+    }
+
+    /**
+     * Returns the index that assigns genes to array elements.
+     *
+     * @return the index that assigns genes to array elements.
+     */
+    public HugoIndex getSymbolIndex() {
+        return symbolIndex;
+    }
+
+    @Override public boolean contains(HugoSymbol symbol) {
+        return symbolIndex.contains(symbol);
+    }
+
+    @Override public Expression get(HugoSymbol symbol) {
+        int index = symbolIndex.indexOf(symbol);
+
+        if (index >= 0)
+            return Expression.valueOf(levels.get(index));
+        else
+            return Expression.ZERO;
+    }
+
+    @Override public double getDouble(HugoSymbol symbol) {
+        int index = symbolIndex.indexOf(symbol);
+
+        if (index >= 0)
+            return levels.get(index);
+        else
+            return 0.0;
+    }
+
+    @Override public Set<Map.Entry<HugoSymbol, Expression>> viewEntries() {
+        return new AbstractSet<Map.Entry<HugoSymbol, Expression>>() {
+            @Override public Iterator<Map.Entry<HugoSymbol, Expression>> iterator() {
+                return new Iterator<Map.Entry<HugoSymbol, Expression>>() {
+                    private int index = 0;
+
+                    @Override public boolean hasNext() {
+                        return index < levels.size();
+                    }
+
+                    @Override public Map.Entry<HugoSymbol, Expression> next() {
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+
+                        HugoSymbol symbol = symbolIndex.get(index);
+                        Expression expression = Expression.valueOf(levels.get(index));
+
+                        ++index;
+                        return new AbstractMap.SimpleImmutableEntry<HugoSymbol, Expression>(symbol, expression);
+                    }
+                };
+            }
+
+            @Override public int size() {
+                return levels.size();
+            }
+        };
+    }
+
+    @Override public Set<HugoSymbol> viewSymbols() {
+        return symbolIndex.viewSymbolSet();
+    }
+}
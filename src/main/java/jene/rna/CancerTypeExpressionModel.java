@@ -2,17 +2,29 @@
 package jene.rna;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
 
 import jam.app.JamProperties;
 import jam.data.DataMatrix;
 import jam.data.DenseDataMatrixLoader;
+import jam.lang.JamException;
 
+import jene.app.GlobalResource;
+import jene.hugo.HugoIndex;
 import jene.hugo.HugoSymbol;
 import jene.tcga.CancerType;
 import jene.tcga.PatientCancerTypeTable;
-import jene.tcga.PatientID;
 import jene.tcga.TumorBarcode;
 import jene.tcga.TumorPatientTable;
+import jene.util.KeyColumn;
+import jene.util.KeyIndex;
 
 /**
  * Represents a gene expression model with uniform expression within
@@ -20,17 +32,86 @@ import jene.tcga.TumorPatientTable;
  * cohort).  The mapping from tumor barcode to patient key is defined
  * by the global {@code TumorPatientTable} table, and the mapping from
  * patient to cancer type by the global {@code PatientCancerTypeTable}.
+ *
+ * <p>The expression matrix is compiled into one primitive array per
+ * cancer type (indexed by a shared HUGO symbol index), and the two
+ * tables are joined by key ordinal when the model is created, so that
+ * every tumor barcode is mapped to its cancer type column in a single
+ * array.  Bulk lookups through
+ * {@link #lookupAll(TumorBarcode, List, double[])} therefore require a
+ * single hash lookup per tumor (plus one per gene, unless the symbol
+ * list is an immutable list that was used in the previous bulk
+ * lookup).
  */
 public final class CancerTypeExpressionModel extends ExpressionModel {
-    private final DataMatrix<HugoSymbol, CancerType> cancerTypeExpression;
+    private final HugoIndex symbolIndex;
+    private final Map<CancerType, Integer> typeColumns;
+
+    // Indexed by [cancer type column][symbol ordinal]...
+    private final double[][] levels;
+
+    // Symbol ordinals for the most recent immutable symbol list...
+    private volatile SymbolOrdinals lastOrdinals = null;
 
     private final TumorPatientTable tumorPatientTable = TumorPatientTable.global();
     private final PatientCancerTypeTable patientCancerTypeTable = PatientCancerTypeTable.global();
 
-    private static CancerTypeExpressionModel global = null;
+    // Cancer type column for each barcode ordinal in the tumor-patient
+    // table (-1 if the cancer type is missing from the expression
+    // matrix, or UNMAPPED if the patient has no cancer type)...
+    private final KeyIndex<TumorBarcode> barcodeIndex;
+    private final int[] barcodeColumns;
+
+    private static final int UNMAPPED = -2;
+
+    private static final GlobalResource<CancerTypeExpressionModel> global =
+        GlobalResource.create("CancerTypeExpressionModel", CancerTypeExpressionModel::createGlobal);
+
+    private CancerTypeExpressionModel(HugoIndex symbolIndex, List<CancerType> cancerTypes, double[][] levels) {
+        this.symbolIndex = symbolIndex;
+        this.typeColumns = new EnumMap<CancerType, Integer>(CancerType.class);
+        this.levels = levels;
+
+        for (int col = 0; col < cancerTypes.size(); ++col)
+            typeColumns.put(cancerTypes.get(col), col);
+
+        KeyColumn<TumorBarcode, CancerType> barcodeTypes =
+            tumorPatientTable.patientColumn().join(patientCancerTypeTable.cancerTypeColumn());
+
+        this.barcodeIndex = barcodeTypes.getKeyIndex();
+        this.barcodeColumns = new int[barcodeIndex.size()];
+
+        for (int ordinal = 0; ordinal < barcodeColumns.length; ++ordinal) {
+            CancerType cancerType = barcodeTypes.get(ordinal);
+
+            if (cancerType != null)
+                barcodeColumns[ordinal] = typeColumns.getOrDefault(cancerType, -1);
+            else
+                barcodeColumns[ordinal] = UNMAPPED;
+        }
+    }
+
+    private static CancerTypeExpressionModel compile(DataMatrix<HugoSymbol, CancerType> cancerTypeExpression) {
+        List<HugoSymbol> symbols = cancerTypeExpression.rowKeyList();
+        List<CancerType> cancerTypes = cancerTypeExpression.colKeyList();
+
+        double[][] levels = new double[cancerTypes.size()][symbols.size()];
+
+        for (int col = 0; col < cancerTypes.size(); ++col)
+            for (int row = 0; row < symbols.size(); ++row)
+                levels[col][row] = cancerTypeExpression.get(symbols.get(row), cancerTypes.get(col));
 
-    private CancerTypeExpressionModel(DataMatrix<HugoSymbol, CancerType> cancerTypeExpression) {
-        this.cancerTypeExpression = cancerTypeExpression.immutable();
+        return new CancerTypeExpressionModel(HugoIndex.create(symbols), cancerTypes, levels);
+    }
+
+    private static final class SymbolOrdinals {
+        private final List<HugoSymbol> symbols;
+        private final int[] ordinals;
+
+        private SymbolOrdinals(List<HugoSymbol> symbols, int[] ordinals) {
+            this.symbols = symbols;
+            this.ordinals = ordinals;
+        }
     }
 
     /**
@@ -48,10 +129,7 @@ public final class CancerTypeExpressionModel extends ExpressionModel {
      * properties.
      */
     public static CancerTypeExpressionModel global() {
-        if (global == null)
-            global = createGlobal();
-
-        return global;
+        return global.get();
     }
 
     private static CancerTypeExpressionModel createGlobal() {
@@ -78,7 +156,45 @@ public final class CancerTypeExpressionModel extends ExpressionModel {
      * expression data by cancer type.
      */
     public static CancerTypeExpressionModel instance(File expressionFile) {
-        return new CancerTypeExpressionModel(loadExpression(expressionFile));
+        return compile(loadExpression(expressionFile));
+    }
+
+    /**
+     * Creates a new cancer type expression model from computed
+     * profiles (e.g., those produced by {@link ExpressionAggregator}).
+     *
+     * @param profiles the expression profile for each cancer type
+     * (which must share the same symbol index).
+     *
+     * @return a new cancer type model with the specified profiles.
+     *
+     * @throws IllegalArgumentException unless the profiles share the
+     * same symbol index.
+     */
+    public static CancerTypeExpressionModel create(Map<CancerType, ArrayExpressionProfile> profiles) {
+        List<CancerType> cancerTypes = new ArrayList<CancerType>(profiles.keySet());
+        HugoIndex symbolIndex = null;
+
+        double[][] levels = new double[cancerTypes.size()][];
+
+        for (int col = 0; col < cancerTypes.size(); ++col) {
+            ArrayExpressionProfile profile = profiles.get(cancerTypes.get(col));
+
+            if (symbolIndex == null)
+                symbolIndex = profile.getSymbolIndex();
+            else if (symbolIndex != profile.getSymbolIndex())
+                throw new IllegalArgumentException("Cancer type profiles must share the same symbol index.");
+
+            levels[col] = new double[symbolIndex.size()];
+
+            for (int ordinal = 0; ordinal < levels[col].length; ++ordinal)
+                levels[col][ordinal] = profile.getDouble(ordinal);
+        }
+
+        if (symbolIndex == null)
+            symbolIndex = HugoIndex.create(Collections.<HugoSymbol>emptyList());
+
+        return new CancerTypeExpressionModel(symbolIndex, cancerTypes, levels);
     }
 
     private static DataMatrix<HugoSymbol, CancerType> loadExpression(File expressionFile) {
@@ -119,12 +235,74 @@ public final class CancerTypeExpressionModel extends ExpressionModel {
     }
 
     @Override public Expression lookup(TumorBarcode barcode, HugoSymbol symbol) {
-        PatientID  patientID  = tumorPatientTable.require(barcode);
-        CancerType cancerType = patientCancerTypeTable.require(patientID);
+        int col = resolveColumn(barcode);
+        int ordinal = symbolIndex.indexOf(symbol);
 
-        if (cancerTypeExpression.contains(symbol, cancerType))
-            return Expression.valueOf(cancerTypeExpression.get(symbol, cancerType));
-        else
+        if (col < 0 || ordinal < 0)
+            return null;
+
+        // Missing cells in the expression matrix are stored as NaN,
+        // which lookupAll() reports as missing...
+        double level = levels[col][ordinal];
+
+        if (Double.isNaN(level))
             return null;
+        else
+            return Expression.valueOf(level);
+    }
+
+    @Override public void lookupAll(TumorBarcode barcode, List<HugoSymbol> symbols, double[] result) {
+        int col = resolveColumn(barcode);
+
+        if (col < 0) {
+            Arrays.fill(result, 0, symbols.size(), Double.NaN);
+            return;
+        }
+
+        double[] typeLevels = levels[col];
+        int[] ordinals = resolveOrdinals(symbols);
+
+        for (int k = 0; k < ordinals.length; ++k) {
+            int ordinal = ordinals[k];
+
+            if (ordinal >= 0)
+                result[k] = typeLevels[ordinal];
+            else
+                result[k] = Double.NaN;
+        }
+    }
+
+    private int resolveColumn(TumorBarcode barcode) {
+        int ordinal = barcodeIndex.indexOf(barcode);
+
+        if (ordinal < 0)
+            throw JamException.runtime("No patient mapped to barcode [%s].", barcode.getKey());
+
+        int col = barcodeColumns[ordinal];
+
+        if (col == UNMAPPED)
+            throw JamException.runtime("No cancer type for patient [%s].", tumorPatientTable.require(barcode).getKey());
+
+        return col;
+    }
+
+    private int[] resolveOrdinals(List<HugoSymbol> symbols) {
+        SymbolOrdinals cached = lastOrdinals;
+
+        if (cached != null && cached.symbols == symbols)
+            return cached.ordinals;
+
+        int[] ordinals = new int[symbols.size()];
+
+        for (int k = 0; k < ordinals.length; ++k)
+            ordinals[k] = symbolIndex.indexOf(symbols.get(k));
+
+        //
+        // Only immutable lists are safe to identify by reference...
+        //
+        if (symbols instanceof ImmutableList)
+            lastOrdinals = new SymbolOrdinals(symbols, ordinals);
+
+        return ordinals;
     }
 }
@@ -0,0 +1,213 @@
+
+package jene.rna;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import jam.app.JamLogger;
+
+import jene.hugo.HugoPeptideTable;
+import jene.hugo.HugoSymbol;
+import jene.peptide.Peptide;
+import jene.tcga.TumorBarcode;
+
+/**
+ * Builds peptide concentration profiles for an entire patient cohort.
+ *
+ * <p>The engine assigns an ordinal to each peptide in a gene-peptide
+ * table once, and stores the peptides for each gene in a compressed
+ * sparse row layout: the ordinals of the peptides derived from the
+ * gene with index {@code g} occupy the elements of a single ordinal
+ * array from {@code geneOffsets[g]} (inclusive) to
+ * {@code geneOffsets[g + 1]} (exclusive).  Each tumor is then
+ * processed with primitive arrays only: the expression of every gene
+ * is fetched in bulk, translated to concentration in bulk, and
+ * scattered onto the peptide ordinals of the gene (peptides derived
+ * from several genes accumulate the total concentration, as in
+ * {@code ConcentrationModel.buildProfile}).  Tumors are processed in
+ * parallel, and each worker thread reuses its own work arrays.
+ */
+public final class CohortConcentrationEngine {
+    private final ConcentrationModel concModel;
+
+    private final ImmutableList<HugoSymbol> symbols;
+    private final ImmutableList<Peptide> peptides;
+    private final ImmutableMap<Peptide, Integer> peptideIndex;
+
+    private final int[] geneOffsets;
+    private final int[] peptideOrdinals;
+
+    private CohortConcentrationEngine(HugoPeptideTable peptideTable, ConcentrationModel concModel) {
+        this.concModel = concModel;
+
+        List<HugoSymbol> sortedSymbols = new ArrayList<HugoSymbol>(peptideTable.viewSymbols());
+        Collections.sort(sortedSymbols);
+
+        Map<Peptide, Integer> ordinalMap = new HashMap<Peptide, Integer>();
+        List<Peptide> ordinalList = new ArrayList<Peptide>();
+
+        int[] offsets = new int[sortedSymbols.size() + 1];
+        int[] ordinals = new int[peptideTable.size()];
+        int count = 0;
+
+        for (int gene = 0; gene < sortedSymbols.size(); ++gene) {
+            offsets[gene] = count;
+
+            for (Peptide peptide : peptideTable.get(sortedSymbols.get(gene))) {
+                Integer ordinal = ordinalMap.get(peptide);
+
+                if (ordinal == null) {
+                    ordinal = ordinalList.size();
+                    ordinalMap.put(peptide, ordinal);
+                    ordinalList.add(peptide);
+                }
+
+                if (count == ordinals.length)
+                    ordinals = Arrays.copyOf(ordinals, 2 * count + 1);
+
+                ordinals[count++] = ordinal.intValue();
+            }
+        }
+
+        offsets[sortedSymbols.size()] = count;
+
+        this.symbols = ImmutableList.copyOf(sortedSymbols);
+        this.peptides = ImmutableList.copyOf(ordinalList);
+        this.peptideIndex = ImmutableMap.copyOf(ordinalMap);
+        this.geneOffsets = offsets;
+        this.peptideOrdinals = (count < ordinals.length) ? Arrays.copyOf(ordinals, count) : ordinals;
+    }
+
+    /**
+     * Creates a new cohort engine.
+     *
+     * @param peptideTable a table containing peptides derived from
+     * proteins (e.g., by proteasomal cleavage).
+     *
+     * @param concModel the model that converts RNA expression to
+     * protein concentration.
+     *
+     * @return a new cohort engine for the specified peptides and
+     * concentration model.
+     */
+    public static CohortConcentrationEngine create(HugoPeptideTable peptideTable, ConcentrationModel concModel) {
+        return new CohortConcentrationEngine(peptideTable, concModel);
+    }
+
+    /**
+     * Builds the peptide concentration profiles for a patient cohort.
+     *
+     * @param exprModel the RNA expression for the cohort (missing
+     * expression yields zero concentration).
+     *
+     * @param barcodes the tumors in the cohort.
+     *
+     * @return a sparse matrix containing the concentration profile
+     * for each tumor in the cohort (with rows in the order of the
+     * barcode collection).
+     *
+     * @throws IllegalArgumentException if the barcode collection
+     * contains duplicates.
+     */
+    public TumorConcentrationMatrix build(ExpressionModel exprModel, Collection<TumorBarcode> barcodes) {
+        ImmutableList<TumorBarcode> barcodeList = ImmutableList.copyOf(barcodes);
+
+        JamLogger.info("Building concentration profiles: [%d] tumors, [%d] genes, [%d] peptides...",
+                       barcodeList.size(), symbols.size(), peptides.size());
+
+        int[][] rowOrdinals = new int[barcodeList.size()][];
+        double[][] rowLevels = new double[barcodeList.size()][];
+
+        ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+        IntStream.range(0, barcodeList.size()).parallel().forEach(row -> {
+                Workspace workspace = workspaces.get();
+                workspace.compute(exprModel, barcodeList.get(row));
+
+                rowOrdinals[row] = workspace.collectOrdinals();
+                rowLevels[row] = workspace.collectLevels(rowOrdinals[row]);
+            });
+
+        return new TumorConcentrationMatrix(barcodeList, peptides, peptideIndex, rowOrdinals, rowLevels);
+    }
+
+    /**
+     * Returns a read-only view of the peptides processed by this
+     * engine, in ordinal order.
+     *
+     * @return a read-only view of the peptides processed by this
+     * engine.
+     */
+    public List<Peptide> viewPeptides() {
+        return peptides;
+    }
+
+    /**
+     * Returns a read-only view of the genes processed by this engine.
+     *
+     * @return a read-only view of the genes processed by this engine.
+     */
+    public List<HugoSymbol> viewSymbols() {
+        return symbols;
+    }
+
+    private final class Workspace {
+        private final double[] expression = new double[symbols.size()];
+        private final double[] concentration = new double[symbols.size()];
+
+        // Dense accumulator indexed by peptide ordinal (always reset
+        // to zero after use) and the ordinals with positive totals...
+        private final double[] accumulator = new double[peptides.size()];
+        private final int[] touched = new int[peptides.size()];
+        private int touchedCount = 0;
+
+        private void compute(ExpressionModel exprModel, TumorBarcode barcode) {
+            exprModel.lookupAll(barcode, symbols, expression);
+            concModel.translate(expression, concentration);
+
+            touchedCount = 0;
+
+            for (int gene = 0; gene < concentration.length; ++gene) {
+                double conc = concentration[gene];
+
+                if (conc <= 0.0)
+                    continue;
+
+                for (int k = geneOffsets[gene]; k < geneOffsets[gene + 1]; ++k) {
+                    int ordinal = peptideOrdinals[k];
+
+                    if (accumulator[ordinal] == 0.0)
+                        touched[touchedCount++] = ordinal;
+
+                    accumulator[ordinal] += conc;
+                }
+            }
+        }
+
+        private int[] collectOrdinals() {
+            int[] ordinals = Arrays.copyOf(touched, touchedCount);
+            Arrays.sort(ordinals);
+            return ordinals;
+        }
+
+        private double[] collectLevels(int[] ordinals) {
+            double[] levels = new double[ordinals.length];
+
+            for (int k = 0; k < ordinals.length; ++k) {
+                levels[k] = accumulator[ordinals[k]];
+                accumulator[ordinals[k]] = 0.0;
+            }
+
+            return levels;
+        }
+    }
+}
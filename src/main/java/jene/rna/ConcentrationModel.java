@@ -4,6 +4,7 @@ package jene.rna;
 import jam.app.JamProperties;
 import jam.lang.JamException;
 
+import jene.app.GlobalResource;
 import jene.chem.Concentration;
 import jene.hugo.HugoSymbol;
 import jene.hugo.HugoPeptideTable;
@@ -19,7 +20,8 @@ public abstract class ConcentrationModel {
     private final double exprThreshold;
     private final double maxExpression;
 
-    private static ConcentrationModel global = null;
+    private static final GlobalResource<ConcentrationModel> global =
+        GlobalResource.create("ConcentrationModel", ConcentrationModel::createGlobal);
 
     /**
      * Creates a new concentration model with given expression bounds.
@@ -71,10 +73,7 @@ public abstract class ConcentrationModel {
      * properties.
      */
     public static ConcentrationModel global() {
-        if (global == null)
-            global = createGlobal();
-
-        return global;
+        return global.get();
     }
 
     private static ConcentrationModel createGlobal() {
@@ -181,6 +180,36 @@ public abstract class ConcentrationModel {
             return Concentration.valueOf(translate(Math.min(expr, maxExpression)));
     }
 
+    /**
+     * Translates many RNA expression levels to protein concentrations
+     * without creating {@code Expression} or {@code Concentration}
+     * objects.
+     *
+     * @param expression the RNA expression levels ({@code Double.NaN}
+     * denotes missing expression, which yields zero concentration).
+     *
+     * @param concentration an array to hold the concentrations: on
+     * return, {@code concentration[k]} contains the concentration
+     * corresponding to {@code expression[k]}.
+     *
+     * @throws IndexOutOfBoundsException unless the concentration
+     * array is at least as long as the expression array.
+     */
+    public void translate(double[] expression, double[] concentration) {
+        for (int k = 0; k < expression.length; ++k) {
+            double expr = expression[k];
+
+            //
+            // Written so that NaN (missing expression) fails the
+            // threshold test...
+            //
+            if (expr >= exprThreshold)
+                concentration[k] = translate(Math.min(expr, maxExpression));
+            else
+                concentration[k] = 0.0;
+        }
+    }
+
     /**
      * Returns the protein concentration that corresponds to a given
      * RNA expression.
@@ -0,0 +1,504 @@
+
+package jene.rna;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import jam.app.JamLogger;
+import jam.io.IOUtil;
+
+import jene.hugo.HugoIndex;
+import jene.hugo.HugoSymbol;
+import jene.tcga.CancerType;
+import jene.tcga.PatientCancerTypeTable;
+import jene.tcga.PatientID;
+import jene.tcga.TumorBarcode;
+import jene.tcga.TumorPatientTable;
+
+/**
+ * Computes per-gene quantiles (e.g., the median) of the expression
+ * in a tumor expression matrix, for the entire cohort or grouped by
+ * cancer type.  The results are the aggregate profiles required by
+ * {@link AggregateExpressionModel} and
+ * {@link CancerTypeExpressionModel}.
+ *
+ * <p>Exact quantiles are computed gene by gene in parallel: each
+ * worker thread gathers the expression of one gene into a reusable
+ * primitive array and selects the order statistics in linear time
+ * (quickselect).  Quantiles are interpolated between adjacent order
+ * statistics (type 7 in the scheme of Hyndman and Fan, the default
+ * in R), so the median of an even number of tumors is the average of
+ * the two central values.  The exact method reads the matrix column
+ * by column, which is appropriate when the matrix is resident in
+ * memory.
+ *
+ * <p>Estimated quantiles are computed with a streaming sketch (see
+ * {@link QuantileSketch}) that reads each matrix row exactly once in
+ * storage order and requires constant memory per gene, so it is
+ * appropriate for memory-mapped matrices that do not fit in memory.
+ */
+public final class ExpressionAggregator {
+    private final TumorExpressionMatrix matrix;
+    private final HugoIndex symbolIndex;
+    private final List<ArrayExpressionProfile> rows;
+
+    private ExpressionAggregator(TumorExpressionMatrix matrix) {
+        this.matrix = matrix;
+        this.symbolIndex = matrix.getSymbolIndex();
+        this.rows = new ArrayList<ArrayExpressionProfile>(matrix.viewBarcodes().size());
+
+        for (TumorBarcode barcode : matrix.viewBarcodes())
+            rows.add(matrix.get(barcode));
+    }
+
+    // DecimalFormat is not thread-safe, so each store operation
+    // creates its own instance from this pattern...
+    private static final String EXPRESSION_PATTERN = "#0.0###";
+
+    /**
+     * The quantile probability of the median.
+     */
+    public static final double MEDIAN = 0.5;
+
+    /**
+     * Creates a new aggregator for a tumor expression matrix.
+     *
+     * @param matrix the expression matrix to aggregate.
+     *
+     * @return a new aggregator for the specified matrix.
+     */
+    public static ExpressionAggregator create(TumorExpressionMatrix matrix) {
+        return new ExpressionAggregator(matrix);
+    }
+
+    /**
+     * Computes aggregate expression profiles from a tumor expression
+     * matrix and writes them in the formats read by the aggregate and
+     * cancer type expression models.
+     *
+     * <p>Usage: {@code jene.rna.ExpressionAggregator MATRIX_FILE
+     * AGGREGATE_FILE CANCER_TYPE_FILE [QUANTILE]}.  The cancer type
+     * of each tumor is defined by the global tumor-patient and
+     * patient-cancer type tables; the default quantile is the median.
+     *
+     * @param args the command-line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length < 3 || args.length > 4) {
+            System.err.println("Usage: jene.rna.ExpressionAggregator MATRIX_FILE AGGREGATE_FILE CANCER_TYPE_FILE [QUANTILE]");
+            System.exit(1);
+        }
+
+        double prob = (args.length == 4) ? Double.parseDouble(args[3]) : MEDIAN;
+        ExpressionAggregator aggregator = create(TumorExpressionMatrix.load(args[0]));
+
+        storeAggregate(new File(args[1]), "RNA_Median", aggregator.quantile(prob));
+        storeByCancerType(new File(args[2]),
+                          aggregator.quantileByCancerType(prob,
+                                                          TumorPatientTable.global(),
+                                                          PatientCancerTypeTable.global()));
+    }
+
+    /**
+     * Computes an exact quantile of the expression of each gene over
+     * all tumors in the matrix.
+     *
+     * @param prob the quantile probability.
+     *
+     * @return the profile of per-gene quantiles.
+     *
+     * @throws IllegalArgumentException unless the probability lies in
+     * the interval {@code [0, 1]} and the matrix contains at least one
+     * tumor.
+     */
+    public ArrayExpressionProfile quantile(double prob) {
+        return quantile(prob, allRows());
+    }
+
+    /**
+     * Computes an exact quantile of the expression of each gene over
+     * the tumors of each cancer type.
+     *
+     * @param prob the quantile probability.
+     *
+     * @param tumorPatientTable the mapping from tumor to patient.
+     *
+     * @param patientCancerTypeTable the mapping from patient to
+     * cancer type.
+     *
+     * @return the profiles of per-gene quantiles for each cancer type
+     * present in the matrix (tumors without a cancer type are skipped).
+     *
+     * @throws IllegalArgumentException unless the probability lies in
+     * the interval {@code [0, 1]}.
+     */
+    public Map<CancerType, ArrayExpressionProfile> quantileByCancerType(double prob,
+                                                                         TumorPatientTable tumorPatientTable,
+                                                                         PatientCancerTypeTable patientCancerTypeTable) {
+        validateProb(prob);
+
+        Map<CancerType, int[]> groups = groupRows(tumorPatientTable, patientCancerTypeTable);
+        Map<CancerType, ArrayExpressionProfile> profiles = new EnumMap<CancerType, ArrayExpressionProfile>(CancerType.class);
+
+        for (Map.Entry<CancerType, int[]> entry : groups.entrySet())
+            profiles.put(entry.getKey(), quantile(prob, entry.getValue()));
+
+        return profiles;
+    }
+
+    /**
+     * Estimates a quantile of the expression of each gene over all
+     * tumors in the matrix with a streaming sketch.
+     *
+     * @param prob the quantile probability.
+     *
+     * @return the profile of estimated per-gene quantiles.
+     *
+     * @throws IllegalArgumentException unless the probability lies in
+     * the interval {@code [0, 1]} and the matrix contains at least one
+     * tumor.
+     */
+    public ArrayExpressionProfile estimateQuantile(double prob) {
+        return estimateQuantile(prob, allRows());
+    }
+
+    /**
+     * Estimates a quantile of the expression of each gene over the
+     * tumors of each cancer type with streaming sketches.  Cancer
+     * types are processed in parallel.
+     *
+     * @param prob the quantile probability.
+     *
+     * @param tumorPatientTable the mapping from tumor to patient.
+     *
+     * @param patientCancerTypeTable the mapping from patient to
+     * cancer type.
+     *
+     * @return the profiles of estimated per-gene quantiles for each
+     * cancer type present in the matrix (tumors without a cancer type
+     * are skipped).
+     *
+     * @throws IllegalArgumentException unless the probability lies in
+     * the interval {@code [0, 1]}.
+     */
+    public Map<CancerType, ArrayExpressionProfile> estimateQuantileByCancerType(double prob,
+                                                                                 TumorPatientTable tumorPatientTable,
+                                                                                 PatientCancerTypeTable patientCancerTypeTable) {
+        validateProb(prob);
+
+        Map<CancerType, int[]> groups = groupRows(tumorPatientTable, patientCancerTypeTable);
+        List<CancerType> cancerTypes = new ArrayList<CancerType>(groups.keySet());
+
+        ArrayExpressionProfile[] results = new ArrayExpressionProfile[cancerTypes.size()];
+
+        IntStream.range(0, results.length).parallel().forEach(k -> {
+                results[k] = estimateQuantile(prob, groups.get(cancerTypes.get(k)));
+            });
+
+        Map<CancerType, ArrayExpressionProfile> profiles = new EnumMap<CancerType, ArrayExpressionProfile>(CancerType.class);
+
+        for (int k = 0; k < results.length; ++k)
+            profiles.put(cancerTypes.get(k), results[k]);
+
+        return profiles;
+    }
+
+    /**
+     * Writes an aggregate profile in the two-column format read by
+     * {@link AggregateExpressionModel#load(File)}.
+     *
+     * @param file the file to write.
+     *
+     * @param columnName the header for the expression column (e.g.,
+     * {@code RNA_Median}).
+     *
+     * @param profile the aggregate profile to write.
+     *
+     * @throws RuntimeException if the file cannot be opened for
+     * writing.
+     */
+    public static void storeAggregate(File file, String columnName, ArrayExpressionProfile profile) {
+        JamLogger.info("Storing aggregate expression profile [%s]...", file.getName());
+
+        HugoIndex index = profile.getSymbolIndex();
+        DecimalFormat format = new DecimalFormat(EXPRESSION_PATTERN);
+
+        try (PrintWriter writer = IOUtil.openWriter(file)) {
+            writer.println("Hugo_Symbol\t" + columnName);
+
+            for (int ordinal : sortOrdinals(index))
+                writer.println(index.get(ordinal).getKey() + "\t" + format.format(profile.getDouble(ordinal)));
+        }
+    }
+
+    /**
+     * Writes cancer type profiles in the matrix format read by
+     * {@link CancerTypeExpressionModel#instance(File)} (genes in rows,
+     * cancer types in columns).
+     *
+     * @param file the file to write.
+     *
+     * @param profiles the cancer type profiles to write (which must
+     * share the same symbol index).
+     *
+     * @throws IllegalArgumentException unless the profiles share the
+     * same symbol index.
+     *
+     * @throws RuntimeException if the file cannot be opened for
+     * writing.
+     */
+    public static void storeByCancerType(File file, Map<CancerType, ArrayExpressionProfile> profiles) {
+        JamLogger.info("Storing cancer type expression profiles [%s]...", file.getName());
+
+        List<CancerType> cancerTypes = new ArrayList<CancerType>(profiles.keySet());
+        HugoIndex index = requireSharedIndex(profiles.values());
+        DecimalFormat format = new DecimalFormat(EXPRESSION_PATTERN);
+
+        try (PrintWriter writer = IOUtil.openWriter(file)) {
+            StringBuilder builder = new StringBuilder();
+
+            for (CancerType cancerType : cancerTypes) {
+                builder.append(',');
+                builder.append(cancerType.name());
+            }
+
+            writer.println(builder.toString());
+
+            for (int ordinal : sortOrdinals(index)) {
+                builder.setLength(0);
+                builder.append(index.get(ordinal).getKey());
+
+                for (CancerType cancerType : cancerTypes) {
+                    builder.append(',');
+                    builder.append(format.format(profiles.get(cancerType).getDouble(ordinal)));
+                }
+
+                writer.println(builder.toString());
+            }
+        }
+    }
+
+    private static HugoIndex requireSharedIndex(Iterable<ArrayExpressionProfile> profiles) {
+        HugoIndex index = null;
+
+        for (ArrayExpressionProfile profile : profiles) {
+            if (index == null)
+                index = profile.getSymbolIndex();
+            else if (index != profile.getSymbolIndex())
+                throw new IllegalArgumentException("Cancer type profiles must share the same symbol index.");
+        }
+
+        if (index == null)
+            index = HugoIndex.create(Collections.<HugoSymbol>emptyList());
+
+        return index;
+    }
+
+    private static int[] sortOrdinals(HugoIndex index) {
+        Integer[] boxed = new Integer[index.size()];
+
+        for (int ordinal = 0; ordinal < boxed.length; ++ordinal)
+            boxed[ordinal] = ordinal;
+
+        Arrays.sort(boxed, (k1, k2) -> index.get(k1).compareTo(index.get(k2)));
+
+        int[] ordinals = new int[boxed.length];
+
+        for (int k = 0; k < ordinals.length; ++k)
+            ordinals[k] = boxed[k].intValue();
+
+        return ordinals;
+    }
+
+    private int[] allRows() {
+        return IntStream.range(0, rows.size()).toArray();
+    }
+
+    private Map<CancerType, int[]> groupRows(TumorPatientTable tumorPatientTable,
+                                             PatientCancerTypeTable patientCancerTypeTable) {
+        Map<CancerType, int[]> groups = new EnumMap<CancerType, int[]>(CancerType.class);
+        Map<CancerType, Integer> counts = new EnumMap<CancerType, Integer>(CancerType.class);
+
+        List<TumorBarcode> barcodes = matrix.viewBarcodes();
+        CancerType[] rowTypes = new CancerType[barcodes.size()];
+        int skipped = 0;
+
+        for (int row = 0; row < rowTypes.length; ++row) {
+            PatientID patientID = tumorPatientTable.lookup(barcodes.get(row));
+
+            if (patientID != null)
+                rowTypes[row] = patientCancerTypeTable.lookup(patientID);
+
+            if (rowTypes[row] != null)
+                counts.merge(rowTypes[row], 1, Integer::sum);
+            else
+                ++skipped;
+        }
+
+        if (skipped > 0)
+            JamLogger.warn("Skipping [%d] tumors without a cancer type.", skipped);
+
+        for (Map.Entry<CancerType, Integer> entry : counts.entrySet()) {
+            groups.put(entry.getKey(), new int[entry.getValue().intValue()]);
+            entry.setValue(0);
+        }
+
+        for (int row = 0; row < rowTypes.length; ++row) {
+            CancerType cancerType = rowTypes[row];
+
+            if (cancerType != null) {
+                int k = counts.get(cancerType);
+                groups.get(cancerType)[k] = row;
+                counts.put(cancerType, k + 1);
+            }
+        }
+
+        return groups;
+    }
+
+    private ArrayExpressionProfile quantile(double prob, int[] groupRows) {
+        validateProb(prob);
+        validateGroup(groupRows);
+
+        double[] levels = new double[symbolIndex.size()];
+        ThreadLocal<double[]> columns = ThreadLocal.withInitial(() -> new double[groupRows.length]);
+
+        IntStream.range(0, levels.length).parallel().forEach(ordinal -> {
+                double[] column = columns.get();
+
+                for (int k = 0; k < groupRows.length; ++k)
+                    column[k] = rows.get(groupRows[k]).getDouble(ordinal);
+
+                levels[ordinal] = quantile(column, groupRows.length, prob);
+            });
+
+        return ArrayExpressionProfile.create(symbolIndex, levels);
+    }
+
+    private ArrayExpressionProfile estimateQuantile(double prob, int[] groupRows) {
+        validateProb(prob);
+        validateGroup(groupRows);
+
+        double[] observation = new double[symbolIndex.size()];
+        QuantileSketch sketch = new QuantileSketch(prob, observation.length);
+
+        for (int row : groupRows) {
+            ArrayExpressionProfile profile = rows.get(row);
+
+            for (int ordinal = 0; ordinal < observation.length; ++ordinal)
+                observation[ordinal] = profile.getDouble(ordinal);
+
+            sketch.add(observation);
+        }
+
+        double[] levels = new double[observation.length];
+
+        for (int ordinal = 0; ordinal < levels.length; ++ordinal)
+            levels[ordinal] = sketch.estimate(ordinal);
+
+        return ArrayExpressionProfile.create(symbolIndex, levels);
+    }
+
+    private static void validateProb(double prob) {
+        if (prob < 0.0 || prob > 1.0)
+            throw new IllegalArgumentException("Quantile probability must lie in the interval [0, 1].");
+    }
+
+    private static void validateGroup(int[] groupRows) {
+        if (groupRows.length < 1)
+            throw new IllegalArgumentException("At least one tumor is required.");
+    }
+
+    /**
+     * Computes an interpolated quantile of the first {@code count}
+     * elements of an array, which are partially reordered.
+     *
+     * @param values the values to examine.
+     *
+     * @param count the number of values to examine (at least one).
+     *
+     * @param prob the quantile probability.
+     *
+     * @return the interpolated quantile.
+     */
+    static double quantile(double[] values, int count, double prob) {
+        double position = prob * (count - 1);
+        int lower = (int) Math.floor(position);
+        double weight = position - lower;
+
+        double lowerValue = select(values, 0, count - 1, lower);
+
+        if (weight == 0.0 || lower + 1 >= count)
+            return lowerValue;
+
+        //
+        // After selection, the next order statistic is the minimum of
+        // the elements above the selected one...
+        //
+        double upperValue = values[lower + 1];
+
+        for (int k = lower + 2; k < count; ++k)
+            upperValue = Math.min(upperValue, values[k]);
+
+        return lowerValue + weight * (upperValue - lowerValue);
+    }
+
+    // Iterative quickselect with median-of-three pivots: on return,
+    // values[k] holds the k-th order statistic, with smaller values
+    // before it and larger values after it...
+    private static double select(double[] values, int left, int right, int k) {
+        while (left < right) {
+            int mid = (left + right) >>> 1;
+
+            if (values[mid] < values[left])
+                swap(values, mid, left);
+
+            if (values[right] < values[left])
+                swap(values, right, left);
+
+            if (values[right] < values[mid])
+                swap(values, right, mid);
+
+            double pivot = values[mid];
+            int i = left;
+            int j = right;
+
+            while (i <= j) {
+                while (values[i] < pivot)
+                    ++i;
+
+                while (values[j] > pivot)
+                    --j;
+
+                if (i <= j) {
+                    swap(values, i, j);
+                    ++i;
+                    --j;
+                }
+            }
+
+            if (k <= j)
+                right = j;
+            else if (k >= i)
+                left = i;
+            else
+                return values[k];
+        }
+
+        return values[k];
+    }
+
+    private static void swap(double[] values, int i, int j) {
+        double tmp = values[i];
+        values[i] = values[j];
+        values[j] = tmp;
+    }
+}
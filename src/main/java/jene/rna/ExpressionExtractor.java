@@ -1,25 +1,105 @@
 
 package jene.rna;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
 
 import jam.app.JamLogger;
 
+import jene.hugo.HugoIndex;
+import jene.hugo.HugoSymbol;
 import jene.tcga.TumorBarcode;
 
+/**
+ * Extracts individual tumor profiles from an RNA expression matrix
+ * and writes them in the format of {@code ExpressionProfile.store}.
+ *
+ * <p>The symbols are sorted once for all tumors, the matrix rows are
+ * streamed (as views, without copying) to a bounded pool of writer
+ * threads, and each writer encodes its profiles into a reusable byte
+ * buffer, so extraction is limited by disk throughput rather than by
+ * hashing, sorting, and formatting.
+ */
 public final class ExpressionExtractor {
     private final ExpressionManager manager;
     private final List<TumorBarcode> barcodes;
     private final TumorExpressionMatrix matrix;
+    private final int writerCount;
+
+    // Symbol ordinals in alphabetical order and the encoded symbol
+    // keys (with a trailing delimiter) indexed by ordinal...
+    private final int[] sortedOrdinals;
+    private final byte[][] symbolBytes;
+
+    private final AtomicInteger storedCount = new AtomicInteger();
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
 
     private ExpressionExtractor(ExpressionManager manager,
                                 List<TumorBarcode> barcodes,
-                                TumorExpressionMatrix matrix) {
+                                TumorExpressionMatrix matrix,
+                                int writerCount) {
+        if (writerCount < 1)
+            throw new IllegalArgumentException("At least one writer thread is required.");
+
         this.matrix = matrix;
         this.manager = manager;
         this.barcodes = barcodes;
+        this.writerCount = writerCount;
+
+        HugoIndex symbolIndex = matrix.getSymbolIndex();
+
+        this.sortedOrdinals = sortOrdinals(symbolIndex);
+        this.symbolBytes = new byte[symbolIndex.size()][];
+
+        for (int ordinal = 0; ordinal < symbolBytes.length; ++ordinal)
+            symbolBytes[ordinal] = encode(symbolIndex.get(ordinal).getKey() + DELIM);
     }
 
+    private static final char DELIM = ',';
+    private static final byte[] HEADER_BYTES = "Hugo_Symbol,Expression\n".getBytes(StandardCharsets.UTF_8);
+
+    // Levels are written exactly as the "#0.0###" format used by
+    // ExpressionProfile.store writes them: rounded to at most four
+    // decimal places...
+    private static final String EXPRESSION_PATTERN = "#0.0###";
+    private static final int MAX_DECIMALS = 4;
+    private static final long SCALE = 10000L;
+
+    // Scaled levels below this bound are computed accurately enough
+    // in double precision to be rounded directly, unless they lie
+    // within the tie margin of a rounding boundary; those (rare)
+    // levels are delegated to DecimalFormat, whose rounding of ties
+    // depends on the shortest decimal representation of the level...
+    private static final double FAST_SCALED_BOUND = 1.0E+12;
+    private static final double TIE_MARGIN = 1.0E-03;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The default number of writer threads: extraction is limited by
+     * disk throughput, so a few threads suffice to keep the disk busy
+     * while the profiles are compressed.
+     */
+    public static final int DEFAULT_WRITER_COUNT =
+        Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
     /**
      * Extracts individual tumor profiles from an RNA expression
      * matrix.
@@ -33,38 +113,262 @@ public final class ExpressionExtractor {
      * @param extractDir destination for the individual profiles.
      */
     public static void extract(String matrixFile, String barcodeFile, String extractDir) {
+        extract(matrixFile, barcodeFile, extractDir, DEFAULT_WRITER_COUNT);
+    }
+
+    /**
+     * Extracts individual tumor profiles from an RNA expression
+     * matrix.
+     *
+     * @param matrixFile file containing the complete expression
+     * matrix.
+     *
+     * @param barcodeFile file containing the tumor barcodes to
+     * extract.
+     *
+     * @param extractDir destination for the individual profiles.
+     *
+     * @param writerCount the number of writer threads.
+     *
+     * @throws IllegalArgumentException unless the writer count is
+     * positive.
+     */
+    public static void extract(String matrixFile, String barcodeFile, String extractDir, int writerCount) {
         ExpressionManager manager = ExpressionManager.create(extractDir);
         List<TumorBarcode> barcodes = TumorBarcode.load(barcodeFile);
         TumorExpressionMatrix matrix = TumorExpressionMatrix.load(matrixFile);
 
-        ExpressionExtractor extractor = new ExpressionExtractor(manager, barcodes, matrix);
+        extract(matrix, barcodes, manager, writerCount);
+    }
+
+    /**
+     * Extracts individual tumor profiles from an RNA expression
+     * matrix.
+     *
+     * @param matrix the complete expression matrix.
+     *
+     * @param barcodes the tumor barcodes to extract (barcodes missing
+     * from the matrix are logged and skipped).
+     *
+     * @param manager the manager for the individual profiles.
+     *
+     * @param writerCount the number of writer threads.
+     *
+     * @throws IllegalArgumentException unless the writer count is
+     * positive.
+     *
+     * @throws RuntimeException if any profile cannot be written.
+     */
+    public static void extract(TumorExpressionMatrix matrix,
+                               List<TumorBarcode> barcodes,
+                               ExpressionManager manager,
+                               int writerCount) {
+        ExpressionExtractor extractor = new ExpressionExtractor(manager, barcodes, matrix, writerCount);
         extractor.extract();
     }
 
+    private static int[] sortOrdinals(HugoIndex symbolIndex) {
+        //
+        // Much nicer to see the genes in alphabetical order...
+        //
+        List<HugoSymbol> symbols = new ArrayList<HugoSymbol>(symbolIndex.viewSymbols());
+        Collections.sort(symbols);
+
+        return symbols.stream().mapToInt(symbolIndex::require).toArray();
+    }
+
+    private static byte[] encode(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
     private void extract() {
-        for (TumorBarcode barcode : barcodes) {
-            ExpressionProfile profile = matrix.get(barcode);
+        JamLogger.info("Extracting [%d] expression profiles with [%d] writers...", barcodes.size(), writerCount);
+
+        //
+        // The bounded queue keeps at most a few rows in flight per
+        // writer; when it is full, the submitting thread writes the
+        // next profile itself, which throttles the row stream...
+        //
+        ThreadPoolExecutor writers =
+            new ThreadPoolExecutor(writerCount, writerCount, 0L, TimeUnit.MILLISECONDS,
+                                   new ArrayBlockingQueue<Runnable>(2 * writerCount),
+                                   new ThreadPoolExecutor.CallerRunsPolicy());
+
+        ThreadLocal<RowEncoder> encoders = ThreadLocal.withInitial(RowEncoder::new);
 
-            if (profile != null)
-                manager.store(barcode, profile);
-            else
-                JamLogger.info("Missing expression data: [%s].", barcode.getKey());
+        try {
+            for (TumorBarcode barcode : barcodes) {
+                if (failure.get() != null)
+                    break;
+
+                ArrayExpressionProfile profile = matrix.get(barcode);
+
+                if (profile != null)
+                    writers.execute(() -> store(encoders.get(), barcode, profile));
+                else
+                    JamLogger.info("Missing expression data: [%s].", barcode.getKey());
+            }
+        }
+        finally {
+            writers.shutdown();
+            awaitTermination(writers);
+        }
+
+        if (failure.get() != null)
+            throw failure.get();
+
+        JamLogger.info("Extracted [%d] expression profiles.", storedCount.get());
+    }
+
+    private static void awaitTermination(ThreadPoolExecutor writers) {
+        try {
+            while (!writers.awaitTermination(1L, TimeUnit.MINUTES))
+                JamLogger.info("Waiting for [%d] expression profiles...", writers.getQueue().size());
+        }
+        catch (InterruptedException ex) {
+            writers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void store(RowEncoder encoder, TumorBarcode barcode, ArrayExpressionProfile profile) {
+        if (failure.get() != null)
+            return;
+
+        try {
+            encoder.encode(profile);
+            encoder.writeTo(manager.expressionFile(barcode));
+            manager.invalidate(barcode);
+            storedCount.incrementAndGet();
+        }
+        catch (RuntimeException ex) {
+            failure.compareAndSet(null, ex);
+        }
+    }
+
+    private final class RowEncoder {
+        private byte[] buffer = new byte[BUFFER_SIZE];
+        private int size = 0;
+
+        // The root locale keeps the decimal point consistent with the
+        // digits encoded directly...
+        private final DecimalFormat format =
+            new DecimalFormat(EXPRESSION_PATTERN, DecimalFormatSymbols.getInstance(Locale.ROOT));
+
+        private void encode(ArrayExpressionProfile profile) {
+            size = 0;
+            append(HEADER_BYTES);
+
+            for (int ordinal : sortedOrdinals) {
+                double level = profile.getDouble(ordinal);
+
+                //
+                // Only positive expression is stored, as in the
+                // profiles written by ExpressionProfile.store...
+                //
+                if (level > 0.0) {
+                    append(symbolBytes[ordinal]);
+                    appendLevel(level);
+                    appendByte((byte) '\n');
+                }
+            }
+        }
+
+        private void appendLevel(double level) {
+            double scaled = level * SCALE;
+
+            if (scaled >= FAST_SCALED_BOUND || Math.abs(scaled - Math.floor(scaled) - 0.5) <= TIE_MARGIN) {
+                append(format.format(level).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            long rounded = (long) Math.rint(scaled);
+
+            appendDigits(rounded / SCALE, 1);
+            appendByte((byte) '.');
+
+            //
+            // Trailing zeros are removed, but at least one decimal
+            // place is always shown...
+            //
+            long fraction = rounded % SCALE;
+            int width = MAX_DECIMALS;
+
+            while (width > 1 && fraction % 10 == 0) {
+                fraction /= 10;
+                --width;
+            }
+
+            appendDigits(fraction, width);
+        }
+
+        private void appendDigits(long value, int minWidth) {
+            int width = 1;
+
+            for (long bound = 10; value >= bound && width < 19; bound *= 10)
+                ++width;
+
+            width = Math.max(width, minWidth);
+            ensureCapacity(width);
+
+            for (int index = size + width - 1; index >= size; --index) {
+                buffer[index] = (byte) ('0' + (value % 10));
+                value /= 10;
+            }
+
+            size += width;
+        }
+
+        private void append(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        private void appendByte(byte b) {
+            ensureCapacity(1);
+            buffer[size++] = b;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length)
+                buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, size + extra));
+        }
+
+        private void writeTo(File file) {
+            try (OutputStream output = open(file)) {
+                output.write(buffer, 0, size);
+            }
+            catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        private OutputStream open(File file) throws IOException {
+            OutputStream output = new FileOutputStream(file);
+
+            if (file.getName().endsWith(".gz"))
+                output = new GZIPOutputStream(output, BUFFER_SIZE);
+
+            return output;
         }
     }
 
     private static void usage() {
-        System.err.println("Usage: jene.rna.ExpressionManager MATRIX_FILE BARCODE_FILE EXTRACT_DIR");
+        System.err.println("Usage: jene.rna.ExpressionExtractor MATRIX_FILE BARCODE_FILE EXTRACT_DIR [WRITER_COUNT]");
         System.exit(1);
     }
 
     public static void main(String[] args) {
-        if (args.length != 3)
+        if (args.length < 3 || args.length > 4)
             usage();
 
         String matrixFile  = args[0];
         String barcodeFile = args[1];
         String extractDir  = args[2];
 
-        extract(matrixFile, barcodeFile, extractDir);
+        int writerCount = (args.length == 4) ? Integer.parseInt(args[3]) : DEFAULT_WRITER_COUNT;
+
+        extract(matrixFile, barcodeFile, extractDir, writerCount);
     }
 }
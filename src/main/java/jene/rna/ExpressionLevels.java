@@ -0,0 +1,76 @@
+
+package jene.rna;
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+// Read-only primitive storage for expression profiles and matrices.
+// Levels computed or parsed on the heap are stored in double precision
+// (exactly as parsed); levels mapped from a binary matrix cache are
+// read in the single precision of the cache format.  Both forms are
+// read only with absolute (thread-safe) access...
+abstract class ExpressionLevels {
+    abstract double get(int index);
+
+    abstract int size();
+
+    abstract ExpressionLevels slice(int offset, int length);
+
+    static ExpressionLevels wrap(double[] levels) {
+        return new DoubleLevels(DoubleBuffer.wrap(levels));
+    }
+
+    static ExpressionLevels wrap(FloatBuffer levels) {
+        return new FloatLevels(levels);
+    }
+
+    private static final class DoubleLevels extends ExpressionLevels {
+        private final DoubleBuffer buffer;
+
+        private DoubleLevels(DoubleBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override double get(int index) {
+            return buffer.get(index);
+        }
+
+        @Override int size() {
+            return buffer.limit();
+        }
+
+        @Override ExpressionLevels slice(int offset, int length) {
+            DoubleBuffer view = buffer.duplicate();
+
+            view.position(offset);
+            view.limit(offset + length);
+
+            return new DoubleLevels(view.slice());
+        }
+    }
+
+    private static final class FloatLevels extends ExpressionLevels {
+        private final FloatBuffer buffer;
+
+        private FloatLevels(FloatBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override double get(int index) {
+            return buffer.get(index);
+        }
+
+        @Override int size() {
+            return buffer.limit();
+        }
+
+        @Override ExpressionLevels slice(int offset, int length) {
+            FloatBuffer view = buffer.duplicate();
+
+            view.position(offset);
+            view.limit(offset + length);
+
+            return new FloatLevels(view.slice());
+        }
+    }
+}
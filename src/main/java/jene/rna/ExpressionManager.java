@@ -2,25 +2,56 @@
 package jene.rna;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
+import com.google.common.cache.CacheStats;
+
+import jam.app.JamProperties;
 import jam.lang.JamException;
 
 import jene.tcga.TumorBarcode;
+import jene.tcga.TumorDataCache;
 
 /**
  * Manages persistent RNA expression profile data.
+ *
+ * <p>Loaded profiles are kept in a cache shared by all threads that
+ * use the manager, so each profile is parsed at most once while it
+ * remains within the memory budget of the cache.
  */
 public final class ExpressionManager {
     private final String dirName;
+    private final TumorDataCache<ExpressionProfile> cache;
 
-    private ExpressionManager(String dirName) {
+    private ExpressionManager(String dirName, long cacheBytes) {
         this.dirName = dirName;
+        this.cache = TumorDataCache.create(this::parse, ExpressionManager::weigh, cacheBytes);
     }
 
     private static final String BASE_SUFFIX = "_expression_profile.csv.gz";
 
+    // Approximate footprint of one gene in a stand-alone profile: a
+    // hash map entry and an Expression object (symbols are shared)...
+    private static final int BYTES_PER_GENE = 56;
+
     /**
-     * Creates a new expression data manager.
+     * Name of the system property that specifies the memory budget
+     * (in bytes) for the profile cache of each manager.
+     */
+    public static final String CACHE_BYTES_PROPERTY = "jene.rna.expressionCacheBytes";
+
+    /**
+     * Default memory budget (in bytes) for the profile cache of each
+     * manager.
+     */
+    public static final long CACHE_BYTES_DEFAULT = 256L << 20;
+
+    /**
+     * Creates a new expression data manager with the memory budget
+     * specified by the {@code jene.rna.expressionCacheBytes} system
+     * property (or the default budget if the property is not set).
      *
      * @param dirName the directory containing individual tumor
      * expression profiles.
@@ -29,7 +60,41 @@ public final class ExpressionManager {
      * directory.
      */
     public static ExpressionManager create(String dirName) {
-        return new ExpressionManager(dirName);
+        return create(dirName, resolveCacheBytes());
+    }
+
+    /**
+     * Creates a new expression data manager.
+     *
+     * @param dirName the directory containing individual tumor
+     * expression profiles.
+     *
+     * @param cacheBytes the memory budget for the profile cache (in
+     * bytes; zero disables caching).
+     *
+     * @return a new expression data manager for the specified
+     * directory.
+     *
+     * @throws IllegalArgumentException if the memory budget is
+     * negative.
+     */
+    public static ExpressionManager create(String dirName, long cacheBytes) {
+        return new ExpressionManager(dirName, cacheBytes);
+    }
+
+    private static long resolveCacheBytes() {
+        if (JamProperties.isSet(CACHE_BYTES_PROPERTY))
+            return Long.parseLong(JamProperties.getRequired(CACHE_BYTES_PROPERTY));
+        else
+            return CACHE_BYTES_DEFAULT;
+    }
+
+    private ExpressionProfile parse(TumorBarcode barcode) {
+        return ExpressionProfile.load(expressionFile(barcode));
+    }
+
+    private static int weigh(ExpressionProfile profile) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) BYTES_PER_GENE * profile.viewSymbols().size());
     }
 
     /**
@@ -63,7 +128,8 @@ public final class ExpressionManager {
     }
 
     /**
-     * Loads the expression profile for a given tumor sample.
+     * Loads the expression profile for a given tumor sample (or
+     * retrieves it from the profile cache).
      *
      * @param barcode the barcode of the desired tumor sample.
      *
@@ -71,14 +137,38 @@ public final class ExpressionManager {
      * ({@code null} if the profile does not exist).
      */
     public ExpressionProfile load(TumorBarcode barcode) {
-        File file = expressionFile(barcode);
-
-        if (file.canRead())
-            return ExpressionProfile.load(file);
+        if (expressionFile(barcode).canRead())
+            return cache.get(barcode);
         else
             return null;
     }
 
+    /**
+     * Loads the expression profiles for the next tumor samples to be
+     * processed in the background.
+     *
+     * @param barcodes the barcodes of the tumor samples to be
+     * processed, in order of processing.
+     *
+     * @param count the maximum number of profiles to prefetch.
+     *
+     * @return a future that completes when the prefetched profiles
+     * have been loaded.
+     */
+    public CompletableFuture<Void> prefetch(Collection<TumorBarcode> barcodes, int count) {
+        return cache.prefetch(barcodes.stream().filter(this::exists).limit(count).collect(Collectors.toList()), count);
+    }
+
+    /**
+     * Returns the hit, miss, and eviction statistics for the profile
+     * cache.
+     *
+     * @return a snapshot of the statistics for the profile cache.
+     */
+    public CacheStats cacheStats() {
+        return cache.stats();
+    }
+
     /**
      * Loads the expression profile for a given tumor sample.
      *
@@ -106,5 +196,17 @@ public final class ExpressionManager {
      */
     public void store(TumorBarcode barcode, ExpressionProfile profile) {
         profile.store(expressionFile(barcode));
+        invalidate(barcode);
+    }
+
+    /**
+     * Discards the cached expression profile for a given tumor sample
+     * (after its expression file has been rewritten by another path,
+     * such as {@code ExpressionExtractor}).
+     *
+     * @param barcode the barcode for the tumor sample.
+     */
+    void invalidate(TumorBarcode barcode) {
+        cache.invalidate(barcode);
     }
 }
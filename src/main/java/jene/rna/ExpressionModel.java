@@ -1,9 +1,12 @@
 
 package jene.rna;
 
+import java.util.List;
+
 import jam.app.JamProperties;
 import jam.lang.JamException;
 
+import jene.app.GlobalResource;
 import jene.hugo.HugoSymbol;
 import jene.tcga.TumorBarcode;
 
@@ -11,7 +14,8 @@ import jene.tcga.TumorBarcode;
  * Defines an interface to RNA expression data for a patient cohort.
  */
 public abstract class ExpressionModel {
-    private static ExpressionModel global = null;
+    private static final GlobalResource<ExpressionModel> global =
+        GlobalResource.create("ExpressionModel", ExpressionModel::createGlobal);
 
     /**
      * Name of the system property that specifies the type of the
@@ -28,10 +32,7 @@ public abstract class ExpressionModel {
      * properties.
      */
     public static ExpressionModel global() {
-        if (global == null)
-            global = createGlobal();
-
-        return global;
+        return global.get();
     }
 
     private static ExpressionModel createGlobal() {
@@ -70,6 +71,36 @@ public abstract class ExpressionModel {
      */
     public abstract Expression lookup(TumorBarcode barcode, HugoSymbol symbol);
 
+    /**
+     * Returns the RNA expression levels (FPKM) for a specified tumor
+     * and many genes as primitive values.
+     *
+     * <p>This default implementation calls {@code lookup} for each
+     * gene; subclasses backed by primitive arrays should override it.
+     *
+     * @param barcode the identifer for the tumor of interest.
+     *
+     * @param symbols the HUGO symbols for the genes of interest.
+     *
+     * @param result an array to hold the expression: on return,
+     * {@code result[k]} contains the expression for the gene
+     * {@code symbols.get(k)}, or {@code Double.NaN} if the model
+     * does not contain a matching record.
+     *
+     * @throws IndexOutOfBoundsException unless the result array is at
+     * least as long as the symbol list.
+     */
+    public void lookupAll(TumorBarcode barcode, List<HugoSymbol> symbols, double[] result) {
+        for (int k = 0; k < symbols.size(); ++k) {
+            Expression expression = lookup(barcode, symbols.get(k));
+
+            if (expression != null)
+                result[k] = expression.doubleValue();
+            else
+                result[k] = Double.NaN;
+        }
+    }
+
     /**
      * Returns the RNA expression level (FPKM) for a specified tumor
      * and gene.
@@ -4,7 +4,6 @@ package jene.rna;
 import java.io.File;
 import java.text.DecimalFormat;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,17 +20,21 @@ import jene.hugo.HugoSymbol;
 
 /**
  * An immutable collection of RNA expression indexed by HUGO symbol.
+ *
+ * <p>Profiles are either map-backed (created from an expression map
+ * or loaded from a file) or array-backed ({@link ArrayExpressionProfile}),
+ * with levels stored in a primitive array indexed by the ordinals of
+ * a shared {@code HugoIndex}.  Array-backed profiles may own their
+ * levels (see {@link ArrayExpressionProfile#create} and
+ * {@link ArrayExpressionProfile#copyOf}) or be views of a single row
+ * of a {@code TumorExpressionMatrix}, which copy nothing.  Either way,
+ * {@link #getDouble(HugoSymbol)} on an array-backed profile allocates
+ * nothing.
  */
-public final class ExpressionProfile {
-    private final Map<HugoSymbol, Expression> profile;
-
+public abstract class ExpressionProfile {
     private static final DecimalFormat EXPRESSION_FORMAT = new DecimalFormat("#0.0###");
 
-    private ExpressionProfile(Map<HugoSymbol, Expression> profile, boolean copy) {
-        if (copy)
-            this.profile = new HashMap<HugoSymbol, Expression>(profile);
-        else
-            this.profile = Collections.unmodifiableMap(profile);
+    ExpressionProfile() {
     }
 
     /**
@@ -42,7 +45,7 @@ public final class ExpressionProfile {
      * @return the new expression profile.
      */
     public static ExpressionProfile create(Map<HugoSymbol, Expression> profile) {
-        return new ExpressionProfile(profile, true);
+        return new MapExpressionProfile(new HashMap<HugoSymbol, Expression>(profile));
     }
 
     /**
@@ -59,7 +62,7 @@ public final class ExpressionProfile {
      * @throws RuntimeException unless the lists have equal length.
      */
     public static ExpressionProfile create(List<HugoSymbol> symbols, List<Expression> levels) {
-        return new ExpressionProfile(MapUtil.zipHash(symbols, levels), false);
+        return new MapExpressionProfile(MapUtil.zipHash(symbols, levels));
     }
 
     /**
@@ -108,7 +111,7 @@ public final class ExpressionProfile {
             MapUtil.putUnique(profile, symbol, level);
         }
 
-        return new ExpressionProfile(profile, false);
+        return new MapExpressionProfile(profile);
     }
 
     /**
@@ -118,9 +121,7 @@ public final class ExpressionProfile {
      *
      * @return {@code true} iff this profile contains the target gene.
      */
-    public boolean contains(HugoSymbol symbol) {
-        return profile.containsKey(symbol);
-    }
+    public abstract boolean contains(HugoSymbol symbol);
 
     /**
      * Returns the RNA expression for a given gene.
@@ -131,14 +132,18 @@ public final class ExpressionProfile {
      * present in this profile, or {@code Expression.ZERO} otherwise
      * (never {@code null}).
      */
-    public Expression get(HugoSymbol symbol) {
-        Expression expression = profile.get(symbol);
+    public abstract Expression get(HugoSymbol symbol);
 
-        if (expression != null)
-            return expression;
-        else
-            return Expression.ZERO;
-    }
+    /**
+     * Returns the RNA expression for a given gene as a primitive
+     * value, without creating an {@code Expression} object.
+     *
+     * @param symbol the HUGO symbol of the target gene.
+     *
+     * @return the RNA expression of the target gene, if the gene is
+     * present in this profile, or zero otherwise.
+     */
+    public abstract double getDouble(HugoSymbol symbol);
 
     /**
      * Stores this expression profile in a data file.
@@ -181,14 +186,14 @@ public final class ExpressionProfile {
         //
         // Much nicer to see the genes in alphabetical order...
         //
-        Set<HugoSymbol> symbols = new TreeSet<HugoSymbol>(profile.keySet());
+        Set<HugoSymbol> symbols = new TreeSet<HugoSymbol>(viewSymbols());
 
         for (HugoSymbol symbol : symbols)
             writeExpression(writer, symbol);
     }
 
     private void writeExpression(TableWriter writer, HugoSymbol symbol) {
-        Expression expression = profile.get(symbol);
+        Expression expression = get(symbol);
 
         if (expression.isPositive())
             writer.println(symbol.getKey(), expression.format(EXPRESSION_FORMAT));
@@ -201,16 +206,12 @@ public final class ExpressionProfile {
      * @return a read-only view of the gene expression data in this
      * profile.
      */
-    public Set<Map.Entry<HugoSymbol, Expression>> viewEntries() {
-        return Collections.unmodifiableSet(profile.entrySet());
-    }
+    public abstract Set<Map.Entry<HugoSymbol, Expression>> viewEntries();
 
     /**
      * Returns a read-only view of the genes in this profile.
      *
      * @return a read-only view of the genes in this profile.
      */
-    public Set<HugoSymbol> viewSymbols() {
-        return Collections.unmodifiableSet(profile.keySet());
-    }
+    public abstract Set<HugoSymbol> viewSymbols();
 }
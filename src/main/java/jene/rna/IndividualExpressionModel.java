@@ -2,9 +2,13 @@
 package jene.rna;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.List;
 
 import jam.app.JamProperties;
 
+import jene.app.GlobalResource;
+import jene.hugo.HugoIndex;
 import jene.hugo.HugoSymbol;
 import jene.tcga.TumorBarcode;
 
@@ -14,7 +18,8 @@ import jene.tcga.TumorBarcode;
 public final class IndividualExpressionModel extends ExpressionModel {
     private final TumorExpressionMatrix profile;
 
-    private static IndividualExpressionModel global = null;
+    private static final GlobalResource<IndividualExpressionModel> global =
+        GlobalResource.create("IndividualExpressionModel", IndividualExpressionModel::createGlobal);
 
     private IndividualExpressionModel(TumorExpressionMatrix profile) {
         this.profile = profile;
@@ -35,10 +40,7 @@ public final class IndividualExpressionModel extends ExpressionModel {
      * properties.
      */
     public static IndividualExpressionModel global() {
-        if (global == null)
-            global = createGlobal();
-
-        return global;
+        return global.get();
     }
 
     private static IndividualExpressionModel createGlobal() {
@@ -82,4 +84,24 @@ public final class IndividualExpressionModel extends ExpressionModel {
     @Override public Expression lookup(TumorBarcode barcode, HugoSymbol symbol) {
         return profile.get(barcode, symbol);
     }
+
+    @Override public void lookupAll(TumorBarcode barcode, List<HugoSymbol> symbols, double[] result) {
+        ArrayExpressionProfile row = profile.get(barcode);
+
+        if (row == null) {
+            Arrays.fill(result, 0, symbols.size(), Double.NaN);
+            return;
+        }
+
+        HugoIndex symbolIndex = row.getSymbolIndex();
+
+        for (int k = 0; k < symbols.size(); ++k) {
+            int ordinal = symbolIndex.indexOf(symbols.get(k));
+
+            if (ordinal >= 0)
+                result[k] = row.getDouble(ordinal);
+            else
+                result[k] = Double.NaN;
+        }
+    }
 }
@@ -4,6 +4,7 @@ package jene.rna;
 import jam.app.JamProperties;
 import jam.lang.JamException;
 
+import jene.app.GlobalResource;
 import jene.chem.Concentration;
 
 /**
@@ -18,7 +19,9 @@ import jene.chem.Concentration;
  * {@code Cmax} is the maximum concentration.
  */
 public final class LinearConcentrationModel extends ConcentrationModel {
-    private static LinearConcentrationModel global = null;
+    private static final GlobalResource<LinearConcentrationModel> global =
+        GlobalResource.create("LinearConcentrationModel",
+                              () -> new LinearConcentrationModel(resolveExprThreshold(), resolveMaxExpression()));
 
     /**
      * Creates a new linear concentration model with fixed parameters.
@@ -47,10 +50,7 @@ public final class LinearConcentrationModel extends ConcentrationModel {
      * properties.
      */
     public static LinearConcentrationModel global() {
-        if (global == null)
-            global = new LinearConcentrationModel(resolveExprThreshold(), resolveMaxExpression());
-
-        return global;
+        return global.get();
     }
 
     @Override public ConcentrationModelType getType() {
@@ -4,6 +4,7 @@ package jene.rna;
 import jam.app.JamProperties;
 import jam.lang.JamException;
 
+import jene.app.GlobalResource;
 import jene.chem.Concentration;
 
 /**
@@ -21,7 +22,11 @@ import jene.chem.Concentration;
 public final class LogConcentrationModel extends ConcentrationModel {
     private final double alphaFactor;
 
-    private static LogConcentrationModel global = null;
+    private static final GlobalResource<LogConcentrationModel> global =
+        GlobalResource.create("LogConcentrationModel",
+                              () -> new LogConcentrationModel(resolveExprThreshold(),
+                                                              resolveMaxExpression(),
+                                                              resolveAlphaFactor()));
 
     /**
      * Creates a new log-transformed concentration model with fixed
@@ -67,12 +72,7 @@ public final class LogConcentrationModel extends ConcentrationModel {
      * by system properties.
      */
     public static LogConcentrationModel global() {
-        if (global == null)
-            global = new LogConcentrationModel(resolveExprThreshold(),
-                                               resolveMaxExpression(),
-                                               resolveAlphaFactor());
-
-        return global;
+        return global.get();
     }
 
     private static double resolveAlphaFactor() {
@@ -0,0 +1,50 @@
+
+package jene.rna;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import jene.hugo.HugoSymbol;
+
+/**
+ * Stores an expression profile in a map owned by the profile.
+ */
+final class MapExpressionProfile extends ExpressionProfile {
+    private final Map<HugoSymbol, Expression> profile;
+
+    // Takes ownership of the map...
+    MapExpressionProfile(Map<HugoSymbol, Expression> profile) {
+        this.profile = Collections.unmodifiableMap(profile);
+    }
+
+    @Override public boolean contains(HugoSymbol symbol) {
+        return profile.containsKey(symbol);
+    }
+
+    @Override public Expression get(HugoSymbol symbol) {
+        Expression expression = profile.get(symbol);
+
+        if (expression != null)
+            return expression;
+        else
+            return Expression.ZERO;
+    }
+
+    @Override public double getDouble(HugoSymbol symbol) {
+        Expression expression = profile.get(symbol);
+
+        if (expression != null)
+            return expression.doubleValue();
+        else
+            return 0.0;
+    }
+
+    @Override public Set<Map.Entry<HugoSymbol, Expression>> viewEntries() {
+        return profile.entrySet();
+    }
+
+    @Override public Set<HugoSymbol> viewSymbols() {
+        return profile.keySet();
+    }
+}
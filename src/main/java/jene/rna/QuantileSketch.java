@@ -0,0 +1,179 @@
+
+package jene.rna;
+
+import java.util.Arrays;
+
+/**
+ * Estimates one quantile for each of many variables (genes) that are
+ * observed together (one tumor at a time) with the P-square algorithm
+ * of Jain and Chlamtac (Commun. ACM 28, 1076-1085, 1985).
+ *
+ * <p>Each variable requires five markers (heights, positions, and
+ * desired positions) in primitive arrays, regardless of the number
+ * of observations, so the sketch can stream through an expression
+ * matrix that does not fit in memory.  Until five observations have
+ * been made, the estimate is the exact quantile.
+ */
+final class QuantileSketch {
+    private final double prob;
+    private final int size;
+
+    // Markers for variable j occupy elements [5 * j, 5 * j + 5)...
+    private final double[] heights;
+    private final int[] positions;
+    private final double[] desired;
+
+    private final double[] increments;
+    private long count = 0;
+
+    private static final int MARKERS = 5;
+
+    QuantileSketch(double prob, int size) {
+        if (prob < 0.0 || prob > 1.0)
+            throw new IllegalArgumentException("Quantile probability must lie in the interval [0, 1].");
+
+        this.prob = prob;
+        this.size = size;
+
+        this.heights = new double[MARKERS * size];
+        this.positions = new int[MARKERS * size];
+        this.desired = new double[MARKERS * size];
+
+        this.increments = new double[] { 0.0, prob / 2.0, prob, (1.0 + prob) / 2.0, 1.0 };
+    }
+
+    /**
+     * Adds one observation of every variable.
+     *
+     * @param observation an array with one observation for each
+     * variable.
+     */
+    void add(double[] observation) {
+        if (count < MARKERS) {
+            for (int j = 0; j < size; ++j)
+                heights[MARKERS * j + (int) count] = observation[j];
+
+            if (++count == MARKERS)
+                initialize();
+
+            return;
+        }
+
+        ++count;
+
+        for (int j = 0; j < size; ++j)
+            update(MARKERS * j, observation[j]);
+    }
+
+    private void initialize() {
+        for (int j = 0; j < size; ++j) {
+            int base = MARKERS * j;
+            Arrays.sort(heights, base, base + MARKERS);
+
+            for (int i = 0; i < MARKERS; ++i) {
+                positions[base + i] = i + 1;
+                desired[base + i] = 1.0 + 4.0 * increments[i];
+            }
+        }
+    }
+
+    private void update(int base, double x) {
+        int k;
+
+        if (x < heights[base]) {
+            heights[base] = x;
+            k = 0;
+        }
+        else if (x >= heights[base + 4]) {
+            heights[base + 4] = x;
+            k = 3;
+        }
+        else {
+            k = 0;
+
+            while (x >= heights[base + k + 1])
+                ++k;
+        }
+
+        for (int i = k + 1; i < MARKERS; ++i)
+            ++positions[base + i];
+
+        for (int i = 0; i < MARKERS; ++i)
+            desired[base + i] += increments[i];
+
+        for (int i = 1; i <= 3; ++i)
+            adjust(base + i);
+    }
+
+    private void adjust(int m) {
+        double d = desired[m] - positions[m];
+
+        int gapUp = positions[m + 1] - positions[m];
+        int gapDown = positions[m - 1] - positions[m];
+
+        if ((d >= 1.0 && gapUp > 1) || (d <= -1.0 && gapDown < -1)) {
+            int step = (d > 0.0) ? 1 : -1;
+            double candidate = parabolic(m, step);
+
+            if (heights[m - 1] < candidate && candidate < heights[m + 1])
+                heights[m] = candidate;
+            else
+                heights[m] = linear(m, step);
+
+            positions[m] += step;
+        }
+    }
+
+    private double parabolic(int m, int step) {
+        double qm = heights[m];
+        double qp = heights[m + 1];
+        double qn = heights[m - 1];
+
+        double nm = positions[m];
+        double np = positions[m + 1];
+        double nn = positions[m - 1];
+
+        return qm + step / (np - nn) * ((nm - nn + step) * (qp - qm) / (np - nm)
+                                        + (np - nm - step) * (qm - qn) / (nm - nn));
+    }
+
+    private double linear(int m, int step) {
+        return heights[m] + step * (heights[m + step] - heights[m]) / (positions[m + step] - positions[m]);
+    }
+
+    /**
+     * Returns the number of observations of each variable.
+     *
+     * @return the number of observations of each variable.
+     */
+    long count() {
+        return count;
+    }
+
+    /**
+     * Returns the quantile estimate for one variable.
+     *
+     * @param j the index of the variable.
+     *
+     * @return the quantile estimate for the specified variable
+     * ({@code Double.NaN} if there have been no observations).
+     */
+    double estimate(int j) {
+        int base = MARKERS * j;
+
+        if (count == 0)
+            return Double.NaN;
+
+        if (count < MARKERS) {
+            double[] values = Arrays.copyOfRange(heights, base, base + (int) count);
+            return ExpressionAggregator.quantile(values, values.length, prob);
+        }
+
+        if (prob == 0.0)
+            return heights[base];
+        else if (prob == 1.0)
+            return heights[base + 4];
+        else
+            return heights[base + 2];
+    }
+}
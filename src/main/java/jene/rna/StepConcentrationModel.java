@@ -4,6 +4,7 @@ package jene.rna;
 import jam.app.JamProperties;
 import jam.lang.JamException;
 
+import jene.app.GlobalResource;
 import jene.chem.Concentration;
 
 /**
@@ -19,7 +20,9 @@ import jene.chem.Concentration;
  * {@code Fmin} is a threshold expression level.
  */
 public final class StepConcentrationModel extends ConcentrationModel {
-    private static StepConcentrationModel global = null;
+    private static final GlobalResource<StepConcentrationModel> global =
+        GlobalResource.create("StepConcentrationModel",
+                              () -> new StepConcentrationModel(resolveExprThreshold()));
 
     /**
      * Creates a new step-function concentration model with a fixed
@@ -46,10 +49,7 @@ public final class StepConcentrationModel extends ConcentrationModel {
      * system properties.
      */
     public static StepConcentrationModel global() {
-        if (global == null)
-            global = new StepConcentrationModel(resolveExprThreshold());
-
-        return global;
+        return global.get();
     }
 
     @Override public ConcentrationModelType getType() {
@@ -0,0 +1,183 @@
+
+package jene.rna;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import jene.chem.Concentration;
+import jene.peptide.Peptide;
+import jene.peptide.PeptideConcentrationProfile;
+import jene.tcga.TumorBarcode;
+
+/**
+ * Stores peptide concentrations indexed by tumor barcode and peptide
+ * in a sparse row-major layout.
+ *
+ * <p>Peptides are identified by ordinals shared by all tumors, and
+ * each row holds only the peptides with positive concentration (in
+ * increasing ordinal order) and their concentrations.  Matrices are
+ * created by {@link CohortConcentrationEngine}.
+ */
+public final class TumorConcentrationMatrix {
+    private final ImmutableList<TumorBarcode> barcodes;
+    private final ImmutableMap<TumorBarcode, Integer> barcodeIndex;
+
+    private final ImmutableList<Peptide> peptides;
+    private final ImmutableMap<Peptide, Integer> peptideIndex;
+
+    // Indexed by barcode index; the concentration of the peptide with
+    // ordinal rowOrdinals[row][k] is rowLevels[row][k]...
+    private final int[][] rowOrdinals;
+    private final double[][] rowLevels;
+
+    TumorConcentrationMatrix(ImmutableList<TumorBarcode> barcodes,
+                             ImmutableList<Peptide> peptides,
+                             ImmutableMap<Peptide, Integer> peptideIndex,
+                             int[][] rowOrdinals,
+                             double[][] rowLevels) {
+        this.barcodes = barcodes;
+        this.peptides = peptides;
+        this.peptideIndex = peptideIndex;
+        this.rowOrdinals = rowOrdinals;
+        this.rowLevels = rowLevels;
+        this.barcodeIndex = indexBarcodes(barcodes);
+    }
+
+    private static ImmutableMap<TumorBarcode, Integer> indexBarcodes(List<TumorBarcode> barcodes) {
+        ImmutableMap.Builder<TumorBarcode, Integer> builder = ImmutableMap.builder();
+
+        for (int index = 0; index < barcodes.size(); ++index)
+            builder.put(barcodes.get(index), index);
+
+        return builder.build();
+    }
+
+    /**
+     * Identifies tumors contained in this matrix.
+     *
+     * @param barcode the tumor barcode of interest.
+     *
+     * @return {@code true} iff this matrix contains concentrations
+     * for the specified barcode.
+     */
+    public boolean contains(TumorBarcode barcode) {
+        return barcodeIndex.containsKey(barcode);
+    }
+
+    /**
+     * Returns the peptide concentration profile for a given tumor.
+     *
+     * @param barcode the tumor barcode of interest.
+     *
+     * @return the concentration profile for the specified tumor (a
+     * new profile containing the peptides with positive
+     * concentration), or {@code null} if this matrix does not
+     * contain the tumor.
+     */
+    public PeptideConcentrationProfile get(TumorBarcode barcode) {
+        Integer row = barcodeIndex.get(barcode);
+
+        if (row == null)
+            return null;
+
+        int[] ordinals = rowOrdinals[row.intValue()];
+        double[] levels = rowLevels[row.intValue()];
+
+        Map<Peptide, Concentration> map = new HashMap<Peptide, Concentration>(2 * ordinals.length);
+
+        for (int k = 0; k < ordinals.length; ++k)
+            map.put(peptides.get(ordinals[k]), Concentration.valueOf(levels[k]));
+
+        return PeptideConcentrationProfile.create(map);
+    }
+
+    /**
+     * Returns the concentration of a peptide in a given tumor as a
+     * primitive value.
+     *
+     * @param barcode the tumor barcode of interest.
+     *
+     * @param peptide the peptide of interest.
+     *
+     * @return the concentration of the peptide in the specified
+     * tumor (zero if the peptide is absent), or {@code Double.NaN}
+     * if this matrix does not contain the tumor.
+     */
+    public double getDouble(TumorBarcode barcode, Peptide peptide) {
+        Integer row = barcodeIndex.get(barcode);
+
+        if (row == null)
+            return Double.NaN;
+
+        Integer ordinal = peptideIndex.get(peptide);
+
+        if (ordinal == null)
+            return 0.0;
+
+        int k = Arrays.binarySearch(rowOrdinals[row.intValue()], ordinal.intValue());
+
+        if (k >= 0)
+            return rowLevels[row.intValue()][k];
+        else
+            return 0.0;
+    }
+
+    /**
+     * Returns the number of peptides with positive concentration in
+     * a given tumor.
+     *
+     * @param barcode the tumor barcode of interest.
+     *
+     * @return the number of peptides with positive concentration in
+     * the specified tumor (zero if this matrix does not contain the
+     * tumor).
+     */
+    public int countNonZero(TumorBarcode barcode) {
+        Integer row = barcodeIndex.get(barcode);
+
+        if (row != null)
+            return rowOrdinals[row.intValue()].length;
+        else
+            return 0;
+    }
+
+    /**
+     * Returns the total number of positive concentrations stored in
+     * this matrix.
+     *
+     * @return the total number of positive concentrations stored in
+     * this matrix.
+     */
+    public long countNonZero() {
+        long count = 0;
+
+        for (int[] ordinals : rowOrdinals)
+            count += ordinals.length;
+
+        return count;
+    }
+
+    /**
+     * Returns a read-only view of the barcodes in this matrix.
+     *
+     * @return a read-only view of the barcodes in this matrix.
+     */
+    public List<TumorBarcode> viewBarcodes() {
+        return barcodes;
+    }
+
+    /**
+     * Returns a read-only view of the peptides in this matrix, in
+     * ordinal order.
+     *
+     * @return a read-only view of the peptides in this matrix.
+     */
+    public List<Peptide> viewPeptides() {
+        return peptides;
+    }
+}
@@ -1,42 +1,149 @@
 
 package jene.rna;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.util.HashMap;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import jam.app.JamLogger;
+import jam.app.JamProperties;
 import jam.data.DataMatrix;
 import jam.data.DenseDataMatrixLoader;
 
+import jene.hugo.HugoIndex;
 import jene.hugo.HugoSymbol;
 import jene.tcga.TumorBarcode;
 
 /**
  * Stores RNA expression indexed by tumor barcode and HUGO symbol.
+ *
+ * <p>The expression is stored as a row-major primitive array with one
+ * row per tumor and one column per gene (ordered by a symbol index
+ * shared by all tumors), and the profiles returned by
+ * {@link #get(TumorBarcode)} are views of the rows.  Matrices parsed
+ * from text keep the parsed values in double precision; matrices
+ * mapped from a binary cache read its single-precision values.
+ *
+ * <p>Parsing a full TCGA text matrix (roughly ten thousand tumors by
+ * twenty thousand genes) is slow and memory-hungry, so matrices may
+ * also be stored in a binary cache file: a header containing the
+ * barcode and symbol dictionaries followed by the row-major array of
+ * big-endian {@code float} values.  Cache files are mapped directly
+ * into memory, so the expression array occupies no heap space and is
+ * paged in on demand.  The cache is opt-in: {@link #loadCached(File)}
+ * (or {@link #load(File)} when the system property
+ * {@link #CACHE_PROPERTY} is {@code true}) creates the cache when a
+ * text file is first loaded and maps the cache (rather than parsing
+ * the text file) on all subsequent loads.
  */
 public final class TumorExpressionMatrix {
-    private final DataMatrix<TumorBarcode, HugoSymbol> expression;
+    private final HugoIndex symbolIndex;
+    private final ImmutableList<TumorBarcode> barcodes;
+    private final ImmutableMap<TumorBarcode, Integer> barcodeIndex;
 
-    private TumorExpressionMatrix(DataMatrix<TumorBarcode, HugoSymbol> expression, boolean wrap) {
-        if (wrap)
-            this.expression = expression.immutable();
-        else
-            this.expression = expression;
-    }
+    // Element [row * ncol + col] holds the expression for the tumor
+    // with barcode index "row" and the gene with symbol index "col"...
+    private final ExpressionLevels levels;
+
+    // Identifies binary cache files; the dictionaries follow...
+    private static final int MAGIC = 0x4a544558;
+    private static final int VERSION = 1;
+
+    /**
+     * The suffix appended to the name of a text file to form the name
+     * of its binary cache file.
+     */
+    public static final String CACHE_SUFFIX = ".f32";
+
+    /**
+     * Name of the system property that directs {@link #load(File)} to
+     * create and use binary cache files for text data files.
+     */
+    public static final String CACHE_PROPERTY = "jene.rna.expressionCache";
 
     /**
      * Creates a new tumor expression matrix.
      *
-     * @param expression the expression data.
+     * @param expression the expression data (which are copied).
      */ 
     public TumorExpressionMatrix(DataMatrix<TumorBarcode, HugoSymbol> expression) {
-        this(expression, true);
+        this(ImmutableList.copyOf(expression.rowKeyList()),
+             HugoIndex.create(expression.colKeyList()),
+             copyLevels(expression));
+    }
+
+    private TumorExpressionMatrix(ImmutableList<TumorBarcode> barcodes, HugoIndex symbolIndex, ExpressionLevels levels) {
+        if (levels.size() != (long) barcodes.size() * symbolIndex.size())
+            throw new IllegalArgumentException("Expression array does not match the matrix dimensions.");
+
+        this.barcodes = barcodes;
+        this.symbolIndex = symbolIndex;
+        this.barcodeIndex = indexBarcodes(barcodes);
+        this.levels = levels;
+    }
+
+    private static ExpressionLevels copyLevels(DataMatrix<TumorBarcode, HugoSymbol> expression) {
+        List<TumorBarcode> rowKeys = expression.rowKeyList();
+        List<HugoSymbol> colKeys = expression.colKeyList();
+
+        int nrow = rowKeys.size();
+        int ncol = colKeys.size();
+        double[] levels = new double[validateSize(nrow, ncol)];
+
+        for (int row = 0; row < nrow; ++row)
+            for (int col = 0; col < ncol; ++col)
+                levels[row * ncol + col] = expression.get(rowKeys.get(row), colKeys.get(col));
+
+        return ExpressionLevels.wrap(levels);
+    }
+
+    private static int validateSize(int nrow, int ncol) {
+        //
+        // A single mapped buffer is limited to Integer.MAX_VALUE bytes...
+        //
+        long size = (long) nrow * ncol;
+
+        if (size > Integer.MAX_VALUE / Float.BYTES)
+            throw new IllegalArgumentException(String.format("Expression matrix [%d x %d] is too large.", nrow, ncol));
+
+        return (int) size;
+    }
+
+    private static ImmutableMap<TumorBarcode, Integer> indexBarcodes(List<TumorBarcode> barcodes) {
+        ImmutableMap.Builder<TumorBarcode, Integer> builder = ImmutableMap.builder();
+
+        for (int index = 0; index < barcodes.size(); ++index)
+            builder.put(barcodes.get(index), index);
+
+        return builder.build();
     }
 
     /**
      * Loads a tumor expression matrix from a data file.
      *
+     * <p>Binary files are mapped into memory.  Text files are parsed,
+     * unless the system property {@link #CACHE_PROPERTY} is
+     * {@code true}, in which case they are loaded through their
+     * binary cache files (see {@link #loadCached(File)}).
+     *
      * @param file the file to load.
      *
      * @return a new matrix with expression data loaded from the
@@ -46,7 +153,60 @@ public final class TumorExpressionMatrix {
      * reading and contains valid expression data.
      */
     public static TumorExpressionMatrix load(File file) {
-        return new TumorExpressionMatrix(loadExpression(file), false);
+        if (isBinary(file))
+            return map(file);
+
+        if (Boolean.parseBoolean(JamProperties.getOptional(CACHE_PROPERTY, "false")))
+            return loadCached(file);
+
+        return new TumorExpressionMatrix(loadExpression(file));
+    }
+
+    /**
+     * Loads a tumor expression matrix from a text data file, using
+     * its binary cache file when possible.
+     *
+     * <p>If a cache file (with the name of the data file followed by
+     * {@link #CACHE_SUFFIX}) exists and is no older than the data
+     * file, the cache file is mapped into memory.  Otherwise (or if
+     * the cache file is truncated or corrupt, in which case it is
+     * deleted) the data file is parsed and written to a new cache
+     * file, which is then mapped.  The cache file is written to a
+     * temporary file and moved into place, so concurrent or failed
+     * writers never leave a partial cache.  (If the cache file cannot
+     * be written, the matrix is kept on the heap.)
+     *
+     * @param file the text file to load.
+     *
+     * @return a new matrix with expression data loaded from the
+     * specified file.
+     *
+     * @throws RuntimeException unless the file can be opened for
+     * reading and contains valid expression data.
+     */
+    public static TumorExpressionMatrix loadCached(File file) {
+        File cacheFile = cacheFile(file);
+
+        if (cacheFile.canRead() && cacheFile.lastModified() >= file.lastModified()) {
+            try {
+                return map(cacheFile);
+            }
+            catch (RuntimeException ex) {
+                JamLogger.warn("Discarding invalid expression cache [%s]: %s", cacheFile, ex.getMessage());
+                cacheFile.delete();
+            }
+        }
+
+        TumorExpressionMatrix matrix = new TumorExpressionMatrix(loadExpression(file));
+
+        try {
+            matrix.store(cacheFile);
+            return map(cacheFile);
+        }
+        catch (RuntimeException ex) {
+            JamLogger.warn("Unable to write expression cache [%s].", cacheFile);
+            return matrix;
+        }
     }
 
     /**
@@ -64,6 +224,90 @@ public final class TumorExpressionMatrix {
         return load(new File(fileName));
     }
 
+    /**
+     * Returns the binary cache file for a text data file.
+     *
+     * @param file the text data file.
+     *
+     * @return the binary cache file for the specified data file.
+     */
+    public static File cacheFile(File file) {
+        return new File(file.getPath() + CACHE_SUFFIX);
+    }
+
+    /**
+     * Maps a tumor expression matrix stored in a binary file directly
+     * into memory; only the barcode and symbol dictionaries occupy
+     * heap space.
+     *
+     * @param file the binary file to map.
+     *
+     * @return the matrix stored in the specified file.
+     *
+     * @throws RuntimeException unless the file can be opened for
+     * reading and contains a valid binary matrix.
+     */
+    public static TumorExpressionMatrix map(File file) {
+        ImmutableList<TumorBarcode> barcodes;
+        HugoIndex symbolIndex;
+        long payloadOffset;
+
+        try (DataInputStream input =
+             new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION)
+                throw new IllegalArgumentException(String.format("File [%s] does not contain a binary expression matrix.", file));
+
+            int nrow = input.readInt();
+            int ncol = input.readInt();
+            payloadOffset = input.readLong();
+
+            validateSize(nrow, ncol);
+
+            List<TumorBarcode> rowKeys = new ArrayList<TumorBarcode>(nrow);
+            List<HugoSymbol> colKeys = new ArrayList<HugoSymbol>(ncol);
+
+            for (int row = 0; row < nrow; ++row)
+                rowKeys.add(TumorBarcode.instance(input.readUTF()));
+
+            for (int col = 0; col < ncol; ++col)
+                colKeys.add(HugoSymbol.instance(input.readUTF()));
+
+            barcodes = ImmutableList.copyOf(rowKeys);
+            symbolIndex = HugoIndex.create(colKeys);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            //
+            // The mapping remains valid after the channel is closed...
+            //
+            long payloadBytes = (long) barcodes.size() * symbolIndex.size() * Float.BYTES;
+
+            if (payloadOffset < 0 || payloadOffset + payloadBytes != channel.size())
+                throw new IllegalArgumentException(String.format("Binary expression matrix [%s] has invalid length.", file));
+
+            FloatBuffer levels =
+                channel.map(FileChannel.MapMode.READ_ONLY, payloadOffset, payloadBytes).asFloatBuffer();
+
+            JamLogger.info("Mapped [%d x %d] expression matrix from [%s].", barcodes.size(), symbolIndex.size(), file);
+            return new TumorExpressionMatrix(barcodes, symbolIndex, ExpressionLevels.wrap(levels));
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static boolean isBinary(File file) {
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            return file.length() >= Integer.BYTES && input.readInt() == MAGIC;
+        }
+        catch (IOException ex) {
+            return false;
+        }
+    }
+
     private static DataMatrix<TumorBarcode, HugoSymbol> loadExpression(File file) {
         Loader loader = new Loader(file);
         return loader.load();
@@ -92,7 +336,7 @@ public final class TumorExpressionMatrix {
      * for the specified barcode.
      */
     public boolean contains(TumorBarcode barcode) {
-        return expression.containsRow(barcode);
+        return barcodeIndex.containsKey(barcode);
     }
 
     /**
@@ -104,7 +348,7 @@ public final class TumorExpressionMatrix {
      * for the specified symbol.
      */
     public boolean contains(HugoSymbol symbol) {
-        return expression.containsCol(symbol);
+        return symbolIndex.contains(symbol);
     }
 
     /**
@@ -118,7 +362,7 @@ public final class TumorExpressionMatrix {
      * for the specified barcode and symbol.
      */
     public boolean contains(TumorBarcode barcode, HugoSymbol symbol) {
-        return expression.contains(barcode, symbol);
+        return contains(barcode) && contains(symbol);
     }
 
     /**
@@ -126,20 +370,17 @@ public final class TumorExpressionMatrix {
      *
      * @param barcode the tumor barcode of interest.
      *
-     * @return the full expression for the specified tumor, or
-     * {@code null} if this matrix does not contain the tumor.
+     * @return the full expression for the specified tumor (a view
+     * of the data in this matrix), or {@code null} if this matrix
+     * does not contain the tumor.
      */
-    public ExpressionProfile get(TumorBarcode barcode) {
-        if (!contains(barcode))
-            return null;
-
-        List<HugoSymbol> symbols = viewSymbols();
-        Map<HugoSymbol, Expression> profile = new HashMap<HugoSymbol, Expression>(symbols.size());
+    public ArrayExpressionProfile get(TumorBarcode barcode) {
+        Integer row = barcodeIndex.get(barcode);
 
-        for (HugoSymbol symbol : symbols)
-            profile.put(symbol, get(barcode, symbol));
-
-        return ExpressionProfile.create(profile);
+        if (row != null)
+            return ArrayExpressionProfile.view(symbolIndex, levels.slice(row.intValue() * symbolIndex.size(), symbolIndex.size()));
+        else
+            return null;
     }
 
     /**
@@ -155,18 +396,50 @@ public final class TumorExpressionMatrix {
      */
     public Expression get(TumorBarcode barcode, HugoSymbol symbol) {
         if (contains(barcode, symbol))
-            return Expression.valueOf(expression.get(barcode, symbol));
+            return Expression.valueOf(getDouble(barcode, symbol));
         else
             return null;
     }
 
+    /**
+     * Returns the expression for a given tumor and gene as a
+     * primitive value.
+     *
+     * @param barcode the tumor barcode of interest.
+     *
+     * @param symbol the HUGO gene symbol of interest.
+     *
+     * @return the expression for the specified tumor and gene, or
+     * {@code Double.NaN} if this matrix does not contain the tumor
+     * and gene.
+     */
+    public double getDouble(TumorBarcode barcode, HugoSymbol symbol) {
+        Integer row = barcodeIndex.get(barcode);
+        int col = symbolIndex.indexOf(symbol);
+
+        if (row != null && col >= 0)
+            return levels.get(row.intValue() * symbolIndex.size() + col);
+        else
+            return Double.NaN;
+    }
+
+    /**
+     * Returns the index that maps the HUGO symbols in this matrix to
+     * the columns of the expression arrays.
+     *
+     * @return the symbol index for this matrix.
+     */
+    public HugoIndex getSymbolIndex() {
+        return symbolIndex;
+    }
+
     /**
      * Returns a read-only view of the barcodes in this matrix.
      *
      * @return a read-only view of the barcodes in this matrix.
      */
     public List<TumorBarcode> viewBarcodes() {
-        return expression.rowKeyList();
+        return barcodes;
     }
 
     /**
@@ -175,6 +448,81 @@ public final class TumorExpressionMatrix {
      * @return a read-only view of the HUGO symbols in this matrix.
      */
     public List<HugoSymbol> viewSymbols() {
-        return expression.colKeyList();
+        return symbolIndex.viewSymbols();
+    }
+
+    /**
+     * Stores this matrix in a binary file that may later be mapped
+     * into memory (by {@link #map(File)} or {@link #load(File)}).
+     *
+     * <p>The matrix is written to a temporary file in the same
+     * directory, which is then moved atomically (where supported) to
+     * the destination, so readers never observe a partial file.
+     *
+     * @param file the file to write.
+     *
+     * @throws RuntimeException if any I/O errors occur.
+     */
+    public void store(File file) {
+        File tempFile = null;
+
+        try {
+            tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+            write(tempFile);
+            move(tempFile, file);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        finally {
+            if (tempFile != null)
+                tempFile.delete();
+        }
+    }
+
+    private static void move(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void write(File file) {
+        //
+        // Write the dictionaries to memory first to determine the
+        // offset of the expression array...
+        //
+        ByteArrayOutputStream keyBytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream keyOutput = new DataOutputStream(keyBytes)) {
+            for (TumorBarcode barcode : barcodes)
+                keyOutput.writeUTF(barcode.getKey());
+
+            for (HugoSymbol symbol : symbolIndex.viewSymbols())
+                keyOutput.writeUTF(symbol.getKey());
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        long payloadOffset = 4 * Integer.BYTES + Long.BYTES + keyBytes.size();
+
+        try (DataOutputStream output =
+             new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(barcodes.size());
+            output.writeInt(symbolIndex.size());
+            output.writeLong(payloadOffset);
+            keyBytes.writeTo(output);
+
+            for (int index = 0; index < levels.size(); ++index)
+                output.writeFloat((float) levels.get(index));
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
     }
 }
@@ -13,6 +13,9 @@ import jam.app.JamProperties;
 import jam.io.TableReader;
 import jam.lang.JamException;
 
+import jene.app.GlobalResource;
+import jene.util.KeyColumn;
+
 /**
  * Maps patients to their cancer types.
  *
@@ -23,7 +26,11 @@ import jam.lang.JamException;
 public final class PatientCancerTypeTable {
     private final Map<PatientID, CancerType> map;
 
-    private static PatientCancerTypeTable global = null;
+    // Built on first request (a benign race)...
+    private KeyColumn<PatientID, CancerType> cancerTypeColumn = null;
+
+    private static final GlobalResource<PatientCancerTypeTable> global =
+        GlobalResource.create("PatientCancerTypeTable", () -> load(resolveFileName()));
 
     private PatientCancerTypeTable() {
         this.map = new HashMap<PatientID, CancerType>();
@@ -45,10 +52,7 @@ public final class PatientCancerTypeTable {
      * a file with a valid table.
      */
     public static PatientCancerTypeTable global() {
-        if (global == null)
-            global = load(resolveFileName());
-
-        return global;
+        return global.get();
     }
 
     private static String resolveFileName() {
@@ -164,6 +168,24 @@ public final class PatientCancerTypeTable {
             throw JamException.runtime("No cancer type for patient [%s].", patientID.getKey());
     }
 
+    /**
+     * Returns the cancer types as a key column, which may be joined
+     * to tumor-patient columns.
+     *
+     * @return a column mapping each patient in this table to their
+     * cancer type.
+     */
+    public KeyColumn<PatientID, CancerType> cancerTypeColumn() {
+        KeyColumn<PatientID, CancerType> result = cancerTypeColumn;
+
+        if (result == null) {
+            result = KeyColumn.create(map);
+            cancerTypeColumn = result;
+        }
+
+        return result;
+    }
+
     /**
      * Returns the number of patients in this table.
      *
@@ -0,0 +1,190 @@
+
+package jene.tcga;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import jam.app.JamLogger;
+
+/**
+ * Caches per-tumor data (expression profiles, mutation lists, etc.)
+ * that are expensive to load from disk.
+ *
+ * <p>Entries are weighed by their approximate memory footprint, and
+ * the least-recently-used entries are evicted when the total weight
+ * exceeds the memory budget.  Loading is single-flight: concurrent
+ * requests for the same barcode wait for one load instead of parsing
+ * the same file several times.  Hit, miss, load, and eviction counts
+ * are recorded and reported by {@link #stats()}.
+ *
+ * <p>Workers that know which tumors they will process next may call
+ * {@link #prefetch(Collection, int)} to load them asynchronously on a
+ * small pool of daemon threads shared by all caches.
+ *
+ * @param <V> the runtime type of the cached data.
+ */
+public final class TumorDataCache<V> {
+    private final LoadingCache<TumorBarcode, V> cache;
+
+    private TumorDataCache(Function<TumorBarcode, V> loader, ToIntFunction<V> weigher, long maxBytes) {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("The memory budget must be non-negative.");
+
+        this.cache =
+            CacheBuilder.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((TumorBarcode barcode, V value) -> weigher.applyAsInt(value))
+            .recordStats()
+            .build(CacheLoader.from(loader::apply));
+    }
+
+    private static final ExecutorService PREFETCH_SERVICE =
+        Executors.newFixedThreadPool(2, new ThreadFactoryBuilder()
+                                     .setDaemon(true)
+                                     .setNameFormat("tumor-prefetch-%d")
+                                     .build());
+
+    /**
+     * Creates a new empty cache.
+     *
+     * @param <V> the runtime type of the cached data.
+     *
+     * @param loader the function that loads the data for a tumor
+     * (which must never return {@code null}).
+     *
+     * @param weigher the function that estimates the memory footprint
+     * of the data for a tumor (in bytes).
+     *
+     * @param maxBytes the memory budget for the cache (in bytes).
+     *
+     * @return a new empty cache with the specified loader and memory
+     * budget.
+     *
+     * @throws IllegalArgumentException if the memory budget is
+     * negative.
+     */
+    public static <V> TumorDataCache<V> create(Function<TumorBarcode, V> loader,
+                                               ToIntFunction<V> weigher,
+                                               long maxBytes) {
+        return new TumorDataCache<V>(loader, weigher, maxBytes);
+    }
+
+    /**
+     * Returns the data for a tumor, loading it if necessary.
+     *
+     * @param barcode the barcode of the tumor.
+     *
+     * @return the data for the specified tumor.
+     *
+     * @throws RuntimeException if the data cannot be loaded.
+     */
+    public V get(TumorBarcode barcode) {
+        try {
+            return cache.getUnchecked(barcode);
+        }
+        catch (UncheckedExecutionException ex) {
+            //
+            // Rethrow the exception raised by the loader...
+            //
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            else
+                throw ex;
+        }
+    }
+
+    /**
+     * Returns the cached data for a tumor without loading it.
+     *
+     * @param barcode the barcode of the tumor.
+     *
+     * @return the cached data for the specified tumor, or
+     * {@code null} if the data are not cached.
+     */
+    public V getIfPresent(TumorBarcode barcode) {
+        return cache.getIfPresent(barcode);
+    }
+
+    /**
+     * Discards the cached data for a tumor (after its file has been
+     * rewritten, for example).
+     *
+     * @param barcode the barcode of the tumor.
+     */
+    public void invalidate(TumorBarcode barcode) {
+        cache.invalidate(barcode);
+    }
+
+    /**
+     * Discards all cached data.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Loads the data for the next tumors to be processed in the
+     * background (tumors already cached are skipped).
+     *
+     * @param barcodes the barcodes of the tumors to be processed, in
+     * order of processing.
+     *
+     * @param count the number of barcodes to consider from the head
+     * of the collection.
+     *
+     * @return a future that completes when all prefetched data have
+     * been loaded; failures are logged and do not complete the future
+     * exceptionally (the failure recurs when the data are requested).
+     */
+    public CompletableFuture<Void> prefetch(Collection<TumorBarcode> barcodes, int count) {
+        List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+
+        for (TumorBarcode barcode : Iterables.limit(barcodes, count))
+            if (cache.asMap().get(barcode) == null)
+                futures.add(CompletableFuture.runAsync(() -> prefetch(barcode), PREFETCH_SERVICE));
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private void prefetch(TumorBarcode barcode) {
+        try {
+            get(barcode);
+        }
+        catch (RuntimeException ex) {
+            JamLogger.warn("Failed to prefetch data for tumor [%s].", barcode.getKey());
+        }
+    }
+
+    /**
+     * Returns the number of tumors in this cache.
+     *
+     * @return the number of tumors in this cache.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Returns the hit, miss, load, and eviction statistics for this
+     * cache.
+     *
+     * @return a snapshot of the statistics for this cache.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
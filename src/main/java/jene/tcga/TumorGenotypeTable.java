@@ -2,24 +2,35 @@
 package jene.tcga;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import jam.lang.JamException;
 
+import jene.hla.CompactGenotype;
 import jene.hla.Genotype;
 import jene.hla.PatientGenotypeTable;
+import jene.util.KeyColumn;
 
 /**
  * Maps tumor barcodes to the genotype of the sampled patient.
+ *
+ * <p>The table is a joined view of a tumor-patient table and a
+ * patient-genotype table (see {@link KeyColumn#join(KeyColumn)}):
+ * the patient for each tumor is resolved to a genotype ordinal when
+ * the table is created, and no genotype mappings are copied.
  */
 public final class TumorGenotypeTable {
-    private final Map<TumorBarcode, Genotype> map;
+    private final KeyColumn<TumorBarcode, Genotype> column;
 
-    private TumorGenotypeTable(Map<TumorBarcode, Genotype> map) {
-        this.map = map;
+    private TumorGenotypeTable(KeyColumn<TumorBarcode, Genotype> column) {
+        this.column = column;
     }
 
     /**
@@ -83,18 +94,88 @@ public final class TumorGenotypeTable {
      */
     public static TumorGenotypeTable merge(TumorPatientTable tumorPatientTable,
                                            PatientGenotypeTable patientGenotypeTable) {
-        Map<TumorBarcode, Genotype> merged =
-            new HashMap<TumorBarcode, Genotype>(tumorPatientTable.size());
+        return new TumorGenotypeTable(tumorPatientTable.patientColumn().join(patientGenotypeTable.genotypeColumn()));
+    }
+
+    /**
+     * Enumerates the distinct genotypes that may be formed from loss
+     * of heterozygosity in any tumor in this table.
+     *
+     * <p>Tumors with the same genotype are enumerated only once, the
+     * distinct genotypes are enumerated in parallel, and the variants
+     * are deduplicated across tumors.  Tumors with fewer unique
+     * alleles than the LOH count have no variants.
+     *
+     * @param count the number of unique alleles lost.
+     *
+     * @return an unmodifiable set containing the distinct LOH
+     * variants in compact form.
+     *
+     * @throws IllegalArgumentException unless the count is positive.
+     */
+    public Set<CompactGenotype> enumerateLOH(int count) {
+        validateLOHCount(count);
+
+        Set<CompactGenotype> variants = ConcurrentHashMap.newKeySet();
+
+        distinctGenotypes().parallelStream()
+            .filter(genotype -> genotype.countUniqueAlleles() >= count)
+            .forEach(genotype -> genotype.streamLOH(count).forEach(variants::add));
+
+        return Collections.unmodifiableSet(variants);
+    }
+
+    /**
+     * Enumerates the genotypes that may be formed from loss of
+     * heterozygosity for each tumor in this table.
+     *
+     * <p>Tumors with the same genotype are enumerated only once (in
+     * parallel), and identical variants are shared across tumors, so
+     * the result holds one object per distinct variant.  Tumors with
+     * fewer unique alleles than the LOH count are mapped to empty
+     * lists.
+     *
+     * @param count the number of unique alleles lost.
+     *
+     * @return an unmodifiable map from tumor barcode to the LOH
+     * variants of its genotype.
+     *
+     * @throws IllegalArgumentException unless the count is positive.
+     */
+    public Map<TumorBarcode, List<CompactGenotype>> mapLOH(int count) {
+        validateLOHCount(count);
+
+        Map<CompactGenotype, CompactGenotype> canonical = new ConcurrentHashMap<CompactGenotype, CompactGenotype>();
+        Map<CompactGenotype, List<CompactGenotype>> variantLists = new ConcurrentHashMap<CompactGenotype, List<CompactGenotype>>();
+
+        distinctGenotypes().parallelStream().forEach(genotype -> {
+                List<CompactGenotype> variants = new ArrayList<CompactGenotype>();
+
+                if (genotype.countUniqueAlleles() >= count)
+                    genotype.streamLOH(count).forEach(variant -> variants.add(canonical.computeIfAbsent(variant, key -> key)));
 
-        for (TumorBarcode barcode : tumorPatientTable.viewBarcodes()) {
-            PatientID patient  = tumorPatientTable.require(barcode);
-            Genotype  genotype = patientGenotypeTable.lookup(patient);
+                variantLists.put(genotype, Collections.unmodifiableList(variants));
+            });
 
-            if (genotype != null)
-                merged.put(barcode, genotype);
-        }
+        Map<TumorBarcode, List<CompactGenotype>> result =
+            new HashMap<TumorBarcode, List<CompactGenotype>>(2 * size());
 
-        return new TumorGenotypeTable(merged);
+        column.forEach((barcode, genotype) -> result.put(barcode, variantLists.get(genotype.compact())));
+
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static void validateLOHCount(int count) {
+        if (count < 1)
+            throw new IllegalArgumentException("LOH count must be positive.");
+    }
+
+    private Set<CompactGenotype> distinctGenotypes() {
+        Set<CompactGenotype> distinct = new HashSet<CompactGenotype>();
+
+        column.forEach((barcode, genotype) -> distinct.add(genotype.compact()));
+
+        return distinct;
     }
 
     /**
@@ -106,7 +187,7 @@ public final class TumorGenotypeTable {
      * tumor sample.
      */
     public boolean contains(TumorBarcode barcode) {
-        return map.containsKey(barcode);
+        return column.contains(barcode);
     }
 
     /**
@@ -118,7 +199,7 @@ public final class TumorGenotypeTable {
      * the barcode is not in this table).
      */
     public Genotype lookup(TumorBarcode barcode) {
-        return map.get(barcode);
+        return column.lookup(barcode);
     }
 
     /**
@@ -145,7 +226,7 @@ public final class TumorGenotypeTable {
      * @return the number of tumors in this table.
      */
     public int size() {
-        return map.size();
+        return column.count();
     }
 
     /**
@@ -155,6 +236,17 @@ public final class TumorGenotypeTable {
      * table.
      */
     public Set<TumorBarcode> viewBarcodes() {
-        return Collections.unmodifiableSet(map.keySet());
+        return column.viewKeys();
+    }
+
+    /**
+     * Returns the genotypes as a key column, which may be joined to
+     * other tables keyed by genotype.
+     *
+     * @return a column mapping each tumor barcode to the genotype of
+     * the sampled patient.
+     */
+    public KeyColumn<TumorBarcode, Genotype> genotypeColumn() {
+        return column;
     }
 }
@@ -18,6 +18,9 @@ import jam.io.TableReader;
 import jam.lang.JamException;
 import jam.util.MapUtil;
 
+import jene.app.GlobalResource;
+import jene.util.KeyColumn;
+
 /**
  * Maps tumor barcodes to the sampled patient in the cohort.
  *
@@ -32,7 +35,11 @@ public final class TumorPatientTable {
     private final Map<TumorBarcode, PatientID> tumorMap;
     private final Multimap<PatientID, TumorBarcode> patientMap;
 
-    private static TumorPatientTable global = null;
+    // Built on first request (a benign race)...
+    private KeyColumn<TumorBarcode, PatientID> patientColumn = null;
+
+    private static final GlobalResource<TumorPatientTable> global =
+        GlobalResource.create("TumorPatientTable", () -> load(resolveFileName()));
 
     private TumorPatientTable() {
         this.tumorMap = new HashMap<TumorBarcode, PatientID>();
@@ -55,10 +62,7 @@ public final class TumorPatientTable {
      * a file with a valid table.
      */
     public static TumorPatientTable global() {
-        if (global == null)
-            global = load(resolveFileName());
-
-        return global;
+        return global.get();
     }
 
     private static String resolveFileName() {
@@ -196,6 +200,24 @@ public final class TumorPatientTable {
             throw JamException.runtime("No patient mapped to barcode [%s].", barcode.getKey());
     }
 
+    /**
+     * Returns the sampled patients as a key column, which may be
+     * joined to other patient tables.
+     *
+     * @return a column mapping each tumor barcode in this table to
+     * the sampled patient.
+     */
+    public KeyColumn<TumorBarcode, PatientID> patientColumn() {
+        KeyColumn<TumorBarcode, PatientID> result = patientColumn;
+
+        if (result == null) {
+            result = KeyColumn.create(tumorMap);
+            patientColumn = result;
+        }
+
+        return result;
+    }
+
     /**
      * Returns the number of tumors in this table.
      *
@@ -0,0 +1,294 @@
+
+package jene.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import com.google.common.collect.ImmutableSet;
+
+import jam.lang.JamException;
+
+/**
+ * Maps the keys of a {@link KeyIndex} to values (the patient for each
+ * tumor barcode, the cancer type for each patient, and so on), with
+ * the values addressed by key ordinal.
+ *
+ * <p>Columns may be joined on their values: if one column maps tumor
+ * barcodes to patients and another maps patients to genotypes, then
+ * {@code tumorPatients.join(patientGenotypes)} maps tumor barcodes to
+ * genotypes.  The foreign keys are resolved to ordinals in the target
+ * column once, when the join is created, but no values are copied:
+ * the joined column is a view that dereferences the ordinal arrays on
+ * each access, so a lookup through any chain of joins costs one hash
+ * lookup (for the key ordinal) plus one array access per join.
+ *
+ * <p>Keys may be unmapped (with {@code null} values), e.g., tumors
+ * whose patient has no genotype; {@link #viewKeys()} and
+ * {@link #count()} include only the mapped keys.
+ *
+ * @param <K> the runtime key type.
+ *
+ * @param <V> the runtime value type.
+ */
+public abstract class KeyColumn<K, V> {
+    private final KeyIndex<K> keyIndex;
+
+    // The mapped keys, computed on demand...
+    private volatile Set<K> mappedKeys = null;
+
+    KeyColumn(KeyIndex<K> keyIndex) {
+        this.keyIndex = keyIndex;
+    }
+
+    /**
+     * Creates a new column from the entries in a map; the keys are
+     * indexed in iteration order.
+     *
+     * @param <K> the runtime key type.
+     *
+     * @param <V> the runtime value type.
+     *
+     * @param map the key-value mappings.
+     *
+     * @return a new column containing the mappings in the specified
+     * map (which are copied).
+     */
+    public static <K, V> KeyColumn<K, V> create(Map<K, V> map) {
+        List<K> keys = new ArrayList<K>(map.size());
+        Object[] values = new Object[map.size()];
+
+        for (Map.Entry<K, V> entry : map.entrySet()) {
+            values[keys.size()] = entry.getValue();
+            keys.add(entry.getKey());
+        }
+
+        return new ArrayColumn<K, V>(KeyIndex.create(keys), values);
+    }
+
+    /**
+     * Creates a new column by applying a function to every key in an
+     * index.
+     *
+     * @param <K> the runtime key type.
+     *
+     * @param <V> the runtime value type.
+     *
+     * @param keyIndex the keys to map.
+     *
+     * @param mapper the function that computes the value for each key
+     * (which is called once per key and may return {@code null} for
+     * unmapped keys).
+     *
+     * @return a new column containing the computed values.
+     */
+    public static <K, V> KeyColumn<K, V> create(KeyIndex<K> keyIndex, Function<? super K, ? extends V> mapper) {
+        Object[] values = new Object[keyIndex.size()];
+
+        for (int ordinal = 0; ordinal < values.length; ++ordinal)
+            values[ordinal] = mapper.apply(keyIndex.get(ordinal));
+
+        return new ArrayColumn<K, V>(keyIndex, values);
+    }
+
+    /**
+     * Returns the value for a key identified by its ordinal.
+     *
+     * @param ordinal the ordinal of the key in the key index.
+     *
+     * @return the value mapped to the specified key ({@code null} if
+     * the key is unmapped).
+     *
+     * @throws IndexOutOfBoundsException unless the ordinal is valid.
+     */
+    public abstract V get(int ordinal);
+
+    /**
+     * Returns the index that assigns ordinals to the keys in this
+     * column.
+     *
+     * @return the key index for this column.
+     */
+    public KeyIndex<K> getKeyIndex() {
+        return keyIndex;
+    }
+
+    /**
+     * Identifies keys mapped by this column.
+     *
+     * @param key the key of interest.
+     *
+     * @return {@code true} iff this column maps the specified key to
+     * a value.
+     */
+    public boolean contains(K key) {
+        return lookup(key) != null;
+    }
+
+    /**
+     * Returns the value for a given key.
+     *
+     * @param key the key of interest.
+     *
+     * @return the value mapped to the specified key ({@code null} if
+     * the key is unmapped).
+     */
+    public V lookup(K key) {
+        int ordinal = keyIndex.indexOf(key);
+
+        if (ordinal >= 0)
+            return get(ordinal);
+        else
+            return null;
+    }
+
+    /**
+     * Returns the value for a given key.
+     *
+     * @param key the key of interest.
+     *
+     * @return the value mapped to the specified key.
+     *
+     * @throws RuntimeException unless the key is mapped.
+     */
+    public V require(K key) {
+        V value = lookup(key);
+
+        if (value != null)
+            return value;
+        else
+            throw JamException.runtime("No value mapped to key [%s].", key);
+    }
+
+    /**
+     * Returns the number of keys mapped by this column.
+     *
+     * @return the number of keys mapped by this column.
+     */
+    public int count() {
+        return viewKeys().size();
+    }
+
+    /**
+     * Returns a read-only view of the keys mapped by this column.
+     *
+     * @return an unmodifiable set containing the keys mapped by this
+     * column, which iterates in index order.
+     */
+    public Set<K> viewKeys() {
+        Set<K> result = mappedKeys;
+
+        if (result == null) {
+            ImmutableSet.Builder<K> builder = ImmutableSet.builder();
+
+            for (int ordinal = 0; ordinal < keyIndex.size(); ++ordinal)
+                if (get(ordinal) != null)
+                    builder.add(keyIndex.get(ordinal));
+
+            result = builder.build();
+            mappedKeys = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Performs an action for every mapped key, in index order.
+     *
+     * @param action the action to perform on each key and its value.
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (int ordinal = 0; ordinal < keyIndex.size(); ++ordinal) {
+            V value = get(ordinal);
+
+            if (value != null)
+                action.accept(keyIndex.get(ordinal), value);
+        }
+    }
+
+    /**
+     * Joins this column to another column keyed by the values of this
+     * column.
+     *
+     * <p>The values of this column are resolved to ordinals in the
+     * other column once, when the join is created; the joined column
+     * is a view of the other column, so later lookups require no
+     * hashing beyond the ordinal of the key.
+     *
+     * @param <W> the runtime value type of the other column.
+     *
+     * @param that the column to join.
+     *
+     * @return a column mapping each key in this column to the value
+     * that the other column maps to its value (keys whose value is
+     * unmapped in the other column are unmapped in the result).
+     */
+    public <W> KeyColumn<K, W> join(KeyColumn<V, W> that) {
+        int[] links = new int[keyIndex.size()];
+
+        for (int ordinal = 0; ordinal < links.length; ++ordinal) {
+            V value = get(ordinal);
+
+            if (value != null)
+                links[ordinal] = that.keyIndex.indexOf(value);
+            else
+                links[ordinal] = -1;
+        }
+
+        return new JoinedColumn<K, V, W>(keyIndex, links, that);
+    }
+
+    /**
+     * Copies the values of this column (which may be a joined view)
+     * into a new array-backed column with the same key index.
+     *
+     * @return an array-backed copy of this column.
+     */
+    public KeyColumn<K, V> materialize() {
+        Object[] values = new Object[keyIndex.size()];
+
+        for (int ordinal = 0; ordinal < values.length; ++ordinal)
+            values[ordinal] = get(ordinal);
+
+        return new ArrayColumn<K, V>(keyIndex, values);
+    }
+
+    private static final class ArrayColumn<K, V> extends KeyColumn<K, V> {
+        private final Object[] values;
+
+        private ArrayColumn(KeyIndex<K> keyIndex, Object[] values) {
+            super(keyIndex);
+            this.values = values;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override public V get(int ordinal) {
+            return (V) values[ordinal];
+        }
+    }
+
+    private static final class JoinedColumn<K, V, W> extends KeyColumn<K, W> {
+        // Element [ordinal] holds the ordinal of the foreign key in
+        // the target column (or -1 if it is unmapped)...
+        private final int[] links;
+        private final KeyColumn<V, W> target;
+
+        private JoinedColumn(KeyIndex<K> keyIndex, int[] links, KeyColumn<V, W> target) {
+            super(keyIndex);
+            this.links = links;
+            this.target = target;
+        }
+
+        @Override public W get(int ordinal) {
+            int link = links[ordinal];
+
+            if (link >= 0)
+                return target.get(link);
+            else
+                return null;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+
+package jene.util;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Assigns dense zero-based ordinal indexes to a fixed set of keys
+ * (tumor barcodes, patient keys, HUGO symbols, and so on), so that
+ * keyed data may be stored in arrays and joined by ordinal.
+ *
+ * @param <K> the runtime key type.
+ */
+public final class KeyIndex<K> {
+    private final ImmutableMap<K, Integer> indexMap;
+
+    private KeyIndex(ImmutableMap<K, Integer> indexMap) {
+        this.indexMap = indexMap;
+    }
+
+    /**
+     * Creates a new index for a collection of keys; the keys are
+     * assigned indexes in iteration order.
+     *
+     * @param <K> the runtime key type.
+     *
+     * @param keys the keys to index.
+     *
+     * @return a new index for the specified keys.
+     *
+     * @throws IllegalArgumentException if the collection contains
+     * duplicate keys.
+     */
+    public static <K> KeyIndex<K> create(Collection<K> keys) {
+        ImmutableMap.Builder<K, Integer> builder = ImmutableMap.builder();
+        int index = 0;
+
+        for (K key : keys)
+            builder.put(key, index++);
+
+        return new KeyIndex<K>(builder.build());
+    }
+
+    /**
+     * Identifies keys contained in this index.
+     *
+     * @param key the key of interest.
+     *
+     * @return {@code true} iff this index contains the specified key.
+     */
+    public boolean contains(K key) {
+        return indexMap.containsKey(key);
+    }
+
+    /**
+     * Returns the key assigned to a given index.
+     *
+     * @param index the ordinal index of interest.
+     *
+     * @return the key assigned to the specified index.
+     *
+     * @throws IndexOutOfBoundsException unless the index is valid.
+     */
+    public K get(int index) {
+        return viewKeys().get(index);
+    }
+
+    /**
+     * Returns the ordinal index assigned to a given key.
+     *
+     * @param key the key of interest.
+     *
+     * @return the ordinal index assigned to the specified key, or
+     * {@code -1} if this index does not contain the key.
+     */
+    public int indexOf(K key) {
+        Integer index = indexMap.get(key);
+
+        if (index != null)
+            return index.intValue();
+        else
+            return -1;
+    }
+
+    /**
+     * Returns the ordinal index assigned to a given key.
+     *
+     * @param key the key of interest.
+     *
+     * @return the ordinal index assigned to the specified key.
+     *
+     * @throws IllegalArgumentException unless this index contains the
+     * specified key.
+     */
+    public int require(K key) {
+        int index = indexOf(key);
+
+        if (index < 0)
+            throw new IllegalArgumentException(String.format("Missing key: [%s].", key));
+
+        return index;
+    }
+
+    /**
+     * Returns the number of keys in this index.
+     *
+     * @return the number of keys in this index.
+     */
+    public int size() {
+        return indexMap.size();
+    }
+
+    /**
+     * Returns a read-only view of the keys in this index, in index
+     * order.
+     *
+     * @return a read-only view of the keys in this index.
+     */
+    public List<K> viewKeys() {
+        return indexMap.keySet().asList();
+    }
+
+    /**
+     * Returns a read-only set view of the keys in this index, which
+     * iterates in index order.
+     *
+     * @return a read-only set view of the keys in this index.
+     */
+    public Set<K> viewKeySet() {
+        return indexMap.keySet();
+    }
+}
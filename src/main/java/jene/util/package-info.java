@@ -0,0 +1,4 @@
+/**
+ * Provides ordinal key indexes and key columns shared by the other jene packages.
+ */
+package jene.util;
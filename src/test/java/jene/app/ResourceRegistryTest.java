@@ -0,0 +1,134 @@
+
+package jene.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ResourceRegistryTest {
+    private static final long TIMEOUT_SECONDS = 10L;
+
+    //
+    // Creates a resource whose loader counts its calls and then waits
+    // for the latch to open: the latch (rather than the wall clock)
+    // establishes that the loads overlap...
+    //
+    private static GlobalResource<String> blocker(String name, AtomicInteger loadCount, CountDownLatch latch) {
+        return GlobalResource.create(name, () -> {
+                loadCount.incrementAndGet();
+                latch.countDown();
+
+                try {
+                    if (!latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                        throw new IllegalStateException("Timed out waiting for concurrent callers.");
+                }
+                catch (InterruptedException ex) {
+                    throw new IllegalStateException(ex);
+                }
+
+                return name;
+            });
+    }
+
+    @Test public void testConcurrentGet() throws Exception {
+        int threadCount = 8;
+
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch arrived = new CountDownLatch(threadCount + 1);
+        GlobalResource<String> resource = blocker("testConcurrentGet", loadCount, arrived);
+
+        assertFalse(resource.isLoaded());
+        assertEquals(-1L, resource.getLoadMillis());
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+        try {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+
+            //
+            // The loader does not finish until every caller has
+            // arrived, so all callers request the resource while it
+            // is still loading...
+            //
+            for (int k = 0; k < threadCount; ++k)
+                futures.add(executor.submit(() -> {
+                            arrived.countDown();
+                            return resource.get();
+                        }));
+
+            // Results (and any exceptions) are checked on this thread...
+            for (Future<String> future : futures)
+                assertEquals("testConcurrentGet", future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, loadCount.get());
+        assertTrue(resource.isLoaded());
+        assertTrue(resource.getLoadMillis() >= 0L);
+    }
+
+    @Test public void testWarmUp() {
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(3);
+
+        // Each loader waits until all three are loading, so a serial
+        // warm-up would time out...
+        GlobalResource<String> resource1 = blocker("testWarmUp1", loadCount, loading);
+        GlobalResource<String> resource2 = blocker("testWarmUp2", loadCount, loading);
+        GlobalResource<String> resource3 = blocker("testWarmUp3", loadCount, loading);
+
+        ResourceRegistry.warmUp(resource1::get, resource2::get, resource3::get, resource1::get);
+
+        // Loaded concurrently, once each...
+        assertEquals(3, loadCount.get());
+
+        assertTrue(resource1.isLoaded());
+        assertTrue(resource2.isLoaded());
+        assertTrue(resource3.isLoaded());
+
+        assertTrue(ResourceRegistry.loadTimes().containsKey("testWarmUp1"));
+        assertTrue(ResourceRegistry.loadTimes().containsKey("testWarmUp2"));
+        assertTrue(ResourceRegistry.loadTimes().containsKey("testWarmUp3"));
+        assertTrue(ResourceRegistry.listResources().contains(resource3));
+    }
+
+    @Test public void testFailure() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        GlobalResource<String> resource = GlobalResource.create("testFailure", () -> {
+                if (attempts.incrementAndGet() == 1)
+                    throw new IllegalArgumentException("first attempt");
+
+                return "loaded";
+            });
+
+        try {
+            ResourceRegistry.warmUp(resource::get);
+            fail("Expected the failure to propagate.");
+        }
+        catch (IllegalArgumentException ex) {
+            assertEquals("first attempt", ex.getMessage());
+        }
+
+        assertFalse(resource.isLoaded());
+        assertFalse(ResourceRegistry.loadTimes().containsKey("testFailure"));
+
+        // The next access tries again...
+        assertEquals("loaded", resource.get());
+        assertEquals(2, attempts.get());
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jene.app.ResourceRegistryTest");
+    }
+}
@@ -0,0 +1,92 @@
+package jene.ensembl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import jene.hugo.HugoPeptideTable;
+import jene.hugo.HugoSymbol;
+import jene.peptide.Peptide;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class PeptideLocatorTest {
+    private static final EnsemblProteinDb ensemblDb = EnsemblProteinDb.load("data/test/ensembl_test2.fa");
+
+    @Test public void testLocate() {
+        List<Peptide> peptides = new ArrayList<Peptide>();
+
+        // Overlapping and nested patterns exercise the output links...
+        peptides.add(Peptide.instance("MAAL"));
+        peptides.add(Peptide.instance("AAL"));
+        peptides.add(Peptide.instance("GGGG"));
+        peptides.add(Peptide.instance("GGGGG"));
+        peptides.add(Peptide.instance("VVV"));
+        peptides.add(Peptide.instance("L"));
+        peptides.add(Peptide.instance("WWWWWWWWW"));
+        peptides.add(Peptide.instance("AAL"));
+
+        for (EnsemblProteinRecord record : ensemblDb.viewRecords())
+            peptides.addAll(record.getPeptide().nativeFragments(9).subList(0, 20));
+
+        PeptideLocator locator = PeptideLocator.compile(peptides);
+        Set<PeptideLocation> actual = new HashSet<PeptideLocation>(locator.locate(ensemblDb));
+
+        assertEquals(naiveLocate(new HashSet<Peptide>(peptides)), actual);
+        assertEquals(actual.size(), locator.locate(ensemblDb).size());
+    }
+
+    @Test public void testGrowth() {
+        // Enough distinct peptides to grow the trie several times...
+        List<Peptide> peptides = new ArrayList<Peptide>();
+
+        for (EnsemblProteinRecord record : ensemblDb.viewRecords()) {
+            peptides.addAll(record.getPeptide().nativeFragments(9));
+            peptides.addAll(record.getPeptide().nativeFragments(15));
+        }
+
+        PeptideLocator locator = PeptideLocator.compile(peptides);
+        Set<PeptideLocation> actual = new HashSet<PeptideLocation>(locator.locate(ensemblDb));
+
+        assertEquals(naiveLocate(new HashSet<Peptide>(peptides)), actual);
+    }
+
+    private static Set<PeptideLocation> naiveLocate(Set<Peptide> peptides) {
+        Set<PeptideLocation> locations = new HashSet<PeptideLocation>();
+
+        for (EnsemblProteinRecord record : ensemblDb.viewRecords()) {
+            String protein = record.getPeptide().formatString();
+
+            for (Peptide peptide : peptides) {
+                String target = peptide.formatString();
+                int offset = protein.indexOf(target);
+
+                while (offset >= 0) {
+                    locations.add(PeptideLocation.instance(peptide, record, offset));
+                    offset = protein.indexOf(target, offset + 1);
+                }
+            }
+        }
+
+        return locations;
+    }
+
+    @Test public void testMapHugo() {
+        Peptide kras = Peptide.instance("MTEYKLVVVGAGGVGKSALTIQLIQNHFV");
+        Peptide absent = Peptide.instance("WWWWWWWWW");
+
+        PeptideLocator locator = PeptideLocator.compile(List.of(kras, absent));
+        HugoPeptideTable table = locator.mapHugo(ensemblDb);
+
+        assertEquals(2, locator.size());
+        assertTrue(table.contains(kras));
+        assertFalse(table.contains(absent));
+        assertTrue(table.get(HugoSymbol.instance("KRAS")).contains(kras));
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jene.ensembl.PeptideLocatorTest");
+    }
+}
@@ -0,0 +1,85 @@
+package jene.ensembl;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import jene.peptide.Peptide;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ProteomeIndexTest {
+    private static final EnsemblProteinDb ensemblDb = EnsemblProteinDb.load("data/test/ensembl_test2.fa");
+    private static final ProteomeIndex index = ProteomeIndex.build(ensemblDb);
+
+    private static final String INDEX_FILE = "data/test/_tmp_proteome_index.bin";
+
+    @Test public void testCount() {
+        assertEquals(5, index.countProteins());
+
+        // The KRAS isoforms share their leading residues...
+        assertEquals(2, index.count(Peptide.instance("MTEYKLVVVGAGGVGKSALTIQLIQNHFV")));
+        assertEquals(0, index.count(Peptide.instance("WWWWWWWWW")));
+
+        for (String motif : List.of("A", "GG", "GGGGG", "MAAL", "QLIQ", "SSSSSS", "XW"))
+            assertEquals(naiveLocate(Peptide.instance(motif)), new HashSet<PeptideLocation>(index.locate(Peptide.instance(motif))));
+    }
+
+    @Test public void testFragments() {
+        for (EnsemblProteinRecord record : ensemblDb.viewRecords()) {
+            Peptide protein = record.getPeptide();
+
+            for (int length : new int[] { 1, 3, 9, 25 }) {
+                for (int start = 0; start + length <= protein.length(); start += 37) {
+                    Peptide fragment = Peptide.of(protein.subList(start, start + length));
+                    Set<PeptideLocation> expected = naiveLocate(fragment);
+
+                    assertEquals(expected.size(), index.count(fragment));
+                    assertEquals(expected, new HashSet<PeptideLocation>(index.locate(fragment)));
+                }
+            }
+
+            assertTrue(index.findProteins(protein).contains(record));
+        }
+    }
+
+    @Test public void testStoreLoad() {
+        File file = new File(INDEX_FILE);
+
+        try {
+            index.store(file);
+            ProteomeIndex loaded = ProteomeIndex.load(file, ensemblDb);
+
+            assertEquals(index.textLength(), loaded.textLength());
+
+            for (String motif : List.of("A", "GG", "MAAL", "QLIQ"))
+                assertEquals(index.locate(Peptide.instance(motif)), loaded.locate(Peptide.instance(motif)));
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    private static Set<PeptideLocation> naiveLocate(Peptide peptide) {
+        Set<PeptideLocation> locations = new HashSet<PeptideLocation>();
+        String target = peptide.formatString();
+
+        for (EnsemblProteinRecord record : ensemblDb.viewRecords()) {
+            String protein = record.getPeptide().formatString();
+            int offset = protein.indexOf(target);
+
+            while (offset >= 0) {
+                locations.add(PeptideLocation.instance(peptide, record, offset));
+                offset = protein.indexOf(target, offset + 1);
+            }
+        }
+
+        return locations;
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jene.ensembl.ProteomeIndexTest");
+    }
+}
@@ -19,6 +19,36 @@ public class AlleleTest {
     private static final Allele C1 = Allele.instance("C0103");
     private static final Allele C2 = Allele.instance("C0702");
 
+    @Test public void testCanonical() {
+        assertSame(A1, Allele.instance("HLA-A*02:01"));
+        assertSame(A1, Allele.instance(Locus.A, 2, 1));
+        assertSame(B2, Allele.ofOrdinal(B2.ordinal()));
+
+        Allele allele = Allele.instance(Locus.C, 17, 123);
+
+        assertEquals(allele.ordinal() + 1, Allele.count());
+        assertEquals("HLA-C*17:123", allele.longKey());
+        assertEquals("C17123", allele.shortKey());
+        assertEquals("HLA-C*17:123", allele.toString());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testBadOrdinal() {
+        Allele.ofOrdinal(Allele.count());
+    }
+
+    @Test public void testBadFormat() {
+        for (String s : List.of("", "D0201", "A2", "A02", "A02:1", "A02:0x", "A02:01:01", "A0:201")) {
+            try {
+                Allele.instance(s);
+                fail("Parsed invalid allele [" + s + "].");
+            }
+            catch (RuntimeException ex) {
+                // Expected...
+            }
+        }
+    }
+
     @Test public void testCompare() {
         assertTrue(B1.compareTo(A1)  > 0);
         assertTrue(B1.compareTo(A2)  > 0);
@@ -48,6 +78,7 @@ public class AlleleTest {
         assertEquals(A1, Allele.instance("HLA-A*02:01"));
         assertEquals(A1, Allele.instance("HLA-A-02:01"));
         assertEquals(A1, Allele.instance("HLA-A-02-01"));
+        assertEquals(A1, Allele.instance("  A*02_01 "));
     }
 
     @Test public void testLoad() {
@@ -58,6 +89,8 @@ public class AlleleTest {
 
     @Test public void testParse() {
         assertEquals(List.of(C2, A1, B2), Allele.parse("C0702 A0201 B3501", RegexUtil.MULTI_WHITE_SPACE));
+        assertEquals(List.of(C2, A1, B2), Allele.parse("  C0702\tA0201   B3501 ", RegexUtil.MULTI_WHITE_SPACE));
+        assertEquals(List.of(C2, A1, B2), Allele.parse("C0702,A0201,B3501", RegexUtil.COMMA));
     }
 
     public static void main(String[] args) {
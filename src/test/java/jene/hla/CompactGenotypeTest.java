@@ -0,0 +1,140 @@
+
+package jene.hla;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class CompactGenotypeTest {
+    private static final Allele A1 = Allele.instance("A0201");
+    private static final Allele A2 = Allele.instance("A3010");
+
+    private static final Allele B1 = Allele.instance("B0702");
+    private static final Allele B2 = Allele.instance("B3501");
+
+    private static final Allele C1 = Allele.instance("C0103");
+    private static final Allele C2 = Allele.instance("C0702");
+
+    private static final Allele C3 = Allele.instance("C1601");
+
+    private static final Genotype homoA2 = Genotype.instance(A2, A2, B1, B2, C1, C2);
+    private static final Genotype hetero = Genotype.instance(A1, A2, B1, B2, C1, C2);
+
+    @Test public void testCopyOf() {
+        CompactGenotype compact = homoA2.compact();
+
+        assertSame(compact, homoA2.compact());
+        assertEquals(homoA2, compact.toGenotype());
+        assertEquals(hetero, hetero.compact().toGenotype());
+
+        assertEquals(6, compact.size());
+        assertEquals(5, compact.countUniqueAlleles());
+        assertEquals(1, compact.countUniqueAlleles(Locus.A));
+        assertEquals(2, compact.countUniqueAlleles(Locus.B));
+
+        assertEquals(2, compact.count(A2));
+        assertEquals(1, compact.count(B1));
+        assertEquals(0, compact.count(A1));
+
+        assertTrue(compact.contains(A2));
+        assertFalse(compact.contains(A1));
+        assertFalse(compact.contains(C3));
+
+        assertTrue(compact.isHomozygous());
+        assertTrue(compact.isHomozygous(Locus.A));
+        assertFalse(compact.isHomozygous(Locus.B));
+        assertFalse(hetero.compact().isHomozygous());
+    }
+
+    @Test public void testEmpty() {
+        CompactGenotype compact = CompactGenotype.copyOf(List.<Allele>of());
+
+        assertEquals(0, compact.size());
+        assertEquals(0, compact.countUniqueAlleles());
+        assertFalse(compact.contains(A1));
+        assertFalse(compact.isHomozygous());
+        assertEquals(0, compact.countSharedAlleles(hetero.compact()));
+        assertEquals(Genotype.instance(List.<Allele>of()), compact.toGenotype());
+    }
+
+    @Test public void testMixedCopies() {
+        // Neither fully heterozygous nor fully homozygous at locus A...
+        Genotype genotype = Genotype.instance(A1, A1, A2, B1, C1, C1, C1);
+        CompactGenotype compact = genotype.compact();
+
+        assertEquals(genotype, compact.toGenotype());
+        assertEquals(7, compact.size());
+        assertEquals(2, compact.count(A1));
+        assertEquals(1, compact.count(A2));
+        assertEquals(3, compact.count(C1));
+        assertTrue(compact.isHomozygous());
+        assertFalse(compact.isHomozygous(Locus.A));
+
+        assertEquals(4, genotype.countSharedAlleles(hetero));
+        assertNotEquals(Genotype.instance(A1, A2, A2, B1, C1, C1, C1).compact(), compact);
+        assertEquals(Genotype.instance(C1, A1, C1, B1, A2, C1, A1).compact(), compact);
+
+        assertEquals(genotype.delete(A2).compact(), compact.delete(List.of(A2)));
+        assertEquals(genotype.delete(A1).compact(), compact.delete(List.of(A1)));
+    }
+
+    @Test public void testDelete() {
+        CompactGenotype compact = homoA2.compact();
+
+        assertEquals(Genotype.instance(B1, B2, C1, C2).compact(), compact.delete(List.of(A2)));
+        assertEquals(Genotype.instance(A2, A2, B1, C1).compact(), compact.delete(List.of(B2, C2)));
+        assertEquals(hetero.delete(B2).compact(), hetero.compact().delete(List.of(B2)));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testDeleteMissing() {
+        homoA2.compact().delete(List.of(A1));
+    }
+
+    @Test public void testEnumerateLOH() {
+        Genotype mixed = Genotype.instance(A1, A1, A2, B1, C1, C1, C1);
+
+        for (Genotype genotype : List.of(hetero, homoA2, mixed)) {
+            for (int count = 1; count <= 3; ++count) {
+                Set<CompactGenotype> expected = new HashSet<CompactGenotype>();
+
+                for (Genotype variant : genotype.enumerateLOH(count))
+                    expected.add(variant.compact());
+
+                List<CompactGenotype> actual = genotype.compact().enumerateLOH(count);
+
+                assertEquals(expected.size(), actual.size());
+                assertEquals(expected, new HashSet<CompactGenotype>(actual));
+            }
+        }
+
+        // Homozygous copies collapse to a single copy...
+        assertTrue(homoA2.compact().enumerateLOH(1).contains(Genotype.instance(A2, B1, C1, C2).compact()));
+        assertFalse(homoA2.compact().enumerateLOH(1).contains(Genotype.instance(A2, A2, B1, C1, C2).compact()));
+    }
+
+    @Test public void testEquals() {
+        CompactGenotype compact = Genotype.instance(C2, C1, A1, A2, B2, B1).compact();
+
+        assertEquals(hetero.compact(), compact);
+        assertEquals(hetero.compact().hashCode(), compact.hashCode());
+        assertNotEquals(homoA2.compact(), compact);
+
+        // Same unique alleles, different copy numbers...
+        assertNotEquals(Genotype.instance(A2, B1).compact(), Genotype.instance(A2, A2, B1).compact());
+    }
+
+    @Test public void testShared() {
+        assertEquals(5, homoA2.countSharedAlleles(hetero));
+        assertEquals(6, hetero.countSharedAlleles(hetero));
+        assertEquals(0, Genotype.instance(C3).countSharedAlleles(hetero));
+        assertEquals(1, Genotype.instance(C3, C1).countSharedAlleles(homoA2));
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jene.hla.CompactGenotypeTest");
+    }
+}
@@ -0,0 +1,132 @@
+
+package jene.hla;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+import jam.data.DataMatrix;
+import jam.data.DenseDataMatrix;
+import jam.junit.NumericTestBase;
+
+import jene.hugo.HugoSymbol;
+import jene.rna.TumorExpressionMatrix;
+import jene.tcga.PatientID;
+import jene.tcga.TumorBarcode;
+import jene.tcga.TumorGenotypeTable;
+import jene.tcga.TumorPatientTable;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ExpressionClassITableTest extends NumericTestBase {
+    private static final Allele A1 = Allele.instance("A0201");
+    private static final Allele A2 = Allele.instance("A3010");
+
+    private static final Allele B1 = Allele.instance("B0702");
+    private static final Allele B2 = Allele.instance("B3501");
+
+    private static final Allele C1 = Allele.instance("C0103");
+    private static final Allele C2 = Allele.instance("C0702");
+
+    private static final Genotype homoA2 = Genotype.instance(A2, A2, B1, B2, C1, C2);
+    private static final Genotype homoB1 = Genotype.instance(A1, A2, B1, B1, C1, C2);
+    private static final Genotype hetero = Genotype.instance(A1, A2, B1, B2, C1, C2);
+
+    private static final TumorBarcode tumor1 = TumorBarcode.instance("Tumor1");
+    private static final TumorBarcode tumor2 = TumorBarcode.instance("Tumor2");
+    private static final TumorBarcode tumor3 = TumorBarcode.instance("Tumor3");
+    private static final TumorBarcode tumor4 = TumorBarcode.instance("Tumor4");
+
+    private static final HugoSymbol hlaA = Locus.A.getHugoSymbol();
+    private static final HugoSymbol hlaB = Locus.B.getHugoSymbol();
+    private static final HugoSymbol hlaC = Locus.C.getHugoSymbol();
+    private static final HugoSymbol TP53 = HugoSymbol.instance("TP53");
+
+    private final TumorExpressionMatrix matrix = createMatrix();
+    private final TumorGenotypeTable genotypes = createGenotypes();
+
+    private static TumorExpressionMatrix createMatrix() {
+        List<TumorBarcode> barcodes = List.of(tumor1, tumor2, tumor3, tumor4);
+        List<HugoSymbol>   symbols  = List.of(TP53, hlaC, hlaA, hlaB);
+
+        DataMatrix<TumorBarcode, HugoSymbol> dataMatrix =
+            DenseDataMatrix.create(barcodes, symbols);
+
+        for (int k = 0; k < barcodes.size(); ++k) {
+            dataMatrix.set(barcodes.get(k), TP53, 10.0);
+            dataMatrix.set(barcodes.get(k), hlaA, 30000.0 + 1000.0 * k);
+            dataMatrix.set(barcodes.get(k), hlaB, 50000.0 - 2000.0 * k);
+            dataMatrix.set(barcodes.get(k), hlaC, 20000.0 + 500.0 * k);
+        }
+
+        return new TumorExpressionMatrix(dataMatrix);
+    }
+
+    private static TumorGenotypeTable createGenotypes() {
+        try {
+            File tumorPatientFile = File.createTempFile("tumor_patient", ".tsv");
+            tumorPatientFile.deleteOnExit();
+
+            // Tumor4 has no patient, so it has no genotype...
+            try (PrintWriter writer = new PrintWriter(tumorPatientFile)) {
+                writer.println("Tumor_Barcode\tPatient_ID");
+                writer.println("Tumor1\tPat1");
+                writer.println("Tumor2\tPat2");
+                writer.println("Tumor3\tPat3");
+            }
+
+            PatientGenotypeTable patientGenotypeTable =
+                new PatientGenotypeTable(Map.of(PatientID.instance("Pat1"), homoA2,
+                                                PatientID.instance("Pat2"), homoB1,
+                                                PatientID.instance("Pat3"), hetero));
+
+            return TumorGenotypeTable.merge(TumorPatientTable.load(tumorPatientFile), patientGenotypeTable);
+        }
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @Test public void testCompute() {
+        ExpressionClassITable table = ExpressionClassITable.compute(matrix, genotypes);
+
+        assertEquals(3, table.size());
+        assertEquals(List.of(tumor1, tumor2, tumor3), table.viewBarcodes());
+        assertFalse(table.contains(tumor4));
+
+        for (TumorBarcode barcode : table.viewBarcodes()) {
+            Genotype genotype = genotypes.require(barcode);
+            ExpressionClassI expr = ExpressionClassI.create(barcode, matrix);
+
+            assertDouble(expr.get(Locus.A).doubleValue(), table.get(barcode, Locus.A));
+            assertDouble(expr.get(Locus.B).doubleValue(), table.get(barcode, Locus.B));
+            assertDouble(expr.get(Locus.C).doubleValue(), table.get(barcode, Locus.C));
+            assertDouble(expr.total().doubleValue(), table.getTotal(barcode));
+            assertDouble(expr.herfindahl(genotype), table.getHerfindahl(barcode));
+            assertDouble(expr.diversity(genotype), table.getDiversity(barcode));
+        }
+
+        assertDouble(0.235, table.getHerfindahl(tumor1));
+        assertDouble(0.95625, table.getDiversity(tumor1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingGene() {
+        DataMatrix<TumorBarcode, HugoSymbol> dataMatrix =
+            DenseDataMatrix.create(List.of(tumor1), List.of(hlaA, hlaB));
+
+        ExpressionClassITable.compute(new TumorExpressionMatrix(dataMatrix), genotypes);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testUnknownBarcode() {
+        ExpressionClassITable.compute(matrix, genotypes).getTotal(tumor4);
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jene.hla.ExpressionClassITableTest");
+    }
+}
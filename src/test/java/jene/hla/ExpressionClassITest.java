@@ -107,6 +107,22 @@ public class ExpressionClassITest extends NumericTestBase {
         assertEquals(Expression.valueOf(100000.0), expr.total());
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingGene() {
+        DataMatrix<TumorBarcode, HugoSymbol> dataMatrix =
+            DenseDataMatrix.create(List.of(tumor1), List.of(hlaA, hlaB));
+
+        ExpressionClassI.create(tumor1, new TumorExpressionMatrix(dataMatrix));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingTumor() {
+        DataMatrix<TumorBarcode, HugoSymbol> dataMatrix =
+            DenseDataMatrix.create(List.of(tumor1), List.of(hlaA, hlaB, hlaC));
+
+        ExpressionClassI.create(TumorBarcode.instance("Tumor2"), new TumorExpressionMatrix(dataMatrix));
+    }
+
     public static void main(String[] args) {
         org.junit.runner.JUnitCore.main("jene.hla.ExpressionClassITest");
     }
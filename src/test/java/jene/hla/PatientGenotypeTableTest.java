@@ -1,7 +1,10 @@
 
 package jene.hla;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 import jene.tcga.PatientID;
@@ -56,6 +59,61 @@ public class PatientGenotypeTableTest {
         assertEquals(Set.of(Pat02, Pat03), new TreeSet<PatientID>(table.match(A0301)));
     }
 
+    @Test public void testQuery() {
+        assertEquals(List.of(Pat02, Pat03), table.select(AlleleQuery.carrying(A0301)));
+        assertEquals(List.of(Pat03), table.select(AlleleQuery.carrying(A0301).andNot(AlleleQuery.carrying(A1101))));
+        assertEquals(List.of(Pat01, Pat02), table.select(AlleleQuery.carrying(A0201).or(AlleleQuery.carrying(C1202))));
+        assertEquals(List.of(), table.select(AlleleQuery.carrying(A0201).and(AlleleQuery.carrying(A0301))));
+
+        assertEquals(2, table.count(A0301));
+        assertEquals(0, table.count(A0101));
+        assertEquals(1, table.count(AlleleQuery.carrying(B1501)));
+
+        assertEquals(List.of(Pat02, Pat03), table.matchShared(table.require(Pat03), 2));
+        assertEquals(List.of(Pat02, Pat03), table.matchShared(table.require(Pat03), 3));
+        assertEquals(List.of(Pat02), table.matchShared(table.require(Pat02), 4));
+        assertEquals(List.of(), table.matchShared(table.require(Pat03), 4));
+    }
+
+    @Test public void testLargeCohort() {
+        //
+        // Enough patients for several evaluation chunks, with one
+        // common allele (A0201) and one rare allele (B5201)...
+        //
+        Map<PatientID, Genotype> genotypes = new TreeMap<PatientID, Genotype>();
+
+        for (int k = 0; k < 40000; ++k) {
+            Allele alleleA = (k % 2 == 0) ? A0201 : A0301;
+            Allele alleleB = (k % 1000 == 0) ? B5201 : B0702;
+            Allele alleleC = (k % 3 == 0) ? C0702 : C1202;
+
+            genotypes.put(PatientID.instance(String.format("P%05d", k)), Genotype.instance(alleleA, alleleB, alleleC));
+        }
+
+        PatientGenotypeTable large = new PatientGenotypeTable(genotypes);
+
+        assertEquals(20000, large.count(A0201));
+        assertEquals(40, large.count(B5201));
+        assertEquals(40, large.count(AlleleQuery.carrying(A0201).and(AlleleQuery.carrying(B5201))));
+        assertEquals(20000 - 40, large.count(AlleleQuery.carrying(A0201).andNot(AlleleQuery.carrying(B5201))));
+
+        List<PatientID> shared = large.matchShared(Genotype.instance(A0201, B5201, C0702), 2);
+        int expected = 0;
+
+        for (int k = 0; k < 40000; ++k) {
+            int count = ((k % 2 == 0) ? 1 : 0) + ((k % 1000 == 0) ? 1 : 0) + ((k % 3 == 0) ? 1 : 0);
+
+            if (count >= 2)
+                ++expected;
+        }
+
+        assertEquals(expected, shared.size());
+        assertEquals(PatientID.instance("P00000"), shared.get(0));
+
+        for (PatientID patient : shared)
+            assertTrue(large.require(patient).countSharedAlleles(Genotype.instance(A0201, B5201, C0702)) >= 2);
+    }
+
     @Test public void testViewAlleles() {
         assertEquals(Set.of(A0201, A0301, A1101, A3201, B0702, B1501, B5201, C0303, C0702, C1202),
                      table.viewAlleles());
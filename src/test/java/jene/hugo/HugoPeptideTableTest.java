@@ -5,6 +5,8 @@ import java.io.File;
 import java.util.HashSet;
 import java.util.Set;
 
+import jene.ensembl.EnsemblProteinDb;
+import jene.ensembl.EnsemblProteinRecord;
 import jene.peptide.Peptide;
 
 import org.junit.*;
@@ -65,6 +67,38 @@ public class HugoPeptideTableTest {
         assertEquals(Set.of(AAPPPPVLM, AAPPPPVLMH, ADSANYSCV), new HashSet<Peptide>(table2.get(A1BG)));
     }
 
+    @Test public void testBuild() {
+        EnsemblProteinDb ensemblDb = EnsemblProteinDb.load("data/test/ensembl_test2.fa");
+        HugoPeptideTable built = HugoPeptideTable.build(ensemblDb, 8, 9);
+
+        HugoSymbol BRAF = HugoSymbol.instance("BRAF");
+        HugoSymbol KRAS = HugoSymbol.instance("KRAS");
+
+        assertEquals(Set.of(BRAF, KRAS), built.viewSymbols());
+
+        for (HugoSymbol symbol : built.viewSymbols()) {
+            Set<Peptide> expected = new HashSet<Peptide>();
+
+            for (EnsemblProteinRecord record : ensemblDb.get(symbol))
+                if (record.isProteinCoding())
+                    for (int length : new int[] { 8, 9 })
+                        expected.addAll(record.getPeptide().nativeFragments(length));
+
+            assertEquals(expected, new HashSet<Peptide>(built.get(symbol)));
+        }
+
+        assertEquals(built.get(BRAF).size() + built.get(KRAS).size(), built.size());
+        assertTrue(built.viewPeptides().containsAll(built.get(KRAS)));
+
+        // Incremental additions merge with the existing fragments...
+        Peptide kras = ensemblDb.get(KRAS).iterator().next().getPeptide();
+
+        HugoPeptideTable incremental =
+            HugoPeptideTableBuilder.create(9).add(KRAS, kras).add(KRAS, kras).build();
+
+        assertEquals(new HashSet<Peptide>(kras.nativeFragments(9)), new HashSet<Peptide>(incremental.get(KRAS)));
+    }
+
     public static void main(String[] args) {
         org.junit.runner.JUnitCore.main("jene.hugo.HugoPeptideTableTest");
     }
@@ -0,0 +1,154 @@
+package jene.neo;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import jene.ensembl.EnsemblProteinDb;
+import jene.ensembl.EnsemblProteinRecord;
+import jene.peptide.Peptide;
+import jene.peptide.PeptideCode;
+import jene.peptide.PeptideCodeSet;
+import jene.peptide.PeptideGenerator;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class SelfPeptideFilterTest {
+    private static final EnsemblProteinDb ensemblDb = EnsemblProteinDb.load("data/test/ensembl_test2.fa");
+    private static final PeptideCodeSet exact = SelfPeptideFilter.buildExact(ensemblDb, 9);
+
+    private static final String FILTER_FILE = "data/test/_tmp_self_filter.bin";
+
+    @Test public void testBuild() {
+        SelfPeptideFilter filter = SelfPeptideFilter.build(ensemblDb, 0.01, 9);
+
+        assertTrue(exact.size() > 1000);
+        assertFalse(filter.isExact());
+        assertEquals(1, Long.bitCount(filter.bitCount()));
+
+        assertNoFalseNegatives(filter);
+        assertTrue(falsePositiveRate(filter) < 0.05);
+    }
+
+    @Test public void testExact() {
+        SelfPeptideFilter filter = SelfPeptideFilter.build(ensemblDb, 0.1, 9).confirmWith(exact);
+
+        assertTrue(filter.isExact());
+        assertNoFalseNegatives(filter);
+        assertEquals(0.0, falsePositiveRate(filter), 0.0);
+    }
+
+    @Test public void testExactSet() {
+        for (EnsemblProteinRecord record : ensemblDb.viewRecords())
+            for (Peptide fragment : record.getPeptide().nativeFragments(9))
+                assertTrue(exact.contains(fragment));
+    }
+
+    @Test public void testStoreLoadMap() {
+        SelfPeptideFilter filter = SelfPeptideFilter.build(ensemblDb, 0.01, 9);
+        File file = new File(FILTER_FILE);
+
+        try {
+            filter.store(file);
+
+            SelfPeptideFilter loaded = SelfPeptideFilter.load(file);
+            SelfPeptideFilter mapped = SelfPeptideFilter.map(file);
+
+            assertEquals(filter.bitCount(), loaded.bitCount());
+            assertEquals(filter.bitCount(), mapped.bitCount());
+            assertEquals(filter.hashCount(), loaded.hashCount());
+            assertEquals(filter.hashCount(), mapped.hashCount());
+
+            PeptideCodeSet random = PeptideGenerator.create(5).generateNative(9, 10000);
+
+            for (int index = 0; index < random.size(); ++index) {
+                long code = random.codeAt(index);
+                assertEquals(filter.mightContain(code), loaded.mightContain(code));
+                assertEquals(filter.mightContain(code), mapped.mightContain(code));
+            }
+
+            assertNoFalseNegatives(loaded);
+            assertNoFalseNegatives(mapped);
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    @Test public void testUnencodable() {
+        SelfPeptideFilter filter = SelfPeptideFilter.build(ensemblDb, 0.01, 9, PeptideCode.MAX_LENGTH);
+        Peptide protein = ensemblDb.viewRecords().iterator().next().getPeptide();
+
+        // Self-peptides longer than the maximum code length are never
+        // screened...
+        assertTrue(filter.isSelf(protein.nativeFragments(PeptideCode.MAX_LENGTH).get(0)));
+        assertFalse(filter.isSelf(protein.nativeFragments(PeptideCode.MAX_LENGTH + 1).get(0)));
+    }
+
+    @Test public void testInvalidHeader() throws IOException {
+        // A bit array too large to map, and hash counts that would pass
+        // every code (or are implausibly large)...
+        assertInvalidHeader(7, 1L << 34);
+        assertInvalidHeader(0, 1L << 10);
+        assertInvalidHeader(-1, 1L << 10);
+        assertInvalidHeader(Integer.MAX_VALUE, 1L << 10);
+    }
+
+    private static void assertInvalidHeader(int hashCount, long bitCount) throws IOException {
+        File file = new File(FILTER_FILE);
+
+        try {
+            try (DataOutputStream output = new DataOutputStream(new FileOutputStream(file))) {
+                output.writeInt(0x4a535046);
+                output.writeInt(1);
+                output.writeInt(0);
+                output.writeInt(hashCount);
+                output.writeLong(bitCount);
+
+                for (long word = 0; word < Math.min(bitCount, 1L << 10) / Long.SIZE; ++word)
+                    output.writeLong(0L);
+            }
+
+            try {
+                SelfPeptideFilter.load(file);
+                fail("Expected an invalid header.");
+            }
+            catch (IllegalArgumentException ex) {
+                // Expected...
+            }
+
+            try {
+                SelfPeptideFilter.map(file);
+                fail("Expected an invalid header.");
+            }
+            catch (IllegalArgumentException ex) {
+                // Expected...
+            }
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    private static void assertNoFalseNegatives(SelfPeptideFilter filter) {
+        for (Peptide peptide : exact)
+            assertTrue(filter.isSelf(peptide));
+    }
+
+    private static double falsePositiveRate(SelfPeptideFilter filter) {
+        PeptideCodeSet random = PeptideGenerator.create(20201018).generateNative(9, 10000).difference(exact);
+        int positives = 0;
+
+        for (Peptide peptide : random)
+            if (filter.isSelf(peptide))
+                ++positives;
+
+        return ((double) positives) / random.size();
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jene.neo.SelfPeptideFilterTest");
+    }
+}
@@ -0,0 +1,149 @@
+package jene.peptide;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class CompactConcentrationProfileTest {
+    private static final Peptide p1 = Peptide.instance("ALY");
+    private static final Peptide p2 = Peptide.instance("ILE");
+    private static final Peptide p3 = Peptide.instance("LIE");
+    private static final Peptide p4 = Peptide.instance("ALYALYALYALYALY");
+
+    @Test public void testBuildCompact() {
+        PeptideConcentrationBuilder builder =
+            PeptideConcentrationBuilder.create();
+
+        builder.add(p1, 1.0);
+        builder.add(p2, 1.0);
+        builder.add(p2, 1.345);
+        builder.add(p3, 0.0);
+
+        CompactConcentrationProfile profile = builder.buildCompact();
+
+        assertEquals(2, profile.size());
+        assertTrue(profile.contains(p1));
+        assertTrue(profile.contains(p2));
+        assertFalse(profile.contains(p3));
+        assertFalse(profile.contains(p4));
+
+        assertEquals(1.0, profile.getDouble(p1), 1.0E-12);
+        assertEquals(2.345, profile.getDouble(p2), 1.0E-12);
+        assertEquals(0.0, profile.getDouble(p3), 0.0);
+        assertEquals(2.345, profile.getDouble(PeptideCode.encode(p2)), 1.0E-12);
+
+        PeptideConcentrationProfile expanded = profile.toProfile();
+
+        assertEquals(2, expanded.size());
+        assertEquals(2.345, expanded.get(p2).doubleValue(), 1.0E-12);
+    }
+
+    @Test public void testLongPeptide() {
+        PeptideConcentrationBuilder builder =
+            PeptideConcentrationBuilder.create();
+
+        builder.add(p4, 1.0);
+        builder.add(p4, 2.0);
+        builder.add(p1, 0.5);
+
+        PeptideConcentrationProfile profile = builder.build();
+
+        assertEquals(2, profile.size());
+        assertEquals(3.0, profile.get(p4).doubleValue(), 1.0E-12);
+        assertEquals(0.5, profile.get(p1).doubleValue(), 1.0E-12);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLongPeptideCompact() {
+        PeptideConcentrationBuilder builder =
+            PeptideConcentrationBuilder.create();
+
+        builder.add(p4, 1.0);
+        builder.buildCompact();
+    }
+
+    @Test public void testLoadStore() {
+        PeptideConcentrationBuilder builder =
+            PeptideConcentrationBuilder.create();
+
+        //
+        // Enough peptides to force several resizes...
+        //
+        List<Peptide> peptides = new ArrayList<Peptide>();
+
+        for (Residue res1 : Residue.listNative())
+            for (Residue res2 : Residue.listNative())
+                for (Residue res3 : Residue.listNative())
+                    peptides.add(Peptide.of(res1, res2, res3));
+
+        for (int index = 0; index < peptides.size(); ++index)
+            builder.add(peptides.get(index), index + 1.0);
+
+        CompactConcentrationProfile profile1 = builder.buildCompact();
+
+        File file = new File("data/test/_compact_profile.bin");
+        file.deleteOnExit();
+
+        profile1.store(file);
+        CompactConcentrationProfile profile2 = CompactConcentrationProfile.load(file);
+
+        assertEquals(peptides.size(), profile2.size());
+        assertArrayEquals(profile1.codes(), profile2.codes());
+
+        for (int index = 0; index < peptides.size(); ++index)
+            assertEquals(index + 1.0, profile2.getDouble(peptides.get(index)), 0.0);
+    }
+
+    private static final File INVALID_FILE = new File("data/test/_compact_profile_invalid.bin");
+
+    @Test public void testInvalidSize() throws IOException {
+        // Entry counts that overflow the payload size, are negative,
+        // or do not match the file length...
+        for (int size : new int[] { Integer.MAX_VALUE, 200000000, -1, 2 })
+            assertInvalid(size, 1L);
+    }
+
+    @Test public void testInvalidCodes() throws IOException {
+        // The empty-slot marker, negative, duplicate, and unsorted
+        // codes...
+        assertInvalid(1, 0L);
+        assertInvalid(1, -5L);
+        assertInvalid(2, 7L, 7L);
+        assertInvalid(2, 9L, 7L);
+        assertInvalid(3, 5L, 0L, 7L);
+    }
+
+    private static void assertInvalid(int size, long... codes) throws IOException {
+        INVALID_FILE.deleteOnExit();
+
+        try (DataOutputStream output = new DataOutputStream(new FileOutputStream(INVALID_FILE))) {
+            output.writeInt(0x4a504350);
+            output.writeInt(1);
+            output.writeInt(size);
+
+            for (long code : codes)
+                output.writeLong(code);
+
+            for (int index = 0; index < codes.length; ++index)
+                output.writeDouble(1.0);
+        }
+
+        try {
+            CompactConcentrationProfile.load(INVALID_FILE);
+            fail("Expected an invalid profile.");
+        }
+        catch (IllegalArgumentException ex) {
+            // Expected...
+        }
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jene.peptide.CompactConcentrationProfileTest");
+    }
+}
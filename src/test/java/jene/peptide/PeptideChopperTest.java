@@ -0,0 +1,55 @@
+package jene.peptide;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import jene.fasta.FastaPeptideReader;
+import jene.fasta.FastaPeptideRecord;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class PeptideChopperTest {
+    private static final String ENSEMBL_FILE = "data/test/ensembl_test2.fa";
+    private static final String OUTPUT_PREFIX = "data/test/_tmp_chopper";
+
+    private static List<String> expected(int length) {
+        TreeSet<String> fragments = new TreeSet<String>();
+
+        for (FastaPeptideRecord record : FastaPeptideReader.read(ENSEMBL_FILE))
+            for (Peptide fragment : record.getPeptide().nativeFragments(length))
+                fragments.add(fragment.formatString());
+
+        return new ArrayList<String>(fragments);
+    }
+
+    private static void assertOutput(int minLength, int maxLength) throws Exception {
+        for (int length = minLength; length <= maxLength; ++length) {
+            File file = new File(MultiLengthChopper.outputFile(OUTPUT_PREFIX, length));
+            file.deleteOnExit();
+
+            assertEquals(expected(length), Files.readAllLines(file.toPath()));
+        }
+    }
+
+    @Test public void testInMemory() throws Exception {
+        MultiLengthChopper.run(ENSEMBL_FILE, OUTPUT_PREFIX, 8, 11, MultiLengthChopper.DEFAULT_MEMORY_BUDGET);
+        assertOutput(8, 11);
+    }
+
+    @Test public void testSpill() throws Exception {
+        //
+        // A tiny memory budget forces many sorted runs to be spilled
+        // and merged...
+        //
+        MultiLengthChopper.run(ENSEMBL_FILE, OUTPUT_PREFIX, 2, 12, 16 * 100);
+        assertOutput(2, 12);
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jene.peptide.PeptideChopperTest");
+    }
+}
@@ -0,0 +1,100 @@
+package jene.peptide;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class PeptideCodeSetTest {
+    private static final Peptide p1 = Peptide.instance("AVWPRQQCS");
+    private static final Peptide p2 = Peptide.instance("LLLLLLLL");
+    private static final Peptide p3 = Peptide.instance("ACDEFGHIK");
+    private static final Peptide p4 = Peptide.instance("YYY");
+
+    @Test public void testBasic() {
+        PeptideCodeSet set = PeptideCodeSet.create(List.of(p1, p2, p3, p1));
+
+        assertEquals(3, set.size());
+        assertTrue(set.contains(p1));
+        assertTrue(set.contains(p2));
+        assertTrue(set.contains(p3));
+        assertFalse(set.contains(p4));
+        assertFalse(set.contains(Peptide.instance("AVWXRQQCS")));
+        assertFalse(set.contains("AVWPRQQCS"));
+
+        assertEquals(Set.of(p1, p2, p3), set);
+        assertEquals(Set.of(p1, p2, p3), new HashSet<Peptide>(set));
+        assertEquals(Set.of(p1, p2, p3).hashCode(), set.hashCode());
+
+        // Ordered by length, then alphabetically...
+        assertEquals(p2, PeptideCode.decode(set.codeAt(0)));
+        assertEquals(p3, PeptideCode.decode(set.codeAt(1)));
+        assertEquals(p1, PeptideCode.decode(set.codeAt(2)));
+
+        assertEquals(0, set.indexOf(p2));
+        assertEquals(2, set.indexOf(p1));
+        assertEquals(-1, set.indexOf(p4));
+    }
+
+    @Test public void testSetOperations() {
+        PeptideCodeSet set1 = PeptideCodeSet.create(List.of(p1, p2, p3));
+        PeptideCodeSet set2 = PeptideCodeSet.create(List.of(p2, p3, p4));
+
+        assertEquals(Set.of(p1, p2, p3, p4), set1.union(set2));
+        assertEquals(Set.of(p2, p3), set1.intersection(set2));
+        assertEquals(Set.of(p1), set1.difference(set2));
+        assertEquals(Set.of(p4), set2.difference(set1));
+        assertEquals(set1, set1.union(PeptideCodeSet.EMPTY));
+    }
+
+    @Test public void testLargeMerge() {
+        //
+        // Large enough to require several merge chunks: all 5-mers
+        // with an even enumeration index, and all with an index
+        // divisible by three...
+        //
+        long[] evens = PeptideEnumerator.indexStream(5).filter(index -> index % 2 == 0)
+            .mapToObj(index -> PeptideEnumerator.decode(5, index))
+            .mapToLong(peptide -> PeptideCode.encode(peptide)).toArray();
+
+        long[] threes = PeptideEnumerator.indexStream(5).filter(index -> index % 3 == 0)
+            .mapToObj(index -> PeptideEnumerator.decode(5, index))
+            .mapToLong(peptide -> PeptideCode.encode(peptide)).toArray();
+
+        PeptideCodeSet set2 = PeptideCodeSet.create(evens);
+        PeptideCodeSet set3 = PeptideCodeSet.create(threes);
+
+        long total = PeptideEnumerator.indexCount(5);
+
+        assertEquals(total / 2, set2.size());
+        assertEquals(total / 3 + 1, set3.size());
+        assertEquals(total / 6 + 1, set2.intersection(set3).size());
+        assertEquals(total / 2 + total / 3 - total / 6, set2.union(set3).size());
+        assertEquals(total / 2 - total / 6 - 1, set2.difference(set3).size());
+    }
+
+    @Test public void testPeptidome() {
+        Peptidome peptidome1 = Peptidome.compact(List.of(p1, p2, p3));
+        Peptidome peptidome2 = Peptidome.compact(List.of(p2, p3, p4));
+        Peptidome peptidome3 = Peptidome.create(List.of(p2, p3, p4));
+
+        assertTrue(peptidome1.isCompact());
+        assertFalse(peptidome3.isCompact());
+
+        assertEquals(Set.of(p1, p2, p3, p4), Peptidome.union(peptidome1, peptidome2));
+        assertEquals(Set.of(p1, p2, p3, p4), Peptidome.union(peptidome1, peptidome3));
+        assertTrue(Peptidome.union(peptidome1, peptidome2).isCompact());
+        assertFalse(Peptidome.union(peptidome1, peptidome3).isCompact());
+
+        assertEquals(Set.of(p2, p3), Peptidome.intersection(peptidome1, peptidome2));
+        assertEquals(Set.of(p2, p3), Peptidome.intersection(peptidome1, peptidome3));
+        assertEquals(Set.of(p1), Peptidome.difference(peptidome1, peptidome2));
+        assertEquals(Set.of(p1), Peptidome.difference(peptidome1, peptidome3));
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jene.peptide.PeptideCodeSetTest");
+    }
+}
@@ -0,0 +1,67 @@
+package jene.peptide;
+
+import java.util.List;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class PeptideCodeTest {
+    @Test public void testEncode() {
+        for (String s : List.of("A", "Y", "AVWPRQQCS", "YYYYYYYYYYYY", "ACDEFGHIKLMN")) {
+            Peptide peptide = Peptide.instance(s);
+            long code = PeptideCode.encode(peptide);
+
+            assertTrue(code > 0);
+            assertEquals(s.length(), PeptideCode.length(code));
+            assertEquals(peptide, PeptideCode.decode(code));
+            assertEquals(s, PeptideCode.format(code));
+        }
+    }
+
+    @Test public void testEncodable() {
+        assertTrue(PeptideCode.isEncodable(Peptide.instance("AVWPRQQCS")));
+        assertFalse(PeptideCode.isEncodable(Peptide.instance("AVWXRQQCS")));
+        assertFalse(PeptideCode.isEncodable(Peptide.instance("AVWPRQQCSAVWP")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonNative() {
+        PeptideCode.encode(Peptide.instance("AVWXRQQCS"));
+    }
+
+    @Test public void testFragment() {
+        Peptide peptide = Peptide.instance("AVWPRQQCSTLE");
+        assertEquals(PeptideCode.encode(Peptide.instance("PRQQ")), PeptideCode.encode(peptide, 3, 7));
+    }
+
+    @Test public void testFragments() {
+        Peptide peptide = Peptide.instance("AVWPXRQQCS");
+        long[] codes = PeptideCode.fragments(peptide, 3);
+
+        List<Peptide> fragments = peptide.nativeFragments(3);
+        assertEquals(fragments.size(), codes.length);
+
+        for (int k = 0; k < codes.length; ++k)
+            assertEquals(PeptideCode.encode(fragments.get(k)), codes[k]);
+
+        assertEquals(0, PeptideCode.fragments(Peptide.instance("AV"), 3).length);
+    }
+
+    @Test public void testOrder() {
+        //
+        // Codes for peptides of equal length sort alphabetically,
+        // shorter peptides before longer...
+        //
+        List<String> sorted = List.of("YY", "AAA", "AAC", "ACA", "CAA", "WYY", "YAA");
+
+        for (int k = 1; k < sorted.size(); ++k) {
+            long code1 = PeptideCode.encode(Peptide.instance(sorted.get(k - 1)));
+            long code2 = PeptideCode.encode(Peptide.instance(sorted.get(k)));
+            assertTrue(code1 < code2);
+        }
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jene.peptide.PeptideCodeTest");
+    }
+}
@@ -0,0 +1,69 @@
+package jene.peptide;
+
+import java.util.List;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class PeptideCompositionTest {
+    @Test public void testCount() {
+        assertEquals(     20L, PeptideComposition.count(1));
+        assertEquals(    210L, PeptideComposition.count(2));
+        assertEquals(   1540L, PeptideComposition.count(3));
+        assertEquals(   8855L, PeptideComposition.count(4));
+        assertEquals(6906900L, PeptideComposition.count(9));
+        assertEquals(141120525L, PeptideComposition.count(12));
+    }
+
+    @Test public void testKey() {
+        for (int length = 1; length <= 4; ++length) {
+            for (long key = 0; key < PeptideComposition.count(length); ++key) {
+                PeptideComposition composition = PeptideComposition.decode(length, key);
+
+                assertEquals(length, composition.length());
+                assertEquals(key, composition.key());
+                assertEquals(composition, PeptideComposition.of(composition.toPeptide()));
+            }
+        }
+
+        Peptide peptide = Peptide.instance("AVWPRQQCSTLE");
+        PeptideComposition composition = PeptideComposition.of(peptide);
+
+        assertEquals(composition, PeptideComposition.decode(12, composition.key()));
+        assertEquals(2, composition.count(Residue.Gln));
+        assertEquals(0, composition.count(Residue.His));
+    }
+
+    @Test public void testMultinomial() {
+        assertEquals(1L, PeptideComposition.of(Peptide.instance("AAAA")).multinomial());
+        assertEquals(4L, PeptideComposition.of(Peptide.instance("AAAC")).multinomial());
+        assertEquals(6L, PeptideComposition.of(Peptide.instance("AACC")).multinomial());
+        assertEquals(24L, PeptideComposition.of(Peptide.instance("ACDE")).multinomial());
+
+        for (int length = 1; length <= 8; ++length) {
+            long total = PeptideComposition.stream(length).parallel().mapToLong(comp -> comp.multinomial()).sum();
+            assertEquals((long) Math.pow(20, length), total);
+        }
+    }
+
+    @Test public void testOrder() {
+        //
+        // The compositions must appear in the same order as the
+        // unordered peptides were discovered by a full enumeration...
+        //
+        List<Peptide> peptides = PeptideEnumerator.enumerate(3);
+        List<Peptide> unordered = PeptideEnumerator.enumerateUnordered(3);
+
+        int index = 0;
+
+        for (Peptide peptide : peptides)
+            if (PeptideComposition.of(peptide).key() == index)
+                assertEquals(unordered.get(index++), peptide);
+
+        assertEquals(unordered.size(), index);
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jene.peptide.PeptideCompositionTest");
+    }
+}
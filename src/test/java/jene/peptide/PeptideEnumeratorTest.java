@@ -2,6 +2,7 @@
 package jene.peptide;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 import com.google.common.collect.Multiset;
 
@@ -28,6 +29,46 @@ public class PeptideEnumeratorTest {
         assertEquals(8855, PeptideEnumerator.enumerateUnordered(4).size());
     }
 
+    @Test public void testIndex() {
+        assertEquals(20L, PeptideEnumerator.indexCount(1));
+        assertEquals(25600000000L, PeptideEnumerator.indexCount(8));
+        assertEquals(16384000000000000L * 100L, PeptideEnumerator.indexCount(14));
+
+        List<Peptide> peptides = PeptideEnumerator.enumerate(3);
+
+        for (int index = 0; index < peptides.size(); ++index) {
+            Peptide peptide = peptides.get(index);
+
+            assertEquals(index, PeptideEnumerator.index(peptide));
+            assertEquals(peptide, PeptideEnumerator.decode(3, index));
+        }
+
+        Peptide peptide = Peptide.instance("AVWPRQQCSTLE");
+        assertEquals(peptide, PeptideEnumerator.decode(12, PeptideEnumerator.index(peptide)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIndexLimit() {
+        PeptideEnumerator.indexCount(PeptideEnumerator.INDEX_LIMIT + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIndexNonNative() {
+        PeptideEnumerator.index(Peptide.instance("AXW"));
+    }
+
+    @Test public void testStream() {
+        assertEquals(PeptideEnumerator.enumerate(4),
+                     PeptideEnumerator.stream(4).collect(Collectors.toList()));
+
+        assertEquals(PeptideEnumerator.indexCount(6), PeptideEnumerator.indexStream(6).parallel().count());
+        assertEquals(PeptideEnumerator.indexCount(5),
+                     PeptideEnumerator.indexSpliterator(5).estimateSize());
+
+        long sum = PeptideEnumerator.stream(4).parallel().mapToLong(peptide -> PeptideEnumerator.index(peptide)).sum();
+        assertEquals(159999L * 160000L / 2L, sum);
+    }
+
     @Test public void testUnordered() {
         Peptide pep = Peptide.of(Residue.His,
                                  Residue.Cys,
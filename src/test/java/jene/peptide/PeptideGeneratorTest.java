@@ -0,0 +1,92 @@
+package jene.peptide;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class PeptideGeneratorTest {
+    private static PeptideCodeSet generateNative(int parallelism, long seed, int length, int size) throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try {
+            return pool.submit(() -> PeptideGenerator.create(seed).generateNative(length, size)).get();
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test public void testNative() throws Exception {
+        PeptideCodeSet set1 = generateNative(1, 20200721L, 9, 100000);
+        PeptideCodeSet set4 = generateNative(4, 20200721L, 9, 100000);
+        PeptideCodeSet other = generateNative(4, 12345L, 9, 100000);
+
+        assertEquals(100000, set1.size());
+        assertEquals(set1, set4);
+        assertNotEquals(set1, other);
+
+        for (Peptide peptide : set1) {
+            assertEquals(9, peptide.length());
+            assertTrue(peptide.isNative());
+        }
+    }
+
+    @Test public void testExhaustive() throws Exception {
+        //
+        // Every 3-mer must be generated eventually...
+        //
+        assertEquals(8000, generateNative(2, 1L, 3, 8000).size());
+    }
+
+    @Test public void testMutants() {
+        PeptideCodeSet parents = PeptideGenerator.create(1L).generateNative(9, 1000);
+        PeptideCodeSet mutants1 = PeptideGenerator.create(2L).generateMutants(parents, 5000);
+        PeptideCodeSet mutants2 = PeptideGenerator.create(2L).generateMutants(parents, 5000);
+
+        assertEquals(5000, mutants1.size());
+        assertEquals(mutants1, mutants2);
+
+        for (Peptide mutant : mutants1) {
+            int minDiff = Integer.MAX_VALUE;
+
+            for (Peptide parent : parents)
+                minDiff = Math.min(minDiff, differences(parent, mutant));
+
+            assertEquals(1, minDiff);
+        }
+    }
+
+    private static int differences(Peptide peptide1, Peptide peptide2) {
+        int count = 0;
+
+        for (int index = 0; index < peptide1.length(); ++index)
+            if (peptide1.get(index) != peptide2.get(index))
+                ++count;
+
+        return count;
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMutantLimit() {
+        //
+        // A single 1-mer has only 19 distinct mutants...
+        //
+        PeptideCodeSet parents = PeptideCodeSet.create(List.of(Peptide.instance("A")));
+        PeptideGenerator.create(1L).generateMutants(parents, 20);
+    }
+
+    @Test public void testPeptidome() {
+        Peptidome peptidome = Peptidome.random(8, 1000, 99L);
+
+        assertTrue(peptidome.isCompact());
+        assertEquals(1000, peptidome.size());
+        assertEquals(peptidome, Peptidome.random(8, 1000, 99L));
+        assertEquals(500, peptidome.mutate(500, 99L).size());
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jene.peptide.PeptideGeneratorTest");
+    }
+}
@@ -22,6 +22,11 @@ public class PeptideIsomerTest {
         assertEquals( 210, PeptideIsomer.mapIsomers(2).elementSet().size());
         assertEquals(1540, PeptideIsomer.mapIsomers(3).elementSet().size());
         assertEquals(8855, PeptideIsomer.mapIsomers(4).elementSet().size());
+
+        assertEquals(PeptideIsomer.mapIsomers(PeptideEnumerator.enumerate(4)), PeptideIsomer.mapIsomers(4));
+        assertEquals(160000, PeptideIsomer.mapIsomers(4).size());
+        assertEquals(24, PeptideIsomer.mapIsomers(4).count("ACDE"));
+        assertEquals(12, PeptideIsomer.mapIsomers(4).count("ACDD"));
     }
 
     public static void main(String[] args) {
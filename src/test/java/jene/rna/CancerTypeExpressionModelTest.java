@@ -1,6 +1,13 @@
 
 package jene.rna;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
 import jene.hugo.HugoSymbol;
 import jene.tcga.PatientCancerTypeTable;
 import jene.tcga.TumorBarcode;
@@ -35,6 +42,59 @@ public class CancerTypeExpressionModelTest {
         assertNull(model.lookup(AU5884_T, BRAF));
     }
 
+    @Test public void testLookupAll() {
+        ExpressionModel model = ExpressionModel.global();
+
+        TumorBarcode AU5884_T = TumorBarcode.instance("AU5884_T");
+
+        HugoSymbol A1BG  = HugoSymbol.instance("A1BG");
+        HugoSymbol A2M   = HugoSymbol.instance("A2M");
+        HugoSymbol BRAF  = HugoSymbol.instance("BRAF");
+
+        List<HugoSymbol> symbols = ImmutableList.of(A2M, BRAF, A1BG);
+        double[] result = new double[3];
+
+        // Twice, to exercise the cached symbol ordinals...
+        for (int trial = 0; trial < 2; ++trial) {
+            model.lookupAll(AU5884_T, symbols, result);
+
+            assertEquals(20501.45, result[0], 1.0E-12);
+            assertTrue(Double.isNaN(result[1]));
+            assertEquals(90.79, result[2], 1.0E-12);
+        }
+
+        model.lookupAll(AU5884_T, List.of(A1BG, A2M), result);
+
+        assertEquals(model.lookup(AU5884_T, A1BG).doubleValue(), result[0], 1.0E-12);
+        assertEquals(model.lookup(AU5884_T, A2M).doubleValue(), result[1], 1.0E-12);
+    }
+
+    @Test public void testMissingLevel() throws IOException {
+        File file = File.createTempFile("rna_median", ".csv");
+        file.deleteOnExit();
+
+        try (PrintWriter writer = new PrintWriter(file)) {
+            writer.println(",BLCA,LUAD");
+            writer.println("A1BG,35.51,NaN");
+            writer.println("A2M,1.0,2.0");
+        }
+
+        CancerTypeExpressionModel model = CancerTypeExpressionModel.instance(file);
+
+        TumorBarcode AU5884_T = TumorBarcode.instance("AU5884_T");
+        HugoSymbol A1BG = HugoSymbol.instance("A1BG");
+        HugoSymbol A2M  = HugoSymbol.instance("A2M");
+
+        double[] result = new double[2];
+        model.lookupAll(AU5884_T, List.of(A1BG, A2M), result);
+
+        assertNull(model.lookup(AU5884_T, A1BG));
+        assertTrue(Double.isNaN(result[0]));
+
+        assertTrue(model.lookup(AU5884_T, A2M).equals(2.0));
+        assertEquals(2.0, result[1], 1.0E-12);
+    }
+
     public static void main(String[] args) {
         org.junit.runner.JUnitCore.main("jene.rna.CancerTypeExpressionModelTest");
     }
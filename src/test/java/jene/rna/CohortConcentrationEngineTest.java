@@ -0,0 +1,101 @@
+package jene.rna;
+
+import java.util.List;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+
+import jene.hugo.HugoPeptideTable;
+import jene.hugo.HugoSymbol;
+import jene.peptide.Peptide;
+import jene.peptide.PeptideConcentrationProfile;
+import jene.tcga.TumorBarcode;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class CohortConcentrationEngineTest {
+    private static final TumorBarcode tumor1 = TumorBarcode.instance("OR-A5J1");
+    private static final TumorBarcode tumor2 = TumorBarcode.instance("OR-A5J2");
+    private static final TumorBarcode tumor3 = TumorBarcode.instance("OR-A5J3");
+    private static final TumorBarcode missing = TumorBarcode.instance("missing");
+
+    private static final HugoSymbol A1BG = HugoSymbol.instance("A1BG");
+    private static final HugoSymbol A1CF = HugoSymbol.instance("A1CF");
+    private static final HugoSymbol A2M  = HugoSymbol.instance("A2M");
+    private static final HugoSymbol XYZ  = HugoSymbol.instance("XYZ");
+
+    private static final Peptide pep1 = Peptide.instance("AAAAAAAAA");
+    private static final Peptide pep2 = Peptide.instance("CCCCCCCCC");
+    private static final Peptide pep3 = Peptide.instance("DDDDDDDDD");
+    private static final Peptide pep4 = Peptide.instance("EEEEEEEEE");
+
+    private static final TumorExpressionMatrix exprMatrix =
+        TumorExpressionMatrix.load("data/test/tumor_expression.csv");
+
+    private static final IndividualExpressionModel exprModel =
+        IndividualExpressionModel.load("data/test/tumor_expression.csv");
+
+    private static HugoPeptideTable peptideTable() {
+        Multimap<HugoSymbol, Peptide> map = HashMultimap.create();
+
+        // pep2 is shared by two genes; A1CF is not expressed in
+        // tumors 1 and 2; XYZ is missing from the expression data...
+        map.put(A1BG, pep1);
+        map.put(A1BG, pep2);
+        map.put(A2M,  pep2);
+        map.put(A2M,  pep3);
+        map.put(A1CF, pep3);
+        map.put(XYZ,  pep4);
+
+        return HugoPeptideTable.create(map);
+    }
+
+    @Test public void testBuild() {
+        HugoPeptideTable peptideTable = peptideTable();
+        ConcentrationModel concModel = LogConcentrationModel.DEFAULT;
+
+        CohortConcentrationEngine engine = CohortConcentrationEngine.create(peptideTable, concModel);
+        TumorConcentrationMatrix matrix = engine.build(exprModel, List.of(tumor3, tumor1, tumor2, missing));
+
+        assertEquals(4, engine.viewPeptides().size());
+        assertEquals(List.of(tumor3, tumor1, tumor2, missing), matrix.viewBarcodes());
+
+        for (TumorBarcode barcode : List.of(tumor1, tumor2, tumor3)) {
+            ExpressionProfile exprProfile = exprMatrix.get(barcode);
+
+            PeptideConcentrationProfile expected = concModel.buildProfile(peptideTable, exprProfile);
+            PeptideConcentrationProfile actual = matrix.get(barcode);
+
+            assertEquals(expected.viewPeptides(), actual.viewPeptides());
+            assertEquals(expected.size(), matrix.countNonZero(barcode));
+
+            for (Peptide peptide : expected.viewPeptides()) {
+                assertEquals(expected.get(peptide).doubleValue(), actual.get(peptide).doubleValue(), 1.0E-06);
+                assertEquals(expected.get(peptide).doubleValue(), matrix.getDouble(barcode, peptide), 1.0E-06);
+            }
+        }
+
+        double conc1 = concModel.translate(exprModel.lookup(tumor1, A1BG)).doubleValue();
+        double conc5 = concModel.translate(exprModel.lookup(tumor1, A2M)).doubleValue();
+
+        assertEquals(conc1 + conc5, matrix.getDouble(tumor1, pep2), 1.0E-06);
+        assertEquals(0.0, matrix.getDouble(tumor1, pep4), 0.0);
+        assertEquals(0, matrix.countNonZero(missing));
+        assertTrue(Double.isNaN(matrix.getDouble(TumorBarcode.instance("other"), pep1)));
+    }
+
+    @Test public void testTranslateArray() {
+        ConcentrationModel concModel = LinearConcentrationModel.DEFAULT;
+
+        double[] expression = new double[] { Double.NaN, 0.0, 0.1, 10.0, 1.0E+06 };
+        double[] concentration = new double[expression.length];
+
+        concModel.translate(expression, concentration);
+        assertArrayEquals(new double[] { 0.0, 0.0, 0.0, 10.0, 1.0E+05 }, concentration, 0.0);
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jene.rna.CohortConcentrationEngineTest");
+    }
+}
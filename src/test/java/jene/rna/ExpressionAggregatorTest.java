@@ -0,0 +1,164 @@
+
+package jene.rna;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import jene.hugo.HugoSymbol;
+import jene.tcga.CancerType;
+import jene.tcga.PatientCancerTypeTable;
+import jene.tcga.TumorBarcode;
+import jene.tcga.TumorPatientTable;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ExpressionAggregatorTest {
+    static {
+        System.setProperty(PatientCancerTypeTable.TABLE_FILE_PROPERTY, "data/test/patient_cancer_type_map.tsv");
+        System.setProperty(TumorPatientTable.TABLE_FILE_PROPERTY, "data/test/tumor_patient_map.tsv");
+    }
+
+    private static final HugoSymbol A1BG = HugoSymbol.instance("A1BG");
+    private static final HugoSymbol A1CF = HugoSymbol.instance("A1CF");
+    private static final HugoSymbol A2M  = HugoSymbol.instance("A2M");
+
+    private static final double TOLERANCE = 1.0E-3;
+
+    private static ExpressionAggregator aggregator() {
+        return ExpressionAggregator.create(TumorExpressionMatrix.load("data/test/tumor_expression.csv"));
+    }
+
+    private static File writeTable(String header, String... lines) throws IOException {
+        File file = File.createTempFile("aggregator", ".tsv");
+        file.deleteOnExit();
+
+        try (PrintWriter writer = new PrintWriter(file)) {
+            writer.println(header);
+
+            for (String line : lines)
+                writer.println(line);
+        }
+
+        return file;
+    }
+
+    private static Map<CancerType, ArrayExpressionProfile> quantileByCancerType(double prob, boolean estimate) throws IOException {
+        //
+        // Tumors OR-A5J1 and OR-A5J2 are BLCA, OR-A5J3 is LUAD...
+        //
+        TumorPatientTable tumorPatientTable =
+            TumorPatientTable.load(writeTable("Tumor_Barcode\tPatient_ID",
+                                              "OR-A5J1\tP1",
+                                              "OR-A5J2\tP2",
+                                              "OR-A5J3\tP3"));
+
+        PatientCancerTypeTable patientCancerTypeTable =
+            PatientCancerTypeTable.load(writeTable("Patient_ID\tCancer_Type",
+                                                   "P1\tBLCA",
+                                                   "P2\tBLCA",
+                                                   "P3\tLUAD"));
+
+        if (estimate)
+            return aggregator().estimateQuantileByCancerType(prob, tumorPatientTable, patientCancerTypeTable);
+        else
+            return aggregator().quantileByCancerType(prob, tumorPatientTable, patientCancerTypeTable);
+    }
+
+    @Test public void testCohortQuantile() {
+        ExpressionAggregator aggregator = aggregator();
+        ArrayExpressionProfile median = aggregator.quantile(ExpressionAggregator.MEDIAN);
+
+        assertEquals(16.3305, median.getDouble(A1BG), TOLERANCE);
+        assertEquals(0.0,     median.getDouble(A1CF), TOLERANCE);
+        assertEquals(9844.91, median.getDouble(A2M),  TOLERANCE);
+
+        ArrayExpressionProfile lower = aggregator.quantile(0.25);
+        assertEquals(0.5 * (9.5987 + 16.3305), lower.getDouble(A1BG), TOLERANCE);
+
+        assertEquals(7201.84, aggregator.quantile(0.0).getDouble(A2M), 0.01);
+        assertEquals(10373.7, aggregator.quantile(1.0).getDouble(A2M), 0.01);
+    }
+
+    @Test public void testCancerTypeQuantile() throws IOException {
+        for (boolean estimate : new boolean[] { false, true }) {
+            Map<CancerType, ArrayExpressionProfile> medians =
+                quantileByCancerType(ExpressionAggregator.MEDIAN, estimate);
+
+            assertEquals(2, medians.size());
+            assertEquals(0.5 * (16.3305 + 9.5987), medians.get(CancerType.BLCA).getDouble(A1BG), TOLERANCE);
+            assertEquals(20.7377, medians.get(CancerType.LUAD).getDouble(A1BG), TOLERANCE);
+            assertEquals(0.5925,  medians.get(CancerType.LUAD).getDouble(A1CF), TOLERANCE);
+        }
+    }
+
+    @Test public void testQuickselect() {
+        Random random = new Random(20201019);
+
+        for (int trial = 0; trial < 100; ++trial) {
+            int count = 1 + random.nextInt(50);
+            double[] values = new double[count];
+
+            for (int k = 0; k < count; ++k)
+                values[k] = random.nextInt(10);
+
+            double[] sorted = values.clone();
+            Arrays.sort(sorted);
+
+            double prob = random.nextDouble();
+            double position = prob * (count - 1);
+            int lower = (int) Math.floor(position);
+            int upper = Math.min(lower + 1, count - 1);
+            double expected = sorted[lower] + (position - lower) * (sorted[upper] - sorted[lower]);
+
+            assertEquals(expected, ExpressionAggregator.quantile(values, count, prob), 1.0E-12);
+        }
+    }
+
+    @Test public void testSketch() {
+        Random random = new Random(20201019);
+        QuantileSketch sketch = new QuantileSketch(0.9, 2);
+
+        double[] observation = new double[2];
+
+        for (int k = 0; k < 100000; ++k) {
+            observation[0] = random.nextDouble();
+            observation[1] = 10.0 * random.nextGaussian();
+            sketch.add(observation);
+        }
+
+        assertEquals(100000, sketch.count());
+        assertEquals(0.9, sketch.estimate(0), 0.01);
+        assertEquals(12.8155, sketch.estimate(1), 0.2);
+    }
+
+    @Test public void testStore() throws IOException {
+        ArrayExpressionProfile median = aggregator().quantile(ExpressionAggregator.MEDIAN);
+
+        File aggregateFile = File.createTempFile("aggregate", ".tsv");
+        aggregateFile.deleteOnExit();
+
+        ExpressionAggregator.storeAggregate(aggregateFile, "RNA_Median", median);
+        AggregateExpressionModel aggregateModel = AggregateExpressionModel.load(aggregateFile);
+
+        TumorBarcode AU5884_T = TumorBarcode.instance("AU5884_T");
+        assertEquals(9844.91, aggregateModel.lookup(AU5884_T, A2M).doubleValue(), 0.01);
+
+        File cancerTypeFile = File.createTempFile("cancer_type", ".csv");
+        cancerTypeFile.deleteOnExit();
+
+        ExpressionAggregator.storeByCancerType(cancerTypeFile, quantileByCancerType(ExpressionAggregator.MEDIAN, false));
+        CancerTypeExpressionModel cancerTypeModel = CancerTypeExpressionModel.instance(cancerTypeFile);
+
+        // AU5884_T is LUAD in the global tables...
+        assertEquals(20.7377, cancerTypeModel.lookup(AU5884_T, A1BG).doubleValue(), TOLERANCE);
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jene.rna.ExpressionAggregatorTest");
+    }
+}
@@ -0,0 +1,157 @@
+package jene.rna;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import jam.data.DataMatrix;
+import jam.data.DenseDataMatrix;
+
+import jene.hugo.HugoSymbol;
+import jene.tcga.TumorBarcode;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ExpressionExtractorTest {
+    private static final TumorBarcode tumor1 = TumorBarcode.instance("OR-A5J1");
+    private static final TumorBarcode tumor3 = TumorBarcode.instance("OR-A5J3");
+    private static final TumorBarcode missing = TumorBarcode.instance("missing");
+
+    private static final HugoSymbol gene1 = HugoSymbol.instance("A1BG");
+    private static final HugoSymbol gene2 = HugoSymbol.instance("A1CF");
+    private static final HugoSymbol gene5 = HugoSymbol.instance("A2M");
+
+    private static final String EXTRACT_DIR = "data/test/_tmp_extract";
+
+    @Test public void testExtract() {
+        TumorExpressionMatrix matrix = TumorExpressionMatrix.load("data/test/tumor_expression.csv");
+        ExpressionManager manager = ExpressionManager.create(EXTRACT_DIR);
+
+        File extractDir = new File(EXTRACT_DIR);
+        extractDir.mkdir();
+
+        try {
+            ExpressionExtractor.extract(matrix, List.of(tumor1, missing, tumor3), manager, 2);
+
+            assertTrue(manager.exists(tumor1));
+            assertTrue(manager.exists(tumor3));
+            assertFalse(manager.exists(missing));
+
+            ExpressionProfile profile1 = manager.require(tumor1);
+            ExpressionProfile profile3 = manager.require(tumor3);
+
+            // Zero expression is not stored...
+            assertFalse(profile1.contains(gene2));
+            assertEquals(4, profile1.viewSymbols().size());
+
+            // The levels are written as ExpressionProfile.store writes them...
+            assertEquals(Expression.valueOf(10373.7), profile1.get(gene5));
+            assertEquals(Expression.valueOf(16.3305), profile1.get(gene1));
+            assertEquals(Expression.valueOf(7201.84), profile3.get(gene5));
+            assertEquals(Expression.valueOf(0.5925), profile3.get(gene2));
+        }
+        finally {
+            for (File file : extractDir.listFiles())
+                file.delete();
+
+            extractDir.delete();
+        }
+    }
+
+    @Test public void testReextract() {
+        ExpressionManager manager = ExpressionManager.create(EXTRACT_DIR);
+        File extractDir = new File(EXTRACT_DIR);
+        extractDir.mkdir();
+
+        try {
+            ExpressionExtractor.extract(singleLevel(1.5), List.of(tumor1), manager, 1);
+            assertEquals(Expression.valueOf(1.5), manager.require(tumor1).get(gene1));
+
+            // The cached profile must not survive the new extraction...
+            ExpressionExtractor.extract(singleLevel(2.5), List.of(tumor1), manager, 1);
+            assertEquals(Expression.valueOf(2.5), manager.require(tumor1).get(gene1));
+        }
+        finally {
+            for (File file : extractDir.listFiles())
+                file.delete();
+
+            extractDir.delete();
+        }
+    }
+
+    private static TumorExpressionMatrix singleLevel(double level) {
+        DataMatrix<TumorBarcode, HugoSymbol> dataMatrix = DenseDataMatrix.create(List.of(tumor1), List.of(gene1));
+        dataMatrix.set(tumor1, gene1, level);
+        return new TumorExpressionMatrix(dataMatrix);
+    }
+
+    @Test public void testFormat() throws IOException {
+        // Half-even ties, values just off ties, long fractions, and
+        // large levels that require the exact rounding path...
+        double[] levels = {
+            0.00005, 0.00015, 0.00025, 0.000049999, 1.23455, 1.23465,
+            1.0, 16.3305, 0.5925, 123.456789, 10373.7, 2.675, 0.1 + 0.2,
+            1.0E-09, 99999.99995, 123456789.12345, 3.0E+09 + 0.00005, 2.5E+12
+        };
+
+        List<HugoSymbol> symbols = new ArrayList<HugoSymbol>();
+
+        for (int k = 0; k < levels.length; ++k)
+            symbols.add(HugoSymbol.instance(String.format("G%02d", k)));
+
+        DataMatrix<TumorBarcode, HugoSymbol> dataMatrix = DenseDataMatrix.create(List.of(tumor1), symbols);
+
+        for (int k = 0; k < levels.length; ++k)
+            dataMatrix.set(tumor1, symbols.get(k), levels[k]);
+
+        ExpressionManager manager = ExpressionManager.create(EXTRACT_DIR);
+        File extractDir = new File(EXTRACT_DIR);
+        extractDir.mkdir();
+
+        try {
+            ExpressionExtractor.extract(new TumorExpressionMatrix(dataMatrix), List.of(tumor1), manager, 1);
+
+            List<String> expected = new ArrayList<String>();
+            DecimalFormat format = new DecimalFormat("#0.0###");
+
+            expected.add("Hugo_Symbol,Expression");
+
+            for (int k = 0; k < levels.length; ++k)
+                expected.add(symbols.get(k).getKey() + "," + format.format(levels[k]));
+
+            assertEquals(expected, readLines(manager.expressionFile(tumor1)));
+        }
+        finally {
+            for (File file : extractDir.listFiles())
+                file.delete();
+
+            extractDir.delete();
+        }
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+
+        try (BufferedReader reader =
+             new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+
+            while ((line = reader.readLine()) != null)
+                lines.add(line);
+        }
+
+        return lines;
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jene.rna.ExpressionExtractorTest");
+    }
+}
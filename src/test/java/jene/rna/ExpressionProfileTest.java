@@ -2,8 +2,10 @@
 package jene.rna;
 
 import java.io.File;
+import java.util.List;
 import java.util.Set;
 
+import jene.hugo.HugoIndex;
 import jene.hugo.HugoSymbol;
 
 import org.junit.*;
@@ -48,6 +50,27 @@ public class ExpressionProfileTest {
         assertProfile(profile2);
     }
 
+    @Test public void testArrayProfile() {
+        HugoIndex index = HugoIndex.create(List.of(A2LD1, A1BG, A2BP1, XYZ));
+        ArrayExpressionProfile array = ArrayExpressionProfile.copyOf(index, profile);
+
+        assertProfile(array);
+        assertTrue(array.contains(XYZ));
+        assertEquals(182.392, array.getDouble(0), 0.0);
+        assertEquals(0.0, array.getDouble(3), 0.0);
+
+        double[] result = new double[3];
+        array.getAll(new int[] { 2, 2, 1 }, result);
+
+        assertArrayEquals(new double[] { 17.2911, 17.2911, 10373.7 }, result, 0.0);
+        assertEquals(index.viewSymbolSet(), array.viewSymbols());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testArrayNegative() {
+        ArrayExpressionProfile.create(HugoIndex.create(List.of(A1BG)), new double[] { -1.0 });
+    }
+
     @Test public void testViewSymbols() {
         assertEquals(Set.of(A1BG, A2BP1, A2LD1), profile.viewSymbols());
     }
@@ -1,6 +1,11 @@
 
 package jene.rna;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
 
 import jam.junit.NumericTestBase;
@@ -60,12 +65,88 @@ public class TumorExpressionMatrixTest extends NumericTestBase {
         assertExpression(   8.8876, profile.get(gene3));
         assertExpression( 138.883,  profile.get(gene4));
         assertExpression(7201.84,   profile.get(gene5));
+
+        assertEquals(138.883, profile.getDouble(gene4), 0.0001);
+        assertEquals(0.0, profile.getDouble(bad_gene), 0.0);
+        assertEquals(Expression.ZERO, profile.get(bad_gene));
+        assertTrue(profile.contains(gene1));
+        assertFalse(profile.contains(bad_gene));
+        assertEquals(5, profile.viewEntries().size());
+        assertEquals(matrix.viewSymbols(), List.copyOf(profile.viewSymbols()));
+
+        assertEquals(16.3305, matrix.getDouble(tumor1, gene1), 0.0001);
+        assertTrue(Double.isNaN(matrix.getDouble(bad_tumor, gene1)));
+        assertNull(matrix.get(bad_tumor));
+
+        assertEquals(2, matrix.getSymbolIndex().indexOf(gene3));
+        assertEquals(-1, matrix.getSymbolIndex().indexOf(bad_gene));
+    }
+
+    @Test public void testNoSideCache() {
+        File textFile = new File("data/test/tumor_expression.csv");
+        assertFalse(TumorExpressionMatrix.cacheFile(textFile).exists());
+    }
+
+    @Test public void testStore() throws IOException {
+        File cacheFile = new File(createTempDir(), "tumor_expression.f32");
+        cacheFile.deleteOnExit();
+
+        matrix.store(cacheFile);
+        TumorExpressionMatrix mapped = TumorExpressionMatrix.map(cacheFile);
+
+        assertEquals(matrix.viewBarcodes(), mapped.viewBarcodes());
+        assertEquals(matrix.viewSymbols(), mapped.viewSymbols());
+
+        for (TumorBarcode barcode : matrix.viewBarcodes())
+            for (HugoSymbol symbol : matrix.viewSymbols())
+                assertEquals((float) matrix.getDouble(barcode, symbol), mapped.getDouble(barcode, symbol), 0.0);
+
+        assertCached(7201.84, mapped.get(tumor3).get(gene5));
+        assertCached(7201.84, TumorExpressionMatrix.load(cacheFile).get(tumor3, gene5));
+
+        // Only the destination file remains...
+        assertEquals(1, cacheFile.getParentFile().list().length);
+    }
+
+    @Test public void testLoadCached() throws IOException {
+        File textFile = new File(createTempDir(), "tumor_expression.csv");
+        Files.copy(Path.of("data/test/tumor_expression.csv"), textFile.toPath());
+
+        File cacheFile = TumorExpressionMatrix.cacheFile(textFile);
+        textFile.deleteOnExit();
+        cacheFile.deleteOnExit();
+
+        assertFalse(cacheFile.exists());
+
+        // The first load creates the cache, later loads map it...
+        assertCached(16.3305, TumorExpressionMatrix.loadCached(textFile).get(tumor1, gene1));
+        assertTrue(cacheFile.exists());
+        assertCached(16.3305, TumorExpressionMatrix.loadCached(textFile).get(tumor1, gene1));
+
+        // A truncated cache is discarded and rebuilt...
+        long length = cacheFile.length();
+        Files.write(cacheFile.toPath(), Arrays.copyOf(Files.readAllBytes(cacheFile.toPath()), 40));
+        cacheFile.setLastModified(textFile.lastModified() + 1000L);
+
+        assertCached(7201.84, TumorExpressionMatrix.loadCached(textFile).get(tumor3, gene5));
+        assertEquals(length, cacheFile.length());
+    }
+
+    private static File createTempDir() throws IOException {
+        File dir = Files.createTempDirectory("tumor_expression").toFile();
+        dir.deleteOnExit();
+        return dir;
     }
 
     private void assertExpression(double expected, Expression actual) {
         assertEquals(expected, actual.doubleValue(), 0.0001);
     }
 
+    private void assertCached(double expected, Expression actual) {
+        // The binary cache stores single-precision values...
+        assertEquals(expected, actual.doubleValue(), Math.max(0.0001, 1.0E-06 * expected));
+    }
+
     public static void main(String[] args) {
         org.junit.runner.JUnitCore.main("jene.rna.TumorExpressionMatrixTest");
     }
@@ -0,0 +1,128 @@
+package jene.tcga;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class TumorDataCacheTest {
+    private static final TumorBarcode barcode1 = TumorBarcode.instance("barcode1");
+    private static final TumorBarcode barcode2 = TumorBarcode.instance("barcode2");
+    private static final TumorBarcode barcode3 = TumorBarcode.instance("barcode3");
+    private static final TumorBarcode failing  = TumorBarcode.instance("failing");
+
+    private final AtomicInteger loadCount = new AtomicInteger();
+
+    private String load(TumorBarcode barcode) {
+        loadCount.incrementAndGet();
+
+        if (barcode.equals(failing))
+            throw new IllegalStateException("Failed!");
+
+        return barcode.getKey().toUpperCase();
+    }
+
+    @Test public void testHitMiss() {
+        TumorDataCache<String> cache = TumorDataCache.create(this::load, String::length, 1000);
+
+        assertEquals("BARCODE1", cache.get(barcode1));
+        assertEquals("BARCODE1", cache.get(barcode1));
+        assertEquals("BARCODE2", cache.get(barcode2));
+
+        assertEquals(2, loadCount.get());
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(2, cache.stats().missCount());
+        assertEquals(2, cache.size());
+
+        cache.invalidate(barcode1);
+        assertNull(cache.getIfPresent(barcode1));
+        assertEquals("BARCODE1", cache.get(barcode1));
+        assertEquals(3, loadCount.get());
+    }
+
+    @Test public void testEviction() {
+        // Room for two eight-character values...
+        TumorDataCache<String> cache = TumorDataCache.create(this::load, String::length, 16);
+
+        cache.get(barcode1);
+        cache.get(barcode2);
+        cache.get(barcode1);
+        cache.get(barcode3);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.stats().evictionCount());
+        assertNotNull(cache.getIfPresent(barcode1));
+        assertNull(cache.getIfPresent(barcode2));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFailure() {
+        TumorDataCache<String> cache = TumorDataCache.create(this::load, String::length, 1000);
+        cache.get(failing);
+    }
+
+    @Test public void testSingleFlight() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        TumorDataCache<String> cache =
+            TumorDataCache.create(barcode -> {
+                    started.countDown();
+                    await(release);
+                    return load(barcode);
+                }, String::length, 1000);
+
+        List<Thread> threads = new ArrayList<Thread>();
+        AtomicInteger resultCount = new AtomicInteger();
+
+        for (int k = 0; k < 8; ++k) {
+            Thread thread = new Thread(() -> {
+                    if (cache.get(barcode1).equals("BARCODE1"))
+                        resultCount.incrementAndGet();
+                });
+
+            threads.add(thread);
+            thread.start();
+        }
+
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        release.countDown();
+
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(8, resultCount.get());
+        assertEquals(1, loadCount.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        }
+        catch (InterruptedException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Test public void testPrefetch() throws Exception {
+        TumorDataCache<String> cache = TumorDataCache.create(this::load, String::length, 1000);
+        cache.get(barcode1);
+
+        cache.prefetch(List.of(barcode1, barcode2, failing, barcode3), 3).get();
+
+        assertNotNull(cache.getIfPresent(barcode2));
+        assertNull(cache.getIfPresent(barcode3));
+        assertEquals(3, loadCount.get());
+
+        assertEquals("BARCODE2", cache.get(barcode2));
+        assertEquals(3, loadCount.get());
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jene.tcga.TumorDataCacheTest");
+    }
+}
@@ -1,8 +1,19 @@
 
 package jene.tcga;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 import jene.hla.Allele;
+import jene.hla.CompactGenotype;
 import jene.hla.Genotype;
+import jene.hla.PatientGenotypeTable;
 
 import org.junit.*;
 import static org.junit.Assert.*;
@@ -21,6 +32,7 @@ public class TumorGenotypeTableTest {
 
     private static final Genotype Geno1 = Genotype.instance(A0201, A3201, B1501, C0303);
     private static final Genotype Geno2 = Genotype.instance(A0301, A1101, B0702, B5201, C0702, C1202);
+    private static final Genotype Geno3 = Genotype.instance(A0201, A0201, B0702, B1501, C0702, C0303);
     
     private static final TumorBarcode Tumor1A = TumorBarcode.instance("Tumor1A");
     private static final TumorBarcode Tumor1B = TumorBarcode.instance("Tumor1B");
@@ -48,6 +60,86 @@ public class TumorGenotypeTableTest {
         assertNull(table.lookup(Tumor3));
     }
 
+    @Test public void testLOH() throws IOException {
+        File tumorPatientFile = File.createTempFile("tumor_patient", ".tsv");
+        tumorPatientFile.deleteOnExit();
+
+        try (PrintWriter writer = new PrintWriter(tumorPatientFile)) {
+            writer.println("Tumor_Barcode\tPatient_ID");
+            writer.println("Tumor1A\tPat1");
+            writer.println("Tumor1B\tPat1");
+            writer.println("Tumor2\tPat2");
+        }
+
+        PatientGenotypeTable patientGenotypeTable =
+            new PatientGenotypeTable(Map.of(PatientID.instance("Pat1"), Geno1,
+                                            PatientID.instance("Pat2"), Geno2));
+
+        TumorGenotypeTable table =
+            TumorGenotypeTable.merge(TumorPatientTable.load(tumorPatientFile), patientGenotypeTable);
+
+        Set<CompactGenotype> expected = new HashSet<CompactGenotype>();
+
+        for (Genotype genotype : List.of(Geno1, Geno2))
+            for (Genotype variant : genotype.enumerateLOH(2))
+                expected.add(variant.compact());
+
+        assertEquals(6 + 15, expected.size());
+        assertEquals(expected, table.enumerateLOH(2));
+
+        Map<TumorBarcode, List<CompactGenotype>> variants = table.mapLOH(2);
+
+        assertEquals(3, variants.size());
+        assertEquals(6, variants.get(Tumor1A).size());
+        assertEquals(15, variants.get(Tumor2).size());
+        assertSame(variants.get(Tumor1A), variants.get(Tumor1B));
+        assertEquals(expected.size(), Set.copyOf(variants.get(Tumor1A)).size() + Set.copyOf(variants.get(Tumor2)).size());
+
+        // Geno1 has only four unique alleles...
+        assertEquals(0, table.mapLOH(5).get(Tumor1A).size());
+        assertEquals(6, table.mapLOH(5).get(Tumor2).size());
+        assertEquals(6, table.enumerateLOH(5).size());
+    }
+
+    @Test public void testLOHHomozygous() throws IOException {
+        File tumorPatientFile = File.createTempFile("tumor_patient", ".tsv");
+        tumorPatientFile.deleteOnExit();
+
+        try (PrintWriter writer = new PrintWriter(tumorPatientFile)) {
+            writer.println("Tumor_Barcode\tPatient_ID");
+            writer.println("Tumor2\tPat2");
+            writer.println("Tumor3\tPat3");
+        }
+
+        PatientGenotypeTable patientGenotypeTable =
+            new PatientGenotypeTable(Map.of(PatientID.instance("Pat2"), Geno2,
+                                            PatientID.instance("Pat3"), Geno3));
+
+        TumorGenotypeTable table =
+            TumorGenotypeTable.merge(TumorPatientTable.load(tumorPatientFile), patientGenotypeTable);
+
+        for (int count = 1; count <= 3; ++count) {
+            Set<CompactGenotype> expected3 = new HashSet<CompactGenotype>();
+
+            for (Genotype variant : Geno3.enumerateLOH(count))
+                expected3.add(variant.compact());
+
+            // The homozygous A*02:01 copies collapse to one copy...
+            assertEquals(expected3, Set.copyOf(table.mapLOH(count).get(Tumor3)));
+            assertEquals(expected3, Geno3.streamLOH(count).collect(Collectors.toSet()));
+
+            Set<CompactGenotype> expected = new HashSet<CompactGenotype>(expected3);
+
+            for (Genotype variant : Geno2.enumerateLOH(count))
+                expected.add(variant.compact());
+
+            assertEquals(expected, table.enumerateLOH(count));
+        }
+
+        assertTrue(table.enumerateLOH(1).contains(Genotype.instance(A0201, B0702, B1501, C0303).compact()));
+        assertFalse(table.enumerateLOH(1).contains(Genotype.instance(A0201, A0201, B0702, B1501, C0303).compact()));
+    }
+
     public static void main(String[] args) {
         org.junit.runner.JUnitCore.main("jene.tcga.TumorGenotypeTableTest");
     }
@@ -0,0 +1,136 @@
+
+package jene.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jene.tcga.CancerType;
+import jene.tcga.PatientID;
+import jene.tcga.TumorBarcode;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class KeyColumnTest {
+    private static final PatientID P1 = PatientID.instance("P1");
+    private static final PatientID P2 = PatientID.instance("P2");
+    private static final PatientID P3 = PatientID.instance("P3");
+
+    private static final TumorBarcode T1A = TumorBarcode.instance("T1A");
+    private static final TumorBarcode T1B = TumorBarcode.instance("T1B");
+    private static final TumorBarcode T2  = TumorBarcode.instance("T2");
+    private static final TumorBarcode T3  = TumorBarcode.instance("T3");
+    private static final TumorBarcode T4  = TumorBarcode.instance("T4");
+
+    private static KeyColumn<TumorBarcode, PatientID> tumorPatients() {
+        Map<TumorBarcode, PatientID> map = new LinkedHashMap<TumorBarcode, PatientID>();
+
+        map.put(T1A, P1);
+        map.put(T1B, P1);
+        map.put(T2,  P2);
+        map.put(T3,  P3);
+        map.put(T4,  null);
+
+        return KeyColumn.create(map);
+    }
+
+    private static KeyColumn<PatientID, CancerType> patientCancerTypes() {
+        // Patient P3 has no cancer type...
+        Map<PatientID, CancerType> map = new LinkedHashMap<PatientID, CancerType>();
+
+        map.put(P2, CancerType.SKCM);
+        map.put(P1, CancerType.LUAD);
+
+        return KeyColumn.create(map);
+    }
+
+    @Test public void testIndex() {
+        KeyIndex<TumorBarcode> index = KeyIndex.create(List.of(T2, T1A, T3));
+
+        assertEquals(3, index.size());
+        assertEquals(0, index.indexOf(T2));
+        assertEquals(2, index.indexOf(T3));
+        assertEquals(-1, index.indexOf(T4));
+        assertEquals(1, index.require(T1A));
+        assertEquals(T1A, index.get(1));
+        assertEquals(List.of(T2, T1A, T3), index.viewKeys());
+        assertTrue(index.contains(T3));
+        assertFalse(index.contains(T4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIndexDuplicate() {
+        KeyIndex.create(List.of(T2, T1A, T2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIndexMissing() {
+        KeyIndex.create(List.of(T2, T1A)).require(T3);
+    }
+
+    @Test public void testColumn() {
+        KeyColumn<TumorBarcode, PatientID> column = tumorPatients();
+
+        assertEquals(5, column.getKeyIndex().size());
+        assertEquals(4, column.count());
+        assertEquals(Set.of(T1A, T1B, T2, T3), column.viewKeys());
+
+        assertEquals(P1, column.lookup(T1B));
+        assertEquals(P2, column.require(T2));
+        assertEquals(P3, column.get(column.getKeyIndex().indexOf(T3)));
+        assertNull(column.lookup(T4));
+        assertNull(column.lookup(TumorBarcode.instance("Missing")));
+
+        assertTrue(column.contains(T1A));
+        assertFalse(column.contains(T4));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testRequireUnmapped() {
+        tumorPatients().require(T4);
+    }
+
+    @Test public void testJoin() {
+        KeyColumn<TumorBarcode, PatientID> tumorPatients = tumorPatients();
+        KeyColumn<TumorBarcode, CancerType> joined = tumorPatients.join(patientCancerTypes());
+
+        assertSame(tumorPatients.getKeyIndex(), joined.getKeyIndex());
+        assertEquals(3, joined.count());
+        assertEquals(Set.of(T1A, T1B, T2), joined.viewKeys());
+
+        assertEquals(CancerType.LUAD, joined.lookup(T1A));
+        assertEquals(CancerType.LUAD, joined.lookup(T1B));
+        assertEquals(CancerType.SKCM, joined.lookup(T2));
+        assertNull(joined.lookup(T3));
+        assertNull(joined.lookup(T4));
+
+        List<TumorBarcode> visited = new ArrayList<TumorBarcode>();
+        joined.forEach((barcode, cancerType) -> visited.add(barcode));
+        assertEquals(List.of(T1A, T1B, T2), visited);
+
+        KeyColumn<TumorBarcode, CancerType> copy = joined.materialize();
+
+        assertSame(joined.getKeyIndex(), copy.getKeyIndex());
+        assertEquals(joined.viewKeys(), copy.viewKeys());
+        assertEquals(CancerType.SKCM, copy.lookup(T2));
+    }
+
+    @Test public void testJoinChain() {
+        Map<CancerType, String> names = new LinkedHashMap<CancerType, String>();
+        names.put(CancerType.SKCM, "Melanoma");
+
+        KeyColumn<TumorBarcode, String> joined =
+            tumorPatients().join(patientCancerTypes()).join(KeyColumn.create(names));
+
+        assertEquals(Set.of(T2), joined.viewKeys());
+        assertEquals("Melanoma", joined.require(T2));
+        assertNull(joined.lookup(T1A));
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jene.util.KeyColumnTest");
+    }
+}